@@ -217,6 +217,41 @@ public abstract class AbstractSpimSource< T extends NumericType< T > > implement
 		return t >= 0 && t < timePointsOrdered.size() && !missingViews.contains( new ViewId( timePointsOrdered.get( t ).getId(), setupId ) );
 	}
 
+	/**
+	 * Get mipmap level {@code level} of timepoint {@code t} directly from the
+	 * image loader. In contrast to {@link #getSource(int, int)}, this does not
+	 * make {@code t} the current timepoint of this source and does not put the
+	 * image into the cache of recently used images. It can therefore be used to
+	 * access other timepoints than the displayed one, e.g., for prefetching.
+	 *
+	 * @return the image, or {@code null} if timepoint {@code t} is not present.
+	 */
+	public RandomAccessibleInterval< T > getUncachedSource( final int t, final int level )
+	{
+		return isPresent( t )
+				? getImage( timePointsOrdered.get( t ).getId(), level )
+				: null;
+	}
+
+	/**
+	 * Get the transform from mipmap level {@code level} of timepoint {@code t}
+	 * to global coordinates, as
+	 * {@link #getSourceTransform(int, int, AffineTransform3D)}, but without
+	 * making {@code t} the current timepoint of this source.
+	 *
+	 * @return {@code false} if timepoint {@code t} is not present (then
+	 *         {@code transform} is not changed).
+	 */
+	public boolean getUncachedSourceTransform( final int t, final int level, final AffineTransform3D transform )
+	{
+		if ( !isPresent( t ) )
+			return false;
+		final ViewId viewId = new ViewId( timePointsOrdered.get( t ).getId(), setupId );
+		transform.set( viewRegistrations.get( viewId ).getModel() );
+		transform.concatenate( getMipmapTransforms()[ level ] );
+		return true;
+	}
+
 	@Override
 	public RandomAccessibleInterval< T > getSource( final int t, final int level )
 	{
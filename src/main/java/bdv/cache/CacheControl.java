@@ -29,6 +29,8 @@
  */
 package bdv.cache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import bdv.img.cache.VolatileGlobalCellCache;
@@ -94,6 +96,11 @@ public interface CacheControl
 			cacheControls.remove( cacheControl );
 		}
 
+		public List< CacheControl > getCacheControls()
+		{
+			return Collections.unmodifiableList( cacheControls );
+		}
+
 		@Override
 		public void prepareNextFrame()
 		{
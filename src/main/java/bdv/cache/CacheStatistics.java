@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.cache;
+
+import bdv.img.cache.VolatileGlobalCellCache;
+
+/**
+ * Snapshot of cache counters, for diagnostics. Counters that are not
+ * available for a cache are -1 (or {@code null}).
+ */
+public class CacheStatistics
+{
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final int queueSize;
+
+	private final long[] numEnqueuedPerPriority;
+
+	/**
+	 * @param hitCount
+	 *            number of requests served from memory, or -1 if unknown.
+	 * @param missCount
+	 *            number of requests that required loading, or -1 if unknown.
+	 * @param queueSize
+	 *            number of loading requests waiting in the fetch queue, or -1
+	 *            if unknown.
+	 * @param numEnqueuedPerPriority
+	 *            number of loading requests enqueued at each priority (mipmap
+	 *            level) for the current frame, or {@code null} if unknown.
+	 */
+	public CacheStatistics( final long hitCount, final long missCount, final int queueSize, final long[] numEnqueuedPerPriority )
+	{
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.queueSize = queueSize;
+		this.numEnqueuedPerPriority = numEnqueuedPerPriority;
+	}
+
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	public int getQueueSize()
+	{
+		return queueSize;
+	}
+
+	public long[] getNumEnqueuedPerPriority()
+	{
+		return numEnqueuedPerPriority;
+	}
+
+	/**
+	 * Combine the counters of two caches. Counters that are unknown for one
+	 * of them are taken from the other.
+	 */
+	public CacheStatistics add( final CacheStatistics other )
+	{
+		if ( other == null )
+			return this;
+		long[] enqueued = numEnqueuedPerPriority;
+		if ( enqueued == null )
+			enqueued = other.numEnqueuedPerPriority;
+		else if ( other.numEnqueuedPerPriority != null )
+		{
+			enqueued = new long[ Math.max( numEnqueuedPerPriority.length, other.numEnqueuedPerPriority.length ) ];
+			for ( int i = 0; i < numEnqueuedPerPriority.length; ++i )
+				enqueued[ i ] += numEnqueuedPerPriority[ i ];
+			for ( int i = 0; i < other.numEnqueuedPerPriority.length; ++i )
+				enqueued[ i ] += other.numEnqueuedPerPriority[ i ];
+		}
+		return new CacheStatistics(
+				add( hitCount, other.hitCount ),
+				add( missCount, other.missCount ),
+				( int ) add( queueSize, other.queueSize ),
+				enqueued );
+	}
+
+	private static long add( final long a, final long b )
+	{
+		if ( a < 0 )
+			return b;
+		else if ( b < 0 )
+			return a;
+		else
+			return a + b;
+	}
+
+	/**
+	 * Get the counters of a {@link VolatileGlobalCellCache}, or the combined
+	 * counters of all {@link VolatileGlobalCellCache}s in a
+	 * {@link CacheControl.CacheControls}.
+	 *
+	 * @return the counters, or {@code null} if {@code cacheControl} does not
+	 *         provide any.
+	 */
+	public static CacheStatistics of( final CacheControl cacheControl )
+	{
+		if ( cacheControl instanceof VolatileGlobalCellCache )
+			return ( ( VolatileGlobalCellCache ) cacheControl ).getStatistics();
+		else if ( cacheControl instanceof CacheControl.CacheControls )
+		{
+			CacheStatistics stats = null;
+			for ( final CacheControl c : ( ( CacheControl.CacheControls ) cacheControl ).getCacheControls() )
+			{
+				final CacheStatistics s = of( c );
+				stats = ( stats == null ) ? s : stats.add( s );
+			}
+			return stats;
+		}
+		return null;
+	}
+}
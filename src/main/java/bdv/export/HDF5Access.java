@@ -30,8 +30,13 @@
 package bdv.export;
 
 import static bdv.img.hdf5.Util.reorder;
+import bdv.img.hdf5.DataTypes;
+import bdv.img.hdf5.DataTypes.DataType;
 import bdv.img.hdf5.Util;
+import ch.systemsx.cisd.base.mdarray.MDByteArray;
+import ch.systemsx.cisd.base.mdarray.MDFloatArray;
 import ch.systemsx.cisd.base.mdarray.MDShortArray;
+import ch.systemsx.cisd.hdf5.HDF5FloatStorageFeatures;
 import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 
@@ -45,37 +50,111 @@ class HDF5Access implements IHDF5Access
 
 	private String datasetPath;
 
+	/**
+	 * Writer for the currently open dataset, if it is LZ4 compressed.
+	 */
+	private Lz4CellsWriter lz4Writer;
+
 	public HDF5Access( final IHDF5Writer hdf5Writer )
 	{
 		this.hdf5Writer = hdf5Writer;
 	}
 
 	@Override
-	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo )
+	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType )
 	{
-		hdf5Writer.writeDoubleMatrix( Util.getResolutionsPath( setupIdPartition ), mipmapInfo.getResolutions() );
-		hdf5Writer.writeIntMatrix( Util.getSubdivisionsPath( setupIdPartition ), mipmapInfo.getSubdivisions() );
+		writeMipmapDescription( hdf5Writer, setupIdPartition, mipmapInfo, dataType );
 	}
 
 	@Override
-	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final HDF5IntStorageFeatures features )
+	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType, final Hdf5Compression compression )
 	{
-		hdf5Writer.int16().createMDArray( path, reorder( dimensions ), reorder( cellDimensions ), features );
+		if ( compression == Hdf5Compression.LZ4 )
+			lz4Writer = new Lz4CellsWriter( hdf5Writer, path, dimensions, cellDimensions, dataType );
+		else
+		{
+			createCellsDataset( hdf5Writer, path, dimensions, cellDimensions, dataType, compression );
+			lz4Writer = null;
+		}
 		this.datasetPath = path;
 	}
 
 	@Override
-	public void writeBlockWithOffset( final short[] data, final long[] blockDimensions, final long[] offset )
+	public void writeBlockWithOffset( final Object data, final long[] blockDimensions, final long[] offset )
 	{
+		if ( lz4Writer != null )
+		{
+			lz4Writer.writeBlockWithOffset( data, blockDimensions, offset );
+			return;
+		}
 		reorder( blockDimensions, reorderedDimensions );
 		reorder( offset, reorderedOffset );
-		final MDShortArray array = new MDShortArray( data, reorderedDimensions );
-		hdf5Writer.int16().writeMDArrayBlockWithOffset( datasetPath, array, reorderedOffset );
+		if ( data instanceof short[] )
+			hdf5Writer.int16().writeMDArrayBlockWithOffset( datasetPath, new MDShortArray( ( short[] ) data, reorderedDimensions ), reorderedOffset );
+		else if ( data instanceof byte[] )
+			hdf5Writer.uint8().writeMDArrayBlockWithOffset( datasetPath, new MDByteArray( ( byte[] ) data, reorderedDimensions ), reorderedOffset );
+		else
+			hdf5Writer.float32().writeMDArrayBlockWithOffset( datasetPath, new MDFloatArray( ( float[] ) data, reorderedDimensions ), reorderedOffset );
+	}
+
+	/**
+	 * Write resolutions, subdivisions, and {@link DataType} of a setup.
+	 */
+	static void writeMipmapDescription( final IHDF5Writer hdf5Writer, final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType )
+	{
+		hdf5Writer.writeDoubleMatrix( Util.getResolutionsPath( setupIdPartition ), mipmapInfo.getResolutions() );
+		hdf5Writer.writeIntMatrix( Util.getSubdivisionsPath( setupIdPartition ), mipmapInfo.getSubdivisions() );
+		hdf5Writer.string().write( Util.getDataTypePath( setupIdPartition ), dataType.getName() );
+	}
+
+	/**
+	 * Create a chunked dataset for the cells of one image. {@code uint16} data
+	 * is stored as {@code int16} (as it always has been), {@code uint8} data as
+	 * {@code uint8}, {@code float32} data as {@code float32}. For
+	 * {@link Hdf5Compression#LZ4}, the dataset only describes the image, the
+	 * cells are stored elsewhere (see {@link Lz4CellsWriter}).
+	 */
+	static void createCellsDataset( final IHDF5Writer hdf5Writer, final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType, final Hdf5Compression compression )
+	{
+		final long[] reorderedDimensions = reorder( dimensions );
+		final int[] reorderedCellDimensions = reorder( cellDimensions );
+		if ( dataType == DataTypes.Float )
+		{
+			final HDF5FloatStorageFeatures features = ( compression == Hdf5Compression.DEFLATE )
+					? HDF5FloatStorageFeatures.FLOAT_SHUFFLE_DEFLATE
+					: HDF5FloatStorageFeatures.FLOAT_NO_COMPRESSION;
+			hdf5Writer.float32().createMDArray( path, reorderedDimensions, reorderedCellDimensions, features );
+		}
+		else
+		{
+			final HDF5IntStorageFeatures features;
+			switch ( compression )
+			{
+			case DEFLATE:
+				features = HDF5IntStorageFeatures.INT_AUTO_SCALING_DEFLATE;
+				break;
+			case NONE:
+				features = HDF5IntStorageFeatures.INT_AUTO_SCALING;
+				break;
+			default:
+				features = HDF5IntStorageFeatures.INT_NO_COMPRESSION;
+			}
+			if ( dataType == DataTypes.UnsignedByte )
+				hdf5Writer.uint8().createMDArray( path, reorderedDimensions, reorderedCellDimensions, features );
+			else
+				hdf5Writer.int16().createMDArray( path, reorderedDimensions, reorderedCellDimensions, features );
+		}
 	}
 
 	@Override
 	public void closeDataset()
-	{}
+	{
+		if ( lz4Writer != null )
+		{
+			lz4Writer.close();
+			lz4Writer = null;
+		}
+	}
 
 	@Override
 	public void close()
@@ -39,12 +39,13 @@ import static ch.systemsx.cisd.hdf5.hdf5lib.H5S.H5Screate_simple;
 import static ch.systemsx.cisd.hdf5.hdf5lib.H5S.H5Sselect_hyperslab;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5P_DEFAULT;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5S_SELECT_SET;
+import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_FLOAT;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_INT16;
+import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_UCHAR;
 
 import java.lang.reflect.Field;
 
-import bdv.img.hdf5.Util;
-import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
+import bdv.img.hdf5.DataTypes.DataType;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 
 class HDF5AccessHack implements IHDF5Access
@@ -61,6 +62,11 @@ class HDF5AccessHack implements IHDF5Access
 
 	private int fileSpaceId;
 
+	/**
+	 * Writer for the currently open dataset, if it is LZ4 compressed.
+	 */
+	private Lz4CellsWriter lz4Writer;
+
 	public HDF5AccessHack( final IHDF5Writer hdf5Writer ) throws ClassNotFoundException, SecurityException, NoSuchFieldException, IllegalArgumentException, IllegalAccessException
 	{
 		this.hdf5Writer = hdf5Writer;
@@ -77,35 +83,56 @@ class HDF5AccessHack implements IHDF5Access
 	}
 
 	@Override
-	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo )
+	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType )
 	{
-		hdf5Writer.writeDoubleMatrix( Util.getResolutionsPath( setupIdPartition ), mipmapInfo.getResolutions() );
-		hdf5Writer.writeIntMatrix( Util.getSubdivisionsPath( setupIdPartition ), mipmapInfo.getSubdivisions() );
+		HDF5Access.writeMipmapDescription( hdf5Writer, setupIdPartition, mipmapInfo, dataType );
 	}
 
 	@Override
 	public void closeDataset()
 	{
+		if ( lz4Writer != null )
+		{
+			lz4Writer.close();
+			lz4Writer = null;
+			return;
+		}
 		H5Sclose( fileSpaceId );
 		H5Dclose( dataSetId );
 	}
 
 	@Override
-	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final HDF5IntStorageFeatures features )
+	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType, final Hdf5Compression compression )
 	{
-		hdf5Writer.int16().createMDArray( path, reorder( dimensions ), reorder( cellDimensions ), features );
+		if ( compression == Hdf5Compression.LZ4 )
+		{
+			lz4Writer = new Lz4CellsWriter( hdf5Writer, path, dimensions, cellDimensions, dataType );
+			return;
+		}
+		HDF5Access.createCellsDataset( hdf5Writer, path, dimensions, cellDimensions, dataType, compression );
 		dataSetId = H5Dopen( fileId, path, H5P_DEFAULT );
 		fileSpaceId = H5Dget_space( dataSetId );
+		lz4Writer = null;
 	}
 
 	@Override
-	public void writeBlockWithOffset( final short[] data, final long[] blockDimensions, final long[] offset )
+	public void writeBlockWithOffset( final Object data, final long[] blockDimensions, final long[] offset )
 	{
+		if ( lz4Writer != null )
+		{
+			lz4Writer.writeBlockWithOffset( data, blockDimensions, offset );
+			return;
+		}
 		reorder( blockDimensions, reorderedDimensions );
 		reorder( offset, reorderedOffset );
 		final int memorySpaceId = H5Screate_simple( reorderedDimensions.length, reorderedDimensions, null );
 		H5Sselect_hyperslab( fileSpaceId, H5S_SELECT_SET, reorderedOffset, null, reorderedDimensions, null );
-		H5Dwrite( dataSetId, H5T_NATIVE_INT16, memorySpaceId, fileSpaceId, H5P_DEFAULT, data );
+		if ( data instanceof short[] )
+			H5Dwrite( dataSetId, H5T_NATIVE_INT16, memorySpaceId, fileSpaceId, H5P_DEFAULT, ( short[] ) data );
+		else if ( data instanceof byte[] )
+			H5Dwrite( dataSetId, H5T_NATIVE_UCHAR, memorySpaceId, fileSpaceId, H5P_DEFAULT, ( byte[] ) data );
+		else
+			H5Dwrite( dataSetId, H5T_NATIVE_FLOAT, memorySpaceId, fileSpaceId, H5P_DEFAULT, ( float[] ) data );
 		H5Sclose( memorySpaceId );
 	}
 
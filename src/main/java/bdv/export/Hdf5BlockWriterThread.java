@@ -30,12 +30,18 @@
 package bdv.export;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import bdv.img.hdf5.DataTypes.DataType;
+import bdv.img.hdf5.DimsAndExistenceIndex;
+import bdv.img.hdf5.Util;
+import bdv.img.hdf5.ViewLevelId;
 import ch.systemsx.cisd.hdf5.HDF5Factory;
-import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 
 class Hdf5BlockWriterThread extends Thread implements IHDF5Access
@@ -51,9 +57,24 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 	private volatile boolean shutdown;
 
+	/**
+	 * The file that is written, if known. On {@link #close()}, a
+	 * {@link DimsAndExistenceIndex} is written for this file.
+	 */
+	private final File hdf5File;
+
+	/**
+	 * Dimensions of all datasets in {@link #hdf5File}, or {@code null} if
+	 * they are not known (because the file already contained data that is
+	 * not covered by an up-to-date index).
+	 */
+	private final Map< ViewLevelId, long[] > datasetDimensions;
+
 	public Hdf5BlockWriterThread( final IHDF5Access hdf5Access, final int queueLength )
 	{
 		this.hdf5Access = hdf5Access;
+		hdf5File = null;
+		datasetDimensions = null;
 		queue = new ArrayBlockingQueue<>( queueLength );
 		shutdown = false;
 		setName( "HDF5BlockWriterQueue" );
@@ -61,6 +82,16 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 	public Hdf5BlockWriterThread( final File hdf5File, final int queueLength )
 	{
+		this.hdf5File = hdf5File;
+		if ( !hdf5File.exists() )
+			datasetDimensions = new HashMap<>();
+		else
+		{
+			// appending to an existing file
+			final DimsAndExistenceIndex index = DimsAndExistenceIndex.open( hdf5File );
+			datasetDimensions = ( index == null ) ? null : new HashMap<>( index.getAll() );
+		}
+
 		final IHDF5Writer hdf5Writer = HDF5Factory.open( hdf5File );
 		IHDF5Access hdf5Access;
 		try
@@ -92,12 +123,20 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 			{
 				final Hdf5BlockWriterThread.Hdf5Task task = queue.poll( 10, TimeUnit.MILLISECONDS );
 				if ( task != null )
-					task.run( hdf5Access );
-				if ( queue.isEmpty() )
-					synchronized ( emptyMonitor )
+				{
+					try
+					{
+						task.run( hdf5Access );
+					}
+					finally
 					{
-						emptyMonitor.notifyAll();
+						synchronized ( emptyMonitor )
+						{
+							if ( --numPendingTasks == 0 )
+								emptyMonitor.notifyAll();
+						}
 					}
+				}
 			}
 			catch ( final InterruptedException e )
 			{}
@@ -106,11 +145,20 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 	private final Object emptyMonitor = new Object();
 
+	/**
+	 * Number of tasks that were enqueued and are not completed yet. Guarded by
+	 * {@link #emptyMonitor}.
+	 */
+	private int numPendingTasks = 0;
+
+	/**
+	 * Wait until all enqueued tasks are completed.
+	 */
 	public void waitUntilEmpty()
 	{
 		synchronized ( emptyMonitor )
 		{
-			while ( !queue.isEmpty() )
+			while ( numPendingTasks > 0 )
 				try
 				{
 					emptyMonitor.wait();
@@ -133,6 +181,27 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 			e.printStackTrace();
 		}
 		hdf5Access.close();
+		writeDimsAndExistenceIndex();
+	}
+
+	private void writeDimsAndExistenceIndex()
+	{
+		if ( hdf5File == null )
+			return;
+		if ( datasetDimensions == null )
+			DimsAndExistenceIndex.delete( hdf5File );
+		else
+		{
+			try
+			{
+				DimsAndExistenceIndex.write( hdf5File, datasetDimensions );
+			}
+			catch ( final IOException e )
+			{
+				System.err.println( "Could not write " + DimsAndExistenceIndex.getIndexFile( hdf5File ) + ": " + e.getMessage() );
+				DimsAndExistenceIndex.delete( hdf5File );
+			}
+		}
 	}
 
 	@Override
@@ -142,19 +211,25 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 	}
 
 	@Override
-	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo )
+	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType )
 	{
-		put( new WriteMipmapDescriptionTask( setupIdPartition, mipmapInfo ) );
+		put( new WriteMipmapDescriptionTask( setupIdPartition, mipmapInfo, dataType ) );
 	}
 
 	@Override
-	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final HDF5IntStorageFeatures features )
+	public void createAndOpenDataset( final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType, final Hdf5Compression compression )
 	{
-		put( new CreateAndOpenDatasetTask( path, dimensions, cellDimensions, features ) );
+		if ( datasetDimensions != null )
+		{
+			final ViewLevelId id = Util.getViewLevelIdFromCellsPath( path );
+			if ( id != null )
+				datasetDimensions.put( id, dimensions.clone() );
+		}
+		put( new CreateAndOpenDatasetTask( path, dimensions, cellDimensions, dataType, compression ) );
 	}
 
 	@Override
-	public void writeBlockWithOffset( final short[] data, final long[] blockDimensions, final long[] offset )
+	public void writeBlockWithOffset( final Object data, final long[] blockDimensions, final long[] offset )
 	{
 		put( new WriteBlockWithOffsetTask( data, blockDimensions, offset ) );
 	}
@@ -167,6 +242,10 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 	private boolean put( final Hdf5BlockWriterThread.Hdf5Task task )
 	{
+		synchronized ( emptyMonitor )
+		{
+			++numPendingTasks;
+		}
 		try
 		{
 			queue.put( task );
@@ -174,6 +253,11 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 		}
 		catch ( final InterruptedException e )
 		{
+			synchronized ( emptyMonitor )
+			{
+				if ( --numPendingTasks == 0 )
+					emptyMonitor.notifyAll();
+			}
 			return false;
 		}
 	}
@@ -184,17 +268,19 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 		private final ExportMipmapInfo mipmapInfo;
 
-		public WriteMipmapDescriptionTask( final int setupIdPartition, final ExportMipmapInfo mipmapInfo )
+		private final DataType< ?, ?, ? > dataType;
+
+		public WriteMipmapDescriptionTask( final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType )
 		{
 			this.setupIdPartition = setupIdPartition;
 			this.mipmapInfo = mipmapInfo;
-
+			this.dataType = dataType;
 		}
 
 		@Override
 		public void run( final IHDF5Access hdf5Access )
 		{
-			hdf5Access.writeMipmapDescription( setupIdPartition, mipmapInfo );
+			hdf5Access.writeMipmapDescription( setupIdPartition, mipmapInfo, dataType );
 		}
 	}
 
@@ -206,32 +292,35 @@ class Hdf5BlockWriterThread extends Thread implements IHDF5Access
 
 		private final int[] cellDimensions;
 
-		private final HDF5IntStorageFeatures features;
+		private final DataType< ?, ?, ? > dataType;
+
+		private final Hdf5Compression compression;
 
-		public CreateAndOpenDatasetTask( final String path, final long[] dimensions, final int[] cellDimensions, final HDF5IntStorageFeatures features )
+		public CreateAndOpenDatasetTask( final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType, final Hdf5Compression compression )
 		{
 			this.path = path;
 			this.dimensions = dimensions;
 			this.cellDimensions = cellDimensions;
-			this.features = features;
+			this.dataType = dataType;
+			this.compression = compression;
 		}
 
 		@Override
 		public void run( final IHDF5Access hdf5Access )
 		{
-			hdf5Access.createAndOpenDataset( path, dimensions, cellDimensions, features );
+			hdf5Access.createAndOpenDataset( path, dimensions, cellDimensions, dataType, compression );
 		}
 	}
 
 	private static class WriteBlockWithOffsetTask implements Hdf5BlockWriterThread.Hdf5Task
 	{
-		private final short[] data;
+		private final Object data;
 
 		private final long[] blockDimensions;
 
 		private final long[] offset;
 
-		public WriteBlockWithOffsetTask( final short[] data, final long[] blockDimensions, final long[] offset )
+		public WriteBlockWithOffsetTask( final Object data, final long[] blockDimensions, final long[] offset )
 		{
 			this.data = data;
 			this.blockDimensions = blockDimensions;
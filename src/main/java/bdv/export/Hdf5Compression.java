@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.export;
+
+import bdv.img.hdf5.Lz4CellCodec;
+
+/**
+ * How the cells of image data are compressed when writing to hdf5.
+ */
+public enum Hdf5Compression
+{
+	/**
+	 * HDF5 scale-offset filter only.
+	 */
+	NONE,
+
+	/**
+	 * HDF5 scale-offset and DEFLATE filters. Best compression ratio, but
+	 * decoding is slow.
+	 */
+	DEFLATE,
+
+	/**
+	 * Byte-shuffle and LZ4, see {@link Lz4CellCodec}. The compression ratio is
+	 * a bit worse than {@link #DEFLATE}, but decoding is several times faster.
+	 * Datasets written like this can only be read by {@code Hdf5ImageLoader},
+	 * not by generic HDF5 tools: their {@code cells} dataset is an empty
+	 * placeholder, marked by the {@link Lz4CellCodec#FORMAT_VERSION_ATTRIBUTE}
+	 * attribute.
+	 */
+	LZ4;
+
+	public static Hdf5Compression fromDeflate( final boolean deflate )
+	{
+		return deflate ? DEFLATE : NONE;
+	}
+}
@@ -29,16 +29,26 @@
  */
 package bdv.export;
 
-import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
+import bdv.img.hdf5.DataTypes.DataType;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 
 interface IHDF5Access
 {
-	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo );
+	public void writeMipmapDescription( final int setupIdPartition, final ExportMipmapInfo mipmapInfo, final DataType< ?, ?, ? > dataType );
 
-	public void createAndOpenDataset( final String path, long[] dimensions, int[] cellDimensions, HDF5IntStorageFeatures features );
+	/**
+	 * Create a dataset of the given {@link DataType}. If {@code compression}
+	 * is {@link Hdf5Compression#LZ4}, the cells are stored LZ4 compressed, see
+	 * {@link Lz4CellsWriter}.
+	 */
+	public void createAndOpenDataset( final String path, long[] dimensions, int[] cellDimensions, DataType< ?, ?, ? > dataType, Hdf5Compression compression );
 
-	public void writeBlockWithOffset( final short[] data, final long[] blockDimensions, final long[] offset );
+	/**
+	 * Write a block to the currently open dataset. {@code data} is a
+	 * {@code byte[]}, {@code short[]}, or {@code float[]}, matching the
+	 * {@link DataType} of the dataset.
+	 */
+	public void writeBlockWithOffset( final Object data, final long[] blockDimensions, final long[] offset );
 
 	public void closeDataset();
 
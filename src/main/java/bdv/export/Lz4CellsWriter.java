@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.export;
+
+import bdv.img.hdf5.DataTypes.DataType;
+import bdv.img.hdf5.Lz4CellCodec;
+import bdv.img.hdf5.Util;
+import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
+import ch.systemsx.cisd.hdf5.IHDF5Writer;
+
+/**
+ * Writes one dataset with LZ4 compressed cells (see {@link Lz4CellCodec}).
+ * <p>
+ * The {@code cells} dataset is created with the full dimensions and cell
+ * size, but no data is written to it. It only serves to describe the dataset
+ * (so that existence and dimensions are determined as for other datasets).
+ * Encoded cells are appended to the 1D byte dataset
+ * {@link Util#getLz4CellsPath(String)} in the order in which they are written.
+ * When the dataset is closed, the 1D long dataset
+ * {@link Util#getLz4CellsIndexPath(String)} is written. It contains the image
+ * dimensions (X, Y, Z), the cell size (X, Y, Z), and then (offset, length) for
+ * each cell, with X being the fastest-moving cell index.
+ * </p>
+ * <p>
+ * The {@link Lz4CellCodec#FORMAT_VERSION} is stored in the
+ * {@link Lz4CellCodec#FORMAT_VERSION_ATTRIBUTE} attribute of the
+ * {@code cells} dataset (marking it as a placeholder) and of the root group
+ * (so that the loader knows whether to look for LZ4 compressed datasets, and
+ * can refuse files with an unknown layout).
+ * </p>
+ */
+class Lz4CellsWriter
+{
+	/**
+	 * HDF5 chunk size of the byte dataset.
+	 */
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private final IHDF5Writer hdf5Writer;
+
+	private final String dataPath;
+
+	private final String indexPath;
+
+	private final int[] cellDimensions;
+
+	private final long[] numCells;
+
+	private final long[] index;
+
+	private long size;
+
+	public Lz4CellsWriter( final IHDF5Writer hdf5Writer, final String path, final long[] dimensions, final int[] cellDimensions, final DataType< ?, ?, ? > dataType )
+	{
+		this.hdf5Writer = hdf5Writer;
+		this.cellDimensions = cellDimensions.clone();
+		dataPath = Util.getLz4CellsPath( path );
+		indexPath = Util.getLz4CellsIndexPath( path );
+
+		numCells = new long[ 3 ];
+		long n = 1;
+		for ( int d = 0; d < 3; ++d )
+		{
+			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
+			n *= numCells[ d ];
+		}
+		index = new long[ 6 + 2 * ( int ) n ];
+		for ( int d = 0; d < 3; ++d )
+		{
+			index[ d ] = dimensions[ d ];
+			index[ 3 + d ] = cellDimensions[ d ];
+		}
+		size = 0;
+
+		HDF5Access.createCellsDataset( hdf5Writer, path, dimensions, cellDimensions, dataType, Hdf5Compression.LZ4 );
+		hdf5Writer.int32().setAttr( path, Lz4CellCodec.FORMAT_VERSION_ATTRIBUTE, Lz4CellCodec.FORMAT_VERSION );
+		hdf5Writer.int32().setAttr( "/", Lz4CellCodec.FORMAT_VERSION_ATTRIBUTE, Lz4CellCodec.FORMAT_VERSION );
+		hdf5Writer.int8().createArray( dataPath, 0, BLOCK_SIZE, HDF5IntStorageFeatures.INT_NO_COMPRESSION );
+	}
+
+	/**
+	 * Encode and append a cell. {@code offset} must be the min of a cell.
+	 * {@code data} is a {@code byte[]}, {@code short[]}, or {@code float[]}.
+	 */
+	public void writeBlockWithOffset( final Object data, final long[] blockDimensions, final long[] offset )
+	{
+		final int numElements = ( int ) ( blockDimensions[ 0 ] * blockDimensions[ 1 ] * blockDimensions[ 2 ] );
+		final byte[] encoded;
+		if ( data instanceof short[] )
+			encoded = Lz4CellCodec.encodeShorts( ( short[] ) data, numElements );
+		else if ( data instanceof byte[] )
+			encoded = Lz4CellCodec.encodeBytes( ( byte[] ) data, numElements );
+		else
+			encoded = Lz4CellCodec.encodeFloats( ( float[] ) data, numElements );
+		hdf5Writer.int8().writeArrayBlockWithOffset( dataPath, encoded, encoded.length, size );
+
+		final long cx = offset[ 0 ] / cellDimensions[ 0 ];
+		final long cy = offset[ 1 ] / cellDimensions[ 1 ];
+		final long cz = offset[ 2 ] / cellDimensions[ 2 ];
+		final int i = 6 + 2 * ( int ) ( ( cz * numCells[ 1 ] + cy ) * numCells[ 0 ] + cx );
+		index[ i ] = size;
+		index[ i + 1 ] = encoded.length;
+		size += encoded.length;
+	}
+
+	/**
+	 * Write the cell index.
+	 */
+	public void close()
+	{
+		hdf5Writer.int64().writeArray( indexPath, index );
+	}
+}
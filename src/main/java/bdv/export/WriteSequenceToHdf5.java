@@ -40,18 +40,19 @@ import java.util.concurrent.CountDownLatch;
 
 import bdv.export.WriteSequenceToHdf5.AfterEachPlane;
 import bdv.export.WriteSequenceToHdf5.LoopbackHeuristic;
+import bdv.img.hdf5.DataTypes;
+import bdv.img.hdf5.DataTypes.DataType;
 import bdv.img.hdf5.Hdf5ImageLoader;
+import bdv.img.hdf5.Lz4CellCodec;
 import bdv.img.hdf5.Partition;
 import bdv.img.hdf5.Util;
 import bdv.spimdata.SequenceDescriptionMinimal;
 import ch.systemsx.cisd.hdf5.HDF5Factory;
-import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
 import ch.systemsx.cisd.hdf5.IHDF5Reader;
 import ch.systemsx.cisd.hdf5.IHDF5Writer;
 import mpicbg.spim.data.XmlHelpers;
 import mpicbg.spim.data.generic.sequence.AbstractSequenceDescription;
 import mpicbg.spim.data.generic.sequence.BasicImgLoader;
-import mpicbg.spim.data.generic.sequence.BasicSetupImgLoader;
 import mpicbg.spim.data.generic.sequence.BasicViewSetup;
 import mpicbg.spim.data.sequence.TimePoint;
 import mpicbg.spim.data.sequence.TimePoints;
@@ -62,12 +63,12 @@ import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.array.ArrayImg;
-import net.imglib2.img.array.ArrayImgs;
-import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.cell.CellImg;
 import net.imglib2.iterator.LocalizingIntervalIterator;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.view.Views;
 
 /**
@@ -100,6 +101,26 @@ import net.imglib2.view.Views;
  */
 public class WriteSequenceToHdf5
 {
+	/**
+	 * Create a hdf5 file containing image data from all views and all
+	 * timepoints in a chunked, mipmaped representation. Same as
+	 * {@link #writeHdf5File(AbstractSequenceDescription, Map, Hdf5Compression, File, LoopbackHeuristic, AfterEachPlane, int, ProgressWriter)}
+	 * with {@code deflate} selecting {@link Hdf5Compression#DEFLATE} or
+	 * {@link Hdf5Compression#NONE}.
+	 */
+	public static void writeHdf5File(
+			final AbstractSequenceDescription< ?, ?, ? > seq,
+			final Map< Integer, ExportMipmapInfo > perSetupMipmapInfo,
+			final boolean deflate,
+			final File hdf5File,
+			final LoopbackHeuristic loopbackHeuristic,
+			final AfterEachPlane afterEachPlane,
+			final int numCellCreatorThreads,
+			final ProgressWriter progressWriter )
+	{
+		writeHdf5File( seq, perSetupMipmapInfo, Hdf5Compression.fromDeflate( deflate ), hdf5File, loopbackHeuristic, afterEachPlane, numCellCreatorThreads, progressWriter );
+	}
+
 	/**
 	 * Create a hdf5 file containing image data from all views and all
 	 * timepoints in a chunked, mipmaped representation.
@@ -115,8 +136,8 @@ public class WriteSequenceToHdf5
 	 *            {@link ExportMipmapInfo} for that setup. The
 	 *            {@link ExportMipmapInfo} contains for each mipmap level, the
 	 *            subsampling factors and subdivision block sizes.
-	 * @param deflate
-	 *            whether to compress the data with the HDF5 DEFLATE filter.
+	 * @param compression
+	 *            how to compress the data.
 	 * @param hdf5File
 	 *            hdf5 file to which the image data is written.
 	 * @param loopbackHeuristic
@@ -138,7 +159,7 @@ public class WriteSequenceToHdf5
 	public static void writeHdf5File(
 			final AbstractSequenceDescription< ?, ?, ? > seq,
 			final Map< Integer, ExportMipmapInfo > perSetupMipmapInfo,
-			final boolean deflate,
+			final Hdf5Compression compression,
 			final File hdf5File,
 			final LoopbackHeuristic loopbackHeuristic,
 			final AfterEachPlane afterEachPlane,
@@ -154,7 +175,7 @@ public class WriteSequenceToHdf5
 			setupIdSequenceToPartition.put( setup.getId(), setup.getId() );
 
 		final Partition partition = new Partition( hdf5File.getPath(), timepointIdSequenceToPartition, setupIdSequenceToPartition );
-		writeHdf5PartitionFile( seq, perSetupMipmapInfo, deflate, partition, loopbackHeuristic, afterEachPlane, numCellCreatorThreads, progressWriter );
+		writeHdf5PartitionFile( seq, perSetupMipmapInfo, compression, partition, loopbackHeuristic, afterEachPlane, numCellCreatorThreads, progressWriter );
 	}
 
 	/**
@@ -251,6 +272,9 @@ public class WriteSequenceToHdf5
 	 * Note that this method only writes the master file containing links. The
 	 * individual partitions need to be written with
 	 * {@link #writeHdf5PartitionFile(AbstractSequenceDescription, Map, boolean, Partition, LoopbackHeuristic, AfterEachPlane, int, ProgressWriter)}.
+	 * If partitions are written with {@link Hdf5Compression#LZ4}, they must be
+	 * written before the master file, because the additional LZ4 datasets are
+	 * only linked if they exist.
 	 *
 	 * @param seq
 	 *            description of the sequence to be stored as hdf5. (The
@@ -281,14 +305,19 @@ public class WriteSequenceToHdf5
 		{
 			final int setupId = setup.getId();
 			final ExportMipmapInfo mipmapInfo = perSetupMipmapInfo.get( setupId );
-			hdf5Writer.writeDoubleMatrix( Util.getResolutionsPath( setupId ), mipmapInfo.getResolutions() );
-			hdf5Writer.writeIntMatrix( Util.getSubdivisionsPath( setupId ), mipmapInfo.getSubdivisions() );
+			HDF5Access.writeMipmapDescription( hdf5Writer, setupId, mipmapInfo, getDataType( seq, setupId ) );
 		}
 
 		// link Cells for all views in the partition
 		final File basePath = hdf5File.getParentFile();
+		boolean linkedLz4Cells = false;
 		for ( final Partition partition : partitions )
 		{
+			// if the partition was written with LZ4 compression, the LZ4 cells
+			// and index need to be linked as well.
+			final File partitionFile = new File( partition.getPath() );
+			final IHDF5Reader partitionReader = partitionFile.exists() ? HDF5Factory.openForReading( partitionFile ) : null;
+
 			final Map< Integer, Integer > timepointIdSequenceToPartition = partition.getTimepointIdSequenceToPartition();
 			final Map< Integer, Integer > setupIdSequenceToPartition = partition.getSetupIdSequenceToPartition();
 
@@ -308,14 +337,46 @@ public class WriteSequenceToHdf5
 					for ( int level = 0; level < numLevels; ++level )
 					{
 						final String relativePath = XmlHelpers.getRelativePath( new File( partition.getPath() ), basePath ).getPath();
-						hdf5Writer.object().createOrUpdateExternalLink( relativePath, Util.getCellsPath( idPartition, level ), Util.getCellsPath( idSequence, level ) );
+						final String cellsPathPartition = Util.getCellsPath( idPartition, level );
+						final String cellsPathSequence = Util.getCellsPath( idSequence, level );
+						hdf5Writer.object().createOrUpdateExternalLink( relativePath, cellsPathPartition, cellsPathSequence );
+						if ( partitionReader != null && partitionReader.object().exists( Util.getLz4CellsIndexPath( cellsPathPartition ) ) )
+						{
+							hdf5Writer.object().createOrUpdateExternalLink( relativePath, Util.getLz4CellsPath( cellsPathPartition ), Util.getLz4CellsPath( cellsPathSequence ) );
+							hdf5Writer.object().createOrUpdateExternalLink( relativePath, Util.getLz4CellsIndexPath( cellsPathPartition ), Util.getLz4CellsIndexPath( cellsPathSequence ) );
+							linkedLz4Cells = true;
+						}
 					}
 				}
 			}
+			if ( partitionReader != null )
+				partitionReader.close();
 		}
+		if ( linkedLz4Cells )
+			hdf5Writer.int32().setAttr( "/", Lz4CellCodec.FORMAT_VERSION_ATTRIBUTE, Lz4CellCodec.FORMAT_VERSION );
 		hdf5Writer.close();
 	}
 
+	/**
+	 * Create a hdf5 partition file containing image data for a subset of views
+	 * and timepoints in a chunked, mipmaped representation. Same as
+	 * {@link #writeHdf5PartitionFile(AbstractSequenceDescription, Map, Hdf5Compression, Partition, LoopbackHeuristic, AfterEachPlane, int, ProgressWriter)}
+	 * with {@code deflate} selecting {@link Hdf5Compression#DEFLATE} or
+	 * {@link Hdf5Compression#NONE}.
+	 */
+	public static void writeHdf5PartitionFile(
+			final AbstractSequenceDescription< ?, ?, ? > seq,
+			final Map< Integer, ExportMipmapInfo > perSetupMipmapInfo,
+			final boolean deflate,
+			final Partition partition,
+			final LoopbackHeuristic loopbackHeuristic,
+			final AfterEachPlane afterEachPlane,
+			final int numCellCreatorThreads,
+			final ProgressWriter progressWriter )
+	{
+		writeHdf5PartitionFile( seq, perSetupMipmapInfo, Hdf5Compression.fromDeflate( deflate ), partition, loopbackHeuristic, afterEachPlane, numCellCreatorThreads, progressWriter );
+	}
+
 	/**
 	 * Create a hdf5 partition file containing image data for a subset of views
 	 * and timepoints in a chunked, mipmaped representation.
@@ -336,8 +397,8 @@ public class WriteSequenceToHdf5
 	 *            {@link ExportMipmapInfo} for that setup. The
 	 *            {@link ExportMipmapInfo} contains for each mipmap level, the
 	 *            subsampling factors and subdivision block sizes.
-	 * @param deflate
-	 *            whether to compress the data with the HDF5 DEFLATE filter.
+	 * @param compression
+	 *            how to compress the data.
 	 * @param partition
 	 *            which part of the dataset to write, and to which file.
 	 * @param loopbackHeuristic
@@ -356,10 +417,11 @@ public class WriteSequenceToHdf5
 	 * @param progressWriter
 	 *            completion ratio and status output will be directed here.
 	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	public static void writeHdf5PartitionFile(
 			final AbstractSequenceDescription< ?, ?, ? > seq,
 			final Map< Integer, ExportMipmapInfo > perSetupMipmapInfo,
-			final boolean deflate,
+			final Hdf5Compression compression,
 			final Partition partition,
 			final LoopbackHeuristic loopbackHeuristic,
 			final AfterEachPlane afterEachPlane,
@@ -382,13 +444,8 @@ public class WriteSequenceToHdf5
 		// get the BasicImgLoader that supplies the images
 		final BasicImgLoader imgLoader = seq.getImgLoader();
 
-		for ( final BasicViewSetup setup : seq.getViewSetupsOrdered() ) {
-			final Object type = imgLoader.getSetupImgLoader( setup.getId() ).getImageType();
-			if ( !( type instanceof UnsignedShortType ) )
-				throw new IllegalArgumentException( "Expected BasicImgLoader<UnsignedShortTyp> but your dataset has BasicImgLoader<"
-						+ type.getClass().getSimpleName() + ">.\nCurrently writing to HDF5 is only supported for UnsignedShortType." );
-		}
-
+		for ( final BasicViewSetup setup : seq.getViewSetupsOrdered() )
+			getDataType( seq, setup.getId() );
 
 		// open HDF5 partition output file
 		final File hdf5File = new File( partition.getPath() );
@@ -414,7 +471,7 @@ public class WriteSequenceToHdf5
 			final int setupIdSequence = entry.getKey();
 			final int setupIdPartition = entry.getValue();
 			final ExportMipmapInfo mipmapInfo = perSetupMipmapInfo.get( setupIdSequence );
-			writerQueue.writeMipmapDescription( setupIdPartition, mipmapInfo );
+			writerQueue.writeMipmapDescription( setupIdPartition, mipmapInfo, getDataType( seq, setupIdSequence ) );
 		}
 		progressWriter.setProgress( ( double ) ++numCompletedTasks / numTasks );
 
@@ -440,8 +497,7 @@ public class WriteSequenceToHdf5
 				final int setupIdPartition = partition.getSetupIdSequenceToPartition().get( setupIdSequence );
 				progressWriter.out().printf( "proccessing setup %d / %d\n", ++setupIndex, numSetups );
 
-				@SuppressWarnings( "unchecked" )
-				final RandomAccessibleInterval< UnsignedShortType > img = ( ( BasicSetupImgLoader< UnsignedShortType > ) imgLoader.getSetupImgLoader( setupIdSequence ) ).getImage( timepointIdSequence );
+				final RandomAccessibleInterval img = imgLoader.getSetupImgLoader( setupIdSequence ).getImage( timepointIdSequence );
 				final ExportMipmapInfo mipmapInfo = perSetupMipmapInfo.get( setupIdSequence );
 				final double startCompletionRatio = ( double ) numCompletedTasks++ / numTasks;
 				final double endCompletionRatio = ( double ) numCompletedTasks / numTasks;
@@ -449,7 +505,7 @@ public class WriteSequenceToHdf5
 
 				writeViewToHdf5PartitionFile(
 						img, timepointIdPartition, setupIdPartition, mipmapInfo, false,
-						deflate, writerQueue, cellCreatorThreads, loopbackHeuristic, afterEachPlane, subProgressWriter );
+						compression, writerQueue, cellCreatorThreads, loopbackHeuristic, afterEachPlane, subProgressWriter );
 			}
 		}
 
@@ -459,6 +515,29 @@ public class WriteSequenceToHdf5
 		progressWriter.setProgress( 1.0 );
 	}
 
+	/**
+	 * Write a single view to a hdf5 partition file, in a chunked, mipmaped
+	 * representation. Same as
+	 * {@link #writeViewToHdf5PartitionFile(RandomAccessibleInterval, Partition, int, int, ExportMipmapInfo, boolean, Hdf5Compression, LoopbackHeuristic, AfterEachPlane, int, ProgressWriter)}
+	 * with {@code deflate} selecting {@link Hdf5Compression#DEFLATE} or
+	 * {@link Hdf5Compression#NONE}.
+	 */
+	public static < T extends RealType< T > & NativeType< T > > void writeViewToHdf5PartitionFile(
+			final RandomAccessibleInterval< T > img,
+			final Partition partition,
+			final int timepointIdPartition,
+			final int setupIdPartition,
+			final ExportMipmapInfo mipmapInfo,
+			final boolean writeMipmapInfo,
+			final boolean deflate,
+			final LoopbackHeuristic loopbackHeuristic,
+			final AfterEachPlane afterEachPlane,
+			final int numCellCreatorThreads,
+			final ProgressWriter progressWriter )
+	{
+		writeViewToHdf5PartitionFile( img, partition, timepointIdPartition, setupIdPartition, mipmapInfo, writeMipmapInfo, Hdf5Compression.fromDeflate( deflate ), loopbackHeuristic, afterEachPlane, numCellCreatorThreads, progressWriter );
+	}
+
 	/**
 	 * Write a single view to a hdf5 partition file, in a chunked, mipmaped
 	 * representation. Note that the specified view must not already exist in
@@ -483,8 +562,8 @@ public class WriteSequenceToHdf5
 	 * @param writeMipmapInfo
 	 *            whether to write mipmap description for the setup. must be
 	 *            done (at least) once for each setup in the partition.
-	 * @param deflate
-	 *            whether to compress the data with the HDF5 DEFLATE filter.
+	 * @param compression
+	 *            how to compress the data.
 	 * @param loopbackHeuristic
 	 *            heuristic to decide whether to create each resolution level by
 	 *            reading pixels from the original image or by reading back a
@@ -502,14 +581,14 @@ public class WriteSequenceToHdf5
 	 *            completion ratio and status output will be directed here. may
 	 *            be null.
 	 */
-	public static void writeViewToHdf5PartitionFile(
-			final RandomAccessibleInterval< UnsignedShortType > img,
+	public static < T extends RealType< T > & NativeType< T > > void writeViewToHdf5PartitionFile(
+			final RandomAccessibleInterval< T > img,
 			final Partition partition,
 			final int timepointIdPartition,
 			final int setupIdPartition,
 			final ExportMipmapInfo mipmapInfo,
 			final boolean writeMipmapInfo,
-			final boolean deflate,
+			final Hdf5Compression compression,
 			final LoopbackHeuristic loopbackHeuristic,
 			final AfterEachPlane afterEachPlane,
 			final int numCellCreatorThreads,
@@ -523,7 +602,7 @@ public class WriteSequenceToHdf5
 		final CellCreatorThread[] cellCreatorThreads = createAndStartCellCreatorThreads( numCellCreatorThreads );
 
 		// write the image
-		writeViewToHdf5PartitionFile( img, timepointIdPartition, setupIdPartition, mipmapInfo, writeMipmapInfo, deflate, writerQueue, cellCreatorThreads, loopbackHeuristic, afterEachPlane, progressWriter );
+		writeViewToHdf5PartitionFile( img, timepointIdPartition, setupIdPartition, mipmapInfo, writeMipmapInfo, compression, writerQueue, cellCreatorThreads, loopbackHeuristic, afterEachPlane, progressWriter );
 
 		stopCellCreatorThreads( cellCreatorThreads );
 		writerQueue.close();
@@ -547,6 +626,29 @@ public class WriteSequenceToHdf5
 		}
 	}
 
+	/**
+	 * Write a single view to a hdf5 partition file, in a chunked, mipmaped
+	 * representation. Same as
+	 * {@link #writeViewToHdf5PartitionFile(RandomAccessibleInterval, int, int, ExportMipmapInfo, boolean, Hdf5Compression, Hdf5BlockWriterThread, CellCreatorThread[], LoopbackHeuristic, AfterEachPlane, ProgressWriter)}
+	 * with {@code deflate} selecting {@link Hdf5Compression#DEFLATE} or
+	 * {@link Hdf5Compression#NONE}.
+	 */
+	public static < T extends RealType< T > & NativeType< T > > void writeViewToHdf5PartitionFile(
+			final RandomAccessibleInterval< T > img,
+			final int timepointIdPartition,
+			final int setupIdPartition,
+			final ExportMipmapInfo mipmapInfo,
+			final boolean writeMipmapInfo,
+			final boolean deflate,
+			final Hdf5BlockWriterThread writerQueue,
+			final CellCreatorThread[] cellCreatorThreads,
+			final LoopbackHeuristic loopbackHeuristic,
+			final AfterEachPlane afterEachPlane,
+			final ProgressWriter progressWriter )
+	{
+		writeViewToHdf5PartitionFile( img, timepointIdPartition, setupIdPartition, mipmapInfo, writeMipmapInfo, Hdf5Compression.fromDeflate( deflate ), writerQueue, cellCreatorThreads, loopbackHeuristic, afterEachPlane, progressWriter );
+	}
+
 	/**
 	 * Write a single view to a hdf5 partition file, in a chunked, mipmaped
 	 * representation. Note that the specified view must not already exist in
@@ -568,8 +670,8 @@ public class WriteSequenceToHdf5
 	 * @param writeMipmapInfo
 	 *            whether to write mipmap description for the setup. must be
 	 *            done (at least) once for each setup in the partition.
-	 * @param deflate
-	 *            whether to compress the data with the HDF5 DEFLATE filter.
+	 * @param compression
+	 *            how to compress the data.
 	 * @param writerQueue
 	 *            block writing tasks are enqueued here.
 	 * @param cellCreatorThreads
@@ -587,21 +689,19 @@ public class WriteSequenceToHdf5
 	 *            completion ratio and status output will be directed here. may
 	 *            be null.
 	 */
-	public static void writeViewToHdf5PartitionFile(
-			final RandomAccessibleInterval< UnsignedShortType > img,
+	public static < T extends RealType< T > & NativeType< T > > void writeViewToHdf5PartitionFile(
+			final RandomAccessibleInterval< T > img,
 			final int timepointIdPartition,
 			final int setupIdPartition,
 			final ExportMipmapInfo mipmapInfo,
 			final boolean writeMipmapInfo,
-			final boolean deflate,
+			final Hdf5Compression compression,
 			final Hdf5BlockWriterThread writerQueue,
 			final CellCreatorThread[] cellCreatorThreads,
 			final LoopbackHeuristic loopbackHeuristic,
 			final AfterEachPlane afterEachPlane,
 			ProgressWriter progressWriter )
 	{
-		final HDF5IntStorageFeatures storage = deflate ? HDF5IntStorageFeatures.INT_AUTO_SCALING_DEFLATE : HDF5IntStorageFeatures.INT_AUTO_SCALING;
-
 		if ( progressWriter == null )
 			progressWriter = new ProgressWriterConsole();
 
@@ -610,9 +710,14 @@ public class WriteSequenceToHdf5
 		int numCompletedTasks = 0;
 		progressWriter.setProgress( ( double ) numCompletedTasks++ / numTasks );
 
+		final T type = net.imglib2.util.Util.getTypeFromInterval( img ).createVariable();
+		final DataType< ?, ?, ? > dataType = DataTypes.forType( type );
+		if ( dataType == null )
+			throw new IllegalArgumentException( "Writing " + type.getClass().getSimpleName() + " images to HDF5 is not supported." );
+
 		// write Mipmap descriptions
 		if ( writeMipmapInfo )
-			writerQueue.writeMipmapDescription( setupIdPartition, mipmapInfo );
+			writerQueue.writeMipmapDescription( setupIdPartition, mipmapInfo, dataType );
 
 		// create loopback image-loader to read already written chunks from the
 		// h5 for generating low-resolution versions.
@@ -630,7 +735,7 @@ public class WriteSequenceToHdf5
 		{
 			progressWriter.out().println( "writing level " + level );
 
-			final RandomAccessibleInterval< UnsignedShortType > sourceImg;
+			final RandomAccessibleInterval< T > sourceImg;
 			final int[] factor;
 			final boolean useLoopBack;
 			if ( loopbackHeuristic == null )
@@ -675,7 +780,11 @@ public class WriteSequenceToHdf5
 				useLoopBack = loopbackHeuristic.decide( img, resolutions[ level ], previousLevel, factorsToPreviousLevel, subdivisions[ level ] );
 				if ( useLoopBack )
 				{
-					sourceImg = loopback.getSetupImgLoader( setupIdPartition ).getImage( timepointIdPartition, previousLevel );
+					// make sure that previousLevel is completely written
+					writerQueue.waitUntilEmpty();
+					@SuppressWarnings( "unchecked" )
+					final RandomAccessibleInterval< T > previousLevelImg = ( RandomAccessibleInterval< T > ) loopback.getSetupImgLoader( setupIdPartition ).getImage( timepointIdPartition, previousLevel );
+					sourceImg = previousLevelImg;
 					factor = factorsToPreviousLevel;
 				}
 				else
@@ -703,12 +812,12 @@ public class WriteSequenceToHdf5
 			sourceImg.min( minRequiredInput );
 			for ( int d = 0; d < n; ++d )
 				maxRequiredInput[ d ] = minRequiredInput[ d ] + dimensions[ d ] * factor[ d ] - 1;
-			final RandomAccessibleInterval< UnsignedShortType > extendedImg = Views.interval( Views.extendBorder( sourceImg ), new FinalInterval( minRequiredInput, maxRequiredInput ) );
+			final RandomAccessibleInterval< T > extendedImg = Views.interval( Views.extendBorder( sourceImg ), new FinalInterval( minRequiredInput, maxRequiredInput ) );
 
 			final int[] cellDimensions = subdivisions[ level ];
 			final ViewId viewIdPartition = new ViewId( timepointIdPartition, setupIdPartition );
 			final String path = Util.getCellsPath( viewIdPartition, level );
-			writerQueue.createAndOpenDataset( path, dimensions.clone(), cellDimensions.clone(), storage );
+			writerQueue.createAndOpenDataset( path, dimensions.clone(), cellDimensions.clone(), dataType, compression );
 
 			final long[] numCells = new long[ n ];
 			final int[] borderSize = new int[ n ];
@@ -743,7 +852,7 @@ public class WriteSequenceToHdf5
 							final long[] currentCellDim = new long[ n ];
 							final long[] currentCellPos = new long[ n ];
 							final long[] blockMin = new long[ n ];
-							final RandomAccess< UnsignedShortType > in = extendedImg.randomAccess();
+							final RandomAccess< T > in = extendedImg.randomAccess();
 							while ( true )
 							{
 								synchronized ( i )
@@ -762,13 +871,13 @@ public class WriteSequenceToHdf5
 									currentCellMax[ d ] = currentCellMin[ d ] + currentCellDim[ d ] - 1;
 								}
 
-								final ArrayImg< UnsignedShortType, ? > cell = ArrayImgs.unsignedShorts( currentCellDim );
+								final ArrayImg< T, ? > cell = new ArrayImgFactory< T >().create( currentCellDim, type );
 								if ( fullResolution )
 									copyBlock( cell.randomAccess(), currentCellDim, in, blockMin );
 								else
 									downsampleBlock( cell.cursor(), accumulator, currentCellDim, in, blockMin, factor, scale );
 
-								writerQueue.writeBlockWithOffset( ( ( ShortArray ) cell.update( null ) ).getCurrentStorageArray(), currentCellDim.clone(), currentCellMin.clone() );
+								writerQueue.writeBlockWithOffset( ( ( ArrayDataAccess< ? > ) cell.update( null ) ).getCurrentStorageArray(), currentCellDim.clone(), currentCellMin.clone() );
 							}
 							doneSignal.countDown();
 						}
@@ -833,6 +942,22 @@ public class WriteSequenceToHdf5
 		}
 	}
 
+	/**
+	 * Get the {@link DataType} of the images of the given setup.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if images of the setup cannot be written to HDF5.
+	 */
+	private static DataType< ?, ?, ? > getDataType( final AbstractSequenceDescription< ?, ?, ? > seq, final int setupId )
+	{
+		final Object type = seq.getImgLoader().getSetupImgLoader( setupId ).getImageType();
+		final DataType< ?, ?, ? > dataType = DataTypes.forType( type );
+		if ( dataType == null )
+			throw new IllegalArgumentException( "Expected BasicImgLoader<UnsignedByteType>, BasicImgLoader<UnsignedShortType>, or BasicImgLoader<FloatType> but your dataset has BasicImgLoader<"
+					+ type.getClass().getSimpleName() + ">.\nCurrently writing to HDF5 is only supported for UnsignedByteType, UnsignedShortType, and FloatType." );
+		return dataType;
+	}
+
 	public static int numElements( final int[] size )
 	{
 		int numElements = size[ 0 ];
@@ -915,7 +1040,7 @@ public class WriteSequenceToHdf5
 		}
 	}
 
-	private static < T extends RealType< T > > void downsampleBlock( final Cursor< T > out, final double[] accumulator, final long[] outDim, final RandomAccess< UnsignedShortType > randomAccess, final long[] blockMin, final int[] blockSize, final double scale )
+	private static < T extends RealType< T > > void downsampleBlock( final Cursor< T > out, final double[] accumulator, final long[] outDim, final RandomAccess< T > randomAccess, final long[] blockMin, final int[] blockSize, final double scale )
 	{
 		final int numBlockPixels = ( int ) ( outDim[ 0 ] * outDim[ 1 ] * outDim[ 2 ] );
 		Arrays.fill( accumulator, 0, numBlockPixels, 0 );
@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bdv.util.Prefs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A pool of {@code byte[]}, {@code short[]}, and {@code float[]} arrays that
+ * {@link CacheArrayLoader}s use for loading cell data, to avoid allocating a
+ * new array for every loaded cell.
+ * <p>
+ * Arrays are pooled in size classes of exactly one length, because arrays
+ * wrapped in an access must have the length of the cell. Most cells of a
+ * dataset have the same size, so this works well. The pool holds at most
+ * {@link Prefs#arrayPoolSize()} bytes. If it is full, returned arrays are
+ * left to the garbage collector.
+ * </p>
+ * <p>
+ * Arrays obtained from the pool have undefined contents. Loaders must
+ * overwrite (or zero) every element.
+ * </p>
+ * <p>
+ * Arrays of loaded cells are returned to the pool when the cell's access
+ * becomes unreachable (that is, when the cache evicted the cell and no image
+ * references it anymore), see {@link #recycleWhenUnreachable(Object)}. It is
+ * therefore not allowed to hold on to the storage array of a cell without
+ * also holding on to the cell's access. The pool refers to the array of an
+ * unreachable access only softly, so arrays of cells that were cleared under
+ * memory pressure can still be reclaimed by the garbage collector.
+ * </p>
+ */
+public class ArrayPool
+{
+	private static ArrayPool instance;
+
+	/**
+	 * Get the pool that is used by all {@link CacheArrayLoader}s.
+	 */
+	public static synchronized ArrayPool getInstance()
+	{
+		if ( instance == null )
+			instance = new ArrayPool( Prefs.arrayPoolSize() );
+		return instance;
+	}
+
+	private static final int BYTES = 0;
+
+	private static final int SHORTS = 1;
+
+	private static final int FLOATS = 2;
+
+	private final long maxPooledBytes;
+
+	/**
+	 * Maps size class (see {@link #sizeClass(int, int)}) to available arrays.
+	 * Guarded by {@code this}.
+	 */
+	private final HashMap< Long, ArrayDeque< Object > > pool = new HashMap<>();
+
+	/**
+	 * Total size of arrays in {@link #pool}. Guarded by {@code this}.
+	 */
+	private long pooledBytes;
+
+	private final ReferenceQueue< Object > unreachable = new ReferenceQueue<>();
+
+	/**
+	 * Keeps {@link TrackedArray}s reachable until they are enqueued.
+	 */
+	private final Set< TrackedArray > tracked = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong numAllocated = new AtomicLong();
+
+	private final AtomicLong numReused = new AtomicLong();
+
+	/**
+	 * @param maxPooledBytes
+	 *            maximum total size of pooled arrays. If this is 0, arrays are
+	 *            never pooled.
+	 */
+	public ArrayPool( final long maxPooledBytes )
+	{
+		this.maxPooledBytes = maxPooledBytes;
+	}
+
+	/**
+	 * Get a {@code byte[]} of the given length, with undefined contents.
+	 */
+	public byte[] bytes( final int length )
+	{
+		final Object array = take( BYTES, length );
+		return array != null ? ( byte[] ) array : new byte[ length ];
+	}
+
+	/**
+	 * Get a {@code short[]} of the given length, with undefined contents.
+	 */
+	public short[] shorts( final int length )
+	{
+		final Object array = take( SHORTS, length );
+		return array != null ? ( short[] ) array : new short[ length ];
+	}
+
+	/**
+	 * Get a {@code float[]} of the given length, with undefined contents.
+	 */
+	public float[] floats( final int length )
+	{
+		final Object array = take( FLOATS, length );
+		return array != null ? ( float[] ) array : new float[ length ];
+	}
+
+	/**
+	 * Return an array to the pool. The caller must not use the array
+	 * afterwards. Arrays of other than the pooled types are ignored.
+	 */
+	public void recycle( final Object array )
+	{
+		final int type = typeOf( array );
+		if ( type < 0 || maxPooledBytes <= 0 )
+			return;
+		final int length = length( type, array );
+		final long bytes = ( long ) length << shift( type );
+		synchronized ( this )
+		{
+			if ( pooledBytes + bytes > maxPooledBytes )
+				return;
+			pool.computeIfAbsent( sizeClass( type, length ), k -> new ArrayDeque<>() ).push( array );
+			pooledBytes += bytes;
+		}
+	}
+
+	/**
+	 * Return the storage array of {@code access} to the pool after
+	 * {@code access} has been garbage-collected, unless the garbage collector
+	 * has reclaimed the array by then. Accesses that are not
+	 * {@link ArrayDataAccess} of a pooled type are ignored.
+	 */
+	public void recycleWhenUnreachable( final Object access )
+	{
+		if ( maxPooledBytes <= 0 || !( access instanceof ArrayDataAccess ) )
+			return;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		if ( typeOf( array ) >= 0 )
+			tracked.add( new TrackedArray( access, array, unreachable ) );
+	}
+
+	/**
+	 * Remove all arrays from the pool.
+	 */
+	public synchronized void clear()
+	{
+		pool.clear();
+		pooledBytes = 0;
+	}
+
+	/**
+	 * Get the number of arrays that were newly allocated because no pooled
+	 * array was available.
+	 */
+	public long getNumAllocated()
+	{
+		return numAllocated.get();
+	}
+
+	/**
+	 * Get the number of arrays that were taken from the pool.
+	 */
+	public long getNumReused()
+	{
+		return numReused.get();
+	}
+
+	/**
+	 * Get the total size of the arrays currently in the pool.
+	 */
+	public synchronized long getPooledBytes()
+	{
+		return pooledBytes;
+	}
+
+	private Object take( final int type, final int length )
+	{
+		if ( maxPooledBytes > 0 )
+		{
+			drainUnreachable();
+			synchronized ( this )
+			{
+				final ArrayDeque< Object > arrays = pool.get( sizeClass( type, length ) );
+				if ( arrays != null && !arrays.isEmpty() )
+				{
+					pooledBytes -= ( long ) length << shift( type );
+					numReused.incrementAndGet();
+					return arrays.pop();
+				}
+			}
+		}
+		numAllocated.incrementAndGet();
+		return null;
+	}
+
+	private void drainUnreachable()
+	{
+		TrackedArray ref;
+		while ( ( ref = ( TrackedArray ) unreachable.poll() ) != null )
+		{
+			tracked.remove( ref );
+			final Object array = ref.array.get();
+			if ( array != null )
+				recycle( array );
+		}
+	}
+
+	private static long sizeClass( final int type, final int length )
+	{
+		return ( ( long ) length << 2 ) | type;
+	}
+
+	private static int typeOf( final Object array )
+	{
+		if ( array instanceof short[] )
+			return SHORTS;
+		else if ( array instanceof byte[] )
+			return BYTES;
+		else if ( array instanceof float[] )
+			return FLOATS;
+		else
+			return -1;
+	}
+
+	private static int length( final int type, final Object array )
+	{
+		switch ( type )
+		{
+		case BYTES:
+			return ( ( byte[] ) array ).length;
+		case SHORTS:
+			return ( ( short[] ) array ).length;
+		default:
+			return ( ( float[] ) array ).length;
+		}
+	}
+
+	/**
+	 * log2 of the element size of the given type.
+	 */
+	private static int shift( final int type )
+	{
+		switch ( type )
+		{
+		case BYTES:
+			return 0;
+		case SHORTS:
+			return 1;
+		default:
+			return 2;
+		}
+	}
+
+	/**
+	 * Weak reference to an access that remembers the access's storage array.
+	 * The array is only softly referenced: while the access is alive, the
+	 * array is strongly reachable through it anyway, and after that the pool
+	 * must not prevent the garbage collector from reclaiming it.
+	 */
+	private static class TrackedArray extends WeakReference< Object >
+	{
+		final SoftReference< Object > array;
+
+		TrackedArray( final Object access, final Object array, final ReferenceQueue< Object > queue )
+		{
+			super( access, queue );
+			this.array = new SoftReference<>( array );
+		}
+	}
+}
@@ -29,6 +29,9 @@
  */
 package bdv.img.cache;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import bdv.ViewerImgLoader;
 import bdv.img.catmaid.CatmaidImageLoader;
 import net.imglib2.cache.img.AccessFlags;
@@ -158,4 +161,55 @@ public interface CacheArrayLoader< A >
 	 * @return loaded cell data.
 	 */
 	public A loadArray( final int timepoint, final int setup, final int level, int[] dimensions, long[] min ) throws InterruptedException;
+
+	/**
+	 * How many cells should be loaded at most in one
+	 * {@link #loadArrays(int, int, int, int[][], long[][])} call? If this is
+	 * larger than 1, the {@link VolatileGlobalCellCache} collects other cells
+	 * of the same stack that are waiting to be loaded, and loads them together
+	 * with the requested cell.
+	 * <p>
+	 * Implementing classes that can load several cells more efficiently than
+	 * one by one (for example, by coalescing adjacent cells into one read or
+	 * request) should override this and
+	 * {@link #loadArrays(int, int, int, int[][], long[][])}. The default
+	 * implementation returns 1.
+	 *
+	 * @return maximum number of cells to load at once.
+	 */
+	public default int getMaxBatchSize()
+	{
+		return 1;
+	}
+
+	/**
+	 * Load data for several cells of the same stack into memory. This method
+	 * blocks until all data is successfully loaded. See
+	 * {@link #loadArray(int, int, int, int[], long[])} for the meaning of the
+	 * parameters.
+	 * <p>
+	 * The default implementation loads the cells one by one with
+	 * {@link #loadArray(int, int, int, int[], long[])}.
+	 *
+	 * @param timepoint
+	 *            the timepoint of the stack.
+	 * @param setup
+	 *            the setup of the stack.
+	 * @param level
+	 *            the resolution level of the stack (0 for full resolution).
+	 * @param dimensions
+	 *            for each cell, the size of the block to load (in voxels).
+	 * @param min
+	 *            for each cell, the min coordinate of the block in the stack
+	 *            (in voxels).
+	 * @return loaded cell data, in the order of {@code dimensions} and
+	 *         {@code min}.
+	 */
+	public default List< A > loadArrays( final int timepoint, final int setup, final int level, final int[][] dimensions, final long[][] min ) throws InterruptedException
+	{
+		final ArrayList< A > arrays = new ArrayList<>( dimensions.length );
+		for ( int i = 0; i < dimensions.length; ++i )
+			arrays.add( loadArray( timepoint, setup, level, dimensions[ i ], min[ i ] ) );
+		return arrays;
+	}
 }
@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.imglib2.cache.queue.BlockingFetchQueues;
+
+/**
+ * {@link BlockingFetchQueues} that counts the requests it holds, for
+ * diagnostics.
+ * <p>
+ * The {@link #size() number of queued requests} is the number of requests put
+ * minus the number of requests taken. {@link #clearToPrefetch()} keeps at most
+ * {@link #PREFETCH_CAPACITY} requests and discards the rest, so the size is
+ * limited to that afterwards. Additionally, the number of requests put at each
+ * priority since the last {@link #clearToPrefetch()} (that is, for the current
+ * frame) is counted.
+ * <p>
+ * Requests that are put while enqueuing {@link SpeculativeRequests} are put
+ * at the lowest priority, and are discarded by {@link #take()} if their batch
+ * was cancelled in the meantime. If the same request is put again outside of
+ * a batch, it is no longer discarded.
+ *
+ * @param <E>
+ *            element type.
+ */
+public class CountingFetchQueues< E > extends BlockingFetchQueues< E >
+{
+	/**
+	 * The prefetch capacity of {@link BlockingFetchQueues}, that is, the
+	 * number of requests that are kept by {@link #clearToPrefetch()}.
+	 */
+	static final int PREFETCH_CAPACITY = 16384;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLongArray numEnqueued;
+
+	/**
+	 * Maps speculative requests that are waiting in the queue to their batch.
+	 * Requests that are dropped by {@link #clearToPrefetch()} are removed
+	 * when garbage-collected.
+	 */
+	private final Map< E, SpeculativeRequests > speculative = Collections.synchronizedMap( new WeakHashMap<>() );
+
+	public CountingFetchQueues( final int numPriorities )
+	{
+		super( numPriorities );
+		numEnqueued = new AtomicLongArray( numPriorities );
+	}
+
+	@Override
+	public void put( final E element, final int priority, final boolean enqueuToFront )
+	{
+		final SpeculativeRequests batch = SpeculativeRequests.current();
+		if ( batch != null )
+		{
+			final int lowest = numEnqueued.length() - 1;
+			speculative.put( element, batch );
+			batch.enqueued();
+			super.put( element, lowest, false );
+			size.incrementAndGet();
+			numEnqueued.incrementAndGet( lowest );
+		}
+		else
+		{
+			if ( !speculative.isEmpty() )
+				speculative.remove( element );
+			super.put( element, priority, enqueuToFront );
+			size.incrementAndGet();
+			numEnqueued.incrementAndGet( Math.max( 0, Math.min( numEnqueued.length() - 1, priority ) ) );
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException
+	{
+		while ( true )
+		{
+			final E element = super.take();
+			size.updateAndGet( s -> Math.max( 0, s - 1 ) );
+			final SpeculativeRequests batch = speculative.isEmpty() ? null : speculative.remove( element );
+			if ( batch == null || !batch.isCancelled() )
+				return element;
+		}
+	}
+
+	@Override
+	public void clearToPrefetch()
+	{
+		super.clearToPrefetch();
+		// requests exceeding the prefetch capacity have been discarded
+		size.updateAndGet( s -> Math.min( s, PREFETCH_CAPACITY ) );
+		for ( int i = 0; i < numEnqueued.length(); ++i )
+			numEnqueued.set( i, 0 );
+	}
+
+	@Override
+	public void clear()
+	{
+		super.clear();
+		speculative.clear();
+		size.set( 0 );
+		for ( int i = 0; i < numEnqueued.length(); ++i )
+			numEnqueued.set( i, 0 );
+	}
+
+	/**
+	 * Get the number of requests that are waiting to be taken, including
+	 * prefetch requests. This is approximate only in that concurrent
+	 * {@link #put(Object, int, boolean)}s and {@link #take()}s may or may not
+	 * be counted yet.
+	 */
+	public int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Get the number of requests put at each priority since the last
+	 * {@link #clearToPrefetch()}.
+	 */
+	public long[] getNumEnqueuedPerPriority()
+	{
+		final long[] n = new long[ numEnqueued.length() ];
+		for ( int i = 0; i < n.length; ++i )
+			n[ i ] = numEnqueued.get( i );
+		return n;
+	}
+}
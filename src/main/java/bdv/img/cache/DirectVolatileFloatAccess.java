@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.nio.FloatBuffer;
+
+import net.imglib2.img.basictypeaccess.volatiles.VolatileFloatAccess;
+
+/**
+ * A {@link VolatileFloatAccess} that stores its data in a direct buffer
+ * outside the Java heap.
+ */
+public class DirectVolatileFloatAccess extends AbstractDirectVolatileAccess implements VolatileFloatAccess
+{
+	private final FloatBuffer data;
+
+	public DirectVolatileFloatAccess( final int numEntities, final boolean isValid )
+	{
+		super( numEntities, 4, isValid );
+		data = buffer.asFloatBuffer();
+	}
+
+	/**
+	 * Create a {@link DirectVolatileFloatAccess} and initialize it with a copy
+	 * of {@code array}.
+	 */
+	public DirectVolatileFloatAccess( final float[] array, final boolean isValid )
+	{
+		this( array.length, isValid );
+		buffer.asFloatBuffer().put( array );
+	}
+
+	@Override
+	public float getValue( final int index )
+	{
+		return data.get( index );
+	}
+
+	@Override
+	public void setValue( final int index, final float value )
+	{
+		data.put( index, value );
+	}
+}
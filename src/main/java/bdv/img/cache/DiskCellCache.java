@@ -0,0 +1,764 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import bdv.img.cache.VolatileGlobalCellCache.Key;
+import bdv.util.Prefs;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileDoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+
+/**
+ * A second-tier cache that keeps cell data in local files. It is used by
+ * {@link VolatileGlobalCellCache} to avoid loading cells from slow (e.g.,
+ * remote) sources again after they have been dropped from memory.
+ * <p>
+ * Cells are appended to segment files in a cache directory. Each record is
+ * prefixed by the {@link Key} of the cell and the size and type of its data,
+ * so the index can be rebuilt by scanning the segments when the cache is
+ * reopened. When the total size exceeds the limit, the oldest segment is
+ * deleted.
+ * </p>
+ * <p>
+ * {@link #put(Key, Object)} does not write to disk itself, so that loading
+ * threads do not wait for disk writes. Records are written by a background
+ * thread, with at most {@link #MAX_PENDING_WRITES} writes pending. When the
+ * writer falls behind, further cells are not stored.
+ * </p>
+ * <p>
+ * Data is stored for the standard volatile array types
+ * ({@link VolatileByteArray}, {@link VolatileShortArray}, etc.) and for
+ * {@link AbstractDirectVolatileAccess direct accesses}. Other access types are
+ * not stored. Because the same dataset can be loaded with heap or direct
+ * accesses (see {@link Prefs#offHeapCellCache()}), {@link #get(Key, boolean)}
+ * only returns data of the requested kind.
+ * </p>
+ */
+public class DiskCellCache
+{
+	private static final int MAGIC = 0x42445643; // "BDVC"
+
+	private static final int VERSION = 2;
+
+	private static final int RECORD_MAGIC = 0x43454c4c; // "CELL"
+
+	/**
+	 * magic, version, byte order
+	 */
+	private static final int SEGMENT_HEADER_SIZE = 4 + 4 + 1;
+
+	/**
+	 * record magic, timepoint, setup, level, index, type, data length
+	 */
+	private static final int RECORD_HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 1 + 4;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	private static final String SEGMENT_SUFFIX = ".bdvc";
+
+	private static final String DATASET_FILE = "dataset";
+
+	private static final byte BYTES = 1;
+
+	private static final byte SHORTS = 2;
+
+	private static final byte INTS = 3;
+
+	private static final byte FLOATS = 4;
+
+	private static final byte LONGS = 5;
+
+	private static final byte DOUBLES = 6;
+
+	private static final byte DIRECT_BYTES = 11;
+
+	private static final byte DIRECT_SHORTS = 12;
+
+	private static final byte DIRECT_INTS = 13;
+
+	private static final byte DIRECT_FLOATS = 14;
+
+	private static final byte NATIVE_ORDER = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? ( byte ) 1 : ( byte ) 0;
+
+	/**
+	 * Maximum number of cells waiting to be written by the background writer.
+	 */
+	public static final int MAX_PENDING_WRITES = 256;
+
+	private static class Segment
+	{
+		final int id;
+
+		final File file;
+
+		final FileChannel channel;
+
+		final ArrayList< Key > keys = new ArrayList<>();
+
+		long size;
+
+		/**
+		 * Bytes of records in the middle of the segment that could not be
+		 * written. They are not counted in {@code sizeInBytes}.
+		 */
+		long unused;
+
+		Segment( final int id, final File file, final FileChannel channel, final long size )
+		{
+			this.id = id;
+			this.file = file;
+			this.channel = channel;
+			this.size = size;
+		}
+
+		void delete()
+		{
+			try
+			{
+				channel.close();
+			}
+			catch ( final IOException e )
+			{}
+			file.delete();
+		}
+	}
+
+	private static class Location
+	{
+		final Segment segment;
+
+		final long position;
+
+		final int length;
+
+		final byte type;
+
+		Location( final Segment segment, final long position, final int length, final byte type )
+		{
+			this.segment = segment;
+			this.position = position;
+			this.length = length;
+			this.type = type;
+		}
+	}
+
+	private final File directory;
+
+	private final long maxSizeInBytes;
+
+	private final long maxSegmentSizeInBytes;
+
+	private final HashMap< Key, Location > index = new HashMap<>();
+
+	/**
+	 * Keys of records that are waiting to be written, or have been reserved
+	 * but not completely written yet.
+	 */
+	private final HashSet< Key > writing = new HashSet<>();
+
+	private final ThreadPoolExecutor writer;
+
+	/**
+	 * Segments ordered from oldest to newest. The last segment is the one
+	 * that is appended to.
+	 */
+	private final ArrayDeque< Segment > segments = new ArrayDeque<>();
+
+	private long sizeInBytes;
+
+	/**
+	 * Open (or create) a disk cache in {@code directory}. Existing segments in
+	 * the directory are scanned to rebuild the index.
+	 *
+	 * @param directory
+	 *            directory containing the segment files.
+	 * @param maxSizeInBytes
+	 *            maximum total size of segment files.
+	 * @throws IOException
+	 */
+	public DiskCellCache( final File directory, final long maxSizeInBytes ) throws IOException
+	{
+		this.directory = directory;
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.maxSegmentSizeInBytes = Math.max( 1 << 20, Math.min( 256l << 20, maxSizeInBytes / 16 ) );
+		if ( !directory.isDirectory() && !directory.mkdirs() )
+			throw new IOException( "cannot create cache directory " + directory );
+		scanSegments();
+		writer = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( MAX_PENDING_WRITES ), r -> {
+			final Thread thread = new Thread( r, "DiskCellCache writer" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	}
+
+	/**
+	 * Get the {@link DiskCellCache} for a dataset, according to the
+	 * {@link Prefs#diskCellCacheDirectory() disk cache preferences}. Every
+	 * dataset gets its own sub-directory in the cache directory.
+	 *
+	 * @param datasetId
+	 *            a string uniquely identifying the dataset, e.g., its URL.
+	 * @return a {@link DiskCellCache}, or {@code null} if no cache directory
+	 *         is configured.
+	 */
+	public static DiskCellCache forDataset( final String datasetId )
+	{
+		final String dir = Prefs.diskCellCacheDirectory();
+		if ( dir == null || dir.isEmpty() )
+			return null;
+		try
+		{
+			final File directory = new File( dir, sha1( datasetId ) );
+			final File datasetFile = new File( directory, DATASET_FILE );
+			final byte[] id = datasetId.getBytes( StandardCharsets.UTF_8 );
+			if ( datasetFile.isFile() && !Arrays.equals( id, Files.readAllBytes( datasetFile.toPath() ) ) )
+			{
+				// the directory was used for a different dataset (hash collision)
+				final File[] files = directory.listFiles();
+				if ( files != null )
+					for ( final File file : files )
+						file.delete();
+			}
+			final DiskCellCache cache = new DiskCellCache( directory, Prefs.diskCellCacheSize() );
+			Files.write( datasetFile.toPath(), id );
+			return cache;
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Get the cell data stored for {@code key}.
+	 *
+	 * @param key
+	 *            the key of the cell
+	 * @param direct
+	 *            whether the data is requested as
+	 *            {@link AbstractDirectVolatileAccess direct access} (or as
+	 *            volatile array otherwise).
+	 * @return cell data, or {@code null} if {@code key} is not in the cache or
+	 *         was stored with a different kind of access.
+	 */
+	public Object get( final Key key, final boolean direct )
+	{
+		final Location location;
+		synchronized ( this )
+		{
+			location = index.get( key );
+		}
+		if ( location == null || isDirect( location.type ) != direct )
+			return null;
+
+		final ArrayPool pool = ArrayPool.getInstance();
+		final ByteBuffer buf = direct
+				? ByteBuffer.allocateDirect( location.length )
+				: ByteBuffer.wrap( pool.bytes( location.length ) );
+		buf.order( ByteOrder.nativeOrder() );
+		try
+		{
+			readFully( location.segment.channel, buf, location.position );
+			buf.flip();
+			return decode( location.type, buf );
+		}
+		catch ( final IOException e )
+		{
+			// the segment may have been deleted in the meantime
+			return null;
+		}
+		finally
+		{
+			// decode() copies heap data, so the read buffer can be re-used
+			if ( !direct )
+				pool.recycle( buf.array() );
+		}
+	}
+
+	/**
+	 * Store the cell data for {@code key}, if it is of a supported type and
+	 * not already in the cache. The data is written asynchronously by a
+	 * background thread, and must not be modified afterwards.
+	 *
+	 * @param key
+	 *            the key of the cell
+	 * @param data
+	 *            cell data
+	 */
+	public void put( final Key key, final Object data )
+	{
+		final byte type = typeOf( data );
+		if ( type == 0 )
+			return;
+
+		synchronized ( this )
+		{
+			if ( index.containsKey( key ) || !writing.add( key ) )
+				return;
+		}
+
+		try
+		{
+			writer.execute( () -> write( key, type, data ) );
+		}
+		catch ( final RejectedExecutionException e )
+		{
+			// too many pending writes
+			synchronized ( this )
+			{
+				writing.remove( key );
+			}
+		}
+	}
+
+	private void write( final Key key, final byte type, final Object data )
+	{
+		final ByteBuffer payload = encode( type, data );
+		final int length = payload.remaining();
+		final int recordSize = RECORD_HEADER_SIZE + length;
+		final ByteBuffer header = ByteBuffer.allocate( RECORD_HEADER_SIZE );
+		header.putInt( RECORD_MAGIC );
+		header.putInt( key.getTimepoint() );
+		header.putInt( key.getSetup() );
+		header.putInt( key.getLevel() );
+		header.putLong( key.getIndex() );
+		header.put( type );
+		header.putInt( length );
+		header.flip();
+
+		// reserve space for the record
+		final Segment segment;
+		final long position;
+		synchronized ( this )
+		{
+			try
+			{
+				Segment last = segments.peekLast();
+				if ( last == null || last.size + recordSize > maxSegmentSizeInBytes )
+					last = newSegment();
+				segment = last;
+			}
+			catch ( final IOException e )
+			{
+				writing.remove( key );
+				throw new RuntimeException( e );
+			}
+			position = segment.size;
+			segment.size += recordSize;
+			sizeInBytes += recordSize;
+		}
+
+		boolean written = false;
+		try
+		{
+			writeFully( segment.channel, header, position );
+			writeFully( segment.channel, payload, position + RECORD_HEADER_SIZE );
+			written = true;
+		}
+		catch ( final IOException e )
+		{
+			// the segment may have been deleted in the meantime
+		}
+
+		synchronized ( this )
+		{
+			writing.remove( key );
+			if ( segments.contains( segment ) )
+			{
+				if ( written )
+				{
+					segment.keys.add( key );
+					index.put( key, new Location( segment, position + RECORD_HEADER_SIZE, length, type ) );
+				}
+				else
+				{
+					// roll back the reservation
+					sizeInBytes -= recordSize;
+					if ( segment.size == position + recordSize )
+						segment.size = position;
+					else
+						segment.unused += recordSize;
+				}
+			}
+			while ( sizeInBytes > maxSizeInBytes && segments.size() > 1 )
+				deleteOldestSegment();
+		}
+	}
+
+	/**
+	 * Delete all segment files.
+	 */
+	public synchronized void clear()
+	{
+		while ( !segments.isEmpty() )
+			deleteOldestSegment();
+	}
+
+	/**
+	 * Get the total size of the segment files.
+	 */
+	public synchronized long getSizeInBytes()
+	{
+		return sizeInBytes;
+	}
+
+	public long getMaxSizeInBytes()
+	{
+		return maxSizeInBytes;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	private void deleteOldestSegment()
+	{
+		final Segment segment = segments.pollFirst();
+		for ( final Key key : segment.keys )
+		{
+			final Location location = index.get( key );
+			if ( location != null && location.segment == segment )
+				index.remove( key );
+		}
+		sizeInBytes -= segment.size - segment.unused;
+		segment.delete();
+	}
+
+	private Segment newSegment() throws IOException
+	{
+		final Segment last = segments.peekLast();
+		final int id = last == null ? 0 : last.id + 1;
+		final File file = new File( directory, String.format( "%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX ) );
+		final FileChannel channel = new RandomAccessFile( file, "rw" ).getChannel();
+		channel.truncate( 0 );
+		final ByteBuffer header = ByteBuffer.allocate( SEGMENT_HEADER_SIZE );
+		header.putInt( MAGIC );
+		header.putInt( VERSION );
+		header.put( NATIVE_ORDER );
+		header.flip();
+		writeFully( channel, header, 0 );
+		final Segment segment = new Segment( id, file, channel, SEGMENT_HEADER_SIZE );
+		segments.addLast( segment );
+		sizeInBytes += SEGMENT_HEADER_SIZE;
+		return segment;
+	}
+
+	/**
+	 * Rebuild the index from the segment files in the cache directory.
+	 * Segments that cannot be read (or were written on a machine with
+	 * different byte order) are deleted. A truncated or incompletely written
+	 * record (e.g., after a crash) is cut off, together with all records after
+	 * it.
+	 */
+	private void scanSegments() throws IOException
+	{
+		final File[] files = directory.listFiles( ( dir, name ) -> name.startsWith( SEGMENT_PREFIX ) && name.endsWith( SEGMENT_SUFFIX ) );
+		if ( files == null )
+			return;
+		Arrays.sort( files );
+		for ( final File file : files )
+		{
+			final String name = file.getName();
+			final int id;
+			try
+			{
+				id = Integer.parseInt( name.substring( SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length() ) );
+			}
+			catch ( final NumberFormatException e )
+			{
+				file.delete();
+				continue;
+			}
+
+			final FileChannel channel = new RandomAccessFile( file, "rw" ).getChannel();
+			final long fileSize = channel.size();
+			final ByteBuffer header = ByteBuffer.allocate( Math.max( SEGMENT_HEADER_SIZE, RECORD_HEADER_SIZE ) );
+			header.limit( SEGMENT_HEADER_SIZE );
+			if ( fileSize < SEGMENT_HEADER_SIZE
+					|| !tryReadFully( channel, header, 0 )
+					|| header.getInt( 0 ) != MAGIC
+					|| header.getInt( 4 ) != VERSION
+					|| header.get( 8 ) != NATIVE_ORDER )
+			{
+				channel.close();
+				file.delete();
+				continue;
+			}
+
+			final Segment segment = new Segment( id, file, channel, SEGMENT_HEADER_SIZE );
+			long position = SEGMENT_HEADER_SIZE;
+			while ( position + RECORD_HEADER_SIZE <= fileSize )
+			{
+				header.clear();
+				header.limit( RECORD_HEADER_SIZE );
+				if ( !tryReadFully( channel, header, position ) )
+					break;
+				header.flip();
+				if ( header.getInt() != RECORD_MAGIC )
+					break;
+				final Key key = new Key( header.getInt(), header.getInt(), header.getInt(), header.getLong() );
+				final byte type = header.get();
+				final int length = header.getInt();
+				final long dataPosition = position + RECORD_HEADER_SIZE;
+				if ( !isKnownType( type ) || length < 0 || dataPosition + length > fileSize )
+					break;
+				final Location previous = index.put( key, new Location( segment, dataPosition, length, type ) );
+				if ( previous != null )
+					previous.segment.keys.remove( key );
+				segment.keys.add( key );
+				position = dataPosition + length;
+			}
+			if ( position < fileSize )
+				channel.truncate( position );
+			segment.size = position;
+			segments.addLast( segment );
+			sizeInBytes += position;
+		}
+
+		while ( sizeInBytes > maxSizeInBytes && segments.size() > 1 )
+			deleteOldestSegment();
+	}
+
+	private static boolean isDirect( final byte type )
+	{
+		return type >= DIRECT_BYTES;
+	}
+
+	private static boolean isKnownType( final byte type )
+	{
+		return ( type >= BYTES && type <= DOUBLES ) || ( type >= DIRECT_BYTES && type <= DIRECT_FLOATS );
+	}
+
+	private static byte typeOf( final Object data )
+	{
+		if ( data instanceof VolatileByteArray )
+			return BYTES;
+		else if ( data instanceof VolatileShortArray )
+			return SHORTS;
+		else if ( data instanceof VolatileIntArray )
+			return INTS;
+		else if ( data instanceof VolatileFloatArray )
+			return FLOATS;
+		else if ( data instanceof VolatileLongArray )
+			return LONGS;
+		else if ( data instanceof VolatileDoubleArray )
+			return DOUBLES;
+		else if ( data instanceof DirectVolatileByteAccess )
+			return DIRECT_BYTES;
+		else if ( data instanceof DirectVolatileShortAccess )
+			return DIRECT_SHORTS;
+		else if ( data instanceof DirectVolatileIntAccess )
+			return DIRECT_INTS;
+		else if ( data instanceof DirectVolatileFloatAccess )
+			return DIRECT_FLOATS;
+		else
+			return 0;
+	}
+
+	private static ByteBuffer encode( final byte type, final Object data )
+	{
+		switch ( type )
+		{
+		case BYTES:
+			return ByteBuffer.wrap( ( ( VolatileByteArray ) data ).getCurrentStorageArray() );
+		case SHORTS:
+		{
+			final short[] array = ( ( VolatileShortArray ) data ).getCurrentStorageArray();
+			final ByteBuffer buf = ByteBuffer.allocate( 2 * array.length ).order( ByteOrder.nativeOrder() );
+			buf.asShortBuffer().put( array );
+			return buf;
+		}
+		case INTS:
+		{
+			final int[] array = ( ( VolatileIntArray ) data ).getCurrentStorageArray();
+			final ByteBuffer buf = ByteBuffer.allocate( 4 * array.length ).order( ByteOrder.nativeOrder() );
+			buf.asIntBuffer().put( array );
+			return buf;
+		}
+		case FLOATS:
+		{
+			final float[] array = ( ( VolatileFloatArray ) data ).getCurrentStorageArray();
+			final ByteBuffer buf = ByteBuffer.allocate( 4 * array.length ).order( ByteOrder.nativeOrder() );
+			buf.asFloatBuffer().put( array );
+			return buf;
+		}
+		case LONGS:
+		{
+			final long[] array = ( ( VolatileLongArray ) data ).getCurrentStorageArray();
+			final ByteBuffer buf = ByteBuffer.allocate( 8 * array.length ).order( ByteOrder.nativeOrder() );
+			buf.asLongBuffer().put( array );
+			return buf;
+		}
+		case DOUBLES:
+		{
+			final double[] array = ( ( VolatileDoubleArray ) data ).getCurrentStorageArray();
+			final ByteBuffer buf = ByteBuffer.allocate( 8 * array.length ).order( ByteOrder.nativeOrder() );
+			buf.asDoubleBuffer().put( array );
+			return buf;
+		}
+		default:
+			return ( ( AbstractDirectVolatileAccess ) data ).getBuffer().duplicate();
+		}
+	}
+
+	private static Object decode( final byte type, final ByteBuffer buf )
+	{
+		final int length = buf.remaining();
+		switch ( type )
+		{
+		case BYTES:
+		{
+			final byte[] array = ArrayPool.getInstance().bytes( length );
+			buf.get( array );
+			return new VolatileByteArray( array, true );
+		}
+		case SHORTS:
+		{
+			final short[] array = ArrayPool.getInstance().shorts( length / 2 );
+			buf.asShortBuffer().get( array );
+			return new VolatileShortArray( array, true );
+		}
+		case INTS:
+		{
+			final int[] array = new int[ length / 4 ];
+			buf.asIntBuffer().get( array );
+			return new VolatileIntArray( array, true );
+		}
+		case FLOATS:
+		{
+			final float[] array = ArrayPool.getInstance().floats( length / 4 );
+			buf.asFloatBuffer().get( array );
+			return new VolatileFloatArray( array, true );
+		}
+		case LONGS:
+		{
+			final long[] array = new long[ length / 8 ];
+			buf.asLongBuffer().get( array );
+			return new VolatileLongArray( array, true );
+		}
+		case DOUBLES:
+		{
+			final double[] array = new double[ length / 8 ];
+			buf.asDoubleBuffer().get( array );
+			return new VolatileDoubleArray( array, true );
+		}
+		case DIRECT_BYTES:
+		{
+			final DirectVolatileByteAccess access = new DirectVolatileByteAccess( length, true );
+			access.getBuffer().duplicate().put( buf );
+			return access;
+		}
+		case DIRECT_SHORTS:
+		{
+			final DirectVolatileShortAccess access = new DirectVolatileShortAccess( length / 2, true );
+			access.getBuffer().duplicate().put( buf );
+			return access;
+		}
+		case DIRECT_INTS:
+		{
+			final DirectVolatileIntAccess access = new DirectVolatileIntAccess( length / 4, true );
+			access.getBuffer().duplicate().put( buf );
+			return access;
+		}
+		case DIRECT_FLOATS:
+		{
+			final DirectVolatileFloatAccess access = new DirectVolatileFloatAccess( length / 4, true );
+			access.getBuffer().duplicate().put( buf );
+			return access;
+		}
+		default:
+			return null;
+		}
+	}
+
+	private static void readFully( final FileChannel channel, final ByteBuffer buf, final long position ) throws IOException
+	{
+		if ( !tryReadFully( channel, buf, position ) )
+			throw new IOException( "unexpected end of file" );
+	}
+
+	private static boolean tryReadFully( final FileChannel channel, final ByteBuffer buf, long position ) throws IOException
+	{
+		while ( buf.hasRemaining() )
+		{
+			final int n = channel.read( buf, position );
+			if ( n < 0 )
+				return false;
+			position += n;
+		}
+		return true;
+	}
+
+	private static void writeFully( final FileChannel channel, final ByteBuffer buf, long position ) throws IOException
+	{
+		while ( buf.hasRemaining() )
+			position += channel.write( buf, position );
+	}
+
+	private static String sha1( final String s )
+	{
+		try
+		{
+			final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( s.getBytes( StandardCharsets.UTF_8 ) );
+			final StringBuilder sb = new StringBuilder();
+			for ( final byte b : digest )
+				sb.append( String.format( "%02x", b ) );
+			return sb.toString();
+		}
+		catch ( final NoSuchAlgorithmException e )
+		{
+			return Integer.toHexString( s.hashCode() );
+		}
+	}
+}
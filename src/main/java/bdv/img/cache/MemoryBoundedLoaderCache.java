@@ -0,0 +1,294 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.ref.SoftRefLoaderCache;
+
+/**
+ * A {@link LoaderCache} that holds strong references to its values, up to a
+ * fixed memory budget. In contrast to {@link SoftRefLoaderCache}, it does not
+ * rely on the garbage collector to clear entries: whenever a newly loaded
+ * entry pushes the total size over the budget, entries are evicted using the
+ * CLOCK (second chance) approximation of LRU.
+ * <p>
+ * The size of each entry is determined by a {@link Weigher} when the entry is
+ * loaded. Hits, misses (loads), and evictions are counted, which can be used
+ * to choose an appropriate budget.
+ * </p>
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class MemoryBoundedLoaderCache< K, V > implements LoaderCache< K, V >
+{
+	/**
+	 * Computes the size (in bytes) of a cache entry.
+	 */
+	@FunctionalInterface
+	public interface Weigher< K, V >
+	{
+		long weigh( K key, V value );
+	}
+
+	final class Entry
+	{
+		final K key;
+
+		volatile V value;
+
+		long weight;
+
+		/**
+		 * Set on every access. Cleared when the CLOCK hand passes over the
+		 * entry. Only entries that have not been accessed since the hand
+		 * passed over them last are evicted.
+		 */
+		volatile boolean referenced;
+
+		Entry( final K key )
+		{
+			this.key = key;
+		}
+	}
+
+	private final ConcurrentHashMap< K, Entry > map = new ConcurrentHashMap<>();
+
+	/**
+	 * Loaded entries, in CLOCK order. The head of the queue is the position
+	 * of the CLOCK hand. Guarded by {@code this}.
+	 */
+	private final ArrayDeque< Entry > clock = new ArrayDeque<>();
+
+	private final Weigher< ? super K, ? super V > weigher;
+
+	private final long maxSizeInBytes;
+
+	/**
+	 * Total weight of loaded entries. Guarded by {@code this}.
+	 */
+	private long sizeInBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Create a cache that holds at most {@code maxSizeInBytes} (as determined
+	 * by {@code weigher}).
+	 *
+	 * @param maxSizeInBytes
+	 *            memory budget of the cache.
+	 * @param weigher
+	 *            computes the size of entries.
+	 */
+	public MemoryBoundedLoaderCache( final long maxSizeInBytes, final Weigher< ? super K, ? super V > weigher )
+	{
+		if ( maxSizeInBytes <= 0 )
+			throw new IllegalArgumentException( "maxSizeInBytes must be positive" );
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.weigher = weigher;
+	}
+
+	@Override
+	public V getIfPresent( final K key )
+	{
+		final Entry entry = map.get( key );
+		if ( entry != null )
+		{
+			final V value = entry.value;
+			if ( value != null )
+			{
+				entry.referenced = true;
+				hits.incrementAndGet();
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check whether a value for {@code key} is currently held in the cache.
+	 * In contrast to {@link #getIfPresent(Object)}, this neither counts as a
+	 * hit nor marks the entry as recently used.
+	 */
+	public boolean contains( final K key )
+	{
+		final Entry entry = map.get( key );
+		return entry != null && entry.value != null;
+	}
+
+	@Override
+	public V get( final K key, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+	{
+		final V present = getIfPresent( key );
+		if ( present != null )
+			return present;
+
+		Entry entry = map.get( key );
+		if ( entry == null )
+		{
+			final Entry newEntry = new Entry( key );
+			entry = map.putIfAbsent( key, newEntry );
+			if ( entry == null )
+				entry = newEntry;
+		}
+
+		synchronized ( entry )
+		{
+			V value = entry.value;
+			if ( value != null )
+			{
+				// loaded by another thread while we were waiting
+				entry.referenced = true;
+				hits.incrementAndGet();
+				return value;
+			}
+
+			misses.incrementAndGet();
+			try
+			{
+				value = loader.get( key );
+			}
+			catch ( final Exception e )
+			{
+				map.remove( key, entry );
+				throw new ExecutionException( e );
+			}
+
+			entry.weight = weigher.weigh( key, value );
+			entry.value = value;
+			entry.referenced = true;
+			insert( entry );
+			return value;
+		}
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		map.clear();
+		clock.clear();
+		sizeInBytes = 0;
+	}
+
+	/**
+	 * Get the number of requests that were served from the cache.
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of requests that required loading a value.
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Get the number of entries that were evicted to stay within the memory
+	 * budget.
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * Reset hit, miss, and eviction counts to 0.
+	 */
+	public void resetStatistics()
+	{
+		hits.set( 0 );
+		misses.set( 0 );
+		evictions.set( 0 );
+	}
+
+	/**
+	 * Get the total size of entries that are currently held in the cache.
+	 */
+	public synchronized long getSizeInBytes()
+	{
+		return sizeInBytes;
+	}
+
+	public long getMaxSizeInBytes()
+	{
+		return maxSizeInBytes;
+	}
+
+	/**
+	 * Add a freshly loaded {@code entry} to the clock and evict entries until
+	 * the cache is within budget again. If the cache was invalidated while
+	 * the entry was loading, the entry is not added.
+	 */
+	private synchronized void insert( final Entry entry )
+	{
+		if ( map.get( entry.key ) != entry )
+			return;
+
+		clock.addLast( entry );
+		sizeInBytes += entry.weight;
+
+		while ( sizeInBytes > maxSizeInBytes && clock.size() > 1 )
+		{
+			final Entry e = clock.pollFirst();
+			if ( e == entry )
+			{
+				// never evict the entry that is being inserted
+				clock.addLast( e );
+			}
+			else if ( e.referenced )
+			{
+				e.referenced = false;
+				clock.addLast( e );
+			}
+			else
+			{
+				map.remove( e.key, e );
+				sizeInBytes -= e.weight;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+
+/**
+ * A {@link CacheArrayLoader} that wraps a loader producing primitive arrays
+ * and copies the loaded data into {@link AbstractDirectVolatileAccess direct
+ * buffers}. The primitive arrays are short-lived and the cell data is kept
+ * outside the Java heap. After copying, the primitive arrays are returned to
+ * the {@link ArrayPool}.
+ * <p>
+ * Wrappers for the standard volatile array types are created by the static
+ * helper methods {@link #bytes(CacheArrayLoader)},
+ * {@link #shorts(CacheArrayLoader)}, {@link #ints(CacheArrayLoader)}, and
+ * {@link #floats(CacheArrayLoader)}.
+ * </p>
+ *
+ * @param <A>
+ *            access type produced by the wrapped loader
+ * @param <B>
+ *            direct access type produced by this loader
+ */
+public class OffHeapCacheArrayLoader< A, B extends AbstractDirectVolatileAccess > implements CacheArrayLoader< B >
+{
+	/**
+	 * Copies loaded data of type {@code A} into a new direct access
+	 * {@code B}.
+	 */
+	@FunctionalInterface
+	public interface ToDirect< A, B >
+	{
+		B toDirect( A access );
+	}
+
+	/**
+	 * Creates a direct access {@code B} of given size.
+	 */
+	@FunctionalInterface
+	public interface CreateDirect< B >
+	{
+		B create( int numEntities, boolean isValid );
+	}
+
+	private final CacheArrayLoader< A > loader;
+
+	private final ToDirect< A, B > toDirect;
+
+	private final EmptyArrayCreator< B > emptyArrayCreator;
+
+	public OffHeapCacheArrayLoader(
+			final CacheArrayLoader< A > loader,
+			final ToDirect< A, B > toDirect,
+			final CreateDirect< B > createDirect )
+	{
+		this.loader = loader;
+		this.toDirect = toDirect;
+		this.emptyArrayCreator = new DirectEmptyArrayCreator<>( createDirect );
+	}
+
+	@Override
+	public B loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		return copyToDirect( loader.loadArray( timepoint, setup, level, dimensions, min ) );
+	}
+
+	@Override
+	public int getMaxBatchSize()
+	{
+		return loader.getMaxBatchSize();
+	}
+
+	@Override
+	public List< B > loadArrays( final int timepoint, final int setup, final int level, final int[][] dimensions, final long[][] min ) throws InterruptedException
+	{
+		final List< A > accesses = loader.loadArrays( timepoint, setup, level, dimensions, min );
+		final ArrayList< B > directs = new ArrayList<>( accesses.size() );
+		for ( final A access : accesses )
+			directs.add( copyToDirect( access ) );
+		return directs;
+	}
+
+	/**
+	 * Copy {@code access} into a new direct access, and return the storage
+	 * array of {@code access} to the {@link ArrayPool}.
+	 */
+	private B copyToDirect( final A access )
+	{
+		final B direct = toDirect.toDirect( access );
+		if ( access instanceof ArrayDataAccess )
+			ArrayPool.getInstance().recycle( ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray() );
+		return direct;
+	}
+
+	@Override
+	public int getBytesPerElement()
+	{
+		return loader.getBytesPerElement();
+	}
+
+	@Override
+	public EmptyArrayCreator< B > getEmptyArrayCreator()
+	{
+		return emptyArrayCreator;
+	}
+
+	public static OffHeapCacheArrayLoader< VolatileByteArray, DirectVolatileByteAccess > bytes( final CacheArrayLoader< VolatileByteArray > loader )
+	{
+		return new OffHeapCacheArrayLoader<>( loader,
+				a -> new DirectVolatileByteAccess( a.getCurrentStorageArray(), true ),
+				DirectVolatileByteAccess::new );
+	}
+
+	public static OffHeapCacheArrayLoader< VolatileShortArray, DirectVolatileShortAccess > shorts( final CacheArrayLoader< VolatileShortArray > loader )
+	{
+		return new OffHeapCacheArrayLoader<>( loader,
+				a -> new DirectVolatileShortAccess( a.getCurrentStorageArray(), true ),
+				DirectVolatileShortAccess::new );
+	}
+
+	public static OffHeapCacheArrayLoader< VolatileIntArray, DirectVolatileIntAccess > ints( final CacheArrayLoader< VolatileIntArray > loader )
+	{
+		return new OffHeapCacheArrayLoader<>( loader,
+				a -> new DirectVolatileIntAccess( a.getCurrentStorageArray(), true ),
+				DirectVolatileIntAccess::new );
+	}
+
+	public static OffHeapCacheArrayLoader< VolatileFloatArray, DirectVolatileFloatAccess > floats( final CacheArrayLoader< VolatileFloatArray > loader )
+	{
+		return new OffHeapCacheArrayLoader<>( loader,
+				a -> new DirectVolatileFloatAccess( a.getCurrentStorageArray(), true ),
+				DirectVolatileFloatAccess::new );
+	}
+
+	/**
+	 * Provides invalid direct accesses. Like {@link DefaultEmptyArrayCreator},
+	 * the same access is re-used for many cells, and replaced by a bigger one
+	 * if necessary.
+	 */
+	static class DirectEmptyArrayCreator< B > implements EmptyArrayCreator< B >
+	{
+		private final CreateDirect< B > createDirect;
+
+		private B theEmptyArray;
+
+		private int theEmptyArraySize;
+
+		DirectEmptyArrayCreator( final CreateDirect< B > createDirect )
+		{
+			this.createDirect = createDirect;
+			this.theEmptyArraySize = DefaultEmptyArrayCreator.INITIAL_EMPTY_SIZE;
+			this.theEmptyArray = createDirect.create( theEmptyArraySize, false );
+		}
+
+		@Override
+		public synchronized B getEmptyArray( final long numEntities )
+		{
+			if ( theEmptyArraySize < numEntities )
+			{
+				theEmptyArraySize = ( int ) numEntities;
+				theEmptyArray = createDirect.create( theEmptyArraySize, false );
+			}
+			return theEmptyArray;
+		}
+	}
+}
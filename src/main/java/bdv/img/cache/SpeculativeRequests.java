@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch of speculative loading requests, for example for data that will
+ * probably be needed in the near future. Requests that are enqueued in a
+ * {@link CountingFetchQueues} while {@link #enqueue(Runnable) running} code
+ * for a batch are put at the lowest priority. When the batch is
+ * {@link #cancel() cancelled}, its requests that are still waiting in the
+ * queue are discarded instead of loaded.
+ * <p>
+ * Note that the cache enqueues each cell at most once per frame (until the
+ * next {@link CountingFetchQueues#clearToPrefetch()}). If a batch requests a
+ * cell first, later requests for the same cell in that frame are not
+ * enqueued, and cancelling the batch discards the only request. A batch
+ * should therefore not request cells that are needed for the current frame.
+ * Discarded cells that are not needed for the current frame are enqueued
+ * again when they are accessed in a later frame.
+ */
+public class SpeculativeRequests
+{
+	private static final ThreadLocal< SpeculativeRequests > current = new ThreadLocal<>();
+
+	private volatile boolean cancelled = false;
+
+	private final AtomicInteger numEnqueued = new AtomicInteger();
+
+	/**
+	 * Run {@code r} in the calling thread. All requests enqueued in a
+	 * {@link CountingFetchQueues} by {@code r} belong to this batch.
+	 */
+	public void enqueue( final Runnable r )
+	{
+		final SpeculativeRequests previous = current.get();
+		current.set( this );
+		try
+		{
+			r.run();
+		}
+		finally
+		{
+			current.set( previous );
+		}
+	}
+
+	/**
+	 * Discard all requests of this batch that have not been taken from the
+	 * queue yet.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Get the number of requests that were enqueued for this batch. (Cells
+	 * that are already loaded, or already enqueued in the current frame, are
+	 * not enqueued again.)
+	 */
+	public int getNumEnqueued()
+	{
+		return numEnqueued.get();
+	}
+
+	void enqueued()
+	{
+		numEnqueued.incrementAndGet();
+	}
+
+	/**
+	 * Get the batch for which the calling thread is enqueuing requests, or
+	 * {@code null}.
+	 */
+	static SpeculativeRequests current()
+	{
+		return current.get();
+	}
+}
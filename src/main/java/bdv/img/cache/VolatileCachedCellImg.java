@@ -100,6 +100,22 @@ public class VolatileCachedCellImg< T extends NativeType< T >, A >
 		return cells.defaultCacheHints;
 	}
 
+	/**
+	 * Get the cells of this image, handling cell requests with the specified
+	 * {@link CacheHints hints} instead of the hints
+	 * {@link #setCacheHints(CacheHints) set} on this image. This does not
+	 * change the hints of this image, so it can be used to request cells
+	 * while the image is rendered with other hints.
+	 *
+	 * @param cacheHints
+	 *            describe handling of cell requests. May be {@code null}, in
+	 *            which case the default hints are used.
+	 */
+	public VolatileCachedCells< Cell< A > > getCells( final CacheHints cacheHints )
+	{
+		return cells.withCacheHints( cacheHints );
+	}
+
 	@Override
 	public ImgFactory< T > factory()
 	{
@@ -128,6 +144,20 @@ public class VolatileCachedCellImg< T extends NativeType< T >, A >
 			this.cacheHints = cacheHints;
 		}
 
+		/**
+		 * Get cells that share the {@code get} function of this, but have
+		 * their own hints.
+		 */
+		VolatileCachedCells< T > withCacheHints( final CacheHints cacheHints )
+		{
+			final long[] dims = new long[ numDimensions() ];
+			dimensions( dims );
+			final VolatileCachedCells< T > cells = new VolatileCachedCells<>( dims, get, defaultCacheHints );
+			if ( cacheHints != null )
+				cells.cacheHints = cacheHints;
+			return cells;
+		}
+
 		@Override
 		protected T get( final long index )
 		{
@@ -29,9 +29,19 @@
  */
 package bdv.img.cache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import bdv.cache.CacheControl;
+import bdv.cache.CacheStatistics;
 import net.imglib2.cache.Cache;
 import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.LoaderCache;
@@ -41,10 +51,13 @@ import net.imglib2.cache.ref.SoftRefLoaderCache;
 import net.imglib2.cache.ref.WeakRefVolatileCache;
 import net.imglib2.cache.util.KeyBimap;
 import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
 import net.imglib2.cache.volatiles.UncheckedVolatileCache;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
 import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.Intervals;
 
 public class VolatileGlobalCellCache implements CacheControl
 {
@@ -108,12 +121,57 @@ public class VolatileGlobalCellCache implements CacheControl
 		{
 			return hashcode;
 		}
+
+		public int getTimepoint()
+		{
+			return timepoint;
+		}
+
+		public int getSetup()
+		{
+			return setup;
+		}
+
+		public int getLevel()
+		{
+			return level;
+		}
+
+		public long getIndex()
+		{
+			return index;
+		}
 	}
 
+	/**
+	 * For {@link CacheArrayLoader}s that load batches of cells, at most this
+	 * many requested (not yet loaded) cells are remembered per image.
+	 */
+	private static final int MAX_REQUESTED_PER_IMG = 1 << 16;
+
 	private final BlockingFetchQueues< Callable< ? > > queue;
 
 	protected final LoaderCache< Key, Cell< ? > > backingCache;
 
+	/**
+	 * Maps setup id to the {@link CacheArrayLoader#getBytesPerElement() bytes
+	 * per element} of the {@link CacheArrayLoader} used for that setup. This is
+	 * used to compute cell sizes for a {@link MemoryBoundedLoaderCache}.
+	 */
+	private final ConcurrentHashMap< Integer, Integer > setupBytesPerElement = new ConcurrentHashMap<>();
+
+	/**
+	 * Optional second-tier cache, checked before loading cells through the
+	 * {@link CacheArrayLoader}.
+	 */
+	private volatile DiskCellCache diskCache;
+
+	/**
+	 * Number of cells that were loaded (from the disk cache or through the
+	 * {@link CacheArrayLoader}).
+	 */
+	private final AtomicLong numLoads = new AtomicLong();
+
 	/**
 	 * Create a new global cache with a new fetch queue served by the specified
 	 * number of fetcher threads.
@@ -125,7 +183,7 @@ public class VolatileGlobalCellCache implements CacheControl
 	 */
 	public VolatileGlobalCellCache( final int maxNumLevels, final int numFetcherThreads )
 	{
-		queue = new BlockingFetchQueues<>( maxNumLevels );
+		queue = new CountingFetchQueues<>( maxNumLevels );
 		new FetcherThreads( queue, numFetcherThreads );
 		backingCache = new SoftRefLoaderCache<>();
 	}
@@ -143,6 +201,107 @@ public class VolatileGlobalCellCache implements CacheControl
 		backingCache = new SoftRefLoaderCache<>();
 	}
 
+	/**
+	 * Create a new global cache with a new fetch queue served by the specified
+	 * number of fetcher threads. Loaded cells are held in a
+	 * {@link MemoryBoundedLoaderCache} with the specified memory budget
+	 * (instead of being softly referenced).
+	 *
+	 * @param maxNumLevels
+	 *            the highest occurring mipmap level plus 1.
+	 * @param numFetcherThreads
+	 *            how many threads should be created to load data.
+	 * @param maxCacheSizeInBytes
+	 *            memory budget for loaded cells.
+	 */
+	public VolatileGlobalCellCache( final int maxNumLevels, final int numFetcherThreads, final long maxCacheSizeInBytes )
+	{
+		queue = new CountingFetchQueues<>( maxNumLevels );
+		new FetcherThreads( queue, numFetcherThreads );
+		backingCache = new MemoryBoundedLoaderCache<>( maxCacheSizeInBytes, this::getCellSizeInBytes );
+	}
+
+	/**
+	 * Create a new global cache with the specified fetch queue. (It is the
+	 * callers responsibility to create fetcher threads that serve the queue.)
+	 * Loaded cells are held in a {@link MemoryBoundedLoaderCache} with the
+	 * specified memory budget (instead of being softly referenced).
+	 *
+	 * @param queue
+	 *            queue to which asynchronous data loading jobs are submitted
+	 * @param maxCacheSizeInBytes
+	 *            memory budget for loaded cells.
+	 */
+	public VolatileGlobalCellCache( final BlockingFetchQueues< Callable< ? > > queue, final long maxCacheSizeInBytes )
+	{
+		this.queue = queue;
+		backingCache = new MemoryBoundedLoaderCache<>( maxCacheSizeInBytes, this::getCellSizeInBytes );
+	}
+
+	/**
+	 * Create a new global cache with the specified fetch queue and backing
+	 * cache. (It is the callers responsibility to create fetcher threads that
+	 * serve the queue.)
+	 *
+	 * @param queue
+	 *            queue to which asynchronous data loading jobs are submitted
+	 * @param backingCache
+	 *            cache that holds loaded cells.
+	 */
+	public VolatileGlobalCellCache( final BlockingFetchQueues< Callable< ? > > queue, final LoaderCache< Key, Cell< ? > > backingCache )
+	{
+		this.queue = queue;
+		this.backingCache = backingCache;
+	}
+
+	/**
+	 * Get the {@link LoaderCache} that holds loaded cells. If this cache was
+	 * created with a memory budget, this is a {@link MemoryBoundedLoaderCache}
+	 * that provides hit, miss, and eviction counts.
+	 *
+	 * @return the cache that holds loaded cells.
+	 */
+	public LoaderCache< Key, Cell< ? > > getBackingCache()
+	{
+		return backingCache;
+	}
+
+	/**
+	 * Set a {@link DiskCellCache} to use as a second tier. Cells that are not
+	 * in memory are looked up in {@code diskCache} before loading them
+	 * through the {@link CacheArrayLoader}. Loaded cells are handed to
+	 * {@code diskCache}, which writes them in the background.
+	 *
+	 * @param diskCache
+	 *            the disk cache to use, or {@code null} to disable.
+	 */
+	public void setDiskCache( final DiskCellCache diskCache )
+	{
+		this.diskCache = diskCache;
+	}
+
+	public DiskCellCache getDiskCache()
+	{
+		return diskCache;
+	}
+
+	/**
+	 * Estimate the memory size of a loaded cell, as number of elements times
+	 * the {@link CacheArrayLoader#getBytesPerElement() bytes per element} of
+	 * the {@link CacheArrayLoader} for the cell's setup.
+	 *
+	 * @param key
+	 *            the key of the cell
+	 * @param cell
+	 *            the loaded cell
+	 * @return estimated size of {@code cell} in bytes.
+	 */
+	public long getCellSizeInBytes( final Key key, final Cell< ? > cell )
+	{
+		final Integer bytesPerElement = setupBytesPerElement.get( key.setup );
+		return Intervals.numElements( cell ) * ( bytesPerElement == null ? 1 : bytesPerElement );
+	}
+
 	/**
 	 * Prepare the cache for providing data for the "next frame",
 	 * by moving pending cell request to the prefetch queue
@@ -154,6 +313,29 @@ public class VolatileGlobalCellCache implements CacheControl
 		queue.clearToPrefetch();
 	}
 
+	/**
+	 * Get a snapshot of cache counters. The number of hits is only available
+	 * if the backing cache is a {@link MemoryBoundedLoaderCache}. The fetch
+	 * queue size is only available if the fetch queue was created by this
+	 * cache (or is a {@link CountingFetchQueues}).
+	 *
+	 * @return cache counters, where misses are the number of loaded cells.
+	 */
+	public CacheStatistics getStatistics()
+	{
+		final long hits = ( backingCache instanceof MemoryBoundedLoaderCache )
+				? ( ( MemoryBoundedLoaderCache< ?, ? > ) backingCache ).getHitCount()
+				: -1;
+		int queueSize = -1;
+		long[] numEnqueued = null;
+		if ( queue instanceof CountingFetchQueues )
+		{
+			queueSize = ( ( CountingFetchQueues< ? > ) queue ).size();
+			numEnqueued = ( ( CountingFetchQueues< ? > ) queue ).getNumEnqueuedPerPriority();
+		}
+		return new CacheStatistics( hits, numLoads.get(), queueSize, numEnqueued );
+	}
+
 	/**
 	 * Remove all references to loaded data as well as all enqueued requests
 	 * from the cache.
@@ -162,7 +344,152 @@ public class VolatileGlobalCellCache implements CacheControl
 	{
 		backingCache.invalidateAll();
 		queue.clear();
-		backingCache.invalidateAll();
+	}
+
+	/**
+	 * Load cell data from the {@link #setDiskCache(DiskCellCache) disk cache}
+	 * if present. Otherwise, load it through {@code cacheArrayLoader} and
+	 * write it to the disk cache, unless the loaded data is not valid. The
+	 * storage array of the loaded data is returned to the {@link ArrayPool}
+	 * when the data is no longer used.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private < A > A loadArray( final Key key, final int[] cellDims, final long[] cellMin, final CacheArrayLoader< A > cacheArrayLoader ) throws InterruptedException
+	{
+		numLoads.incrementAndGet();
+		final DiskCellCache disk = diskCache;
+		if ( disk != null )
+		{
+			final A data = ( A ) disk.get( key, isDirect( cacheArrayLoader ) );
+			if ( data != null )
+			{
+				ArrayPool.getInstance().recycleWhenUnreachable( data );
+				return data;
+			}
+		}
+		final A data = cacheArrayLoader.loadArray( key.timepoint, key.setup, key.level, cellDims, cellMin );
+		if ( disk != null && isValid( data ) )
+			disk.put( key, data );
+		ArrayPool.getInstance().recycleWhenUnreachable( data );
+		return data;
+	}
+
+	/**
+	 * Load cell data for several cells of the same stack, as
+	 * {@link #loadArray(Key, int[], long[], CacheArrayLoader)}. Cells that are
+	 * not in the disk cache are loaded with one
+	 * {@link CacheArrayLoader#loadArrays(int, int, int, int[][], long[][])}
+	 * call.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private < A > List< A > loadArrays( final Key[] keys, final int[][] cellDims, final long[][] cellMins, final CacheArrayLoader< A > cacheArrayLoader ) throws InterruptedException
+	{
+		final int n = keys.length;
+		numLoads.addAndGet( n );
+		final ArrayList< A > arrays = new ArrayList<>( Collections.nCopies( n, ( A ) null ) );
+		final DiskCellCache disk = diskCache;
+		final boolean direct = isDirect( cacheArrayLoader );
+		final int[] missing = new int[ n ];
+		int numMissing = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			final A data = ( disk == null ) ? null : ( A ) disk.get( keys[ i ], direct );
+			if ( data != null )
+			{
+				ArrayPool.getInstance().recycleWhenUnreachable( data );
+				arrays.set( i, data );
+			}
+			else
+				missing[ numMissing++ ] = i;
+		}
+		if ( numMissing == 0 )
+			return arrays;
+
+		final int[][] dims = new int[ numMissing ][];
+		final long[][] mins = new long[ numMissing ][];
+		for ( int j = 0; j < numMissing; ++j )
+		{
+			dims[ j ] = cellDims[ missing[ j ] ];
+			mins[ j ] = cellMins[ missing[ j ] ];
+		}
+		final Key key = keys[ 0 ];
+		final List< A > loaded = cacheArrayLoader.loadArrays( key.timepoint, key.setup, key.level, dims, mins );
+		for ( int j = 0; j < numMissing; ++j )
+		{
+			final A data = loaded.get( j );
+			if ( disk != null && isValid( data ) )
+				disk.put( keys[ missing[ j ] ], data );
+			ArrayPool.getInstance().recycleWhenUnreachable( data );
+			arrays.set( missing[ j ], data );
+		}
+		return arrays;
+	}
+
+	/**
+	 * Choose the cells to load together with cell {@code index}. Up to
+	 * {@code maxBatchSize - 1} indices are removed from {@code requested},
+	 * preferring the nearest indices (neighboring cells in X). Cells that are
+	 * already loaded are skipped.
+	 *
+	 * @return {@code index}, followed by the indices of the other cells to
+	 *         load.
+	 */
+	private long[] takeBatch( final Set< Long > requested, final long index, final int maxBatchSize, final int timepoint, final int setup, final int level )
+	{
+		final long[] batch = new long[ maxBatchSize ];
+		batch[ 0 ] = index;
+		int size = 1;
+		for ( int d = 1; d < maxBatchSize && size < maxBatchSize && !requested.isEmpty(); ++d )
+		{
+			if ( requested.remove( index + d ) && !isLoaded( timepoint, setup, level, index + d ) )
+				batch[ size++ ] = index + d;
+			if ( size < maxBatchSize && requested.remove( index - d ) && !isLoaded( timepoint, setup, level, index - d ) )
+				batch[ size++ ] = index - d;
+		}
+		for ( final Iterator< Long > it = requested.iterator(); it.hasNext() && size < maxBatchSize; )
+		{
+			final long i = it.next();
+			it.remove();
+			if ( !isLoaded( timepoint, setup, level, i ) )
+				batch[ size++ ] = i;
+		}
+		return Arrays.copyOf( batch, size );
+	}
+
+	/**
+	 * Check whether a cell is in the backing cache, without affecting hit
+	 * statistics or eviction order of a {@link MemoryBoundedLoaderCache}.
+	 */
+	private boolean isLoaded( final int timepoint, final int setup, final int level, final long index )
+	{
+		final Key key = new Key( timepoint, setup, level, index );
+		if ( backingCache instanceof MemoryBoundedLoaderCache )
+			return ( ( MemoryBoundedLoaderCache< Key, ? > ) backingCache ).contains( key );
+		return backingCache.getIfPresent( key ) != null;
+	}
+
+	private static boolean isInvalid( final Cell< ? > cell )
+	{
+		return !isValid( cell.getData() );
+	}
+
+	/**
+	 * Loaders must not return invalid data (see
+	 * {@link CacheArrayLoader#loadArray(int, int, int, int[], long[])}), but
+	 * such data must never be written to the disk cache.
+	 */
+	private static boolean isValid( final Object data )
+	{
+		return !( data instanceof VolatileAccess ) || ( ( VolatileAccess ) data ).isValid();
+	}
+
+	/**
+	 * Whether {@code cacheArrayLoader} produces
+	 * {@link AbstractDirectVolatileAccess direct accesses}.
+	 */
+	private static boolean isDirect( final CacheArrayLoader< ? > cacheArrayLoader )
+	{
+		return cacheArrayLoader instanceof OffHeapCacheArrayLoader;
 	}
 
 	/**
@@ -202,6 +529,16 @@ public class VolatileGlobalCellCache implements CacheControl
 			final CacheArrayLoader< A > cacheArrayLoader,
 			final T type )
 	{
+		setupBytesPerElement.put( setup, cacheArrayLoader.getBytesPerElement() );
+
+		/*
+		 * If the cacheArrayLoader can load batches of cells, remember indices
+		 * of cells that were requested but not valid yet, to load them
+		 * together with the next cell that is loaded.
+		 */
+		final int maxBatchSize = cacheArrayLoader.getMaxBatchSize();
+		final Set< Long > requested = ( maxBatchSize > 1 ) ? ConcurrentHashMap.newKeySet() : null;
+
 		final CacheLoader< Long, Cell< ? > > loader = new CacheLoader< Long, Cell< ? > >()
 		{
 			@Override
@@ -211,10 +548,38 @@ public class VolatileGlobalCellCache implements CacheControl
 				final long[] cellMin = new long[ n ];
 				final int[] cellDims = new int[ n ];
 				grid.getCellDimensions( key, cellMin, cellDims );
-				return new Cell<>(
-						cellDims,
-						cellMin,
-						cacheArrayLoader.loadArray( timepoint, setup, level, cellDims, cellMin ) );
+				if ( requested == null )
+					return new Cell<>(
+							cellDims,
+							cellMin,
+							loadArray( new Key( timepoint, setup, level, key ), cellDims, cellMin, cacheArrayLoader ) );
+
+				requested.remove( key );
+				final long[] indices = takeBatch( requested, key, maxBatchSize, timepoint, setup, level );
+				final Key[] keys = new Key[ indices.length ];
+				final int[][] dims = new int[ indices.length ][];
+				final long[][] mins = new long[ indices.length ][];
+				for ( int i = 0; i < indices.length; ++i )
+				{
+					keys[ i ] = new Key( timepoint, setup, level, indices[ i ] );
+					dims[ i ] = new int[ n ];
+					mins[ i ] = new long[ n ];
+					grid.getCellDimensions( indices[ i ], mins[ i ], dims[ i ] );
+				}
+				final List< A > arrays = loadArrays( keys, dims, mins, cacheArrayLoader );
+
+				// the first cell is the requested one, put the others into the backing cache
+				for ( int i = 1; i < indices.length; ++i )
+				{
+					final Cell< A > cell = new Cell<>( dims[ i ], mins[ i ], arrays.get( i ) );
+					try
+					{
+						backingCache.get( keys[ i ], k -> cell );
+					}
+					catch ( final ExecutionException e )
+					{}
+				}
+				return new Cell<>( cellDims, cellMin, arrays.get( 0 ) );
 			}
 		};
 
@@ -235,9 +600,23 @@ public class VolatileGlobalCellCache implements CacheControl
 				cache, queue, createInvalid )
 						.unchecked();
 
+		/*
+		 * Only track requested cells if the cacheArrayLoader can batch. Access
+		 * to a non-batching image goes straight to vcache.
+		 */
 		@SuppressWarnings( "unchecked" )
-		final VolatileCachedCellImg< T, A > img = new VolatileCachedCellImg<>( grid, type, cacheHints,
-				( i, h ) -> ( Cell< A > ) vcache.get( i, h ) );
+		final VolatileCachedCellImg.Get< Cell< A > > get = ( requested == null )
+				? ( i, h ) -> ( Cell< A > ) vcache.get( i, h )
+				: ( i, h ) -> {
+					final Cell< A > cell = ( Cell< A > ) vcache.get( i, h );
+					if ( h.getLoadingStrategy() != LoadingStrategy.DONTLOAD
+							&& requested.size() < MAX_REQUESTED_PER_IMG
+							&& isInvalid( cell ) )
+						requested.add( i );
+					return cell;
+				};
+
+		final VolatileCachedCellImg< T, A > img = new VolatileCachedCellImg<>( grid, type, cacheHints, get );
 
 		return img;
 	}
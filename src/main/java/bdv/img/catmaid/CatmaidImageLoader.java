@@ -32,13 +32,16 @@ package bdv.img.catmaid;
 import bdv.AbstractViewerSetupImgLoader;
 import bdv.ViewerImgLoader;
 import bdv.ViewerSetupImgLoader;
+import bdv.img.cache.CacheArrayLoader;
+import bdv.img.cache.DiskCellCache;
+import bdv.img.cache.OffHeapCacheArrayLoader;
 import bdv.img.cache.VolatileCachedCellImg;
 import bdv.img.cache.VolatileGlobalCellCache;
+import bdv.util.Prefs;
 import mpicbg.spim.data.generic.sequence.ImgLoaderHint;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.volatiles.CacheHints;
 import net.imglib2.cache.volatiles.LoadingStrategy;
-import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
@@ -59,7 +62,7 @@ public class CatmaidImageLoader extends AbstractViewerSetupImgLoader< ARGBType,
 
 	private VolatileGlobalCellCache cache;
 
-	private final CatmaidVolatileIntArrayLoader loader;
+	private final CacheArrayLoader< ? > loader;
 
 	final static private int[][] blockDimensions(
 			final int tileWidth,
@@ -118,8 +121,12 @@ public class CatmaidImageLoader extends AbstractViewerSetupImgLoader< ARGBType,
 			mipmapTransforms[ l ] = mipmapTransform;
 		}
 
-		loader = new CatmaidVolatileIntArrayLoader( urlFormat, tileWidth, tileHeight, zScales );
+		final CatmaidVolatileIntArrayLoader intLoader = new CatmaidVolatileIntArrayLoader( urlFormat, tileWidth, tileHeight, zScales );
+		loader = Prefs.offHeapCellCache()
+				? OffHeapCacheArrayLoader.ints( intLoader )
+				: intLoader;
 		cache = new VolatileGlobalCellCache( numScales, 10 );
+		cache.setDiskCache( DiskCellCache.forDataset( urlFormat ) );
 	}
 
 	public CatmaidImageLoader(
@@ -207,7 +214,7 @@ public class CatmaidImageLoader extends AbstractViewerSetupImgLoader< ARGBType,
 	 * Create a {@link VolatileCachedCellImg} backed by the cache. The type
 	 * should be either {@link ARGBType} and {@link VolatileARGBType}.
 	 */
-	protected < T extends NativeType< T > > VolatileCachedCellImg< T, VolatileIntArray > prepareCachedImage(
+	protected < T extends NativeType< T > > VolatileCachedCellImg< T, ? > prepareCachedImage(
 			final int timepointId,
 			final int setupId,
 			final int level,
@@ -32,6 +32,7 @@ package bdv.img.catmaid;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.PixelGrabber;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 
@@ -131,7 +132,11 @@ public class CatmaidVolatileIntArrayLoader implements CacheArrayLoader< Volatile
 				}
 				catch (final IOException e)
 				{
-					System.out.println( "failed loading r=" + r + " c=" + c );
+					// ImageIO wraps the FileNotFoundException of a missing
+					// tile. Missing tiles are left blank. For other errors, do
+					// not return (and disk-cache) an incomplete cell.
+					if ( !( e.getCause() instanceof FileNotFoundException ) )
+						throw new RuntimeException( "failed loading r=" + r + " c=" + c, e );
 				}
 			}
 		}
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import bdv.img.cache.CacheArrayLoader;
+import bdv.img.cache.OffHeapCacheArrayLoader;
+import net.imglib2.Volatile;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileFloatType;
+import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
+
+/**
+ * Pixel types that can be stored in a bdv.hdf5 file. The type of each setup is
+ * stored in the string dataset {@link Util#getDataTypePath(int)}, as the
+ * {@link DataType#getName() name} of the type. If that dataset does not exist,
+ * the setup is {@link #UnsignedShort} (this is the case for all files written
+ * before other types were supported).
+ */
+public class DataTypes
+{
+	public static interface DataType<
+			T extends RealType< T > & NativeType< T >,
+			V extends Volatile< T > & NativeType< V > ,
+			A extends VolatileAccess >
+	{
+		/**
+		 * The name under which this type is stored in the hdf5 file.
+		 */
+		public String getName();
+
+		public T getType();
+
+		public V getVolatileType();
+
+		public int getBytesPerElement();
+
+		public CacheArrayLoader< A > createArrayLoader( final IHDF5Access hdf5Access );
+
+		/**
+		 * Create a {@link CacheArrayLoader} that keeps loaded data in direct
+		 * buffers outside the Java heap.
+		 */
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access );
+	}
+
+	public static final DataType< UnsignedByteType, VolatileUnsignedByteType, VolatileByteArray > UnsignedByte =
+			new DataType< UnsignedByteType, VolatileUnsignedByteType, VolatileByteArray >()
+	{
+		@Override
+		public String getName()
+		{
+			return "uint8";
+		}
+
+		@Override
+		public UnsignedByteType getType()
+		{
+			return new UnsignedByteType();
+		}
+
+		@Override
+		public VolatileUnsignedByteType getVolatileType()
+		{
+			return new VolatileUnsignedByteType();
+		}
+
+		@Override
+		public int getBytesPerElement()
+		{
+			return 1;
+		}
+
+		@Override
+		public CacheArrayLoader< VolatileByteArray > createArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return new Hdf5VolatileByteArrayLoader( hdf5Access );
+		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.bytes( createArrayLoader( hdf5Access ) );
+		}
+	};
+
+	public static final DataType< UnsignedShortType, VolatileUnsignedShortType, VolatileShortArray > UnsignedShort =
+			new DataType< UnsignedShortType, VolatileUnsignedShortType, VolatileShortArray >()
+	{
+		@Override
+		public String getName()
+		{
+			return "uint16";
+		}
+
+		@Override
+		public UnsignedShortType getType()
+		{
+			return new UnsignedShortType();
+		}
+
+		@Override
+		public VolatileUnsignedShortType getVolatileType()
+		{
+			return new VolatileUnsignedShortType();
+		}
+
+		@Override
+		public int getBytesPerElement()
+		{
+			return 2;
+		}
+
+		@Override
+		public CacheArrayLoader< VolatileShortArray > createArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return new Hdf5VolatileShortArrayLoader( hdf5Access );
+		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.shorts( createArrayLoader( hdf5Access ) );
+		}
+	};
+
+	public static final DataType< FloatType, VolatileFloatType, VolatileFloatArray > Float =
+			new DataType< FloatType, VolatileFloatType, VolatileFloatArray >()
+	{
+		@Override
+		public String getName()
+		{
+			return "float32";
+		}
+
+		@Override
+		public FloatType getType()
+		{
+			return new FloatType();
+		}
+
+		@Override
+		public VolatileFloatType getVolatileType()
+		{
+			return new VolatileFloatType();
+		}
+
+		@Override
+		public int getBytesPerElement()
+		{
+			return 4;
+		}
+
+		@Override
+		public CacheArrayLoader< VolatileFloatArray > createArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return new Hdf5VolatileFloatArrayLoader( hdf5Access );
+		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.floats( createArrayLoader( hdf5Access ) );
+		}
+	};
+
+	/**
+	 * Get the {@link DataType} with the given {@link DataType#getName() name}.
+	 *
+	 * @return the {@link DataType}, or {@code null} if there is none with the
+	 *         given name.
+	 */
+	public static DataType< ?, ?, ? > forName( final String name )
+	{
+		for ( final DataType< ?, ?, ? > dataType : all() )
+			if ( dataType.getName().equals( name ) )
+				return dataType;
+		return null;
+	}
+
+	/**
+	 * Get the {@link DataType} for pixels of the given type.
+	 *
+	 * @return the {@link DataType}, or {@code null} if pixels of the given
+	 *         type cannot be stored.
+	 */
+	public static DataType< ?, ?, ? > forType( final Object type )
+	{
+		if ( type instanceof UnsignedByteType )
+			return UnsignedByte;
+		else if ( type instanceof UnsignedShortType )
+			return UnsignedShort;
+		else if ( type instanceof FloatType )
+			return Float;
+		else
+			return null;
+	}
+
+	private static DataType< ?, ?, ? >[] all()
+	{
+		return new DataType< ?, ?, ? >[] { UnsignedByte, UnsignedShort, Float };
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A sidecar file next to a bdv.hdf5 file, which lists the dimensions of all
+ * (timepoint, setup, level) datasets in the hdf5 file. This is written by
+ * {@code WriteSequenceToHdf5} and used by {@link Hdf5ImageLoader} to get
+ * {@link DimsAndExistence} without opening each dataset.
+ * <p>
+ * The index records the size and modification time of the hdf5 file when it
+ * was written. If the hdf5 file was modified later, the index is ignored.
+ * </p>
+ * <p>
+ * File format (big-endian): magic, version, hdf5 file length, hdf5 file
+ * modification time, number of entries, followed by the entries sorted by
+ * (timepoint, setup, level). Each entry is timepoint, setup, level (int), and
+ * the dimensions in X, Y, Z (long).
+ * </p>
+ */
+public class DimsAndExistenceIndex
+{
+	private static final int MAGIC = 0x42445844; // "BDXD"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+	private static final int ENTRY_SIZE = 3 * 4 + 3 * 8;
+
+	private final MappedByteBuffer buffer;
+
+	private final int numEntries;
+
+	private DimsAndExistenceIndex( final MappedByteBuffer buffer, final int numEntries )
+	{
+		this.buffer = buffer;
+		this.numEntries = numEntries;
+	}
+
+	/**
+	 * Get the index file for the given hdf5 file.
+	 */
+	public static File getIndexFile( final File hdf5File )
+	{
+		return new File( hdf5File.getPath() + ".dims" );
+	}
+
+	/**
+	 * Memory-map the index for the given hdf5 file.
+	 *
+	 * @return the index, or {@code null} if there is no index or if it is
+	 *         outdated or corrupt.
+	 */
+	public static DimsAndExistenceIndex open( final File hdf5File )
+	{
+		final File indexFile = getIndexFile( hdf5File );
+		if ( !indexFile.isFile() || !hdf5File.isFile() )
+			return null;
+
+		try ( final FileChannel channel = FileChannel.open( indexFile.toPath(), StandardOpenOption.READ ) )
+		{
+			final long size = channel.size();
+			if ( size < HEADER_SIZE )
+				return null;
+			final MappedByteBuffer buffer = channel.map( MapMode.READ_ONLY, 0, size );
+			if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION )
+				return null;
+			if ( buffer.getLong( 8 ) != hdf5File.length() || buffer.getLong( 16 ) != hdf5File.lastModified() )
+				return null;
+			final int numEntries = buffer.getInt( 24 );
+			if ( size != HEADER_SIZE + ( long ) numEntries * ENTRY_SIZE )
+				return null;
+			return new DimsAndExistenceIndex( buffer, numEntries );
+		}
+		catch ( final IOException e )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Write the index for the given hdf5 file. This must be called after the
+	 * hdf5 file is closed.
+	 *
+	 * @param hdf5File
+	 *            the hdf5 file.
+	 * @param dimensions
+	 *            maps each dataset in the hdf5 file to its dimensions (X, Y,
+	 *            Z).
+	 */
+	public static void write( final File hdf5File, final Map< ViewLevelId, long[] > dimensions ) throws IOException
+	{
+		final File indexFile = getIndexFile( hdf5File );
+		final File tmpFile = new File( indexFile.getPath() + ".tmp" );
+		final TreeMap< ViewLevelId, long[] > sorted = new TreeMap<>( dimensions );
+		try ( final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) ) )
+		{
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeLong( hdf5File.length() );
+			out.writeLong( hdf5File.lastModified() );
+			out.writeInt( sorted.size() );
+			for ( final Entry< ViewLevelId, long[] > entry : sorted.entrySet() )
+			{
+				final ViewLevelId id = entry.getKey();
+				final long[] d = entry.getValue();
+				out.writeInt( id.getTimePointId() );
+				out.writeInt( id.getViewSetupId() );
+				out.writeInt( id.getLevel() );
+				out.writeLong( d[ 0 ] );
+				out.writeLong( d[ 1 ] );
+				out.writeLong( d[ 2 ] );
+			}
+		}
+		Files.move( tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+	}
+
+	/**
+	 * Delete the index for the given hdf5 file, if it exists.
+	 */
+	public static void delete( final File hdf5File )
+	{
+		getIndexFile( hdf5File ).delete();
+	}
+
+	/**
+	 * Get the {@link DimsAndExistence} for the given dataset.
+	 *
+	 * @return the dimensions, or a non-existing {@link DimsAndExistence} if
+	 *         the dataset is not in the index.
+	 */
+	public DimsAndExistence get( final ViewLevelId id )
+	{
+		final int i = find( id.getTimePointId(), id.getViewSetupId(), id.getLevel() );
+		if ( i < 0 )
+			return new DimsAndExistence( new long[] { 1, 1, 1 }, false );
+		final int pos = HEADER_SIZE + i * ENTRY_SIZE + 12;
+		return new DimsAndExistence( new long[] {
+				buffer.getLong( pos ),
+				buffer.getLong( pos + 8 ),
+				buffer.getLong( pos + 16 ) }, true );
+	}
+
+	/**
+	 * Get all entries of the index.
+	 */
+	public Map< ViewLevelId, long[] > getAll()
+	{
+		final TreeMap< ViewLevelId, long[] > all = new TreeMap<>();
+		for ( int i = 0; i < numEntries; ++i )
+		{
+			final int pos = HEADER_SIZE + i * ENTRY_SIZE;
+			all.put(
+					new ViewLevelId( buffer.getInt( pos ), buffer.getInt( pos + 4 ), buffer.getInt( pos + 8 ) ),
+					new long[] { buffer.getLong( pos + 12 ), buffer.getLong( pos + 20 ), buffer.getLong( pos + 28 ) } );
+		}
+		return all;
+	}
+
+	/**
+	 * Binary search for the entry with the given ids.
+	 *
+	 * @return index of the entry, or -1 if not found.
+	 */
+	private int find( final int timepoint, final int setup, final int level )
+	{
+		int lo = 0;
+		int hi = numEntries - 1;
+		while ( lo <= hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			final int pos = HEADER_SIZE + mid * ENTRY_SIZE;
+			int c = Integer.compare( buffer.getInt( pos ), timepoint );
+			if ( c == 0 )
+				c = Integer.compare( buffer.getInt( pos + 4 ), setup );
+			if ( c == 0 )
+				c = Integer.compare( buffer.getInt( pos + 8 ), level );
+			if ( c < 0 )
+				lo = mid + 1;
+			else if ( c > 0 )
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mpicbg.spim.data.sequence.ViewId;
+
+/**
+ * Reads cells by locating and decoding the HDF5 chunks directly (see
+ * {@link RawHdf5File}), without going through the HDF5 library. The chunk
+ * index of each dataset is built once, when the dataset is first accessed.
+ * Afterwards, reading a cell is a positional read of the chunk plus decoding,
+ * which does not take any lock and can run concurrently in several fetcher
+ * threads.
+ * <p>
+ * Datasets that cannot be read directly (e.g., because they use an
+ * unsupported filter or storage layout) are read through the {@code fallback}
+ * {@link IHDF5Access}. Dimensions and existence of datasets are always
+ * determined by the {@code fallback}. Errors while reading a dataset that is
+ * supported (e.g., a truncated file or a corrupt chunk) are not hidden by the
+ * fallback, but thrown as {@link RuntimeException}s.
+ * </p>
+ */
+class DirectChunkHDF5Access implements IHDF5Access
+{
+	private final File hdf5File;
+
+	private final List< Partition > partitions;
+
+	private final IHDF5Access fallback;
+
+	/**
+	 * Maps file paths (the main file and partition files) to opened
+	 * {@link RawHdf5File}s. Contains {@code null} for files that could not be
+	 * opened. Guarded by {@code this}.
+	 */
+	private final HashMap< String, RawHdf5File > files = new HashMap<>();
+
+	private final ConcurrentHashMap< ViewLevelId, Hdf5ChunkedDataset > datasets = new ConcurrentHashMap<>();
+
+	/**
+	 * Datasets that are read through the {@code fallback}.
+	 */
+	private final Set< ViewLevelId > unsupported = ConcurrentHashMap.newKeySet();
+
+	public DirectChunkHDF5Access( final File hdf5File, final List< Partition > partitions, final IHDF5Access fallback )
+	{
+		this.hdf5File = hdf5File;
+		this.partitions = new ArrayList<>( partitions );
+		this.fallback = fallback;
+	}
+
+	@Override
+	public DimsAndExistence getDimsAndExistence( final ViewLevelId id )
+	{
+		return fallback.getDimsAndExistence( id );
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final short[] dataBlock = new short[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		return dataBlock;
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final short[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		final ViewLevelId id = new ViewLevelId( timepoint, setup, level );
+		try
+		{
+			final Hdf5ChunkedDataset dataset = getDataset( id );
+			if ( dataset != null )
+			{
+				dataset.readShortBlock( Util.reorder( dimensions ), Util.reorder( min ), dataBlock );
+				return dataBlock;
+			}
+		}
+		catch ( final ClosedByInterruptException e )
+		{
+			throw new InterruptedException();
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Error reading " + Util.getCellsPath( id ), e );
+		}
+		return fallback.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final float[] dataBlock = new float[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		readShortMDArrayBlockWithOffsetAsFloat( timepoint, setup, level, dimensions, min, dataBlock );
+		return dataBlock;
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		final short[] shorts = readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		for ( int i = 0; i < shorts.length; ++i )
+			dataBlock[ i ] = shorts[ i ] & 0xffff;
+		return dataBlock;
+	}
+
+	@Override
+	public byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException
+	{
+		// only 16-bit datasets are read directly
+		return fallback.readByteMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+	}
+
+	@Override
+	public float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		// only 16-bit datasets are read directly
+		return fallback.readFloatMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+	}
+
+	@Override
+	public long[] readLongArray( final String path )
+	{
+		return fallback.readLongArray( path );
+	}
+
+	@Override
+	public byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException
+	{
+		return fallback.readByteArrayBlockWithOffset( path, length, offset );
+	}
+
+	@Override
+	public void closeAllDataSets()
+	{
+		fallback.closeAllDataSets();
+	}
+
+	@Override
+	public void close()
+	{
+		synchronized ( this )
+		{
+			for ( final RawHdf5File file : files.values() )
+			{
+				if ( file != null )
+				{
+					try
+					{
+						file.close();
+					}
+					catch ( final IOException e )
+					{}
+				}
+			}
+			files.clear();
+		}
+		datasets.clear();
+		fallback.close();
+	}
+
+	/**
+	 * Get the chunk index for the given dataset, building it if necessary.
+	 *
+	 * @return the chunk index, or {@code null} if the dataset should be read
+	 *         through the {@code fallback}.
+	 */
+	private Hdf5ChunkedDataset getDataset( final ViewLevelId id ) throws IOException
+	{
+		Hdf5ChunkedDataset dataset = datasets.get( id );
+		if ( dataset == null && !unsupported.contains( id ) )
+		{
+			try
+			{
+				dataset = openDataset( id );
+			}
+			catch ( final RawHdf5File.UnsupportedFormatException e )
+			{
+				dataset = null;
+			}
+			if ( dataset == null || dataset.getElementSize() != 2 || dataset.getDimensions().length != 3 )
+			{
+				unsupported.add( id );
+				return null;
+			}
+			final Hdf5ChunkedDataset previous = datasets.putIfAbsent( id, dataset );
+			if ( previous != null )
+				dataset = previous;
+		}
+		return dataset;
+	}
+
+	/**
+	 * Open the dataset for the given {@link ViewLevelId} in the main file or
+	 * in the partition file that contains it.
+	 */
+	private Hdf5ChunkedDataset openDataset( final ViewLevelId id ) throws IOException
+	{
+		final ViewId viewId = new ViewId( id.getTimePointId(), id.getViewSetupId() );
+		for ( final Partition partition : partitions )
+		{
+			if ( partition.contains( viewId ) )
+			{
+				final RawHdf5File file = getFile( partition.getPath() );
+				if ( file == null )
+					return null;
+				final int timepoint = partition.getTimepointIdSequenceToPartition().get( id.getTimePointId() );
+				final int setup = partition.getSetupIdSequenceToPartition().get( id.getViewSetupId() );
+				return file.openChunkedDataset( Util.getCellsPath( timepoint, setup, id.getLevel() ) );
+			}
+		}
+		final RawHdf5File file = getFile( hdf5File.getAbsolutePath() );
+		return file == null ? null : file.openChunkedDataset( Util.getCellsPath( id ) );
+	}
+
+	/**
+	 * Get the opened file at {@code path}, opening it if necessary.
+	 *
+	 * @return the file, or {@code null} if the file cannot be read without
+	 *         the HDF5 library.
+	 */
+	private synchronized RawHdf5File getFile( final String path ) throws IOException
+	{
+		if ( files.containsKey( path ) )
+			return files.get( path );
+
+		RawHdf5File file;
+		try
+		{
+			file = new RawHdf5File( new File( path ) );
+		}
+		catch ( final RawHdf5File.UnsupportedFormatException e )
+		{
+			file = null;
+		}
+		files.put( path, file );
+		return file;
+	}
+}
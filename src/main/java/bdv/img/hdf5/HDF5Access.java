@@ -30,6 +30,7 @@
 package bdv.img.hdf5;
 
 import static bdv.img.hdf5.Util.reorder;
+import ch.systemsx.cisd.base.mdarray.MDByteArray;
 import ch.systemsx.cisd.base.mdarray.MDFloatArray;
 import ch.systemsx.cisd.base.mdarray.MDShortArray;
 import ch.systemsx.cisd.hdf5.HDF5DataSetInformation;
@@ -105,6 +106,50 @@ class HDF5Access implements IHDF5Access
 		return dataBlock;
 	}
 
+	@Override
+	public synchronized byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		Util.reorder( dimensions, reorderedDimensions );
+		Util.reorder( min, reorderedMin );
+		final MDByteArray array = hdf5Reader.uint8().readMDArrayBlockWithOffset( Util.getCellsPath( timepoint, setup, level ), reorderedDimensions, reorderedMin );
+		System.arraycopy( array.getAsFlatArray(), 0, dataBlock, 0, dataBlock.length );
+		return dataBlock;
+	}
+
+	@Override
+	public synchronized float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		Util.reorder( dimensions, reorderedDimensions );
+		Util.reorder( min, reorderedMin );
+		final MDFloatArray array = hdf5Reader.float32().readMDArrayBlockWithOffset( Util.getCellsPath( timepoint, setup, level ), reorderedDimensions, reorderedMin );
+		System.arraycopy( array.getAsFlatArray(), 0, dataBlock, 0, dataBlock.length );
+		return dataBlock;
+	}
+
+	@Override
+	public synchronized long[] readLongArray( final String path )
+	{
+		return hdf5Reader.object().exists( path ) ? hdf5Reader.int64().readArray( path ) : null;
+	}
+
+	@Override
+	public synchronized byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		return hdf5Reader.int8().readArrayBlockWithOffset( path, length, offset );
+	}
+
+	@Override
+	public boolean mergesAdjacentReads()
+	{
+		return true;
+	}
+
 	@Override
 	public void closeAllDataSets()
 	{}
@@ -43,6 +43,7 @@ import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5S_MAX_RANK;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5S_SELECT_SET;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_FLOAT;
 import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_INT16;
+import static ch.systemsx.cisd.hdf5.hdf5lib.HDF5Constants.H5T_NATIVE_UCHAR;
 
 import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
@@ -226,6 +227,60 @@ class HDF5AccessHack implements IHDF5Access
 		return dataBlock;
 	}
 
+	@Override
+	public synchronized byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		Util.reorder( dimensions, reorderedDimensions );
+		Util.reorder( min, reorderedMin );
+
+		final OpenDataSet dataset = openDataSetCache.getDataSet( new ViewLevelId( timepoint, setup, level ) );
+		final int memorySpaceId = H5Screate_simple( reorderedDimensions.length, reorderedDimensions, null );
+		H5Sselect_hyperslab( dataset.fileSpaceId, H5S_SELECT_SET, reorderedMin, null, reorderedDimensions, null );
+		H5Dread( dataset.dataSetId, H5T_NATIVE_UCHAR, memorySpaceId, dataset.fileSpaceId, numericConversionXferPropertyListID, dataBlock );
+		H5Sclose( memorySpaceId );
+
+		return dataBlock;
+	}
+
+	@Override
+	public synchronized float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		Util.reorder( dimensions, reorderedDimensions );
+		Util.reorder( min, reorderedMin );
+
+		final OpenDataSet dataset = openDataSetCache.getDataSet( new ViewLevelId( timepoint, setup, level ) );
+		final int memorySpaceId = H5Screate_simple( reorderedDimensions.length, reorderedDimensions, null );
+		H5Sselect_hyperslab( dataset.fileSpaceId, H5S_SELECT_SET, reorderedMin, null, reorderedDimensions, null );
+		H5Dread( dataset.dataSetId, H5T_NATIVE_FLOAT, memorySpaceId, dataset.fileSpaceId, numericConversionXferPropertyListID, dataBlock );
+		H5Sclose( memorySpaceId );
+
+		return dataBlock;
+	}
+
+	@Override
+	public synchronized long[] readLongArray( final String path )
+	{
+		return hdf5Reader.object().exists( path ) ? hdf5Reader.int64().readArray( path ) : null;
+	}
+
+	@Override
+	public synchronized byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		return hdf5Reader.int8().readArrayBlockWithOffset( path, length, offset );
+	}
+
+	@Override
+	public boolean mergesAdjacentReads()
+	{
+		return true;
+	}
+
 	@Override
 	public void closeAllDataSets()
 	{
@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Distributes reads over several {@link IHDF5Access} instances, each with its
+ * own HDF5 file handle and open dataset cache. Every read borrows an idle
+ * access from the pool, such that several fetcher threads can issue reads
+ * without waiting on the lock of a single {@link HDF5AccessHack}.
+ */
+class HDF5AccessPool implements IHDF5Access
+{
+	private final List< IHDF5Access > accesses;
+
+	private final ArrayBlockingQueue< IHDF5Access > idle;
+
+	public HDF5AccessPool( final List< IHDF5Access > accesses )
+	{
+		this.accesses = accesses;
+		idle = new ArrayBlockingQueue<>( accesses.size() );
+		idle.addAll( accesses );
+	}
+
+	@Override
+	public DimsAndExistence getDimsAndExistence( final ViewLevelId id )
+	{
+		// use an idle access if there is one, but don't wait for it
+		final IHDF5Access access = idle.poll();
+		if ( access == null )
+			return accesses.get( 0 ).getDimsAndExistence( id );
+		try
+		{
+			return access.getDimsAndExistence( id );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final short[] dataBlock ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readShortMDArrayBlockWithOffsetAsFloat( timepoint, setup, level, dimensions, min );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readShortMDArrayBlockWithOffsetAsFloat( timepoint, setup, level, dimensions, min, dataBlock );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readByteMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readFloatMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public long[] readLongArray( final String path )
+	{
+		// use an idle access if there is one, but don't wait for it
+		final IHDF5Access access = idle.poll();
+		if ( access == null )
+			return accesses.get( 0 ).readLongArray( path );
+		try
+		{
+			return access.readLongArray( path );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException
+	{
+		final IHDF5Access access = idle.take();
+		try
+		{
+			return access.readByteArrayBlockWithOffset( path, length, offset );
+		}
+		finally
+		{
+			idle.add( access );
+		}
+	}
+
+	@Override
+	public boolean mergesAdjacentReads()
+	{
+		for ( final IHDF5Access access : accesses )
+			if ( !access.mergesAdjacentReads() )
+				return false;
+		return true;
+	}
+
+	@Override
+	public void closeAllDataSets()
+	{
+		for ( final IHDF5Access access : accesses )
+			access.closeAllDataSets();
+	}
+
+	@Override
+	public void close()
+	{
+		for ( final IHDF5Access access : accesses )
+			access.close();
+	}
+}
@@ -0,0 +1,407 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Chunk index of a chunked HDF5 dataset, built by
+ * {@link RawHdf5File#openChunkedDataset(String)}. Reads blocks of the dataset
+ * by reading the raw chunks from the file and undoing the filter pipeline
+ * (deflate, shuffle, fletcher32, and integer scale-offset filters are
+ * supported).
+ * <p>
+ * Dimensions and positions are in HDF5 order, i.e., the last dimension is the
+ * fastest varying.
+ * </p>
+ */
+class Hdf5ChunkedDataset
+{
+	static final int FILTER_DEFLATE = 1;
+
+	static final int FILTER_SHUFFLE = 2;
+
+	static final int FILTER_FLETCHER32 = 3;
+
+	static final int FILTER_SCALEOFFSET = 6;
+
+	/**
+	 * A filter in the filter pipeline of the dataset.
+	 */
+	static class Filter
+	{
+		final int id;
+
+		final int[] clientData;
+
+		Filter( final int id, final int[] clientData )
+		{
+			this.id = id;
+			this.clientData = clientData;
+		}
+
+		boolean isSupported()
+		{
+			switch ( id )
+			{
+			case FILTER_DEFLATE:
+			case FILTER_SHUFFLE:
+			case FILTER_FLETCHER32:
+				return true;
+			case FILTER_SCALEOFFSET:
+				// only integer scale-offset, with 1, 2, or 4 bytes per element
+				return clientData.length > 7 && clientData[ 3 ] == 0
+						&& ( clientData[ 4 ] == 1 || clientData[ 4 ] == 2 || clientData[ 4 ] == 4 );
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static final ThreadLocal< Inflater > inflaters = ThreadLocal.withInitial( Inflater::new );
+
+	private final RawHdf5File file;
+
+	private final long[] dimensions;
+
+	private final int[] chunkDimensions;
+
+	private final long[] gridDimensions;
+
+	private final int chunkNumElements;
+
+	private final int elementSize;
+
+	private final ByteOrder byteOrder;
+
+	private final Filter[] filters;
+
+	/**
+	 * File address of each chunk, indexed by flattened grid position.
+	 * {@link RawHdf5File#UNDEFINED_ADDRESS} for chunks that were never
+	 * written.
+	 */
+	private final long[] chunkAddresses;
+
+	private final int[] chunkSizes;
+
+	private final int[] chunkFilterMasks;
+
+	Hdf5ChunkedDataset(
+			final RawHdf5File file,
+			final long[] dimensions,
+			final int[] chunkDimensions,
+			final int elementSize,
+			final ByteOrder byteOrder,
+			final Filter[] filters ) throws IOException
+	{
+		this.file = file;
+		this.dimensions = dimensions;
+		this.chunkDimensions = chunkDimensions;
+		this.elementSize = elementSize;
+		this.byteOrder = byteOrder;
+		this.filters = filters;
+
+		final int n = dimensions.length;
+		gridDimensions = new long[ n ];
+		long numChunks = 1;
+		long numElements = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			gridDimensions[ d ] = ( dimensions[ d ] + chunkDimensions[ d ] - 1 ) / chunkDimensions[ d ];
+			numChunks *= gridDimensions[ d ];
+			numElements *= chunkDimensions[ d ];
+		}
+		if ( numChunks > Integer.MAX_VALUE || numElements * elementSize > Integer.MAX_VALUE )
+			throw new IOException( "too many or too large chunks" );
+		chunkNumElements = ( int ) numElements;
+		chunkAddresses = new long[ ( int ) numChunks ];
+		Arrays.fill( chunkAddresses, RawHdf5File.UNDEFINED_ADDRESS );
+		chunkSizes = new int[ ( int ) numChunks ];
+		chunkFilterMasks = new int[ ( int ) numChunks ];
+	}
+
+	void addChunk( final long[] offset, final long address, final int size, final int filterMask )
+	{
+		long index = 0;
+		for ( int d = 0; d < offset.length; ++d )
+			index = index * gridDimensions[ d ] + offset[ d ] / chunkDimensions[ d ];
+		chunkAddresses[ ( int ) index ] = address;
+		chunkSizes[ ( int ) index ] = size;
+		chunkFilterMasks[ ( int ) index ] = filterMask;
+	}
+
+	public long[] getDimensions()
+	{
+		return dimensions;
+	}
+
+	public int[] getChunkDimensions()
+	{
+		return chunkDimensions;
+	}
+
+	public int getElementSize()
+	{
+		return elementSize;
+	}
+
+	/**
+	 * Read a 3D block of 16-bit data into {@code dataBlock}. Chunks that are
+	 * not present in the file are filled with 0.
+	 *
+	 * @param dimensions
+	 *            size of the block (HDF5 order).
+	 * @param min
+	 *            minimum of the block (HDF5 order).
+	 * @param dataBlock
+	 *            array to store the data, in HDF5 order (last dimension
+	 *            fastest).
+	 */
+	public void readShortBlock( final int[] dimensions, final long[] min, final short[] dataBlock ) throws IOException
+	{
+		if ( elementSize != 2 || this.dimensions.length != 3 )
+			throw new IOException( "not a 3D 16-bit dataset" );
+		for ( int d = 0; d < 3; ++d )
+			if ( min[ d ] < 0 || min[ d ] + dimensions[ d ] > this.dimensions[ d ] )
+				throw new IOException( "block out of bounds" );
+
+		final short[] chunk = new short[ chunkNumElements ];
+		final int c0 = chunkDimensions[ 0 ];
+		final int c1 = chunkDimensions[ 1 ];
+		final int c2 = chunkDimensions[ 2 ];
+		final long max0 = min[ 0 ] + dimensions[ 0 ];
+		final long max1 = min[ 1 ] + dimensions[ 1 ];
+		final long max2 = min[ 2 ] + dimensions[ 2 ];
+		for ( long g0 = min[ 0 ] / c0; g0 * c0 < max0; ++g0 )
+		{
+			for ( long g1 = min[ 1 ] / c1; g1 * c1 < max1; ++g1 )
+			{
+				for ( long g2 = min[ 2 ] / c2; g2 * c2 < max2; ++g2 )
+				{
+					final int index = ( int ) ( ( g0 * gridDimensions[ 1 ] + g1 ) * gridDimensions[ 2 ] + g2 );
+					final boolean present = readChunk( index, chunk );
+
+					// intersection of block and chunk
+					final long o0 = g0 * c0, o1 = g1 * c1, o2 = g2 * c2;
+					final long from0 = Math.max( min[ 0 ], o0 ), to0 = Math.min( max0, o0 + c0 );
+					final long from1 = Math.max( min[ 1 ], o1 ), to1 = Math.min( max1, o1 + c1 );
+					final long from2 = Math.max( min[ 2 ], o2 ), to2 = Math.min( max2, o2 + c2 );
+					final int length = ( int ) ( to2 - from2 );
+					for ( long z = from0; z < to0; ++z )
+					{
+						for ( long y = from1; y < to1; ++y )
+						{
+							final int dst = ( int ) ( ( ( z - min[ 0 ] ) * dimensions[ 1 ] + ( y - min[ 1 ] ) ) * dimensions[ 2 ] + ( from2 - min[ 2 ] ) );
+							if ( present )
+							{
+								final int src = ( int ) ( ( ( z - o0 ) * c1 + ( y - o1 ) ) * c2 + ( from2 - o2 ) );
+								System.arraycopy( chunk, src, dataBlock, dst, length );
+							}
+							else
+								Arrays.fill( dataBlock, dst, dst + length, ( short ) 0 );
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read and decode the chunk with the given flattened grid index into
+	 * {@code chunk}.
+	 *
+	 * @return {@code false} if the chunk is not present in the file.
+	 */
+	private boolean readChunk( final int index, final short[] chunk ) throws IOException
+	{
+		final long address = chunkAddresses[ index ];
+		if ( address == RawHdf5File.UNDEFINED_ADDRESS )
+			return false;
+
+		byte[] data = file.readBytes( address, chunkSizes[ index ] );
+		final int filterMask = chunkFilterMasks[ index ];
+		for ( int i = filters.length - 1; i >= 0; --i )
+			if ( ( filterMask & ( 1 << i ) ) == 0 )
+				data = decode( filters[ i ], data );
+
+		if ( data.length < chunkNumElements * elementSize )
+			throw new IOException( "decoded chunk is too small" );
+		ByteBuffer.wrap( data ).order( byteOrder ).asShortBuffer().get( chunk );
+		return true;
+	}
+
+	private byte[] decode( final Filter filter, final byte[] data ) throws IOException
+	{
+		switch ( filter.id )
+		{
+		case FILTER_DEFLATE:
+			return inflate( data, chunkNumElements * elementSize );
+		case FILTER_SHUFFLE:
+			return unshuffle( data, filter.clientData.length > 0 ? filter.clientData[ 0 ] : elementSize );
+		case FILTER_FLETCHER32:
+			return Arrays.copyOf( data, data.length - 4 );
+		case FILTER_SCALEOFFSET:
+			return scaleOffsetDecompress( data, filter.clientData, byteOrder );
+		default:
+			throw new IOException( "unsupported filter " + filter.id );
+		}
+	}
+
+	private static byte[] inflate( final byte[] data, final int expectedSize ) throws IOException
+	{
+		final Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput( data );
+		byte[] out = new byte[ Math.max( expectedSize, 64 ) ];
+		int n = 0;
+		try
+		{
+			while ( !inflater.finished() )
+			{
+				if ( n == out.length )
+					out = Arrays.copyOf( out, 2 * out.length );
+				final int r = inflater.inflate( out, n, out.length - n );
+				if ( r == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) )
+					throw new IOException( "truncated deflate stream" );
+				n += r;
+			}
+		}
+		catch ( final DataFormatException e )
+		{
+			throw new IOException( e );
+		}
+		return n == out.length ? out : Arrays.copyOf( out, n );
+	}
+
+	private static byte[] unshuffle( final byte[] data, final int elementSize )
+	{
+		if ( elementSize <= 1 )
+			return data;
+		final byte[] out = new byte[ data.length ];
+		final int n = data.length / elementSize;
+		for ( int b = 0; b < elementSize; ++b )
+			for ( int i = 0; i < n; ++i )
+				out[ i * elementSize + b ] = data[ b * n + i ];
+		final int shuffled = n * elementSize;
+		System.arraycopy( data, shuffled, out, shuffled, data.length - shuffled );
+		return out;
+	}
+
+	/**
+	 * Undo the HDF5 scale-offset filter for integer data. The compressed
+	 * buffer starts with a 21 byte header (4 bytes minbits, 1 byte size of
+	 * minval, up to 8 bytes minval, little-endian), followed by the values
+	 * minus minval, packed with minbits bits each, most significant bit first.
+	 * If a fill value is defined, the all-ones value of minbits bits
+	 * represents the fill value.
+	 * <p>
+	 * For {@code minbits == 0} no values are stored. Like the HDF5 library, we
+	 * return minval for every element, or the fill value if one is defined
+	 * (the all-ones value of 0 bits is 0).
+	 * </p>
+	 */
+	static byte[] scaleOffsetDecompress( final byte[] data, final int[] cd, final ByteOrder byteOrder ) throws IOException
+	{
+		final int numElements = cd[ 2 ];
+		final int size = cd[ 4 ];
+		final boolean fillDefined = cd[ 7 ] == 1;
+		final long sizeMask = size == 4 ? 0xffffffffL : ( 1L << ( 8 * size ) ) - 1;
+		final long fill = cd.length > 8 ? cd[ 8 ] & sizeMask : 0;
+
+		final int headerSize = 21;
+		if ( data.length < headerSize )
+			throw new IOException( "truncated scale-offset chunk" );
+		final int minbits = ( data[ 0 ] & 0xff ) | ( data[ 1 ] & 0xff ) << 8 | ( data[ 2 ] & 0xff ) << 16 | ( data[ 3 ] & 0xff ) << 24;
+		final int minvalSize = Math.min( 8, data[ 4 ] & 0xff );
+		long minval = 0;
+		for ( int i = 0; i < minvalSize; ++i )
+			minval |= ( long ) ( data[ 5 + i ] & 0xff ) << ( 8 * i );
+
+		final byte[] out = new byte[ numElements * size ];
+		if ( minbits == size * 8 )
+		{
+			// stored with full precision
+			System.arraycopy( data, headerSize, out, 0, Math.min( out.length, data.length - headerSize ) );
+			return out;
+		}
+		if ( minbits < 0 || minbits > size * 8 )
+			throw new IOException( "invalid scale-offset minbits " + minbits );
+
+		final ByteBuffer buf = ByteBuffer.wrap( out ).order( byteOrder );
+		if ( minbits == 0 )
+		{
+			final long value = fillDefined ? fill : minval;
+			for ( int i = 0; i < numElements; ++i )
+				putValue( buf, i, size, value );
+			return out;
+		}
+
+		final long sentinel = ( 1L << minbits ) - 1;
+		long bits = 0;
+		int numBits = 0;
+		int pos = headerSize;
+		for ( int i = 0; i < numElements; ++i )
+		{
+			while ( numBits < minbits )
+			{
+				bits = ( bits << 8 ) | ( pos < data.length ? data[ pos ] & 0xff : 0 );
+				++pos;
+				numBits += 8;
+			}
+			numBits -= minbits;
+			final long v = ( bits >>> numBits ) & sentinel;
+			final long value = ( fillDefined && v == sentinel ) ? fill : v + minval;
+			putValue( buf, i, size, value );
+		}
+		return out;
+	}
+
+	private static void putValue( final ByteBuffer buf, final int i, final int size, final long value )
+	{
+		switch ( size )
+		{
+		case 1:
+			buf.put( i, ( byte ) value );
+			break;
+		case 2:
+			buf.putShort( 2 * i, ( short ) value );
+			break;
+		default:
+			buf.putInt( 4 * i, ( int ) value );
+			break;
+		}
+	}
+}
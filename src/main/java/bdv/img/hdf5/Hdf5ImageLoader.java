@@ -29,6 +29,7 @@
  */
 package bdv.img.hdf5;
 
+import static bdv.img.hdf5.Util.getDataTypePath;
 import static bdv.img.hdf5.Util.getResolutionsPath;
 import static bdv.img.hdf5.Util.getSubdivisionsPath;
 
@@ -37,15 +38,24 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import bdv.AbstractViewerSetupImgLoader;
 import bdv.ViewerImgLoader;
+import bdv.img.cache.CacheArrayLoader;
+import bdv.img.cache.CountingFetchQueues;
+import bdv.img.cache.OffHeapCacheArrayLoader;
 import bdv.img.cache.VolatileGlobalCellCache;
+import bdv.img.hdf5.DataTypes.DataType;
 import bdv.util.ConstantRandomAccessible;
 import bdv.util.MipmapTransforms;
+import bdv.util.Prefs;
 import ch.systemsx.cisd.hdf5.HDF5Factory;
 import ch.systemsx.cisd.hdf5.IHDF5Reader;
 import mpicbg.spim.data.generic.sequence.AbstractSequenceDescription;
@@ -66,6 +76,7 @@ import net.imglib2.FinalInterval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
 import net.imglib2.cache.queue.BlockingFetchQueues;
 import net.imglib2.cache.queue.FetcherThreads;
 import net.imglib2.cache.volatiles.CacheHints;
@@ -73,18 +84,17 @@ import net.imglib2.cache.volatiles.LoadingStrategy;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.img.array.ArrayImgs;
-import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.img.cell.CellImg;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
-import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
-import net.imglib2.type.volatiles.VolatileUnsignedShortType;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
@@ -102,6 +112,11 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 	 */
 	protected IHDF5Reader existingHdf5Reader;
 
+	/**
+	 * Reads image data. If {@link Prefs#hdf5DirectChunkRead()} is set, this is
+	 * a {@link DirectChunkHDF5Access} which decodes HDF5 chunks without the
+	 * HDF5 library where possible.
+	 */
 	protected IHDF5Access hdf5Access;
 
 	protected VolatileGlobalCellCache cache;
@@ -110,10 +125,18 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 
 	protected Hdf5VolatileShortArrayLoader shortLoader;
 
+	/**
+	 * The {@link CacheArrayLoader} used for cached images of
+	 * {@link DataTypes#UnsignedShort} setups. This is either
+	 * {@link #shortLoader} or, if {@link Prefs#offHeapCellCache()} is set, an
+	 * {@link OffHeapCacheArrayLoader} wrapping {@link #shortLoader}.
+	 */
+	protected CacheArrayLoader< ? > cellLoader;
+
 	/**
 	 * Maps setup id to {@link SetupImgLoader}.
 	 */
-	protected final HashMap< Integer, SetupImgLoader > setupImgLoaders;
+	protected final HashMap< Integer, SetupImgLoader< ?, ? > > setupImgLoaders;
 
 	/**
 	 * List of partitions if the dataset is split across several files
@@ -122,13 +145,45 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 
 	protected int maxNumLevels;
 
+	/**
+	 * How many {@link FetcherThreads} to start for loading data. If this is
+	 * larger than 1, a pool of HDF5 file handles is opened, one for each
+	 * thread.
+	 */
+	protected final int numFetcherThreads;
+
 	/**
 	 * Maps {@link ViewLevelId} (timepoint, setup, level) to
 	 * {@link DimsAndExistence}. Every entry is either null or the existence and
 	 * dimensions of one image. This is filled in when an image is loaded for
-	 * the first time.
+	 * the first time, and in the background for all other images of the same
+	 * timepoint.
+	 */
+	protected final ConcurrentHashMap< ViewLevelId, DimsAndExistence > cachedDimsAndExistence;
+
+	/**
+	 * Timepoints for which {@link DimsAndExistence} of all setups and levels
+	 * have been requested from {@link #dimsAndExistenceResolver}.
+	 */
+	private final Set< Integer > requestedTimepoints = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Resolves {@link DimsAndExistence} of whole timepoints in the background.
+	 */
+	private ExecutorService dimsAndExistenceResolver;
+
+	/**
+	 * {@link DimsAndExistenceIndex} of {@link #hdf5File}, or {@code null} if
+	 * there is no up-to-date index.
+	 */
+	private DimsAndExistenceIndex dimsAndExistenceIndex;
+
+	/**
+	 * Maps {@link Partition} to the {@link DimsAndExistenceIndex} of the
+	 * partition file. Partitions without an up-to-date index are not
+	 * contained.
 	 */
-	protected final HashMap< ViewLevelId, DimsAndExistence > cachedDimsAndExistence;
+	private final HashMap< Partition, DimsAndExistenceIndex > partitionDimsAndExistenceIndices = new HashMap<>();
 
 	protected final AbstractSequenceDescription< ?, ?, ? > sequenceDescription;
 
@@ -149,15 +204,41 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 
 	public Hdf5ImageLoader( final File hdf5File, final ArrayList< Partition > hdf5Partitions, final AbstractSequenceDescription< ?, ?, ? > sequenceDescription, final boolean doOpen )
 	{
-		this( hdf5File, null, hdf5Partitions, sequenceDescription, doOpen );
+		this( hdf5File, null, hdf5Partitions, sequenceDescription, 1, doOpen );
+	}
+
+	/**
+	 *
+	 * @param hdf5File
+	 * @param hdf5Partitions
+	 * @param sequenceDescription
+	 *            the {@link AbstractSequenceDescription}. When loading images,
+	 *            this may be used to retrieve additional information for a
+	 *            {@link ViewId}, such as setup name, {@link Angle},
+	 *            {@link Channel}, etc.
+	 * @param numFetcherThreads
+	 *            how many threads should be created to load data. Each thread
+	 *            reads through its own HDF5 file handle.
+	 * @param doOpen
+	 *            whether to open the hdf5 file immediately.
+	 */
+	public Hdf5ImageLoader( final File hdf5File, final ArrayList< Partition > hdf5Partitions, final AbstractSequenceDescription< ?, ?, ? > sequenceDescription, final int numFetcherThreads, final boolean doOpen )
+	{
+		this( hdf5File, null, hdf5Partitions, sequenceDescription, numFetcherThreads, doOpen );
 	}
 
 	protected Hdf5ImageLoader( final File hdf5File, final IHDF5Reader existingHdf5Reader, final ArrayList< Partition > hdf5Partitions, final AbstractSequenceDescription< ?, ?, ? > sequenceDescription, final boolean doOpen )
+	{
+		this( hdf5File, existingHdf5Reader, hdf5Partitions, sequenceDescription, 1, doOpen );
+	}
+
+	protected Hdf5ImageLoader( final File hdf5File, final IHDF5Reader existingHdf5Reader, final ArrayList< Partition > hdf5Partitions, final AbstractSequenceDescription< ?, ?, ? > sequenceDescription, final int numFetcherThreads, final boolean doOpen )
 	{
 		this.existingHdf5Reader = existingHdf5Reader;
 		this.hdf5File = hdf5File;
+		this.numFetcherThreads = Math.max( 1, numFetcherThreads );
 		setupImgLoaders = new HashMap<>();
-		cachedDimsAndExistence = new HashMap<>();
+		cachedDimsAndExistence = new ConcurrentHashMap<>();
 		this.sequenceDescription = sequenceDescription;
 		partitions = new ArrayList<>();
 		if ( hdf5Partitions != null )
@@ -180,6 +261,34 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 
 				final IHDF5Reader hdf5Reader = ( existingHdf5Reader != null ) ? existingHdf5Reader : HDF5Factory.openForReading( hdf5File );
 
+				final int lz4FormatVersion = Lz4CellsHDF5Access.getFormatVersion( hdf5Reader );
+				if ( lz4FormatVersion > Lz4CellCodec.FORMAT_VERSION )
+				{
+					if ( existingHdf5Reader == null )
+						hdf5Reader.close();
+					isOpen = false;
+					throw new RuntimeException( "Cannot read " + hdf5File + ": LZ4 compressed datasets of version " + lz4FormatVersion
+							+ " are not supported (supported up to version " + Lz4CellCodec.FORMAT_VERSION + ")." );
+				}
+
+				hdf5Access = createHDF5Access( hdf5Reader );
+				if ( existingHdf5Reader == null && numFetcherThreads > 1 )
+				{
+					final ArrayList< IHDF5Access > accesses = new ArrayList<>();
+					accesses.add( hdf5Access );
+					for ( int i = 1; i < numFetcherThreads; ++i )
+						accesses.add( createHDF5Access( HDF5Factory.openForReading( hdf5File ) ) );
+					hdf5Access = new HDF5AccessPool( accesses );
+				}
+				if ( existingHdf5Reader == null && Prefs.hdf5DirectChunkRead() )
+					hdf5Access = new DirectChunkHDF5Access( hdf5File, partitions, hdf5Access );
+				if ( lz4FormatVersion > 0 )
+					hdf5Access = new Lz4CellsHDF5Access( hdf5Access );
+				shortLoader = new Hdf5VolatileShortArrayLoader( hdf5Access );
+				cellLoader = Prefs.offHeapCellCache()
+						? OffHeapCacheArrayLoader.shorts( shortLoader )
+						: shortLoader;
+
 				maxNumLevels = 0;
 				final List< ? extends BasicViewSetup > setups = sequenceDescription.getViewSetupsOrdered();
 				for ( final BasicViewSetup setup : setups )
@@ -195,30 +304,81 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 					if ( resolutions.length > maxNumLevels )
 						maxNumLevels = resolutions.length;
 
-					setupImgLoaders.put( setupId, new SetupImgLoader( setupId, new MipmapInfo( resolutions, transforms, subdivisions ) ) );
+					final DataType< ?, ?, ? > dataType = readDataType( hdf5Reader, setupId );
+					setupImgLoaders.put( setupId, createSetupImgLoader( setupId, new MipmapInfo( resolutions, transforms, subdivisions ), dataType ) );
 				}
 
 				cachedDimsAndExistence.clear();
-
-				try
-				{
-					hdf5Access = new HDF5AccessHack( hdf5Reader );
-				}
-				catch ( final Exception e )
+				requestedTimepoints.clear();
+				dimsAndExistenceResolver = Executors.newSingleThreadExecutor( r -> {
+					final Thread thread = new Thread( r, "Hdf5ImageLoader DimsAndExistence" );
+					thread.setDaemon( true );
+					return thread;
+				} );
+				dimsAndExistenceIndex = ( hdf5File == null ) ? null : DimsAndExistenceIndex.open( hdf5File );
+				partitionDimsAndExistenceIndices.clear();
+				for ( final Partition partition : partitions )
 				{
-					e.printStackTrace();
-					hdf5Access = new HDF5Access( hdf5Reader );
+					final DimsAndExistenceIndex index = DimsAndExistenceIndex.open( new File( partition.getPath() ) );
+					if ( index != null )
+						partitionDimsAndExistenceIndices.put( partition, index );
 				}
-				shortLoader = new Hdf5VolatileShortArrayLoader( hdf5Access );
 
-
-				final BlockingFetchQueues< Callable< ? > > queue = new BlockingFetchQueues<>( maxNumLevels );
-				fetchers = new FetcherThreads( queue, 1 );
+				final BlockingFetchQueues< Callable< ? > > queue = new CountingFetchQueues<>( maxNumLevels );
+				fetchers = new FetcherThreads( queue, numFetcherThreads );
 				cache = new VolatileGlobalCellCache( queue );
 			}
 		}
 	}
 
+	/**
+	 * Read the {@link DataType} of the given setup. Files that do not specify
+	 * the type contain {@link DataTypes#UnsignedShort} data.
+	 */
+	private static DataType< ?, ?, ? > readDataType( final IHDF5Reader hdf5Reader, final int setupId )
+	{
+		final String path = getDataTypePath( setupId );
+		if ( !hdf5Reader.object().exists( path ) )
+			return DataTypes.UnsignedShort;
+		final String name = hdf5Reader.string().read( path );
+		final DataType< ?, ?, ? > dataType = DataTypes.forName( name );
+		if ( dataType == null )
+			throw new IllegalArgumentException( "setup " + setupId + " has unsupported data type \"" + name + "\"" );
+		return dataType;
+	}
+
+	private < T extends RealType< T > & NativeType< T >, V extends Volatile< T > & NativeType< V > > SetupImgLoader< T, V > createSetupImgLoader( final int setupId, final MipmapInfo mipmapInfo, final DataType< T, V, ? > dataType )
+	{
+		return new SetupImgLoader<>( setupId, mipmapInfo, dataType, createCellLoader( dataType ) );
+	}
+
+	/**
+	 * Create the {@link CacheArrayLoader} for cached images of the given
+	 * {@link DataType}. {@link DataTypes#UnsignedShort} setups share
+	 * {@link #cellLoader}.
+	 */
+	private CacheArrayLoader< ? > createCellLoader( final DataType< ?, ?, ? > dataType )
+	{
+		if ( dataType == DataTypes.UnsignedShort )
+			return cellLoader;
+		return Prefs.offHeapCellCache()
+				? dataType.createOffHeapArrayLoader( hdf5Access )
+				: dataType.createArrayLoader( hdf5Access );
+	}
+
+	private static IHDF5Access createHDF5Access( final IHDF5Reader hdf5Reader )
+	{
+		try
+		{
+			return new HDF5AccessHack( hdf5Reader );
+		}
+		catch ( final Exception e )
+		{
+			e.printStackTrace();
+			return new HDF5Access( hdf5Reader );
+		}
+	}
+
 	/**
 	 * Clear the cache and close the hdf5 file. Images that were obtained from
 	 * this loader before {@link #close()} will stop working. Requesting images
@@ -235,6 +395,8 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 					return;
 				isOpen = false;
 
+				dimsAndExistenceResolver.shutdownNow();
+				awaitTermination( dimsAndExistenceResolver );
 				cache.clearCache();
 				hdf5Access.closeAllDataSets();
 
@@ -245,6 +407,31 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		}
 	}
 
+	/**
+	 * Wait until all tasks of {@code executor} have completed. A task that is
+	 * currently reading from {@link #hdf5Access} cannot be interrupted, so we
+	 * must not close the file before it is done. Interrupts while waiting are
+	 * deferred until the executor has terminated.
+	 */
+	private static void awaitTermination( final ExecutorService executor )
+	{
+		boolean interrupted = false;
+		while ( true )
+		{
+			try
+			{
+				if ( executor.awaitTermination( 1, TimeUnit.SECONDS ) )
+					break;
+			}
+			catch ( final InterruptedException e )
+			{
+				interrupted = true;
+			}
+		}
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+	}
+
 	public void initCachedDimensionsFromHdf5( final boolean background )
 	{
 		open();
@@ -281,6 +468,11 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		return hdf5File;
 	}
 
+	public int getNumFetcherThreads()
+	{
+		return numFetcherThreads;
+	}
+
 	public ArrayList< Partition > getPartitions()
 	{
 		return partitions;
@@ -316,17 +508,85 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		DimsAndExistence dims = cachedDimsAndExistence.get( id );
 		if ( dims == null )
 		{
-			// pause Fetcher threads for 5 ms. There will be more calls to
-			// getImageDimension() because this happens when a timepoint is
-			// loaded, and all setups for the timepoint are loaded then. We
-			// don't want to interleave this with block loading operations.
-			fetchers.pauseFor( 5 );
-			dims = hdf5Access.getDimsAndExistence( id );
-			cachedDimsAndExistence.put( id, dims );
+			dims = getDimsAndExistenceFromIndex( id );
+			if ( dims == null )
+			{
+				// There will be more calls to getDimsAndExistence() because
+				// this happens when a timepoint is loaded, and all setups for
+				// the timepoint are loaded then. Resolve the whole timepoint
+				// in the background, and only this image right away.
+				requestTimepointDimsAndExistence( id.getTimePointId() );
+				dims = hdf5Access.getDimsAndExistence( id );
+			}
+			final DimsAndExistence previous = cachedDimsAndExistence.putIfAbsent( id, dims );
+			if ( previous != null )
+				dims = previous;
 		}
 		return dims;
 	}
 
+	/**
+	 * Resolve {@link DimsAndExistence} of all setups and levels of the given
+	 * timepoint on the {@link #dimsAndExistenceResolver} thread, unless that
+	 * has been requested before.
+	 */
+	private void requestTimepointDimsAndExistence( final int timepointId )
+	{
+		if ( !requestedTimepoints.add( timepointId ) )
+			return;
+		final List< ? extends BasicViewSetup > setups = sequenceDescription.getViewSetupsOrdered();
+		final ExecutorService resolver = dimsAndExistenceResolver;
+		try
+		{
+			resolver.submit( () -> {
+				for ( final BasicViewSetup setup : setups )
+				{
+					final int setupId = setup.getId();
+					final int numLevels = setupImgLoaders.get( setupId ).numMipmapLevels();
+					for ( int level = 0; level < numLevels; ++level )
+					{
+						if ( Thread.currentThread().isInterrupted() )
+							return;
+						final ViewLevelId id = new ViewLevelId( timepointId, setupId, level );
+						if ( !cachedDimsAndExistence.containsKey( id ) )
+							cachedDimsAndExistence.putIfAbsent( id, hdf5Access.getDimsAndExistence( id ) );
+					}
+				}
+			} );
+		}
+		catch ( final RejectedExecutionException e )
+		{
+			// loader was closed
+			requestedTimepoints.remove( timepointId );
+		}
+	}
+
+	/**
+	 * Look up {@link DimsAndExistence} in the {@link DimsAndExistenceIndex} of
+	 * the file containing the given image.
+	 *
+	 * @return the {@link DimsAndExistence}, or {@code null} if the file has no
+	 *         up-to-date index.
+	 */
+	private DimsAndExistence getDimsAndExistenceFromIndex( final ViewLevelId id )
+	{
+		final ViewId viewId = new ViewId( id.getTimePointId(), id.getViewSetupId() );
+		for ( final Partition partition : partitions )
+		{
+			if ( partition.contains( viewId ) )
+			{
+				final DimsAndExistenceIndex index = partitionDimsAndExistenceIndices.get( partition );
+				if ( index == null )
+					return null;
+				return index.get( new ViewLevelId(
+						partition.getTimepointIdSequenceToPartition().get( id.getTimePointId() ),
+						partition.getSetupIdSequenceToPartition().get( id.getViewSetupId() ),
+						id.getLevel() ) );
+			}
+		}
+		return ( dimsAndExistenceIndex == null ) ? null : dimsAndExistenceIndex.get( id );
+	}
+
 	public void printMipmapInfo()
 	{
 		open();
@@ -383,16 +643,23 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 	}
 
 	@Override
-	public SetupImgLoader getSetupImgLoader( final int setupId )
+	public SetupImgLoader< ?, ? > getSetupImgLoader( final int setupId )
 	{
 		open();
 		return setupImgLoaders.get( setupId );
 	}
 
-	public class SetupImgLoader extends AbstractViewerSetupImgLoader< UnsignedShortType, VolatileUnsignedShortType > implements MultiResolutionSetupImgLoader< UnsignedShortType >
+	public class SetupImgLoader< T extends RealType< T > & NativeType< T >, V extends Volatile< T > & NativeType< V > > extends AbstractViewerSetupImgLoader< T, V > implements MultiResolutionSetupImgLoader< T >
 	{
 		private final int setupId;
 
+		private final DataType< T, V, ? > dataType;
+
+		/**
+		 * The {@link CacheArrayLoader} used for cached images of this setup.
+		 */
+		private final CacheArrayLoader< ? > setupCellLoader;
+
 		/**
 		 * Description of available mipmap levels for the setup. Contains for
 		 * each mipmap level, the subsampling factors and subdivision block
@@ -400,14 +667,31 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		 */
 		private final MipmapInfo mipmapInfo;
 
-		protected SetupImgLoader( final int setupId, final MipmapInfo mipmapInfo  )
+		protected SetupImgLoader( final int setupId, final MipmapInfo mipmapInfo, final DataType< T, V, ? > dataType, final CacheArrayLoader< ? > setupCellLoader )
 		{
-			super( new UnsignedShortType(), new VolatileUnsignedShortType() );
+			super( dataType.getType(), dataType.getVolatileType() );
 			this.setupId = setupId;
 			this.mipmapInfo = mipmapInfo;
+			this.dataType = dataType;
+			this.setupCellLoader = setupCellLoader;
 		}
 
-		private RandomAccessibleInterval< UnsignedShortType > loadImageCompletely( final int timepointId, final int level )
+		/**
+		 * Read a block into {@code dataBlock}, which is a {@code short[]},
+		 * {@code byte[]}, or {@code float[]} depending on the
+		 * {@link #getDataType() data type}.
+		 */
+		private void readBlock( final int timepointId, final int level, final int[] dimensions, final long[] min, final Object dataBlock ) throws InterruptedException
+		{
+			if ( dataBlock instanceof short[] )
+				hdf5Access.readShortMDArrayBlockWithOffset( timepointId, setupId, level, dimensions, min, ( short[] ) dataBlock );
+			else if ( dataBlock instanceof byte[] )
+				hdf5Access.readByteMDArrayBlockWithOffset( timepointId, setupId, level, dimensions, min, ( byte[] ) dataBlock );
+			else
+				hdf5Access.readFloatMDArrayBlockWithOffset( timepointId, setupId, level, dimensions, min, ( float[] ) dataBlock );
+		}
+
+		private RandomAccessibleInterval< T > loadImageCompletely( final int timepointId, final int level )
 		{
 			open();
 
@@ -420,7 +704,7 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 				return getMissingDataImage( id, type );
 			}
 
-			Img< UnsignedShortType > img = null;
+			Img< T > img = null;
 			final DimsAndExistence dimsAndExistence = getDimsAndExistence( new ViewLevelId( timepointId, setupId, level ) );
 			final long[] dimsLong = dimsAndExistence.exists() ? dimsAndExistence.getDimensions() : null;
 			final int n = dimsLong.length;
@@ -431,33 +715,33 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 				// use ArrayImg
 				for ( int d = 0; d < dimsInt.length; ++d )
 					dimsInt[ d ] = ( int ) dimsLong[ d ];
-				short[] data = null;
+				final ArrayImg< T, ? > arrayImg = new ArrayImgFactory< T >().create( dimsLong, type );
+				final Object data = ( ( ArrayDataAccess< ? > ) arrayImg.update( null ) ).getCurrentStorageArray();
 				try
 				{
-					data = hdf5Access.readShortMDArrayBlockWithOffset( timepointId, setupId, level, dimsInt, min );
+					readBlock( timepointId, level, dimsInt, min, data );
 				}
 				catch ( final InterruptedException e )
 				{}
-				img = ArrayImgs.unsignedShorts( data, dimsLong );
+				img = arrayImg;
 			}
 			else
 			{
 				final int[] cellDimensions = computeCellDimensions(
 						dimsLong,
 						mipmapInfo.getSubdivisions()[ level ] );
-				final CellImgFactory< UnsignedShortType > factory = new CellImgFactory<>( cellDimensions );
-				@SuppressWarnings( "unchecked" )
-				final CellImg< UnsignedShortType, ShortArray > cellImg = ( CellImg< UnsignedShortType, ShortArray > ) factory.create( dimsLong, type );
-				final Cursor< Cell< ShortArray > > cursor = cellImg.getCells().cursor();
+				final CellImgFactory< T > factory = new CellImgFactory<>( cellDimensions );
+				final CellImg< T, ? > cellImg = factory.create( dimsLong, type );
+				final Cursor< ? extends Cell< ? > > cursor = cellImg.getCells().cursor();
 				while ( cursor.hasNext() )
 				{
-					final Cell< ShortArray > cell = cursor.next();
-					final short[] dataBlock = cell.getData().getCurrentStorageArray();
+					final Cell< ? > cell = cursor.next();
+					final Object dataBlock = ( ( ArrayDataAccess< ? > ) cell.getData() ).getCurrentStorageArray();
 					cell.dimensions( dimsInt );
 					cell.min( min );
 					try
 					{
-						hdf5Access.readShortMDArrayBlockWithOffset( timepointId, setupId, level, dimsInt, min, dataBlock );
+						readBlock( timepointId, level, dimsInt, min, dataBlock );
 					}
 					catch ( final InterruptedException e )
 					{}
@@ -499,7 +783,7 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		}
 
 		@Override
-		public RandomAccessibleInterval< UnsignedShortType > getImage( final int timepointId, final int level, final ImgLoaderHint... hints )
+		public RandomAccessibleInterval< T > getImage( final int timepointId, final int level, final ImgLoaderHint... hints )
 		{
 			if ( Arrays.asList( hints ).contains( ImgLoaderHints.LOAD_COMPLETELY ) )
 				return loadImageCompletely( timepointId, level );
@@ -508,7 +792,7 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		}
 
 		@Override
-		public RandomAccessibleInterval< VolatileUnsignedShortType > getVolatileImage( final int timepointId, final int level, final ImgLoaderHint... hints )
+		public RandomAccessibleInterval< V > getVolatileImage( final int timepointId, final int level, final ImgLoaderHint... hints )
 		{
 			return prepareCachedImage( timepointId, level, LoadingStrategy.BUDGETED, volatileType );
 		}
@@ -516,9 +800,9 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		/**
 		 * (Almost) create a {@link CellImg} backed by the cache.
 		 * The created image needs a {@link NativeImg#setLinkedType(net.imglib2.type.Type) linked type} before it can be used.
-		 * The type should be either {@link UnsignedShortType} and {@link VolatileUnsignedShortType}.
+		 * The type should be either {@link #getImageType()} or {@link #getVolatileImageType()}.
 		 */
-		protected < T extends NativeType< T > > RandomAccessibleInterval< T > prepareCachedImage( final int timepointId, final int level, final LoadingStrategy loadingStrategy, final T type )
+		protected < S extends NativeType< S > > RandomAccessibleInterval< S > prepareCachedImage( final int timepointId, final int level, final LoadingStrategy loadingStrategy, final S type )
 		{
 			open();
 
@@ -538,7 +822,7 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 			final int priority = mipmapInfo.getMaxLevel() - level;
 			final CacheHints cacheHints = new CacheHints( loadingStrategy, priority, false );
 
-			return cache.createImg( grid, timepointId, setupId, level, cacheHints, shortLoader, type );
+			return cache.createImg( grid, timepointId, setupId, level, cacheHints, setupCellLoader, type );
 		}
 
 		/**
@@ -562,27 +846,27 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 		@Override
 		public RandomAccessibleInterval< FloatType > getFloatImage( final int timepointId, final int level, final boolean normalize, final ImgLoaderHint... hints )
 		{
-			final RandomAccessibleInterval< UnsignedShortType > ushortImg = getImage( timepointId, level, hints );
+			final RandomAccessibleInterval< T > img = getImage( timepointId, level, hints );
 
-			// copy unsigned short img to float img
+			// copy img to float img
 
 			// create float img
 			final FloatType f = new FloatType();
 			final ImgFactory< FloatType > imgFactory;
-			if ( Intervals.numElements( ushortImg ) <= Integer.MAX_VALUE )
+			if ( Intervals.numElements( img ) <= Integer.MAX_VALUE )
 			{
 				imgFactory = new ArrayImgFactory<>();
 			}
 			else
 			{
-				final long[] dimsLong = new long[ ushortImg.numDimensions() ];
-				ushortImg.dimensions( dimsLong );
+				final long[] dimsLong = new long[ img.numDimensions() ];
+				img.dimensions( dimsLong );
 				final int[] cellDimensions = computeCellDimensions(
 						dimsLong,
 						mipmapInfo.getSubdivisions()[ level ] );
 				imgFactory = new CellImgFactory<>( cellDimensions );
 			}
-			final Img< FloatType > floatImg = imgFactory.create( ushortImg, f );
+			final Img< FloatType > floatImg = imgFactory.create( img, f );
 
 			// set up executor service
 			final int numProcessors = Runtime.getRuntime().availableProcessors();
@@ -602,14 +886,14 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 				// the last thread may has to run longer if the number of pixels cannot be divided by the number of threads
 				final long loopSize = ( portionID == numPortions - 1 ) ? threadChunkSize + threadChunkMod : threadChunkSize;
 
-				if ( Views.iterable( ushortImg ).iterationOrder().equals( floatImg.iterationOrder() ) )
+				if ( Views.iterable( img ).iterationOrder().equals( floatImg.iterationOrder() ) )
 				{
 					tasks.add( new Callable< Void >()
 					{
 						@Override
 						public Void call() throws Exception
 						{
-							final Cursor< UnsignedShortType > in = Views.iterable( ushortImg ).cursor();
+							final Cursor< T > in = Views.iterable( img ).cursor();
 							final Cursor< FloatType > out = floatImg.cursor();
 
 							in.jumpFwd( startPosition );
@@ -629,14 +913,14 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 						@Override
 						public Void call() throws Exception
 						{
-							final Cursor< UnsignedShortType > in = Views.iterable( ushortImg ).localizingCursor();
+							final Cursor< T > in = Views.iterable( img ).localizingCursor();
 							final RandomAccess< FloatType > out = floatImg.randomAccess();
 
 							in.jumpFwd( startPosition );
 
 							for ( long j = 0; j < loopSize; ++j )
 							{
-								final UnsignedShortType vin = in.next();
+								final T vin = in.next();
 								out.setPosition( in );
 								out.get().set( vin.getRealFloat() );
 							}
@@ -670,6 +954,11 @@ public class Hdf5ImageLoader implements ViewerImgLoader, MultiResolutionImgLoade
 			return mipmapInfo;
 		}
 
+		public DataType< T, V, ? > getDataType()
+		{
+			return dataType;
+		}
+
 		@Override
 		public double[][] getMipmapResolutions()
 		{
@@ -29,11 +29,22 @@
  */
 package bdv.img.hdf5;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
 
 public class Hdf5VolatileShortArrayLoader implements CacheArrayLoader< VolatileShortArray >
 {
+	/**
+	 * Maximum number of cells to load in one
+	 * {@link #loadArrays(int, int, int, int[][], long[][])} call.
+	 */
+	private static final int MAX_BATCH_SIZE = 16;
+
 	private final IHDF5Access hdf5Access;
 
 	public Hdf5VolatileShortArrayLoader( final IHDF5Access hdf5Access )
@@ -44,10 +55,82 @@ public class Hdf5VolatileShortArrayLoader implements CacheArrayLoader< VolatileS
 	@Override
 	public VolatileShortArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
 	{
-		final short[] array = hdf5Access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		final short[] array = ArrayPool.getInstance().shorts( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		hdf5Access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, array );
 		return new VolatileShortArray( array, true );
 	}
 
+	@Override
+	public int getMaxBatchSize()
+	{
+		return hdf5Access.mergesAdjacentReads() ? MAX_BATCH_SIZE : 1;
+	}
+
+	/**
+	 * Load several cells. If the {@link IHDF5Access}
+	 * {@link IHDF5Access#mergesAdjacentReads() merges adjacent reads}, runs of
+	 * cells that are adjacent in X (and have the same Y and Z extent) are read
+	 * as one block with a single {@link IHDF5Access} call, and then split into
+	 * cells. Otherwise, the cells are read one by one.
+	 */
+	@Override
+	public List< VolatileShortArray > loadArrays( final int timepoint, final int setup, final int level, final int[][] dimensions, final long[][] min ) throws InterruptedException
+	{
+		if ( !hdf5Access.mergesAdjacentReads() )
+			return CacheArrayLoader.super.loadArrays( timepoint, setup, level, dimensions, min );
+
+		final int n = dimensions.length;
+		final Integer[] order = new Integer[ n ];
+		for ( int i = 0; i < n; ++i )
+			order[ i ] = i;
+		Arrays.sort( order, Comparator.< Integer >comparingLong( i -> min[ i ][ 2 ] )
+				.thenComparingLong( i -> min[ i ][ 1 ] )
+				.thenComparingLong( i -> min[ i ][ 0 ] ) );
+
+		final VolatileShortArray[] arrays = new VolatileShortArray[ n ];
+		final ArrayPool pool = ArrayPool.getInstance();
+		for ( int start = 0, end; start < n; start = end )
+		{
+			final int first = order[ start ];
+			int width = dimensions[ first ][ 0 ];
+			for ( end = start + 1; end < n; ++end )
+			{
+				final int i = order[ end ];
+				if ( min[ i ][ 0 ] != min[ first ][ 0 ] + width
+						|| min[ i ][ 1 ] != min[ first ][ 1 ]
+						|| min[ i ][ 2 ] != min[ first ][ 2 ]
+						|| dimensions[ i ][ 1 ] != dimensions[ first ][ 1 ]
+						|| dimensions[ i ][ 2 ] != dimensions[ first ][ 2 ] )
+					break;
+				width += dimensions[ i ][ 0 ];
+			}
+
+			if ( end - start == 1 )
+			{
+				arrays[ first ] = loadArray( timepoint, setup, level, dimensions[ first ], min[ first ] );
+				continue;
+			}
+
+			final int h = dimensions[ first ][ 1 ];
+			final int d = dimensions[ first ][ 2 ];
+			final short[] block = pool.shorts( width * h * d );
+			hdf5Access.readShortMDArrayBlockWithOffset( timepoint, setup, level, new int[] { width, h, d }, min[ first ], block );
+			for ( int j = start, x = 0; j < end; ++j )
+			{
+				final int i = order[ j ];
+				final int w = dimensions[ i ][ 0 ];
+				final short[] array = pool.shorts( w * h * d );
+				for ( int z = 0; z < d; ++z )
+					for ( int y = 0; y < h; ++y )
+						System.arraycopy( block, ( z * h + y ) * width + x, array, ( z * h + y ) * w, w );
+				arrays[ i ] = new VolatileShortArray( array, true );
+				x += w;
+			}
+			pool.recycle( block );
+		}
+		return Arrays.asList( arrays );
+	}
+
 	@Override
 	public int getBytesPerElement()
 	{
@@ -41,6 +41,35 @@ interface IHDF5Access
 
 	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException;
 
+	public byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException;
+
+	public float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException;
+
+	/**
+	 * Read the 1D {@code long} dataset at {@code path}.
+	 *
+	 * @return the data, or {@code null} if the dataset does not exist.
+	 */
+	public long[] readLongArray( final String path );
+
+	/**
+	 * Read {@code length} bytes starting at {@code offset} from the 1D
+	 * {@code byte} dataset at {@code path}.
+	 */
+	public byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException;
+
+	/**
+	 * Whether reading a block that spans several adjacent cells is cheaper
+	 * than reading the cells one by one. This is the case if the block is read
+	 * with a single HDF5 call. Access implementations that read and decode
+	 * each cell separately anyway should return {@code false}, because
+	 * splitting the block into cells afterwards only adds copies.
+	 */
+	public default boolean mergesAdjacentReads()
+	{
+		return false;
+	}
+
 	public void closeAllDataSets();
 
 	public void close();
@@ -0,0 +1,369 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes cells of 8-bit, 16-bit, or float data with byte-shuffle and LZ4
+ * block compression. This is much faster to decode than deflate, at a
+ * somewhat lower compression ratio.
+ * <p>
+ * The shuffle stores the lowest bytes of all elements, followed by the next
+ * bytes of all elements, etc. Neighbouring microscopy pixels mostly differ in
+ * the low byte only, so the high byte planes become long runs that LZ4
+ * compresses well. The encoded cell starts with one byte that indicates
+ * whether the shuffled data is LZ4 compressed ({@code 1}) or stored as is
+ * ({@code 0}, used if compression would not make it smaller).
+ * </p>
+ * <p>
+ * The LZ4 block format is implemented here directly, see
+ * https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md
+ * </p>
+ */
+public class Lz4CellCodec
+{
+	/**
+	 * Version of the layout of LZ4 compressed datasets in HDF5 files (see
+	 * {@code Lz4CellsWriter}). Files containing such datasets have an integer
+	 * attribute {@link #FORMAT_VERSION_ATTRIBUTE} on the root group, and on
+	 * the (empty) {@code cells} dataset of each LZ4 compressed image. Files
+	 * with a higher version than this cannot be read.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	public static final String FORMAT_VERSION_ATTRIBUTE = "lz4-cells-version";
+
+	private static final int STORED = 0;
+
+	private static final int LZ4 = 1;
+
+	private static final int MIN_MATCH = 4;
+
+	/**
+	 * The last match must start at least 12 bytes before the end of the
+	 * block.
+	 */
+	private static final int MF_LIMIT = 12;
+
+	/**
+	 * The last 5 bytes of the block are always literals.
+	 */
+	private static final int LAST_LITERALS = 5;
+
+	private static final int HASH_LOG = 16;
+
+	private static final int MAX_OFFSET = 65535;
+
+	/**
+	 * Encode the first {@code numElements} elements of {@code data}.
+	 */
+	public static byte[] encodeBytes( final byte[] data, final int numElements )
+	{
+		return encode( Arrays.copyOf( data, numElements ) );
+	}
+
+	/**
+	 * Encode the first {@code numElements} elements of {@code data}.
+	 */
+	public static byte[] encodeShorts( final short[] data, final int numElements )
+	{
+		final byte[] shuffled = new byte[ 2 * numElements ];
+		for ( int i = 0; i < numElements; ++i )
+		{
+			shuffled[ i ] = ( byte ) data[ i ];
+			shuffled[ numElements + i ] = ( byte ) ( data[ i ] >> 8 );
+		}
+		return encode( shuffled );
+	}
+
+	/**
+	 * Encode the first {@code numElements} elements of {@code data}.
+	 */
+	public static byte[] encodeFloats( final float[] data, final int numElements )
+	{
+		final byte[] shuffled = new byte[ 4 * numElements ];
+		for ( int i = 0; i < numElements; ++i )
+		{
+			final int bits = Float.floatToRawIntBits( data[ i ] );
+			shuffled[ i ] = ( byte ) bits;
+			shuffled[ numElements + i ] = ( byte ) ( bits >> 8 );
+			shuffled[ 2 * numElements + i ] = ( byte ) ( bits >> 16 );
+			shuffled[ 3 * numElements + i ] = ( byte ) ( bits >> 24 );
+		}
+		return encode( shuffled );
+	}
+
+	/**
+	 * Decode a cell encoded by {@link #encodeBytes(byte[], int)} into the
+	 * first {@code numElements} elements of {@code data}.
+	 */
+	public static void decodeBytes( final byte[] encoded, final byte[] data, final int numElements ) throws IOException
+	{
+		System.arraycopy( decode( encoded, numElements ), 0, data, 0, numElements );
+	}
+
+	/**
+	 * Decode a cell encoded by {@link #encodeShorts(short[], int)} into the
+	 * first {@code numElements} elements of {@code data}.
+	 */
+	public static void decodeShorts( final byte[] encoded, final short[] data, final int numElements ) throws IOException
+	{
+		final byte[] shuffled = decode( encoded, 2 * numElements );
+		for ( int i = 0; i < numElements; ++i )
+			data[ i ] = ( short ) ( ( shuffled[ i ] & 0xff ) | ( shuffled[ numElements + i ] << 8 ) );
+	}
+
+	/**
+	 * Decode a cell encoded by {@link #encodeFloats(float[], int)} into the
+	 * first {@code numElements} elements of {@code data}.
+	 */
+	public static void decodeFloats( final byte[] encoded, final float[] data, final int numElements ) throws IOException
+	{
+		final byte[] shuffled = decode( encoded, 4 * numElements );
+		for ( int i = 0; i < numElements; ++i )
+			data[ i ] = Float.intBitsToFloat(
+					( shuffled[ i ] & 0xff )
+					| ( shuffled[ numElements + i ] & 0xff ) << 8
+					| ( shuffled[ 2 * numElements + i ] & 0xff ) << 16
+					| shuffled[ 3 * numElements + i ] << 24 );
+	}
+
+	/**
+	 * Compress shuffled data, or store it as is, if compression does not make
+	 * it smaller.
+	 */
+	private static byte[] encode( final byte[] shuffled )
+	{
+		final byte[] compressed = new byte[ 1 + maxCompressedLength( shuffled.length ) ];
+		final int length = compress( shuffled, shuffled.length, compressed, 1 );
+		if ( length < shuffled.length )
+		{
+			compressed[ 0 ] = LZ4;
+			return Arrays.copyOf( compressed, 1 + length );
+		}
+		else
+		{
+			final byte[] stored = new byte[ 1 + shuffled.length ];
+			stored[ 0 ] = STORED;
+			System.arraycopy( shuffled, 0, stored, 1, shuffled.length );
+			return stored;
+		}
+	}
+
+	/**
+	 * Get the shuffled data, which has {@code length} bytes, from an encoded
+	 * cell.
+	 */
+	private static byte[] decode( final byte[] encoded, final int length ) throws IOException
+	{
+		if ( encoded.length < 1 )
+			throw new IOException( "empty cell" );
+		final byte[] shuffled;
+		switch ( encoded[ 0 ] )
+		{
+		case STORED:
+			shuffled = Arrays.copyOfRange( encoded, 1, encoded.length );
+			break;
+		case LZ4:
+			shuffled = new byte[ length ];
+			decompress( encoded, 1, encoded.length - 1, shuffled, length );
+			break;
+		default:
+			throw new IOException( "unknown cell encoding " + encoded[ 0 ] );
+		}
+		if ( shuffled.length != length )
+			throw new IOException( "cell has wrong size" );
+		return shuffled;
+	}
+
+	/**
+	 * Upper bound for the size of LZ4 compressed data of the given length.
+	 */
+	public static int maxCompressedLength( final int length )
+	{
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * LZ4 compress {@code src[0, srcLength)} into {@code dst}, starting at
+	 * {@code dstOffset}. {@code dst} must have room for
+	 * {@link #maxCompressedLength(int)} bytes.
+	 *
+	 * @return the number of bytes written to {@code dst}.
+	 */
+	public static int compress( final byte[] src, final int srcLength, final byte[] dst, final int dstOffset )
+	{
+		int op = dstOffset;
+		int anchor = 0;
+		if ( srcLength > MF_LIMIT )
+		{
+			// positions (+1) of recently seen 4-byte sequences, 0 is empty
+			final int[] table = new int[ 1 << HASH_LOG ];
+			final int matchStartLimit = srcLength - MF_LIMIT;
+			final int matchEndLimit = srcLength - LAST_LITERALS;
+			int ip = 0;
+			while ( ip < matchStartLimit )
+			{
+				final int sequence = readInt( src, ip );
+				final int h = ( sequence * -1640531535 ) >>> ( 32 - HASH_LOG );
+				final int ref = table[ h ] - 1;
+				table[ h ] = ip + 1;
+				if ( ref < 0 || ip - ref > MAX_OFFSET || readInt( src, ref ) != sequence )
+				{
+					++ip;
+					continue;
+				}
+
+				int matchLength = MIN_MATCH;
+				while ( ip + matchLength < matchEndLimit && src[ ref + matchLength ] == src[ ip + matchLength ] )
+					++matchLength;
+
+				final int tokenPos = op++;
+				final int literalLength = ip - anchor;
+				int token = Math.min( literalLength, 15 ) << 4;
+				op = writeLength( dst, op, literalLength );
+				System.arraycopy( src, anchor, dst, op, literalLength );
+				op += literalLength;
+
+				final int offset = ip - ref;
+				dst[ op++ ] = ( byte ) offset;
+				dst[ op++ ] = ( byte ) ( offset >>> 8 );
+
+				final int ml = matchLength - MIN_MATCH;
+				token |= Math.min( ml, 15 );
+				op = writeLength( dst, op, ml );
+				dst[ tokenPos ] = ( byte ) token;
+
+				ip += matchLength;
+				anchor = ip;
+			}
+		}
+
+		// last literals
+		final int literalLength = srcLength - anchor;
+		dst[ op++ ] = ( byte ) ( Math.min( literalLength, 15 ) << 4 );
+		op = writeLength( dst, op, literalLength );
+		System.arraycopy( src, anchor, dst, op, literalLength );
+		op += literalLength;
+		return op - dstOffset;
+	}
+
+	/**
+	 * Decompress LZ4 data {@code src[srcOffset, srcOffset + srcLength)} into
+	 * {@code dst}, which must have exactly {@code dstLength} bytes after
+	 * decompression.
+	 */
+	public static void decompress( final byte[] src, final int srcOffset, final int srcLength, final byte[] dst, final int dstLength ) throws IOException
+	{
+		final int srcEnd = srcOffset + srcLength;
+		int ip = srcOffset;
+		int op = 0;
+		try
+		{
+			while ( true )
+			{
+				final int token = src[ ip++ ] & 0xff;
+
+				int literalLength = token >>> 4;
+				if ( literalLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[ ip++ ] & 0xff;
+						literalLength += b;
+					}
+					while ( b == 255 );
+				}
+				System.arraycopy( src, ip, dst, op, literalLength );
+				ip += literalLength;
+				op += literalLength;
+				if ( ip >= srcEnd )
+					break;
+
+				final int offset = ( src[ ip ] & 0xff ) | ( src[ ip + 1 ] & 0xff ) << 8;
+				ip += 2;
+				int matchLength = token & 0x0f;
+				if ( matchLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[ ip++ ] & 0xff;
+						matchLength += b;
+					}
+					while ( b == 255 );
+				}
+				matchLength += MIN_MATCH;
+
+				final int ref = op - offset;
+				if ( offset == 0 || ref < 0 )
+					throw new IOException( "invalid LZ4 match offset" );
+				if ( offset >= matchLength )
+					System.arraycopy( dst, ref, dst, op, matchLength );
+				else
+					for ( int i = 0; i < matchLength; ++i )
+						dst[ op + i ] = dst[ ref + i ];
+				op += matchLength;
+			}
+		}
+		catch ( final IndexOutOfBoundsException e )
+		{
+			throw new IOException( "corrupt LZ4 data", e );
+		}
+		if ( op != dstLength )
+			throw new IOException( "LZ4 data decompressed to " + op + " bytes instead of " + dstLength );
+	}
+
+	/**
+	 * Write the extra bytes of a literal or match length (if length &ge; 15).
+	 */
+	private static int writeLength( final byte[] dst, int op, final int length )
+	{
+		if ( length >= 15 )
+		{
+			int l = length - 15;
+			while ( l >= 255 )
+			{
+				dst[ op++ ] = ( byte ) 255;
+				l -= 255;
+			}
+			dst[ op++ ] = ( byte ) l;
+		}
+		return op;
+	}
+
+	private static int readInt( final byte[] b, final int i )
+	{
+		return ( b[ i ] & 0xff ) | ( b[ i + 1 ] & 0xff ) << 8 | ( b[ i + 2 ] & 0xff ) << 16 | ( b[ i + 3 ] & 0xff ) << 24;
+	}
+}
@@ -0,0 +1,350 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.systemsx.cisd.hdf5.IHDF5Reader;
+
+/**
+ * Reads datasets that were written with LZ4 compressed cells (see
+ * {@link Lz4CellCodec}). For such datasets, the (empty) {@code cells} dataset
+ * only serves to describe the dimensions. The encoded cells are concatenated
+ * in a 1D byte dataset {@code cells-lz4}. The 1D long dataset
+ * {@code cells-lz4-index} contains the image dimensions (X, Y, Z), the cell
+ * size (X, Y, Z), and then (offset, length) into {@code cells-lz4} for each
+ * cell, with X being the fastest-moving cell index. A length of 0 means that
+ * the cell was not written.
+ * <p>
+ * The index and the encoded bytes are read through the {@code delegate}
+ * {@link IHDF5Access} (and therefore with its locking, or in parallel if it
+ * is a {@link HDF5AccessPool}). The (more expensive) decoding happens outside
+ * of any lock. All other datasets are read through the {@code delegate}.
+ * </p>
+ * <p>
+ * This should only be used for files that contain LZ4 compressed datasets,
+ * see {@link #getFormatVersion(IHDF5Reader)}.
+ * </p>
+ */
+class Lz4CellsHDF5Access implements IHDF5Access
+{
+	private final IHDF5Access delegate;
+
+	private final ConcurrentHashMap< ViewLevelId, Lz4Cells > datasets = new ConcurrentHashMap<>();
+
+	/**
+	 * Datasets that are not LZ4 compressed.
+	 */
+	private final Set< ViewLevelId > notLz4 = ConcurrentHashMap.newKeySet();
+
+	public Lz4CellsHDF5Access( final IHDF5Access delegate )
+	{
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Get the version of the LZ4 compressed datasets layout used in the file
+	 * (see {@link Lz4CellCodec#FORMAT_VERSION}).
+	 *
+	 * @return the version, or 0 if the file contains no LZ4 compressed
+	 *         datasets.
+	 */
+	public static int getFormatVersion( final IHDF5Reader hdf5Reader )
+	{
+		return hdf5Reader.object().hasAttribute( "/", Lz4CellCodec.FORMAT_VERSION_ATTRIBUTE )
+				? hdf5Reader.int32().getAttr( "/", Lz4CellCodec.FORMAT_VERSION_ATTRIBUTE )
+				: 0;
+	}
+
+	@Override
+	public DimsAndExistence getDimsAndExistence( final ViewLevelId id )
+	{
+		return delegate.getDimsAndExistence( id );
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final short[] dataBlock = new short[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		return dataBlock;
+	}
+
+	@Override
+	public short[] readShortMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final short[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		final Lz4Cells cells = getLz4Cells( new ViewLevelId( timepoint, setup, level ) );
+		if ( cells == null )
+			return delegate.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		try
+		{
+			cells.readBlock( dimensions, min, dataBlock );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+		return dataBlock;
+	}
+
+	@Override
+	public byte[] readByteMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final byte[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		final Lz4Cells cells = getLz4Cells( new ViewLevelId( timepoint, setup, level ) );
+		if ( cells == null )
+			return delegate.readByteMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		try
+		{
+			cells.readBlock( dimensions, min, dataBlock );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+		return dataBlock;
+	}
+
+	@Override
+	public float[] readFloatMDArrayBlockWithOffset( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		if ( Thread.interrupted() )
+			throw new InterruptedException();
+		final Lz4Cells cells = getLz4Cells( new ViewLevelId( timepoint, setup, level ) );
+		if ( cells == null )
+			return delegate.readFloatMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, dataBlock );
+		try
+		{
+			cells.readBlock( dimensions, min, dataBlock );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+		return dataBlock;
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+	{
+		final float[] dataBlock = new float[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		readShortMDArrayBlockWithOffsetAsFloat( timepoint, setup, level, dimensions, min, dataBlock );
+		return dataBlock;
+	}
+
+	@Override
+	public float[] readShortMDArrayBlockWithOffsetAsFloat( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min, final float[] dataBlock ) throws InterruptedException
+	{
+		if ( getLz4Cells( new ViewLevelId( timepoint, setup, level ) ) == null )
+			return delegate.readShortMDArrayBlockWithOffsetAsFloat( timepoint, setup, level, dimensions, min, dataBlock );
+		final short[] shorts = readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		for ( int i = 0; i < shorts.length; ++i )
+			dataBlock[ i ] = shorts[ i ] & 0xffff;
+		return dataBlock;
+	}
+
+	@Override
+	public long[] readLongArray( final String path )
+	{
+		return delegate.readLongArray( path );
+	}
+
+	@Override
+	public byte[] readByteArrayBlockWithOffset( final String path, final int length, final long offset ) throws InterruptedException
+	{
+		return delegate.readByteArrayBlockWithOffset( path, length, offset );
+	}
+
+	@Override
+	public void closeAllDataSets()
+	{
+		delegate.closeAllDataSets();
+	}
+
+	@Override
+	public void close()
+	{
+		datasets.clear();
+		notLz4.clear();
+		delegate.close();
+	}
+
+	/**
+	 * Get the cell index of the given dataset.
+	 *
+	 * @return the cell index, or {@code null} if the dataset is not LZ4
+	 *         compressed.
+	 */
+	private Lz4Cells getLz4Cells( final ViewLevelId id )
+	{
+		Lz4Cells cells = datasets.get( id );
+		if ( cells == null && !notLz4.contains( id ) )
+		{
+			final String cellsPath = Util.getCellsPath( id );
+			final long[] index = delegate.readLongArray( Util.getLz4CellsIndexPath( cellsPath ) );
+			if ( index == null || index.length < 6 )
+			{
+				notLz4.add( id );
+				return null;
+			}
+			cells = new Lz4Cells( Util.getLz4CellsPath( cellsPath ), index );
+			final Lz4Cells previous = datasets.putIfAbsent( id, cells );
+			if ( previous != null )
+				cells = previous;
+		}
+		return cells;
+	}
+
+	private class Lz4Cells
+	{
+		private final String dataPath;
+
+		private final long[] index;
+
+		private final long[] imgDims;
+
+		private final int[] cellDims;
+
+		private final int[] numCells;
+
+		Lz4Cells( final String dataPath, final long[] index )
+		{
+			this.dataPath = dataPath;
+			this.index = index;
+			imgDims = new long[] { index[ 0 ], index[ 1 ], index[ 2 ] };
+			cellDims = new int[] { ( int ) index[ 3 ], ( int ) index[ 4 ], ( int ) index[ 5 ] };
+			numCells = new int[ 3 ];
+			for ( int d = 0; d < 3; ++d )
+				numCells[ d ] = ( int ) ( ( imgDims[ d ] + cellDims[ d ] - 1 ) / cellDims[ d ] );
+		}
+
+		/**
+		 * Decode the cell at grid position {@code cellPos} into {@code cell},
+		 * which is a {@code byte[]}, {@code short[]}, or {@code float[]}. Cells
+		 * that were not written are filled with 0.
+		 */
+		private void readCell( final int[] cellPos, final int numElements, final Object cell ) throws IOException, InterruptedException
+		{
+			final int i = 6 + 2 * ( ( cellPos[ 2 ] * numCells[ 1 ] + cellPos[ 1 ] ) * numCells[ 0 ] + cellPos[ 0 ] );
+			final long offset = index[ i ];
+			final int length = ( int ) index[ i + 1 ];
+			if ( length == 0 )
+			{
+				fill( cell, numElements );
+				return;
+			}
+			final byte[] encoded = delegate.readByteArrayBlockWithOffset( dataPath, length, offset );
+			if ( cell instanceof short[] )
+				Lz4CellCodec.decodeShorts( encoded, ( short[] ) cell, numElements );
+			else if ( cell instanceof byte[] )
+				Lz4CellCodec.decodeBytes( encoded, ( byte[] ) cell, numElements );
+			else
+				Lz4CellCodec.decodeFloats( encoded, ( float[] ) cell, numElements );
+		}
+
+		/**
+		 * Read the block of the given {@code dimensions} at {@code min} (in X,
+		 * Y, Z order) into {@code dataBlock}. The block does not need to be
+		 * aligned with the cells. {@code dataBlock} is a {@code byte[]},
+		 * {@code short[]}, or {@code float[]}.
+		 */
+		void readBlock( final int[] dimensions, final long[] min, final Object dataBlock ) throws IOException, InterruptedException
+		{
+			final int[] cellPos = new int[ 3 ];
+			final long[] cellMin = new long[ 3 ];
+			final int[] cellSize = new int[ 3 ];
+			final int[] cellMinPos = new int[ 3 ];
+			final int[] cellMaxPos = new int[ 3 ];
+			boolean aligned = true;
+			for ( int d = 0; d < 3; ++d )
+			{
+				final long max = Math.min( min[ d ] + dimensions[ d ], imgDims[ d ] ) - 1;
+				cellMinPos[ d ] = ( int ) ( min[ d ] / cellDims[ d ] );
+				cellMaxPos[ d ] = ( int ) ( max / cellDims[ d ] );
+				cellMin[ d ] = ( long ) cellMinPos[ d ] * cellDims[ d ];
+				cellSize[ d ] = ( int ) Math.min( cellDims[ d ], imgDims[ d ] - cellMin[ d ] );
+				aligned &= cellMin[ d ] == min[ d ] && cellSize[ d ] == dimensions[ d ];
+			}
+
+			if ( aligned )
+			{
+				// the common case: the block is exactly one cell
+				readCell( cellMinPos, dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ], dataBlock );
+				return;
+			}
+
+			fill( dataBlock, Array.getLength( dataBlock ) );
+			final Object cell = Array.newInstance( dataBlock.getClass().getComponentType(), cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] );
+			for ( cellPos[ 2 ] = cellMinPos[ 2 ]; cellPos[ 2 ] <= cellMaxPos[ 2 ]; ++cellPos[ 2 ] )
+				for ( cellPos[ 1 ] = cellMinPos[ 1 ]; cellPos[ 1 ] <= cellMaxPos[ 1 ]; ++cellPos[ 1 ] )
+					for ( cellPos[ 0 ] = cellMinPos[ 0 ]; cellPos[ 0 ] <= cellMaxPos[ 0 ]; ++cellPos[ 0 ] )
+					{
+						for ( int d = 0; d < 3; ++d )
+						{
+							cellMin[ d ] = ( long ) cellPos[ d ] * cellDims[ d ];
+							cellSize[ d ] = ( int ) Math.min( cellDims[ d ], imgDims[ d ] - cellMin[ d ] );
+						}
+						readCell( cellPos, cellSize[ 0 ] * cellSize[ 1 ] * cellSize[ 2 ], cell );
+
+						// copy the intersection of cell and block
+						final long x0 = Math.max( min[ 0 ], cellMin[ 0 ] );
+						final int w = ( int ) ( Math.min( min[ 0 ] + dimensions[ 0 ], cellMin[ 0 ] + cellSize[ 0 ] ) - x0 );
+						final long y0 = Math.max( min[ 1 ], cellMin[ 1 ] );
+						final long y1 = Math.min( min[ 1 ] + dimensions[ 1 ], cellMin[ 1 ] + cellSize[ 1 ] );
+						final long z0 = Math.max( min[ 2 ], cellMin[ 2 ] );
+						final long z1 = Math.min( min[ 2 ] + dimensions[ 2 ], cellMin[ 2 ] + cellSize[ 2 ] );
+						for ( long z = z0; z < z1; ++z )
+							for ( long y = y0; y < y1; ++y )
+							{
+								final int src = ( int ) ( ( ( z - cellMin[ 2 ] ) * cellSize[ 1 ] + ( y - cellMin[ 1 ] ) ) * cellSize[ 0 ] + ( x0 - cellMin[ 0 ] ) );
+								final int dst = ( int ) ( ( ( z - min[ 2 ] ) * dimensions[ 1 ] + ( y - min[ 1 ] ) ) * dimensions[ 0 ] + ( x0 - min[ 0 ] ) );
+								System.arraycopy( cell, src, dataBlock, dst, w );
+							}
+					}
+		}
+
+		private void fill( final Object array, final int numElements )
+		{
+			if ( array instanceof short[] )
+				Arrays.fill( ( short[] ) array, 0, numElements, ( short ) 0 );
+			else if ( array instanceof byte[] )
+				Arrays.fill( ( byte[] ) array, 0, numElements, ( byte ) 0 );
+			else
+				Arrays.fill( ( float[] ) array, 0, numElements, 0 );
+		}
+	}
+}
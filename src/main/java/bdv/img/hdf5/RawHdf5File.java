@@ -0,0 +1,670 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Minimal reader for the HDF5 file format, sufficient to locate the raw
+ * chunks of chunked datasets without going through the HDF5 library.
+ * <p>
+ * Supported are superblocks of version 0 to 3, object headers of version 1
+ * and 2, groups with symbol tables or compact link storage, and chunked
+ * datasets indexed by a version 1 B-tree (the layout written by HDF5 1.8).
+ * For anything else (dense link storage, shared messages, version 4 layouts,
+ * soft or external links, ...) {@link #openChunkedDataset(String)} returns
+ * {@code null} or an {@link UnsupportedFormatException} is thrown, and the
+ * caller should fall back to the HDF5 library. Any other {@link IOException}
+ * indicates that reading the file failed.
+ * </p>
+ * <p>
+ * All reads are positional reads on a {@link FileChannel}, so this can be
+ * used from several threads concurrently without locking.
+ * </p>
+ */
+class RawHdf5File implements Closeable
+{
+	static final long UNDEFINED_ADDRESS = -1;
+
+	/**
+	 * Thrown if a file uses HDF5 features that are not supported by
+	 * {@link RawHdf5File}.
+	 */
+	static class UnsupportedFormatException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedFormatException( final String message )
+		{
+			super( message );
+		}
+	}
+
+	private static final byte[] SIGNATURE = { ( byte ) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n' };
+
+	private static final int MSG_DATASPACE = 0x0001;
+
+	private static final int MSG_LINK_INFO = 0x0002;
+
+	private static final int MSG_DATATYPE = 0x0003;
+
+	private static final int MSG_LINK = 0x0006;
+
+	private static final int MSG_LAYOUT = 0x0008;
+
+	private static final int MSG_FILTER_PIPELINE = 0x000B;
+
+	private static final int MSG_CONTINUATION = 0x0010;
+
+	private static final int MSG_SYMBOL_TABLE = 0x0011;
+
+	private static final int MSG_FLAG_SHARED = 0x02;
+
+	private final File file;
+
+	private volatile FileChannel channel;
+
+	private volatile boolean closed;
+
+	private final long baseAddress;
+
+	private final int offsetSize;
+
+	private final int lengthSize;
+
+	private final long rootObjectHeaderAddress;
+
+	/**
+	 * Maps paths of groups and datasets to object header addresses. Guarded
+	 * by {@code this}.
+	 */
+	private final HashMap< String, Long > objectHeaderAddresses = new HashMap<>();
+
+	public RawHdf5File( final File file ) throws IOException
+	{
+		this.file = file;
+		channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+
+		// the superblock is at 0, 512, 1024, 2048, ...
+		final long fileSize = channel.size();
+		long superblock = -1;
+		for ( long pos = 0; pos + SIGNATURE.length <= fileSize; pos = ( pos == 0 ) ? 512 : pos * 2 )
+		{
+			final ByteBuffer sig = readAbsolute( pos, SIGNATURE.length );
+			boolean matches = sig.remaining() == SIGNATURE.length;
+			for ( int i = 0; matches && i < SIGNATURE.length; ++i )
+				matches = sig.get( i ) == SIGNATURE[ i ];
+			if ( matches )
+			{
+				superblock = pos;
+				break;
+			}
+		}
+		if ( superblock < 0 )
+			throw new IOException( "not a HDF5 file: " + file );
+
+		final ByteBuffer sb = readAbsolute( superblock, 128 );
+		final int version = sb.get( 8 ) & 0xff;
+		if ( version == 0 || version == 1 )
+		{
+			offsetSize = sb.get( 13 ) & 0xff;
+			lengthSize = sb.get( 14 ) & 0xff;
+			sb.position( version == 0 ? 24 : 28 );
+			baseAddress = readOffset( sb );
+			// skip free-space index, end of file, and driver info addresses
+			sb.position( sb.position() + 3 * offsetSize );
+			// root group symbol table entry: link name offset, object header address
+			sb.position( sb.position() + offsetSize );
+			rootObjectHeaderAddress = readOffset( sb );
+		}
+		else if ( version == 2 || version == 3 )
+		{
+			offsetSize = sb.get( 9 ) & 0xff;
+			lengthSize = sb.get( 10 ) & 0xff;
+			sb.position( 12 );
+			baseAddress = readOffset( sb );
+			// skip superblock extension and end of file addresses
+			sb.position( sb.position() + 2 * offsetSize );
+			rootObjectHeaderAddress = readOffset( sb );
+		}
+		else
+			throw new UnsupportedFormatException( "unsupported HDF5 superblock version " + version );
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Find the chunked dataset at the given path and build its chunk index.
+	 *
+	 * @param path
+	 *            path of the dataset in the file.
+	 * @return the dataset, or {@code null} if the dataset does not exist or
+	 *         cannot be read without the HDF5 library.
+	 * @throws UnsupportedFormatException
+	 *             if the path cannot be resolved without the HDF5 library.
+	 */
+	public Hdf5ChunkedDataset openChunkedDataset( final String path ) throws IOException
+	{
+		final long address = getObjectHeaderAddress( path );
+		if ( address == UNDEFINED_ADDRESS )
+			return null;
+
+		long[] dimensions = null;
+		int elementSize = 0;
+		ByteOrder byteOrder = null;
+		int layoutDimensionality = 0;
+		int[] layoutDimensions = null;
+		long btreeAddress = UNDEFINED_ADDRESS;
+		final ArrayList< Hdf5ChunkedDataset.Filter > filters = new ArrayList<>();
+
+		for ( final Message message : readMessages( address ) )
+		{
+			if ( ( message.flags & MSG_FLAG_SHARED ) != 0 )
+				return null;
+
+			final ByteBuffer data = message.data;
+			switch ( message.type )
+			{
+			case MSG_DATASPACE:
+			{
+				final int version = data.get() & 0xff;
+				final int rank = data.get() & 0xff;
+				data.position( version == 1 ? 8 : 4 );
+				dimensions = new long[ rank ];
+				for ( int d = 0; d < rank; ++d )
+					dimensions[ d ] = readLength( data );
+				break;
+			}
+			case MSG_DATATYPE:
+			{
+				final int classAndVersion = data.get() & 0xff;
+				final int bitField = data.get() & 0xff;
+				data.position( 4 );
+				if ( ( classAndVersion & 0x0f ) != 0 ) // not fixed-point
+					return null;
+				byteOrder = ( bitField & 0x01 ) == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+				elementSize = data.getInt();
+				break;
+			}
+			case MSG_LAYOUT:
+			{
+				final int version = data.get() & 0xff;
+				if ( version == 3 )
+				{
+					if ( ( data.get() & 0xff ) != 2 ) // not chunked
+						return null;
+					layoutDimensionality = data.get() & 0xff;
+					btreeAddress = readOffset( data );
+				}
+				else if ( version == 1 || version == 2 )
+				{
+					layoutDimensionality = data.get() & 0xff;
+					if ( ( data.get() & 0xff ) != 2 ) // not chunked
+						return null;
+					data.position( 8 );
+					btreeAddress = readOffset( data );
+				}
+				else
+					return null;
+				layoutDimensions = new int[ layoutDimensionality ];
+				for ( int d = 0; d < layoutDimensionality; ++d )
+					layoutDimensions[ d ] = data.getInt();
+				break;
+			}
+			case MSG_FILTER_PIPELINE:
+			{
+				final int version = data.get() & 0xff;
+				final int numFilters = data.get() & 0xff;
+				if ( version == 1 )
+					data.position( 8 );
+				for ( int i = 0; i < numFilters; ++i )
+				{
+					final int id = data.getShort() & 0xffff;
+					final int nameLength = ( version == 1 || id >= 256 ) ? data.getShort() & 0xffff : 0;
+					data.getShort(); // flags
+					final int numClientValues = data.getShort() & 0xffff;
+					data.position( data.position() + nameLength );
+					final int[] clientData = new int[ numClientValues ];
+					for ( int j = 0; j < numClientValues; ++j )
+						clientData[ j ] = data.getInt();
+					if ( version == 1 && numClientValues % 2 != 0 )
+						data.getInt();
+					filters.add( new Hdf5ChunkedDataset.Filter( id, clientData ) );
+				}
+				break;
+			}
+			}
+		}
+
+		if ( dimensions == null || byteOrder == null || layoutDimensions == null || btreeAddress == UNDEFINED_ADDRESS )
+			return null;
+		final int rank = dimensions.length;
+		if ( layoutDimensionality != rank + 1 )
+			return null;
+		for ( final Hdf5ChunkedDataset.Filter filter : filters )
+			if ( !filter.isSupported() )
+				return null;
+
+		final Hdf5ChunkedDataset dataset = new Hdf5ChunkedDataset(
+				this, dimensions, Arrays.copyOf( layoutDimensions, rank ), elementSize, byteOrder,
+				filters.toArray( new Hdf5ChunkedDataset.Filter[ 0 ] ) );
+		readChunkBTree( btreeAddress, layoutDimensionality, dataset );
+		return dataset;
+	}
+
+	/**
+	 * Read {@code length} bytes at the given (relative) {@code address}.
+	 */
+	public byte[] readBytes( final long address, final int length ) throws IOException
+	{
+		final byte[] bytes = new byte[ length ];
+		final ByteBuffer buf = ByteBuffer.wrap( bytes );
+		final long pos = baseAddress + address;
+		while ( buf.hasRemaining() )
+		{
+			if ( channel().read( buf, pos + buf.position() ) < 0 )
+				throw new IOException( "unexpected end of file " + file );
+		}
+		return bytes;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		channel.close();
+	}
+
+	/**
+	 * Get the channel, re-opening it if it was closed because a reading
+	 * thread was interrupted.
+	 */
+	private FileChannel channel() throws IOException
+	{
+		FileChannel c = channel;
+		if ( !c.isOpen() )
+		{
+			synchronized ( this )
+			{
+				if ( closed )
+					throw new IOException( "file was closed: " + file );
+				if ( !channel.isOpen() )
+					channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+				c = channel;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Read up to {@code length} bytes at absolute file position {@code pos}.
+	 * The returned buffer is little-endian and contains fewer bytes if the end
+	 * of the file is reached.
+	 */
+	private ByteBuffer readAbsolute( final long pos, final int length ) throws IOException
+	{
+		final ByteBuffer buf = ByteBuffer.allocate( length );
+		while ( buf.hasRemaining() )
+		{
+			if ( channel().read( buf, pos + buf.position() ) < 0 )
+				break;
+		}
+		buf.flip();
+		return buf.order( ByteOrder.LITTLE_ENDIAN );
+	}
+
+	private ByteBuffer read( final long address, final int length ) throws IOException
+	{
+		final ByteBuffer buf = readAbsolute( baseAddress + address, length );
+		if ( buf.remaining() != length )
+			throw new IOException( "unexpected end of file " + file );
+		return buf;
+	}
+
+	private long readOffset( final ByteBuffer buf )
+	{
+		return readUnsigned( buf, offsetSize, true );
+	}
+
+	private long readLength( final ByteBuffer buf )
+	{
+		return readUnsigned( buf, lengthSize, false );
+	}
+
+	/**
+	 * Read a little-endian unsigned integer of {@code size} bytes. If
+	 * {@code isAddress}, an all-ones value is returned as
+	 * {@link #UNDEFINED_ADDRESS}.
+	 */
+	private static long readUnsigned( final ByteBuffer buf, final int size, final boolean isAddress )
+	{
+		long value = 0;
+		boolean allOnes = true;
+		for ( int i = 0; i < size; ++i )
+		{
+			final int b = buf.get() & 0xff;
+			allOnes &= b == 0xff;
+			value |= ( long ) b << ( 8 * i );
+		}
+		return ( isAddress && allOnes ) ? UNDEFINED_ADDRESS : value;
+	}
+
+	private static class Message
+	{
+		final int type;
+
+		final int flags;
+
+		final ByteBuffer data;
+
+		Message( final int type, final int flags, final ByteBuffer data )
+		{
+			this.type = type;
+			this.flags = flags;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Read all header messages of the object at {@code address}, following
+	 * continuation messages.
+	 */
+	private List< Message > readMessages( final long address ) throws IOException
+	{
+		final ArrayList< Message > messages = new ArrayList<>();
+		final ByteBuffer prefix = read( address, 16 );
+		final boolean isVersion2 = prefix.get( 0 ) == 'O' && prefix.get( 1 ) == 'H' && prefix.get( 2 ) == 'D' && prefix.get( 3 ) == 'R';
+
+		// blocks of messages, as { address, length } pairs
+		final ArrayDeque< long[] > blocks = new ArrayDeque<>();
+		final boolean trackCreationOrder;
+		if ( isVersion2 )
+		{
+			final ByteBuffer header = readAbsolute( baseAddress + address, 34 );
+			final int flags = header.get( 5 ) & 0xff;
+			trackCreationOrder = ( flags & 0x04 ) != 0;
+			int pos = 6;
+			if ( ( flags & 0x20 ) != 0 )
+				pos += 16; // times
+			if ( ( flags & 0x10 ) != 0 )
+				pos += 4; // attribute phase change
+			header.position( pos );
+			final int sizeFieldLength = 1 << ( flags & 0x03 );
+			final long chunkSize = readUnsigned( header, sizeFieldLength, false );
+			blocks.add( new long[] { address + pos + sizeFieldLength, chunkSize } );
+		}
+		else
+		{
+			if ( prefix.get( 0 ) != 1 )
+				throw new UnsupportedFormatException( "unsupported object header version " + prefix.get( 0 ) );
+			trackCreationOrder = false;
+			final long headerSize = prefix.getInt( 8 ) & 0xffffffffL;
+			blocks.add( new long[] { address + 16, headerSize } );
+		}
+
+		boolean firstBlock = true;
+		while ( !blocks.isEmpty() )
+		{
+			final long[] block = blocks.poll();
+			final ByteBuffer buf = read( block[ 0 ], ( int ) block[ 1 ] );
+			if ( isVersion2 )
+			{
+				if ( !firstBlock )
+					buf.position( 4 ); // "OCHK" signature
+				buf.limit( buf.limit() - ( firstBlock ? 0 : 4 ) ); // checksum
+			}
+			firstBlock = false;
+
+			final int headerLength = isVersion2 ? ( trackCreationOrder ? 6 : 4 ) : 8;
+			while ( buf.remaining() >= headerLength )
+			{
+				final int type;
+				final int size;
+				final int flags;
+				if ( isVersion2 )
+				{
+					type = buf.get() & 0xff;
+					size = buf.getShort() & 0xffff;
+					flags = buf.get() & 0xff;
+					if ( trackCreationOrder )
+						buf.getShort();
+				}
+				else
+				{
+					type = buf.getShort() & 0xffff;
+					size = buf.getShort() & 0xffff;
+					flags = buf.get() & 0xff;
+					buf.position( buf.position() + 3 );
+				}
+				if ( size > buf.remaining() )
+					break;
+				final ByteBuffer data = buf.slice().order( ByteOrder.LITTLE_ENDIAN );
+				data.limit( size );
+				buf.position( buf.position() + size );
+
+				if ( type == MSG_CONTINUATION )
+				{
+					final long continuationAddress = readOffset( data );
+					final long continuationLength = readLength( data );
+					blocks.add( new long[] { continuationAddress, continuationLength } );
+				}
+				else
+					messages.add( new Message( type, flags, data ) );
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Get the object header address of the group or dataset at
+	 * {@code path}, or {@link #UNDEFINED_ADDRESS} if it doesn't exist.
+	 */
+	private synchronized long getObjectHeaderAddress( final String path ) throws IOException
+	{
+		final Long cached = objectHeaderAddresses.get( path );
+		if ( cached != null )
+			return cached;
+
+		final int slash = path.lastIndexOf( '/' );
+		final long parent = ( slash < 0 ) ? rootObjectHeaderAddress : getObjectHeaderAddress( path.substring( 0, slash ) );
+		final long address = ( parent == UNDEFINED_ADDRESS ) ? UNDEFINED_ADDRESS : lookupLink( parent, path.substring( slash + 1 ) );
+		objectHeaderAddresses.put( path, address );
+		return address;
+	}
+
+	/**
+	 * Find the hard link {@code name} in the group at {@code groupAddress}.
+	 */
+	private long lookupLink( final long groupAddress, final String name ) throws IOException
+	{
+		for ( final Message message : readMessages( groupAddress ) )
+		{
+			final ByteBuffer data = message.data;
+			switch ( message.type )
+			{
+			case MSG_SYMBOL_TABLE:
+			{
+				final long btreeAddress = readOffset( data );
+				final long heapAddress = readOffset( data );
+				return lookupSymbolTable( btreeAddress, heapAddress, name );
+			}
+			case MSG_LINK_INFO:
+			{
+				data.get(); // version
+				final int flags = data.get() & 0xff;
+				if ( ( flags & 0x01 ) != 0 )
+					data.getLong(); // maximum creation index
+				if ( readOffset( data ) != UNDEFINED_ADDRESS )
+					throw new UnsupportedFormatException( "dense link storage is not supported" );
+				break;
+			}
+			case MSG_LINK:
+			{
+				data.get(); // version
+				final int flags = data.get() & 0xff;
+				final int linkType = ( flags & 0x08 ) != 0 ? data.get() & 0xff : 0;
+				if ( ( flags & 0x04 ) != 0 )
+					data.getLong(); // creation order
+				if ( ( flags & 0x10 ) != 0 )
+					data.get(); // character set
+				final int nameLength = ( int ) readUnsigned( data, 1 << ( flags & 0x03 ), false );
+				final byte[] nameBytes = new byte[ nameLength ];
+				data.get( nameBytes );
+				if ( name.equals( new String( nameBytes, StandardCharsets.UTF_8 ) ) )
+					return linkType == 0 ? readOffset( data ) : UNDEFINED_ADDRESS;
+				break;
+			}
+			}
+		}
+		return UNDEFINED_ADDRESS;
+	}
+
+	/**
+	 * Find {@code name} in an old-style group, which stores its links in a
+	 * version 1 B-tree of symbol table nodes, with names in a local heap.
+	 */
+	private long lookupSymbolTable( final long btreeAddress, final long heapAddress, final String name ) throws IOException
+	{
+		final ByteBuffer heapHeader = read( heapAddress, 8 + 2 * lengthSize + offsetSize );
+		heapHeader.position( 8 );
+		final long heapSize = readLength( heapHeader );
+		readLength( heapHeader ); // free list offset
+		final long heapDataAddress = readOffset( heapHeader );
+		final ByteBuffer heap = read( heapDataAddress, ( int ) heapSize );
+
+		final int nodeHeaderSize = 8 + 2 * offsetSize;
+		long nodeAddress = btreeAddress;
+		while ( true )
+		{
+			final ByteBuffer header = read( nodeAddress, nodeHeaderSize );
+			final int level = header.get( 5 ) & 0xff;
+			final int numEntries = header.getShort( 6 ) & 0xffff;
+			final ByteBuffer body = read( nodeAddress + nodeHeaderSize, ( numEntries + 1 ) * lengthSize + numEntries * offsetSize );
+
+			// child i contains names in (key i, key i+1]
+			long child = UNDEFINED_ADDRESS;
+			readLength( body ); // key 0
+			for ( int i = 0; i < numEntries; ++i )
+			{
+				final long childAddress = readOffset( body );
+				final String key = heapString( heap, readLength( body ) );
+				if ( name.compareTo( key ) <= 0 )
+				{
+					child = childAddress;
+					break;
+				}
+			}
+			if ( child == UNDEFINED_ADDRESS )
+				return UNDEFINED_ADDRESS;
+
+			if ( level > 0 )
+			{
+				nodeAddress = child;
+				continue;
+			}
+
+			// symbol table node
+			final ByteBuffer snod = read( child, 8 );
+			final int numSymbols = snod.getShort( 6 ) & 0xffff;
+			final int entrySize = 2 * offsetSize + 24;
+			final ByteBuffer entries = read( child + 8, numSymbols * entrySize );
+			for ( int i = 0; i < numSymbols; ++i )
+			{
+				entries.position( i * entrySize );
+				final long nameOffset = readOffset( entries );
+				final long objectHeaderAddress = readOffset( entries );
+				if ( name.equals( heapString( heap, nameOffset ) ) )
+					return objectHeaderAddress;
+			}
+			return UNDEFINED_ADDRESS;
+		}
+	}
+
+	private static String heapString( final ByteBuffer heap, final long offset )
+	{
+		final int start = ( int ) offset;
+		int end = start;
+		while ( end < heap.limit() && heap.get( end ) != 0 )
+			++end;
+		final byte[] bytes = new byte[ end - start ];
+		for ( int i = 0; i < bytes.length; ++i )
+			bytes[ i ] = heap.get( start + i );
+		return new String( bytes, StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Visit all leaves of the version 1 B-tree at {@code address} which
+	 * indexes the chunks of a dataset, and add them to {@code dataset}.
+	 */
+	private void readChunkBTree( final long address, final int dimensionality, final Hdf5ChunkedDataset dataset ) throws IOException
+	{
+		final int nodeHeaderSize = 8 + 2 * offsetSize;
+		final ByteBuffer header = read( address, nodeHeaderSize );
+		if ( header.get( 0 ) != 'T' || header.get( 1 ) != 'R' || header.get( 2 ) != 'E' || header.get( 3 ) != 'E' || header.get( 4 ) != 1 )
+			throw new IOException( "expected raw data chunk B-tree node at " + address );
+		final int level = header.get( 5 ) & 0xff;
+		final int numEntries = header.getShort( 6 ) & 0xffff;
+
+		final int keySize = 8 + 8 * dimensionality;
+		final ByteBuffer body = read( address + nodeHeaderSize, ( numEntries + 1 ) * keySize + numEntries * offsetSize );
+		final long[] offsets = new long[ dimensionality - 1 ];
+		for ( int i = 0; i < numEntries; ++i )
+		{
+			final int size = body.getInt();
+			final int filterMask = body.getInt();
+			for ( int d = 0; d < dimensionality; ++d )
+			{
+				final long offset = body.getLong();
+				if ( d < offsets.length )
+					offsets[ d ] = offset;
+			}
+			final long childAddress = readOffset( body );
+			if ( level > 0 )
+				readChunkBTree( childAddress, dimensionality, dataset );
+			else
+				dataset.addChunk( offsets, childAddress, size, filterMask );
+		}
+	}
+}
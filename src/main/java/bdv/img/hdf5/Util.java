@@ -29,6 +29,9 @@
  */
 package bdv.img.hdf5;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import mpicbg.spim.data.sequence.ViewId;
 
 public class Util
@@ -37,10 +40,14 @@ public class Util
 
 	final static private String cellsFormatString = "%s/cells";
 
+	final static private Pattern cellsPathPattern = Pattern.compile( "t(\\d+)/s(\\d+)/(\\d+)/cells" );
+
 	final static private String resolutionsFormatString = "s%02d/resolutions";
 
 	final static private String subdivisionsFormatString = "s%02d/subdivisions";
 
+	final static private String dataTypeFormatString = "s%02d/datatype";
+
 	public static String getGroupPath( final int timepointId, final int setupId, final int level )
 	{
 		return String.format( groupFormatString, timepointId, setupId, level );
@@ -71,6 +78,41 @@ public class Util
 		return String.format( cellsFormatString, getGroupPath( viewLevelId ) );
 	}
 
+	/**
+	 * Inverse of {@link #getCellsPath(ViewLevelId)}.
+	 *
+	 * @return the {@link ViewLevelId} for the given path, or {@code null} if
+	 *         {@code path} is not a cells path.
+	 */
+	public static ViewLevelId getViewLevelIdFromCellsPath( final String path )
+	{
+		final Matcher matcher = cellsPathPattern.matcher( path );
+		if ( !matcher.matches() )
+			return null;
+		return new ViewLevelId(
+				Integer.parseInt( matcher.group( 1 ) ),
+				Integer.parseInt( matcher.group( 2 ) ),
+				Integer.parseInt( matcher.group( 3 ) ) );
+	}
+
+	/**
+	 * Get the path of the 1D byte dataset containing the LZ4 compressed cells
+	 * for the given cells path (see {@link Lz4CellCodec}).
+	 */
+	public static String getLz4CellsPath( final String cellsPath )
+	{
+		return cellsPath + "-lz4";
+	}
+
+	/**
+	 * Get the path of the index into the LZ4 compressed cells for the given
+	 * cells path (see {@link Lz4CellCodec}).
+	 */
+	public static String getLz4CellsIndexPath( final String cellsPath )
+	{
+		return cellsPath + "-lz4-index";
+	}
+
 	public static String getResolutionsPath( final int setupId )
 	{
 		return String.format( resolutionsFormatString, setupId );
@@ -81,6 +123,16 @@ public class Util
 		return String.format( subdivisionsFormatString, setupId );
 	}
 
+	/**
+	 * Get the path of the string dataset that contains the
+	 * {@link DataTypes.DataType#getName() name} of the pixel type of the given
+	 * setup.
+	 */
+	public static String getDataTypePath( final int setupId )
+	{
+		return String.format( dataTypeFormatString, setupId );
+	}
+
 	/**
 	 * Reorder long array representing column-major coordinate (imglib2) to
 	 * row-major (hdf5). Permuted in is stored in out and out is returned.
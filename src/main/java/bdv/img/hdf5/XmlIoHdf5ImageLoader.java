@@ -58,6 +58,8 @@ public class XmlIoHdf5ImageLoader implements XmlIoBasicImgLoader< Hdf5ImageLoade
 		elem.addContent( XmlHelpers.pathElement( "hdf5", imgLoader.getHdf5File(), basePath ) );
 		for ( final Partition partition : imgLoader.getPartitions() )
 			elem.addContent( partitionToXml( partition, basePath ) );
+		if ( imgLoader.getNumFetcherThreads() != 1 )
+			elem.addContent( XmlHelpers.intElement( "numFetcherThreads", imgLoader.getNumFetcherThreads() ) );
 		return elem;
 	}
 
@@ -68,7 +70,10 @@ public class XmlIoHdf5ImageLoader implements XmlIoBasicImgLoader< Hdf5ImageLoade
 		final ArrayList< Partition > partitions = new ArrayList<>();
 		for ( final Element p : elem.getChildren( "partition" ) )
 			partitions.add( partitionFromXml( p, basePath ) );
-		return new Hdf5ImageLoader( new File( path ), partitions, sequenceDescription );
+		final int numFetcherThreads = elem.getChild( "numFetcherThreads" ) == null
+				? 1
+				: XmlHelpers.getInt( elem, "numFetcherThreads" );
+		return new Hdf5ImageLoader( new File( path ), partitions, sequenceDescription, numFetcherThreads, true );
 	}
 
 	private Element partitionToXml( final Partition partition, final File basePath )
@@ -30,6 +30,7 @@
 package bdv.img.imaris;
 
 import bdv.img.cache.CacheArrayLoader;
+import bdv.img.cache.OffHeapCacheArrayLoader;
 import net.imglib2.Volatile;
 import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
@@ -55,6 +56,12 @@ class DataTypes
 		public V getVolatileType();
 
 		public CacheArrayLoader< A > createArrayLoader( final IHDF5Access hdf5Access );
+
+		/**
+		 * Create a {@link CacheArrayLoader} that keeps loaded data in direct
+		 * buffers outside the Java heap.
+		 */
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access );
 	}
 
 	static DataType< UnsignedByteType, VolatileUnsignedByteType, VolatileByteArray > UnsignedByte =
@@ -81,6 +88,12 @@ class DataTypes
 		{
 			return new ImarisVolatileByteArrayLoader( hdf5Access );
 		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.bytes( createArrayLoader( hdf5Access ) );
+		}
 	};
 
 	static DataType< UnsignedShortType, VolatileUnsignedShortType, VolatileShortArray > UnsignedShort =
@@ -107,6 +120,12 @@ class DataTypes
 		{
 			return new ImarisVolatileShortArrayLoader( hdf5Access );
 		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.shorts( createArrayLoader( hdf5Access ) );
+		}
 	};
 
 	static DataType< FloatType, VolatileFloatType, VolatileFloatArray > Float =
@@ -133,5 +152,11 @@ class DataTypes
 		{
 			return new ImarisVolatileFloatArrayLoader( hdf5Access );
 		}
+
+		@Override
+		public CacheArrayLoader< ? > createOffHeapArrayLoader( final IHDF5Access hdf5Access )
+		{
+			return OffHeapCacheArrayLoader.floats( createArrayLoader( hdf5Access ) );
+		}
 	};
 }
@@ -41,6 +41,7 @@ import bdv.img.cache.VolatileGlobalCellCache;
 import bdv.img.hdf5.MipmapInfo;
 import bdv.img.hdf5.ViewLevelId;
 import bdv.img.imaris.DataTypes.DataType;
+import bdv.util.Prefs;
 import ch.systemsx.cisd.hdf5.HDF5Factory;
 import ch.systemsx.cisd.hdf5.IHDF5Reader;
 import mpicbg.spim.data.generic.sequence.AbstractSequenceDescription;
@@ -76,7 +77,7 @@ public class ImarisImageLoader< T extends NativeType< T >, V extends Volatile< T
 
 	private VolatileGlobalCellCache cache;
 
-	private CacheArrayLoader< A > loader;
+	private CacheArrayLoader< ? > loader;
 
 	private final HashMap< Integer, SetupImgLoader > setupImgLoaders;
 
@@ -121,7 +122,9 @@ public class ImarisImageLoader< T extends NativeType< T >, V extends Volatile< T
 				{
 					throw new RuntimeException( e );
 				}
-				loader = dataType.createArrayLoader( hdf5Access );
+				loader = Prefs.offHeapCellCache()
+						? dataType.createOffHeapArrayLoader( hdf5Access )
+						: dataType.createArrayLoader( hdf5Access );
 				cache = new VolatileGlobalCellCache( maxNumLevels, 1 );
 
 				for ( final BasicViewSetup setup : setups )
@@ -139,7 +142,7 @@ public class ImarisImageLoader< T extends NativeType< T >, V extends Volatile< T
 	 * type} before it can be used. The type should be either
 	 * {@link UnsignedShortType} and {@link VolatileUnsignedShortType}.
 	 */
-	protected < T extends NativeType< T > > AbstractCellImg< T, A, ?, ? > prepareCachedImage( final ViewLevelId id, final LoadingStrategy loadingStrategy, final T type )
+	protected < T extends NativeType< T > > AbstractCellImg< T, ?, ?, ? > prepareCachedImage( final ViewLevelId id, final LoadingStrategy loadingStrategy, final T type )
 	{
 		open();
 		final int timepointId = id.getTimePointId();
@@ -29,6 +29,7 @@
  */
 package bdv.img.imaris;
 
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
 
@@ -44,7 +45,8 @@ public class ImarisVolatileByteArrayLoader implements CacheArrayLoader< Volatile
 	@Override
 	public VolatileByteArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
 	{
-		final byte[] array = hdf5Access.readByteMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		final byte[] array = ArrayPool.getInstance().bytes( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		hdf5Access.readByteMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, array );
 		return new VolatileByteArray( array, true );
 	}
 
@@ -29,6 +29,7 @@
  */
 package bdv.img.imaris;
 
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
 
@@ -44,7 +45,8 @@ public class ImarisVolatileFloatArrayLoader implements CacheArrayLoader< Volatil
 	@Override
 	public VolatileFloatArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
 	{
-		final float[] array = hdf5Access.readFloatMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		final float[] array = ArrayPool.getInstance().floats( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		hdf5Access.readFloatMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, array );
 		return new VolatileFloatArray( array, true );
 	}
 
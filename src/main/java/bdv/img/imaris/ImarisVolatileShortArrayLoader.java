@@ -29,6 +29,7 @@
  */
 package bdv.img.imaris;
 
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
 
@@ -44,7 +45,8 @@ public class ImarisVolatileShortArrayLoader implements CacheArrayLoader< Volatil
 	@Override
 	public VolatileShortArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
 	{
-		final short[] array = hdf5Access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min );
+		final short[] array = ArrayPool.getInstance().shorts( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		hdf5Access.readShortMDArrayBlockWithOffset( timepoint, setup, level, dimensions, min, array );
 		return new VolatileShortArray( array, true );
 	}
 
@@ -41,6 +41,7 @@ import bdv.AbstractViewerSetupImgLoader;
 import bdv.ViewerImgLoader;
 import bdv.ViewerSetupImgLoader;
 import bdv.cache.CacheControl;
+import bdv.img.cache.DiskCellCache;
 import bdv.img.cache.VolatileCachedCellImg;
 import bdv.img.cache.VolatileGlobalCellCache;
 import mpicbg.spim.data.generic.sequence.ImgLoaderHint;
@@ -86,6 +87,7 @@ public class OpenConnectomeImageLoader extends AbstractViewerSetupImgLoader< Uns
 		mipmapTransforms = info.getLevelTransforms( mode );
 
 		cache = new VolatileGlobalCellCache( numScales, 10 );
+		cache.setDiskCache( DiskCellCache.forDataset( baseUrl + "/" + token + "/" + mode ) );
 		System.out.println( info.getOffsets( mode )[ 0 ][ 2 ] + " " + imageDimensions[ 0 ][ 2 ] );
 
 		loader = new OpenConnectomeVolatileArrayLoader(
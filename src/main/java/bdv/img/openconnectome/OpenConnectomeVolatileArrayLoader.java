@@ -29,13 +29,15 @@
  */
 package bdv.img.openconnectome;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
 
@@ -47,6 +49,14 @@ public class OpenConnectomeVolatileArrayLoader implements CacheArrayLoader< Vola
 
 	final private long zMin;
 
+	/**
+	 * Inflaters are re-used (after {@link Inflater#reset()}) by the fetcher
+	 * threads, instead of creating one for each cell.
+	 */
+	private static final ThreadLocal< Inflater > inflaters = ThreadLocal.withInitial( Inflater::new );
+
+	private static final ThreadLocal< byte[] > chunks = ThreadLocal.withInitial( () -> new byte[ 65536 ] );
+
 	/**
 	 * <p>Create a {@link CacheArrayLoader} for a source provided by the
 	 * <a href="http://hssl.cs.jhu.edu/wiki/doku.php?id=randal:hssl:research:brain:data_set_description">Open
@@ -107,7 +117,8 @@ public class OpenConnectomeVolatileArrayLoader implements CacheArrayLoader< Vola
 			final int[] dimensions,
 			final long[] min ) throws InterruptedException
 	{
-		final byte[] data = new byte[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		final byte[] data = ArrayPool.getInstance().bytes( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+		int n = 0;
 
 		final StringBuffer url = new StringBuffer( tokenUrl );
 
@@ -132,28 +143,39 @@ public class OpenConnectomeVolatileArrayLoader implements CacheArrayLoader< Vola
 		{
 			final URL file = new URL( url.toString() );
 			final InputStream in = file.openStream();
-			final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-			final byte[] chunk = new byte[ 4096 ];
-			int l;
-			for ( l = in.read( chunk ); l > 0; l = in.read( chunk ) )
-			    byteStream.write( chunk, 0, l );
-
-			final byte[] zippedData = byteStream.toByteArray();
-			final Inflater inflater = new Inflater();
-			inflater.setInput( zippedData );
-			inflater.inflate( data );
-			inflater.end();
-			byteStream.close();
+			final byte[] chunk = chunks.get();
+			final Inflater inflater = inflaters.get();
+			inflater.reset();
+			while ( n < data.length && !inflater.finished() && !inflater.needsDictionary() )
+			{
+				if ( inflater.needsInput() )
+				{
+					final int l = in.read( chunk );
+					if ( l < 0 )
+						break;
+					inflater.setInput( chunk, 0, l );
+				}
+				n += inflater.inflate( data, n, data.length - n );
+			}
+			in.close();
+		}
+		catch ( final FileNotFoundException e )
+		{
+			// no data for this cell
 		}
 		catch ( final IOException e )
 		{
-			System.out.println( "failed loading x=" + min[ 0 ] + " y=" + min[ 1 ] + " z=" + min[ 2 ] + " url(" + url.toString() + ")" );
+			// do not return (and disk-cache) an empty cell for a transient error
+			throw new RuntimeException( "failed loading x=" + min[ 0 ] + " y=" + min[ 1 ] + " z=" + min[ 2 ] + " url(" + url.toString() + ")", e );
 		}
 		catch( final DataFormatException e )
 		{
-			System.out.println( "failed unpacking x=" + min[ 0 ] + " y=" + min[ 1 ] + " z=" + min[ 2 ] + " url(" + url.toString() + ")" );
+			throw new RuntimeException( "failed unpacking x=" + min[ 0 ] + " y=" + min[ 1 ] + " z=" + min[ 2 ] + " url(" + url.toString() + ")", e );
 		}
 
+		// pooled arrays are not cleared, zero the part that was not loaded
+		Arrays.fill( data, n, data.length, ( byte ) 0 );
+
 		return new VolatileByteArray( data, true );
 	}
 }
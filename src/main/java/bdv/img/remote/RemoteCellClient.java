@@ -0,0 +1,292 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bdv.img.cache.ArrayPool;
+
+/**
+ * HTTP client for the cell requests of a {@link RemoteImageLoader}.
+ * <p>
+ * Connections are persistent: responses are always read completely and
+ * closed (also for errors), such that the underlying connection is returned
+ * to the keep-alive cache of {@link HttpURLConnection} and reused for the next
+ * request to the same server. At most {@code maxConnections} requests are in
+ * flight at the same time.
+ * <p>
+ * The keep-alive cache of the JDK keeps at most {@code http.maxConnections}
+ * (default 5) idle connections per server. This system property is read only
+ * once, when the first HTTP connection of the JVM is made, so it must be set
+ * at startup (e.g., {@code -Dhttp.maxConnections=10}) to reuse more
+ * connections. Requests beyond that limit still work, but open a new
+ * connection.
+ * <p>
+ * Requests time out after {@code timeoutMillis} (for connecting, and for
+ * each read). Failed requests are retried up to {@link #MAX_RETRIES} times
+ * with increasing delay, unless the server reported a client error (4xx).
+ */
+public class RemoteCellClient
+{
+	static final int MAX_RETRIES = 3;
+
+	private static final long RETRY_DELAY_MILLIS = 100;
+
+	private static class HttpStatusException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		HttpStatusException( final int status, final URL url )
+		{
+			super( "HTTP " + status + " for " + url );
+			this.status = status;
+		}
+	}
+
+	private final String baseUrl;
+
+	private final int maxConnections;
+
+	private final int timeoutMillis;
+
+	private final Semaphore connections;
+
+	private final AtomicLong numRequests = new AtomicLong();
+
+	private final AtomicLong numRetries = new AtomicLong();
+
+	private final AtomicLong numBytes = new AtomicLong();
+
+	/**
+	 * @param baseUrl
+	 *            the URL of the dataset on the server. Requests are sent to
+	 *            {@code baseUrl?query}.
+	 * @param maxConnections
+	 *            maximum number of concurrent requests (and persistent
+	 *            connections).
+	 * @param timeoutMillis
+	 *            connect and read timeout in milliseconds.
+	 */
+	public RemoteCellClient( final String baseUrl, final int maxConnections, final int timeoutMillis )
+	{
+		this.baseUrl = baseUrl;
+		this.maxConnections = maxConnections;
+		this.timeoutMillis = timeoutMillis;
+		connections = new Semaphore( maxConnections );
+	}
+
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	/**
+	 * Request {@code query} and decode the response as big-endian 16-bit
+	 * values into {@code data}.
+	 *
+	 * @param query
+	 *            the request, e.g., {@code "p=cell/..."}.
+	 * @param data
+	 *            array to decode the response into.
+	 * @param length
+	 *            number of values to decode.
+	 * @throws IOException
+	 *             if the request failed (after retries), or the response
+	 *             does not have exactly {@code length} values.
+	 */
+	public void readShorts( final String query, final short[] data, final int length ) throws IOException, InterruptedException
+	{
+		final ArrayPool pool = ArrayPool.getInstance();
+		// one more byte, to detect responses that are too long
+		final byte[] buf = pool.bytes( 2 * length + 1 );
+		try
+		{
+			final int n = readBytes( query, buf, 2 * length + 1 );
+			if ( n != 2 * length )
+				throw new IOException( "cell has wrong size" );
+			ByteBuffer.wrap( buf, 0, n ).asShortBuffer().get( data, 0, length );
+		}
+		finally
+		{
+			pool.recycle( buf );
+		}
+	}
+
+	/**
+	 * Request {@code query} in the given {@code encoding} (which must be
+	 * supported by the server), and decode the response into {@code data}.
+	 *
+	 * @param query
+	 *            the request, e.g., {@code "p=cell/..."}.
+	 * @param encoding
+	 *            the encoding to request.
+	 * @param data
+	 *            array to decode the response into.
+	 * @param length
+	 *            number of values to decode.
+	 * @throws IOException
+	 *             if the request failed (after retries), or the response
+	 *             could not be decoded.
+	 */
+	public void readShorts( final String query, final RemoteCellEncoding encoding, final short[] data, final int length ) throws IOException, InterruptedException
+	{
+		if ( encoding == RemoteCellEncoding.RAW )
+		{
+			readShorts( query, data, length );
+			return;
+		}
+
+		final ArrayPool pool = ArrayPool.getInstance();
+		final int maxLength = encoding.maxEncodedLength( length );
+		final byte[] buf = pool.bytes( maxLength );
+		try
+		{
+			final int n = readBytes( query + "&encoding=" + encoding.getName(), buf, maxLength );
+			encoding.decode( buf, n, data, length );
+		}
+		finally
+		{
+			pool.recycle( buf );
+		}
+	}
+
+	/**
+	 * Request {@code query} and read up to {@code maxLength} bytes of the
+	 * response into {@code buf}. The rest of the response is skipped.
+	 *
+	 * @return the number of bytes read.
+	 * @throws IOException
+	 *             if the request failed (after retries).
+	 */
+	public int readBytes( final String query, final byte[] buf, final int maxLength ) throws IOException, InterruptedException
+	{
+		final URL url = new URL( baseUrl + "?" + query );
+		connections.acquire();
+		try
+		{
+			IOException failure = null;
+			for ( int attempt = 0; attempt <= MAX_RETRIES; ++attempt )
+			{
+				if ( attempt > 0 )
+				{
+					numRetries.incrementAndGet();
+					Thread.sleep( RETRY_DELAY_MILLIS << ( attempt - 1 ) );
+				}
+				try
+				{
+					return request( url, buf, maxLength );
+				}
+				catch ( final HttpStatusException e )
+				{
+					if ( e.status < 500 )
+						throw e;
+					failure = e;
+				}
+				catch ( final IOException e )
+				{
+					failure = e;
+				}
+			}
+			throw failure;
+		}
+		finally
+		{
+			connections.release();
+		}
+	}
+
+	private int request( final URL url, final byte[] buf, final int maxLength ) throws IOException
+	{
+		numRequests.incrementAndGet();
+		final HttpURLConnection connection = ( HttpURLConnection ) url.openConnection();
+		connection.setConnectTimeout( timeoutMillis );
+		connection.setReadTimeout( timeoutMillis );
+		final int status = connection.getResponseCode();
+		if ( status != HttpURLConnection.HTTP_OK )
+		{
+			// read the error response, so that the connection can be reused
+			// (HttpURLConnection closes it anyway if the response is empty)
+			final InputStream err = connection.getErrorStream();
+			if ( err != null )
+			{
+				skip( err );
+				err.close();
+			}
+			throw new HttpStatusException( status, url );
+		}
+
+		try ( final InputStream in = connection.getInputStream() )
+		{
+			int n = 0;
+			for ( int l; n < maxLength && ( l = in.read( buf, n, maxLength - n ) ) > 0; n += l );
+			skip( in );
+			numBytes.addAndGet( n );
+			return n;
+		}
+	}
+
+	private static void skip( final InputStream in ) throws IOException
+	{
+		final byte[] buf = new byte[ 4096 ];
+		while ( in.read( buf ) >= 0 );
+	}
+
+	/**
+	 * Get the number of HTTP requests sent so far (including retries).
+	 */
+	public long getNumRequests()
+	{
+		return numRequests.get();
+	}
+
+	/**
+	 * Get the number of retries so far.
+	 */
+	public long getNumRetries()
+	{
+		return numRetries.get();
+	}
+
+	/**
+	 * Get the number of response bytes received so far.
+	 */
+	public long getNumBytes()
+	{
+		return numBytes.get();
+	}
+}
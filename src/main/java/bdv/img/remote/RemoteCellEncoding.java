@@ -0,0 +1,242 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.remote;
+
+import java.io.IOException;
+
+import bdv.img.cache.ArrayPool;
+import bdv.img.hdf5.Lz4CellCodec;
+
+/**
+ * How the uint16 data of a cell is encoded in the response to a
+ * {@code ?p=cell/...} request.
+ * <p>
+ * The server advertises the encodings it supports in
+ * {@link RemoteImageLoaderMetaData}, and the client requests one of them by
+ * appending {@code &encoding=<name>} to the cell request (see
+ * {@link #negotiate(String[])}). Servers that do not advertise any encodings
+ * only send {@link #RAW}.
+ * <p>
+ * The compressed encodings use the format of {@link Lz4CellCodec}: one byte
+ * indicating whether the data is LZ4 compressed ({@code 1}) or stored
+ * ({@code 0}), followed by the byte-shuffled elements (all low bytes, then all
+ * high bytes).
+ */
+public enum RemoteCellEncoding
+{
+	/**
+	 * Uncompressed big-endian uint16.
+	 */
+	RAW( "raw" ),
+
+	/**
+	 * Byte-shuffle and LZ4.
+	 */
+	LZ4( "lz4" ),
+
+	/**
+	 * Each element is replaced by its difference to the previous element (in
+	 * X, wrapping into the next line), zigzag-mapped such that small negative
+	 * and positive differences both have a zero high byte. Then byte-shuffle
+	 * and LZ4. Compresses smooth or sparse data better than {@link #LZ4}.
+	 */
+	DELTA_LZ4( "delta-lz4" );
+
+	private static final int STORED = 0;
+
+	private static final int COMPRESSED = 1;
+
+	/**
+	 * The encodings the client supports, most preferred first.
+	 */
+	private static final RemoteCellEncoding[] PREFERENCE = { DELTA_LZ4, LZ4, RAW };
+
+	private final String name;
+
+	private RemoteCellEncoding( final String name )
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Get the name of this encoding, as used in
+	 * {@link RemoteImageLoaderMetaData} and cell requests.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Get the encoding with the given name. {@code null} is {@link #RAW} (the
+	 * client did not request an encoding).
+	 *
+	 * @throws IllegalArgumentException
+	 *             if there is no encoding with the given name.
+	 */
+	public static RemoteCellEncoding forName( final String name )
+	{
+		if ( name == null )
+			return RAW;
+		for ( final RemoteCellEncoding encoding : values() )
+			if ( encoding.name.equals( name ) )
+				return encoding;
+		throw new IllegalArgumentException( "unknown cell encoding \"" + name + "\"" );
+	}
+
+	/**
+	 * Choose the most preferred encoding that is supported by the server.
+	 *
+	 * @param serverEncodings
+	 *            names of the encodings supported by the server, or
+	 *            {@code null}.
+	 */
+	public static RemoteCellEncoding negotiate( final String[] serverEncodings )
+	{
+		if ( serverEncodings != null )
+			for ( final RemoteCellEncoding encoding : PREFERENCE )
+				for ( final String name : serverEncodings )
+					if ( encoding.name.equals( name ) )
+						return encoding;
+		return RAW;
+	}
+
+	/**
+	 * Get the maximum size in bytes of an encoded cell with
+	 * {@code numElements} elements.
+	 */
+	public int maxEncodedLength( final int numElements )
+	{
+		return this == RAW ? 2 * numElements : 1 + 2 * numElements;
+	}
+
+	/**
+	 * Encode the first {@code numElements} elements of {@code data}.
+	 */
+	public byte[] encode( final short[] data, final int numElements )
+	{
+		switch ( this )
+		{
+		case RAW:
+		default:
+		{
+			final byte[] bytes = new byte[ 2 * numElements ];
+			for ( int i = 0; i < numElements; ++i )
+			{
+				bytes[ 2 * i ] = ( byte ) ( data[ i ] >> 8 );
+				bytes[ 2 * i + 1 ] = ( byte ) data[ i ];
+			}
+			return bytes;
+		}
+		case LZ4:
+			return Lz4CellCodec.encodeShorts( data, numElements );
+		case DELTA_LZ4:
+		{
+			final short[] residuals = new short[ numElements ];
+			short previous = 0;
+			for ( int i = 0; i < numElements; ++i )
+			{
+				final short d = ( short ) ( data[ i ] - previous );
+				residuals[ i ] = ( short ) ( ( d << 1 ) ^ ( d >> 15 ) );
+				previous = data[ i ];
+			}
+			return Lz4CellCodec.encodeShorts( residuals, numElements );
+		}
+		}
+	}
+
+	/**
+	 * Decode {@code encoded[0, encodedLength)} into the first
+	 * {@code numElements} elements of {@code data}.
+	 *
+	 * @throws IOException
+	 *             if the encoded data is malformed.
+	 */
+	public void decode( final byte[] encoded, final int encodedLength, final short[] data, final int numElements ) throws IOException
+	{
+		if ( this == RAW )
+		{
+			if ( encodedLength != 2 * numElements )
+				throw new IOException( "cell has wrong size" );
+			for ( int i = 0; i < numElements; ++i )
+				data[ i ] = ( short ) ( ( encoded[ 2 * i ] << 8 ) | ( encoded[ 2 * i + 1 ] & 0xff ) );
+			return;
+		}
+
+		if ( encodedLength < 1 )
+			throw new IOException( "empty cell" );
+		final ArrayPool pool = ArrayPool.getInstance();
+		byte[] decompressed = null;
+		try
+		{
+			final byte[] shuffled;
+			final int offset;
+			switch ( encoded[ 0 ] )
+			{
+			case STORED:
+				if ( encodedLength != 1 + 2 * numElements )
+					throw new IOException( "cell has wrong size" );
+				shuffled = encoded;
+				offset = 1;
+				break;
+			case COMPRESSED:
+				decompressed = pool.bytes( 2 * numElements );
+				Lz4CellCodec.decompress( encoded, 1, encodedLength - 1, decompressed, 2 * numElements );
+				shuffled = decompressed;
+				offset = 0;
+				break;
+			default:
+				throw new IOException( "unknown cell encoding " + encoded[ 0 ] );
+			}
+
+			final int hi = offset + numElements;
+			if ( this == LZ4 )
+			{
+				for ( int i = 0; i < numElements; ++i )
+					data[ i ] = ( short ) ( ( shuffled[ offset + i ] & 0xff ) | ( shuffled[ hi + i ] << 8 ) );
+			}
+			else
+			{
+				int previous = 0;
+				for ( int i = 0; i < numElements; ++i )
+				{
+					final int z = ( shuffled[ offset + i ] & 0xff ) | ( ( shuffled[ hi + i ] & 0xff ) << 8 );
+					previous += ( z >>> 1 ) ^ -( z & 1 );
+					data[ i ] = ( short ) previous;
+				}
+			}
+		}
+		finally
+		{
+			if ( decompressed != null )
+				pool.recycle( decompressed );
+		}
+	}
+}
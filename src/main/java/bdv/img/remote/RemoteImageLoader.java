@@ -38,12 +38,14 @@ import com.google.gson.GsonBuilder;
 
 import bdv.AbstractViewerSetupImgLoader;
 import bdv.ViewerImgLoader;
+import bdv.img.cache.DiskCellCache;
 import bdv.img.cache.VolatileCachedCellImg;
 import bdv.img.cache.VolatileGlobalCellCache;
 import bdv.img.hdf5.DimsAndExistence;
 import bdv.img.hdf5.MipmapInfo;
 import bdv.img.hdf5.ViewLevelId;
 import bdv.util.ConstantRandomAccessible;
+import bdv.util.Prefs;
 import mpicbg.spim.data.generic.sequence.ImgLoaderHint;
 import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccessibleInterval;
@@ -67,6 +69,10 @@ public class RemoteImageLoader implements ViewerImgLoader
 
 	protected VolatileGlobalCellCache cache;
 
+	protected RemoteCellClient client;
+
+	protected RemoteCellEncoding cellEncoding;
+
 	protected RemoteVolatileShortArrayLoader shortLoader;
 
 	/**
@@ -112,8 +118,13 @@ public class RemoteImageLoader implements ViewerImgLoader
 				metadata = gsonBuilder.create().fromJson(
 						new InputStreamReader( url.openStream() ),
 						RemoteImageLoaderMetaData.class );
+				client = new RemoteCellClient( baseUrl, Prefs.remoteNumConnections(), Prefs.remoteTimeoutMillis() );
+				cellEncoding = RemoteCellEncoding.negotiate( metadata.cellEncodings );
 				shortLoader = new RemoteVolatileShortArrayLoader( this );
-				cache = new VolatileGlobalCellCache( metadata.maxNumLevels, 10 );
+				// fetcher threads beyond the number of connections wait for a
+				// free connection in the client
+				cache = new VolatileGlobalCellCache( metadata.maxNumLevels, Prefs.remoteNumFetcherThreads() );
+				cache.setDiskCache( DiskCellCache.forDataset( baseUrl ) );
 				cellsDimensions = metadata.createCellsDimensions();
 				for ( final int setupId : metadata.perSetupMipmapInfo.keySet() )
 					setupImgLoaders.put( setupId, new SetupImgLoader( setupId ) );
@@ -74,6 +74,13 @@ public class RemoteImageLoaderMetaData
 	 */
 	protected final HashMap< ViewLevelId, DimsAndExistence > dimsAndExistence;
 
+	/**
+	 * Names of the {@link RemoteCellEncoding}s in which the server can send
+	 * cells. If {@code null} (servers that don't know about encodings), cells
+	 * are sent {@link RemoteCellEncoding#RAW raw}.
+	 */
+	protected String[] cellEncodings;
+
 	public RemoteImageLoaderMetaData( final Hdf5ImageLoader imgLoader, final AbstractSequenceDescription< ?, ?, ? > sequenceDescription )
 	{
 		perSetupMipmapInfo = new HashMap<>();
@@ -108,6 +115,18 @@ public class RemoteImageLoaderMetaData
 		}
 	}
 
+	/**
+	 * Advertise the {@link RemoteCellEncoding}s that the server supports for
+	 * cell requests. (By default, none are advertised and clients request
+	 * {@link RemoteCellEncoding#RAW raw} cells.)
+	 */
+	public void setCellEncodings( final RemoteCellEncoding... encodings )
+	{
+		cellEncodings = new String[ encodings.length ];
+		for ( int i = 0; i < encodings.length; ++i )
+			cellEncodings[ i ] = encodings[ i ].getName();
+	}
+
 	/**
 	 * Create an map from {@link ViewLevelId} (timepoint, setup, level) to
 	 * int[]. Every entry is the dimensions in cells (instead of pixels) of one
@@ -30,10 +30,8 @@
 package bdv.img.remote;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 
+import bdv.img.cache.ArrayPool;
 import bdv.img.cache.CacheArrayLoader;
 import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
 
@@ -50,11 +48,11 @@ public class RemoteVolatileShortArrayLoader implements CacheArrayLoader< Volatil
 	public VolatileShortArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
 	{
 		final int index = imgLoader.getCellIndex( timepoint, setup, level, min );
-		final short[] data = new short[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+		final ArrayPool pool = ArrayPool.getInstance();
+		final short[] data = pool.shorts( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
 		try
 		{
-			final URL url = new URL( String.format( "%s?p=cell/%d/%d/%d/%d/%d/%d/%d/%d/%d/%d",
-					imgLoader.baseUrl,
+			final String query = String.format( "p=cell/%d/%d/%d/%d/%d/%d/%d/%d/%d/%d",
 					index,
 					timepoint,
 					setup,
@@ -64,21 +62,15 @@ public class RemoteVolatileShortArrayLoader implements CacheArrayLoader< Volatil
 					dimensions[ 2 ],
 					min[ 0 ],
 					min[ 1 ],
-					min[ 2 ] ) );
-			final InputStream s = url.openStream();
-			final byte[] buf = new byte[ data.length * 2 ];
-			for ( int i = 0, l = s.read( buf, 0, buf.length ); l > 0; i += l, l = s.read( buf, i, buf.length - i ) );
-			for ( int i = 0, j = 0; i < data.length; ++i, j += 2 )
-				data[ i ] = ( short ) ( ( ( buf[ j ] & 0xff ) << 8 ) | ( buf[ j + 1 ] & 0xff ) );
-			s.close();
-		}
-		catch ( final MalformedURLException e )
-		{
-			e.printStackTrace();
+					min[ 2 ] );
+			imgLoader.client.readShorts( query, imgLoader.cellEncoding, data, data.length );
 		}
 		catch ( final IOException e )
 		{
-			e.printStackTrace();
+			// the request failed after all retries. Do not return (and
+			// disk-cache) an empty cell, the cell will be requested again.
+			pool.recycle( data );
+			throw new RuntimeException( e );
 		}
 		return new VolatileShortArray( data, true );
 	}
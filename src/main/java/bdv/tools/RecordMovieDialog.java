@@ -32,21 +32,19 @@ package bdv.tools;
 import java.awt.BorderLayout;
 import java.awt.Frame;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ActionMap;
 import javax.swing.BoxLayout;
 import javax.swing.InputMap;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
@@ -60,17 +58,17 @@ import javax.swing.WindowConstants;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
-import bdv.cache.CacheControl;
 import bdv.export.ProgressWriter;
+import bdv.tools.movie.FrameWriter;
+import bdv.tools.movie.ImageSequenceWriter;
+import bdv.tools.movie.MovieExporter;
+import bdv.tools.movie.UncompressedAviWriter;
 import bdv.util.Prefs;
 import bdv.viewer.ViewerPanel;
 import bdv.viewer.overlay.ScaleBarOverlayRenderer;
-import bdv.viewer.render.MultiResolutionRenderer;
 import bdv.viewer.state.ViewerState;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.ui.OverlayRenderer;
-import net.imglib2.ui.PainterThread;
-import net.imglib2.ui.RenderTarget;
 
 public class RecordMovieDialog extends JDialog implements OverlayRenderer
 {
@@ -92,6 +90,19 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 
 	private final JSpinner spinnerHeight;
 
+	private final JComboBox< String > comboFormat;
+
+	private final JSpinner spinnerFramesPerSecond;
+
+	/**
+	 * Available export formats: image sequence formats, or {@link #AVI}.
+	 */
+	private static final String[] FORMATS = { "png", "tif", "avi" };
+
+	private static final String[] FORMAT_NAMES = { "PNG sequence", "TIFF sequence", "uncompressed AVI" };
+
+	public static final String AVI = "avi";
+
 	public RecordMovieDialog( final Frame owner, final ViewerPanel viewer, final ProgressWriter progressWriter )
 	{
 		super( owner, "record movie", false );
@@ -145,6 +156,16 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 		spinnerHeight.setModel( new SpinnerNumberModel( 600, 10, 5000, 1 ) );
 		heightPanel.add( spinnerHeight );
 
+		final JPanel formatPanel = new JPanel();
+		boxes.add( formatPanel );
+		formatPanel.add( new JLabel( "format" ) );
+		comboFormat = new JComboBox<>( FORMAT_NAMES );
+		formatPanel.add( comboFormat );
+		formatPanel.add( new JLabel( "fps" ) );
+		spinnerFramesPerSecond = new JSpinner();
+		spinnerFramesPerSecond.setModel( new SpinnerNumberModel( 10, 1, 100, 1 ) );
+		formatPanel.add( spinnerFramesPerSecond );
+
 		final JPanel buttonsPanel = new JPanel();
 		boxes.add( buttonsPanel );
 		buttonsPanel.setLayout(new BorderLayout(0, 0));
@@ -213,6 +234,8 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 				final int maxTimepointIndex = ( Integer ) spinnerMaxTimepoint.getValue();
 				final int width = ( Integer ) spinnerWidth.getValue();
 				final int height = ( Integer ) spinnerHeight.getValue();
+				final String format = FORMATS[ comboFormat.getSelectedIndex() ];
+				final int framesPerSecond = ( Integer ) spinnerFramesPerSecond.getValue();
 				new Thread()
 				{
 					@Override
@@ -221,7 +244,7 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 						try
 						{
 							recordButton.setEnabled( false );
-							recordMovie( width, height, minTimepointIndex, maxTimepointIndex, dir );
+							recordMovie( width, height, minTimepointIndex, maxTimepointIndex, dir, format, framesPerSecond );
 							recordButton.setEnabled( true );
 						}
 						catch ( final Exception ex )
@@ -254,6 +277,22 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 	}
 
 	public void recordMovie( final int width, final int height, final int minTimepointIndex, final int maxTimepointIndex, final File dir ) throws IOException
+	{
+		recordMovie( width, height, minTimepointIndex, maxTimepointIndex, dir, "png", 10 );
+	}
+
+	/**
+	 * Record timepoints {@code minTimepointIndex} to {@code maxTimepointIndex}
+	 * at the current view to {@code dir}.
+	 *
+	 * @param format
+	 *            {@link #AVI} for an uncompressed AVI file {@code movie.avi},
+	 *            otherwise the image format of an image sequence (see
+	 *            {@link ImageSequenceWriter}).
+	 * @param framesPerSecond
+	 *            frame rate of AVI files.
+	 */
+	public void recordMovie( final int width, final int height, final int minTimepointIndex, final int maxTimepointIndex, final File dir, final String format, final int framesPerSecond ) throws IOException
 	{
 		final ViewerState renderState = viewer.getState();
 		final int canvasW = viewer.getDisplay().getWidth();
@@ -270,50 +309,18 @@ public class RecordMovieDialog extends JDialog implements OverlayRenderer
 
 		final ScaleBarOverlayRenderer scalebar = Prefs.showScaleBarInMovie() ? new ScaleBarOverlayRenderer() : null;
 
-		class MyTarget implements RenderTarget
+		final FrameWriter writer = format.equals( AVI )
+				? new UncompressedAviWriter( new File( dir, "movie.avi" ), width, height, framesPerSecond )
+				: new ImageSequenceWriter( dir, format );
+		final int numEncoderThreads = Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 );
+		final MovieExporter exporter = new MovieExporter( viewer.getOptionValues().getAccumulateProjectorFactory(), numEncoderThreads, 2 * numEncoderThreads );
+		try
 		{
-			BufferedImage bi;
-
-			@Override
-			public BufferedImage setBufferedImage( final BufferedImage bufferedImage )
-			{
-				bi = bufferedImage;
-				return null;
-			}
-
-			@Override
-			public int getWidth()
-			{
-				return width;
-			}
-
-			@Override
-			public int getHeight()
-			{
-				return height;
-			}
+			exporter.export( renderState, width, height, minTimepointIndex, maxTimepointIndex, writer, scalebar, progressWriter );
 		}
-		final MyTarget target = new MyTarget();
-		final MultiResolutionRenderer renderer = new MultiResolutionRenderer(
-				target, new PainterThread( null ), new double[] { 1 }, 0, false, 1, null, false,
-				viewer.getOptionValues().getAccumulateProjectorFactory(), new CacheControl.Dummy() );
-		progressWriter.setProgress( 0 );
-		for ( int timepoint = minTimepointIndex; timepoint <= maxTimepointIndex; ++timepoint )
+		catch ( final InterruptedException e )
 		{
-			renderState.setCurrentTimepoint( timepoint );
-			renderer.requestRepaint();
-			renderer.paint( renderState );
-
-			if ( Prefs.showScaleBarInMovie() )
-			{
-				final Graphics2D g2 = target.bi.createGraphics();
-				g2.setClip( 0, 0, width, height );
-				scalebar.setViewerState( renderState );
-				scalebar.paint( g2 );
-			}
-
-			ImageIO.write( target.bi, "png", new File( String.format( "%s/img-%03d.png", dir, timepoint ) ) );
-			progressWriter.setProgress( ( double ) (timepoint - minTimepointIndex + 1) / (maxTimepointIndex - minTimepointIndex + 1) );
+			Thread.currentThread().interrupt();
 		}
 	}
 
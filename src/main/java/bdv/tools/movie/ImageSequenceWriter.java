@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.tools.movie;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import bdv.viewer.render.OffscreenRenderer;
+
+/**
+ * {@link FrameWriter} that writes each frame to its own image file
+ * {@code img-<frame>.<format>} in a directory.
+ * <p>
+ * Supported formats are {@code "tif"} (uncompressed RGBA, see
+ * {@link OffscreenRenderer#writeTiff(BufferedImage, File)}), and all formats
+ * that ImageIO can write, for example {@code "png"}, {@code "jpg"}, and
+ * {@code "bmp"}. Except for PNG and GIF, frames are converted to RGB (without
+ * alpha) for ImageIO. Frames can be written concurrently.
+ */
+public class ImageSequenceWriter implements FrameWriter
+{
+	private final File dir;
+
+	private final String format;
+
+	/**
+	 * @param dir
+	 *            directory to write files to.
+	 * @param format
+	 *            image format, also used as file extension.
+	 */
+	public ImageSequenceWriter( final File dir, final String format )
+	{
+		this.dir = dir;
+		this.format = format.toLowerCase();
+	}
+
+	@Override
+	public boolean isConcurrent()
+	{
+		return true;
+	}
+
+	@Override
+	public void write( final int frame, final BufferedImage image ) throws IOException
+	{
+		final File file = new File( String.format( "%s/img-%03d.%s", dir, frame, format ) );
+		if ( format.equals( "tif" ) || format.equals( "tiff" ) )
+			OffscreenRenderer.writeTiff( image, file );
+		else
+		{
+			final boolean alpha = format.equals( "png" ) || format.equals( "gif" );
+			if ( !ImageIO.write( alpha ? image : toRGB( image ), format, file ) )
+				throw new IOException( "no ImageIO writer for format " + format );
+		}
+	}
+
+	@Override
+	public void close()
+	{}
+
+	private static BufferedImage toRGB( final BufferedImage image )
+	{
+		final BufferedImage rgb = new BufferedImage( image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB );
+		final Graphics2D g = rgb.createGraphics();
+		g.drawImage( image, 0, 0, null );
+		g.dispose();
+		return rgb;
+	}
+}
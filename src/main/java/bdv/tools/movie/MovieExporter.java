@@ -0,0 +1,205 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.tools.movie;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bdv.export.ProgressWriter;
+import bdv.viewer.overlay.ScaleBarOverlayRenderer;
+import bdv.viewer.render.AccumulateProjectorFactory;
+import bdv.viewer.render.OffscreenRenderer;
+import bdv.viewer.render.Prefetcher;
+import bdv.viewer.state.ViewerState;
+import net.imglib2.type.numeric.ARGBType;
+
+/**
+ * Exports a range of timepoints of a {@link ViewerState} as movie frames, with
+ * rendering, loading, and writing pipelined:
+ * <ul>
+ * <li>Frames are rendered one after the other with blocking loading (see
+ * {@link OffscreenRenderer}).</li>
+ * <li>While a frame is rendered, the cells needed for the next timepoint are
+ * enqueued for loading (see {@link Prefetcher#fetchCells(ViewerState, int, int)}).</li>
+ * <li>Rendered frames are encoded and written by a {@link FrameWriter} on a
+ * separate pool of encoder threads. If the bounded queue of frames waiting
+ * to be written is full, rendering waits.</li>
+ * </ul>
+ */
+public class MovieExporter
+{
+	private final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory;
+
+	private final int numEncoderThreads;
+
+	private final int queueCapacity;
+
+	private double framesPerSecond;
+
+	/**
+	 * @param accumulateProjectorFactory
+	 *            how to combine multiple visible sources.
+	 * @param numEncoderThreads
+	 *            how many frames to encode and write in parallel, if the
+	 *            {@link FrameWriter} supports it.
+	 * @param queueCapacity
+	 *            how many rendered frames may wait to be written.
+	 */
+	public MovieExporter( final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory, final int numEncoderThreads, final int queueCapacity )
+	{
+		this.accumulateProjectorFactory = accumulateProjectorFactory;
+		this.numEncoderThreads = numEncoderThreads;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Render timepoints {@code minTimepoint} to {@code maxTimepoint} of
+	 * {@code state}, and write them with {@code writer}. The {@code writer} is
+	 * closed when all frames are written.
+	 *
+	 * @param state
+	 *            the state to render. The viewer transform must map to the
+	 *            {@code width} &times; {@code height} frame. The state is not
+	 *            modified.
+	 * @param scaleBar
+	 *            if non-null, the scale bar is painted into each frame.
+	 * @param progressWriter
+	 *            progress is reported to this, and the throughput at the end.
+	 * @throws IOException
+	 *             if writing a frame failed.
+	 */
+	public void export(
+			final ViewerState state,
+			final int width,
+			final int height,
+			final int minTimepoint,
+			final int maxTimepoint,
+			final FrameWriter writer,
+			final ScaleBarOverlayRenderer scaleBar,
+			final ProgressWriter progressWriter ) throws IOException, InterruptedException
+	{
+		final ViewerState renderState = state.copy();
+		final OffscreenRenderer renderer = new OffscreenRenderer( accumulateProjectorFactory, 1 );
+		final int numThreads = writer.isConcurrent() ? numEncoderThreads : 1;
+		final ThreadPoolExecutor encoders = new ThreadPoolExecutor(
+				numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue< Runnable >( queueCapacity ),
+				( r, executor ) -> {
+					// wait until there is space in the queue. (Running r on the
+					// calling thread would break the order of frames.)
+					try
+					{
+						executor.getQueue().put( r );
+					}
+					catch ( final InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException( e );
+					}
+				} );
+		final AtomicReference< IOException > failure = new AtomicReference<>();
+
+		final long startTime = System.nanoTime();
+		progressWriter.setProgress( 0 );
+		try
+		{
+			renderState.setCurrentTimepoint( minTimepoint );
+			Prefetcher.fetchCells( renderState, width, height );
+			for ( int timepoint = minTimepoint; timepoint <= maxTimepoint && failure.get() == null; ++timepoint )
+			{
+				if ( timepoint < maxTimepoint )
+				{
+					renderState.setCurrentTimepoint( timepoint + 1 );
+					Prefetcher.fetchCells( renderState, width, height );
+				}
+				renderState.setCurrentTimepoint( timepoint );
+				final BufferedImage bi = renderer.render( renderState, width, height );
+
+				if ( scaleBar != null )
+				{
+					final Graphics2D g2 = bi.createGraphics();
+					g2.setClip( 0, 0, width, height );
+					scaleBar.setViewerState( renderState );
+					scaleBar.paint( g2 );
+					g2.dispose();
+				}
+
+				final int frame = timepoint;
+				encoders.execute( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if ( failure.get() != null )
+							return;
+						try
+						{
+							writer.write( frame, bi );
+						}
+						catch ( final IOException e )
+						{
+							failure.compareAndSet( null, e );
+						}
+					}
+				} );
+				progressWriter.setProgress( ( double ) ( timepoint - minTimepoint + 1 ) / ( maxTimepoint - minTimepoint + 1 ) );
+			}
+		}
+		finally
+		{
+			encoders.shutdown();
+			encoders.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+			renderer.shutdown();
+			writer.close();
+		}
+		if ( failure.get() != null )
+			throw failure.get();
+
+		final double seconds = ( System.nanoTime() - startTime ) / 1e9;
+		final int numFrames = maxTimepoint - minTimepoint + 1;
+		framesPerSecond = numFrames / seconds;
+		progressWriter.out().println( String.format( "exported %d frames in %.1f s (%.2f frames per second)", numFrames, seconds, framesPerSecond ) );
+	}
+
+	/**
+	 * Get the throughput of the last {@link #export}, including the time to
+	 * write all frames.
+	 */
+	public double getFramesPerSecond()
+	{
+		return framesPerSecond;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.tools.movie;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import net.imglib2.type.numeric.ARGBType;
+
+/**
+ * {@link FrameWriter} that writes frames to an AVI file with one uncompressed
+ * video stream (24-bit RGB DIB frames). This is readable by most video
+ * players and tools (e.g., ImageJ, ffmpeg) without additional codecs.
+ * <p>
+ * Frames must be written in order, all with the size given to the
+ * constructor. As an AVI 1.0 file, the total size is limited to 4 GB.
+ */
+public class UncompressedAviWriter implements FrameWriter
+{
+	private static final int AVIF_HASINDEX = 0x10;
+
+	private static final int AVIIF_KEYFRAME = 0x10;
+
+	private static final long MAX_FILE_SIZE = 0xffffffffl;
+
+	private final RandomAccessFile file;
+
+	private final int width;
+
+	private final int height;
+
+	/**
+	 * Size of a frame in bytes. Rows are padded to multiples of 4 bytes.
+	 */
+	private final int frameSize;
+
+	private final int rowSize;
+
+	private final byte[] frameData;
+
+	/**
+	 * File position of the {@code "movi"} list type, to which index offsets
+	 * are relative.
+	 */
+	private final long moviPosition;
+
+	/**
+	 * {@code idx1} entries of the frames written so far.
+	 */
+	private ByteBuffer indexBuffer = ByteBuffer.allocate( 1024 ).order( ByteOrder.LITTLE_ENDIAN );
+
+	private int numFrames;
+
+	/**
+	 * @param file
+	 *            the file to write.
+	 * @param width
+	 *            width of frames.
+	 * @param height
+	 *            height of frames.
+	 * @param framesPerSecond
+	 *            frame rate of the video.
+	 */
+	public UncompressedAviWriter( final File file, final int width, final int height, final int framesPerSecond ) throws IOException
+	{
+		this.file = new RandomAccessFile( file, "rw" );
+		this.file.setLength( 0 );
+		this.width = width;
+		this.height = height;
+		rowSize = ( 3 * width + 3 ) & ~3;
+		frameSize = rowSize * height;
+		frameData = new byte[ 8 + frameSize ];
+
+		final ByteBuffer header = ByteBuffer.allocate( 224 ).order( ByteOrder.LITTLE_ENDIAN );
+		putFourCC( header, "RIFF" ).putInt( 0 ); // size, patched in close()
+		putFourCC( header, "AVI " );
+		putFourCC( header, "LIST" ).putInt( 192 );
+		putFourCC( header, "hdrl" );
+		putFourCC( header, "avih" ).putInt( 56 );
+		header.putInt( 1000000 / framesPerSecond ); // microseconds per frame
+		header.putInt( frameSize * framesPerSecond ); // max bytes per second
+		header.putInt( 0 ); // padding granularity
+		header.putInt( AVIF_HASINDEX );
+		header.putInt( 0 ); // total frames, patched in close()
+		header.putInt( 0 ); // initial frames
+		header.putInt( 1 ); // streams
+		header.putInt( frameSize ); // suggested buffer size
+		header.putInt( width );
+		header.putInt( height );
+		header.putInt( 0 ).putInt( 0 ).putInt( 0 ).putInt( 0 ); // reserved
+		putFourCC( header, "LIST" ).putInt( 116 );
+		putFourCC( header, "strl" );
+		putFourCC( header, "strh" ).putInt( 56 );
+		putFourCC( header, "vids" );
+		putFourCC( header, "DIB " );
+		header.putInt( 0 ); // flags
+		header.putShort( ( short ) 0 ); // priority
+		header.putShort( ( short ) 0 ); // language
+		header.putInt( 0 ); // initial frames
+		header.putInt( 1 ); // scale
+		header.putInt( framesPerSecond ); // rate
+		header.putInt( 0 ); // start
+		header.putInt( 0 ); // length, patched in close()
+		header.putInt( frameSize ); // suggested buffer size
+		header.putInt( -1 ); // quality
+		header.putInt( 0 ); // sample size
+		header.putShort( ( short ) 0 ).putShort( ( short ) 0 ).putShort( ( short ) width ).putShort( ( short ) height );
+		putFourCC( header, "strf" ).putInt( 40 );
+		header.putInt( 40 ); // BITMAPINFOHEADER size
+		header.putInt( width );
+		header.putInt( height ); // positive: bottom-up rows
+		header.putShort( ( short ) 1 ); // planes
+		header.putShort( ( short ) 24 ); // bits per pixel
+		header.putInt( 0 ); // BI_RGB
+		header.putInt( frameSize );
+		header.putInt( 0 ).putInt( 0 ).putInt( 0 ).putInt( 0 );
+		putFourCC( header, "LIST" ).putInt( 0 ); // size, patched in close()
+		moviPosition = header.position();
+		putFourCC( header, "movi" );
+		this.file.write( header.array(), 0, header.position() );
+	}
+
+	@Override
+	public boolean isConcurrent()
+	{
+		return false;
+	}
+
+	@Override
+	public synchronized void write( final int frame, final BufferedImage image ) throws IOException
+	{
+		if ( image.getWidth() != width || image.getHeight() != height )
+			throw new IOException( "frame size " + image.getWidth() + "x" + image.getHeight() + " does not match video size " + width + "x" + height );
+		final long position = file.getFilePointer();
+		if ( position + frameData.length + 16L * ( numFrames + 1 ) + 8 > MAX_FILE_SIZE )
+			throw new IOException( "AVI file size limit exceeded" );
+
+		final ByteBuffer chunk = ByteBuffer.wrap( frameData ).order( ByteOrder.LITTLE_ENDIAN );
+		putFourCC( chunk, "00db" ).putInt( frameSize );
+		final int[] row = new int[ width ];
+		for ( int y = height - 1; y >= 0; --y )
+		{
+			image.getRGB( 0, y, width, 1, row, 0, width );
+			int i = chunk.position();
+			for ( int x = 0; x < width; ++x )
+			{
+				final int argb = row[ x ];
+				frameData[ i++ ] = ( byte ) ARGBType.blue( argb );
+				frameData[ i++ ] = ( byte ) ARGBType.green( argb );
+				frameData[ i++ ] = ( byte ) ARGBType.red( argb );
+			}
+			chunk.position( chunk.position() + rowSize );
+		}
+		file.write( frameData );
+
+		if ( indexBuffer.remaining() < 16 )
+		{
+			final ByteBuffer b = ByteBuffer.allocate( 2 * indexBuffer.capacity() ).order( ByteOrder.LITTLE_ENDIAN );
+			indexBuffer.flip();
+			b.put( indexBuffer );
+			indexBuffer = b;
+		}
+		putFourCC( indexBuffer, "00db" );
+		indexBuffer.putInt( AVIIF_KEYFRAME );
+		indexBuffer.putInt( ( int ) ( position - moviPosition ) );
+		indexBuffer.putInt( frameSize );
+		++numFrames;
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			final long moviEnd = file.getFilePointer();
+			final ByteBuffer idx1 = ByteBuffer.allocate( 8 ).order( ByteOrder.LITTLE_ENDIAN );
+			putFourCC( idx1, "idx1" ).putInt( indexBuffer.position() );
+			file.write( idx1.array() );
+			file.write( indexBuffer.array(), 0, indexBuffer.position() );
+			final long fileSize = file.getFilePointer();
+
+			putInt( 4, ( int ) ( fileSize - 8 ) ); // RIFF size
+			putInt( 48, numFrames ); // avih total frames
+			putInt( 140, numFrames ); // strh length
+			putInt( moviPosition - 4, ( int ) ( moviEnd - moviPosition ) ); // movi LIST size
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private void putInt( final long position, final int value ) throws IOException
+	{
+		final ByteBuffer b = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+		b.putInt( value );
+		file.seek( position );
+		file.write( b.array() );
+	}
+
+	private static ByteBuffer putFourCC( final ByteBuffer buffer, final String fourCC )
+	{
+		return buffer.put( fourCC.getBytes( StandardCharsets.US_ASCII ) );
+	}
+}
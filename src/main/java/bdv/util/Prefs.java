@@ -52,6 +52,11 @@ public class Prefs
 		return getInstance().showTextOverlay;
 	}
 
+	public static boolean showRenderMetrics()
+	{
+		return getInstance().showRenderMetrics;
+	}
+
 	public static boolean showScaleBarInMovie()
 	{
 		return getInstance().showScaleBarInMovie;
@@ -67,6 +72,46 @@ public class Prefs
 		return getInstance().scaleBarBgColor;
 	}
 
+	public static boolean offHeapCellCache()
+	{
+		return getInstance().offHeapCellCache;
+	}
+
+	public static String diskCellCacheDirectory()
+	{
+		return getInstance().diskCellCacheDirectory;
+	}
+
+	public static long diskCellCacheSize()
+	{
+		return getInstance().diskCellCacheSize;
+	}
+
+	public static boolean hdf5DirectChunkRead()
+	{
+		return getInstance().hdf5DirectChunkRead;
+	}
+
+	public static long arrayPoolSize()
+	{
+		return getInstance().arrayPoolSize;
+	}
+
+	public static int remoteNumConnections()
+	{
+		return getInstance().remoteNumConnections;
+	}
+
+	public static int remoteNumFetcherThreads()
+	{
+		return getInstance().remoteNumFetcherThreads;
+	}
+
+	public static int remoteTimeoutMillis()
+	{
+		return getInstance().remoteTimeoutMillis;
+	}
+
 	public static void showScaleBar( final boolean show )
 	{
 		getInstance().showScaleBar = show;
@@ -82,6 +127,11 @@ public class Prefs
 		getInstance().showTextOverlay = show;
 	}
 
+	public static void showRenderMetrics( final boolean show )
+	{
+		getInstance().showRenderMetrics = show;
+	}
+
 	public static void showScaleBarInMovie( final boolean show )
 	{
 		getInstance().showScaleBarInMovie = show;
@@ -97,6 +147,46 @@ public class Prefs
 		getInstance().scaleBarBgColor = color;
 	}
 
+	public static void offHeapCellCache( final boolean offHeap )
+	{
+		getInstance().offHeapCellCache = offHeap;
+	}
+
+	public static void diskCellCacheDirectory( final String directory )
+	{
+		getInstance().diskCellCacheDirectory = directory;
+	}
+
+	public static void diskCellCacheSize( final long size )
+	{
+		getInstance().diskCellCacheSize = size;
+	}
+
+	public static void hdf5DirectChunkRead( final boolean direct )
+	{
+		getInstance().hdf5DirectChunkRead = direct;
+	}
+
+	public static void arrayPoolSize( final long size )
+	{
+		getInstance().arrayPoolSize = size;
+	}
+
+	public static void remoteNumConnections( final int n )
+	{
+		getInstance().remoteNumConnections = n;
+	}
+
+	public static void remoteNumFetcherThreads( final int n )
+	{
+		getInstance().remoteNumFetcherThreads = n;
+	}
+
+	public static void remoteTimeoutMillis( final int millis )
+	{
+		getInstance().remoteTimeoutMillis = millis;
+	}
+
 	private static Prefs instance;
 
 	public static Prefs getInstance()
@@ -111,25 +201,53 @@ public class Prefs
 	private static final String SHOW_SCALE_BAR = "show-scale-bar";
 	private static final String SHOW_MULTIBOX_OVERLAY = "show-multibox-overlay";
 	private static final String SHOW_TEXT_OVERLAY = "show-text-overlay";
+	private static final String SHOW_RENDER_METRICS_OVERLAY = "show-render-metrics-overlay";
 	private static final String SHOW_SCALE_BAR_IN_MOVIE = "show-scale-bar-in-movie";
 	private static final String SCALE_BAR_COLOR = "scale-bar-color";
 	private static final String SCALE_BAR_BG_COLOR = "scale-bar-bg-color";
+	private static final String OFF_HEAP_CELL_CACHE = "off-heap-cell-cache";
+	private static final String DISK_CELL_CACHE_DIRECTORY = "disk-cell-cache-directory";
+	private static final String DISK_CELL_CACHE_SIZE = "disk-cell-cache-size";
+	private static final String HDF5_DIRECT_CHUNK_READ = "hdf5-direct-chunk-read";
+	private static final String ARRAY_POOL_SIZE = "array-pool-size";
+	private static final String REMOTE_NUM_CONNECTIONS = "remote-num-connections";
+	private static final String REMOTE_NUM_FETCHER_THREADS = "remote-num-fetcher-threads";
+	private static final String REMOTE_TIMEOUT_MILLIS = "remote-timeout-millis";
 
 	private boolean showScaleBar;
 	private boolean showMultibox;
 	private boolean showTextOverlay;
+	private boolean showRenderMetrics;
 	private boolean showScaleBarInMovie;
 	private int scaleBarColor;
 	private int scaleBarBgColor;
+	private boolean offHeapCellCache;
+	private String diskCellCacheDirectory;
+	private long diskCellCacheSize;
+	private boolean hdf5DirectChunkRead;
+	private long arrayPoolSize;
+	private int remoteNumConnections;
+	private int remoteNumFetcherThreads;
+	private int remoteTimeoutMillis;
 
 	private Prefs( final Properties p )
 	{
 		showScaleBar = getBoolean( p, SHOW_SCALE_BAR, false );
 		showMultibox = getBoolean( p, SHOW_MULTIBOX_OVERLAY, true );
 		showTextOverlay = getBoolean( p, SHOW_TEXT_OVERLAY, true );
+		showRenderMetrics = getBoolean( p, SHOW_RENDER_METRICS_OVERLAY, false );
 		showScaleBarInMovie = getBoolean( p, SHOW_SCALE_BAR_IN_MOVIE, false );
 		scaleBarColor = getInt( p, SCALE_BAR_COLOR, 0xffffffff );
 		scaleBarBgColor = getInt( p, SCALE_BAR_BG_COLOR, 0x88000000 );
+		offHeapCellCache = getBoolean( p, OFF_HEAP_CELL_CACHE, false );
+		diskCellCacheDirectory = getString( p, DISK_CELL_CACHE_DIRECTORY, "" );
+		diskCellCacheSize = getLong( p, DISK_CELL_CACHE_SIZE, 8l << 30 );
+		hdf5DirectChunkRead = getBoolean( p, HDF5_DIRECT_CHUNK_READ, false );
+		arrayPoolSize = getLong( p, ARRAY_POOL_SIZE, 64l << 20 );
+		// by default, use as many connections as the JDK keeps alive
+		remoteNumConnections = getInt( p, REMOTE_NUM_CONNECTIONS, Integer.getInteger( "http.maxConnections", 5 ) );
+		remoteNumFetcherThreads = getInt( p, REMOTE_NUM_FETCHER_THREADS, 10 );
+		remoteTimeoutMillis = getInt( p, REMOTE_TIMEOUT_MILLIS, 10000 );
 	}
 
 	private boolean getBoolean( final Properties p, final String key, final boolean defaultValue )
@@ -152,6 +270,26 @@ public class Prefs
 		}
 	}
 
+	private long getLong( final Properties p, final String key, final long defaultValue )
+	{
+		try
+		{
+			final String property = ( p != null ) ? p.getProperty( key ) : null;
+			return ( property != null ) ? Long.decode( property ).longValue() : defaultValue;
+		}
+		catch ( final NumberFormatException e )
+		{
+			e.printStackTrace();
+			return defaultValue;
+		}
+	}
+
+	private String getString( final Properties p, final String key, final String defaultValue )
+	{
+		final String property = ( p != null ) ? p.getProperty( key ) : null;
+		return ( property != null ) ? property : defaultValue;
+	}
+
 	private double getDouble( final Properties p, final String key, final double defaultValue )
 	{
 		try
@@ -211,6 +349,14 @@ public class Prefs
 		properties.put( SHOW_SCALE_BAR_IN_MOVIE, "" + prefs.showScaleBarInMovie );
 		properties.put( SCALE_BAR_COLOR, "" + prefs.scaleBarColor );
 		properties.put( SCALE_BAR_BG_COLOR, "" + prefs.scaleBarBgColor );
+		properties.put( OFF_HEAP_CELL_CACHE, "" + prefs.offHeapCellCache );
+		properties.put( DISK_CELL_CACHE_DIRECTORY, "" + prefs.diskCellCacheDirectory );
+		properties.put( DISK_CELL_CACHE_SIZE, "" + prefs.diskCellCacheSize );
+		properties.put( HDF5_DIRECT_CHUNK_READ, "" + prefs.hdf5DirectChunkRead );
+		properties.put( ARRAY_POOL_SIZE, "" + prefs.arrayPoolSize );
+		properties.put( REMOTE_NUM_CONNECTIONS, "" + prefs.remoteNumConnections );
+		properties.put( REMOTE_NUM_FETCHER_THREADS, "" + prefs.remoteNumFetcherThreads );
+		properties.put( REMOTE_TIMEOUT_MILLIS, "" + prefs.remoteTimeoutMillis );
 		return properties;
 	}
 
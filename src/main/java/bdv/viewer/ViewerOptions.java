@@ -39,6 +39,8 @@ import bdv.viewer.animate.MessageOverlayAnimator;
 import bdv.viewer.render.AccumulateProjector;
 import bdv.viewer.render.AccumulateProjectorARGB;
 import bdv.viewer.render.AccumulateProjectorFactory;
+import bdv.viewer.render.MotionPrefetcher;
+import bdv.viewer.render.TemporalPrefetcher;
 import bdv.viewer.render.MultiResolutionRenderer;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.numeric.ARGBType;
@@ -111,6 +113,57 @@ public class ViewerOptions
 		return this;
 	}
 
+	/**
+	 * Set the IO budget in nanoseconds for each mipmap level, starting with
+	 * the best level. While rendering a frame, blocking IO for a level is
+	 * allowed until its budget is exhausted. For the frame at the coarsest
+	 * rendered scale, the budget is further limited to the part of the
+	 * {@link #targetRenderNanos(long) target rendering time} that is not
+	 * needed for rendering.
+	 *
+	 * @param b
+	 *            IO budget in nanoseconds for each mipmap level.
+	 * @see MultiResolutionRenderer
+	 */
+	public ViewerOptions ioBudget( final long... b )
+	{
+		values.ioBudget = b;
+		return this;
+	}
+
+	/**
+	 * Set how far ahead (in milliseconds) the view is predicted while the
+	 * viewer transform is changing, to prefetch the cells that will be needed.
+	 * Motion-aware prefetching is disabled by default.
+	 *
+	 * @param t
+	 *            look-ahead in milliseconds, or 0 to disable motion-aware
+	 *            prefetching.
+	 * @see MotionPrefetcher
+	 */
+	public ViewerOptions motionPrefetchMillis( final long t )
+	{
+		values.motionPrefetchMillis = t;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of following timepoints for which data is
+	 * prefetched while a timepoint is displayed. The actual number is adapted
+	 * to the measured loading bandwidth. Temporal prefetching is disabled by
+	 * default.
+	 *
+	 * @param n
+	 *            maximum number of timepoints, or 0 to disable temporal
+	 *            prefetching.
+	 * @see TemporalPrefetcher
+	 */
+	public ViewerOptions maxPrefetchTimepoints( final int n )
+	{
+		values.maxPrefetchTimepoints = n;
+		return this;
+	}
+
 	/**
 	 * Set whether to used double buffered rendering.
 	 *
@@ -125,7 +178,39 @@ public class ViewerOptions
 	}
 
 	/**
-	 * Set how many threads to use for rendering.
+	 * Set whether to use tiled rendering. With tiled rendering, the previously
+	 * rendered image is re-used when the view is translated, and only the
+	 * newly exposed parts are rendered.
+	 *
+	 * @param t
+	 *            Whether to use tiled rendering.
+	 * @see MultiResolutionRenderer
+	 */
+	public ViewerOptions tiledRendering( final boolean t )
+	{
+		values.tiledRendering = t;
+		return this;
+	}
+
+	/**
+	 * Set whether to use fused projection. With fused projection, multiple
+	 * visible volatile sources are rendered and accumulated in one pass,
+	 * without an intermediate image per source. This is not used together
+	 * with tiled rendering or a custom {@link #accumulateProjectorFactory(AccumulateProjectorFactory)}.
+	 *
+	 * @param f
+	 *            Whether to use fused projection.
+	 * @see MultiResolutionRenderer
+	 */
+	public ViewerOptions fusedProjection( final boolean f )
+	{
+		values.fusedProjection = f;
+		return this;
+	}
+
+	/**
+	 * Set how many threads to use for rendering. The default is the number of
+	 * available processors.
 	 *
 	 * @param n
 	 *            How many threads to use for rendering.
@@ -232,9 +317,19 @@ public class ViewerOptions
 
 		private long targetRenderNanos = 30 * 1000000l;
 
+		private long[] ioBudget = new long[] { 100l * 1000000l,  10l * 1000000l };
+
+		private long motionPrefetchMillis = 0;
+
+		private int maxPrefetchTimepoints = 0;
+
 		private boolean doubleBuffered = true;
 
-		private int numRenderingThreads = 3;
+		private boolean tiledRendering = false;
+
+		private boolean fusedProjection = false;
+
+		private int numRenderingThreads = Runtime.getRuntime().availableProcessors();
 
 		private int numSourceGroups = 10;
 
@@ -257,7 +352,12 @@ public class ViewerOptions
 				height( height ).
 				screenScales( screenScales ).
 				targetRenderNanos( targetRenderNanos ).
+				ioBudget( ioBudget ).
+				motionPrefetchMillis( motionPrefetchMillis ).
+				maxPrefetchTimepoints( maxPrefetchTimepoints ).
 				doubleBuffered( doubleBuffered ).
+				tiledRendering( tiledRendering ).
+				fusedProjection( fusedProjection ).
 				numRenderingThreads( numRenderingThreads ).
 				numSourceGroups( numSourceGroups ).
 				useVolatileIfAvailable( useVolatileIfAvailable ).
@@ -287,11 +387,36 @@ public class ViewerOptions
 			return targetRenderNanos;
 		}
 
+		public long[] getIoBudget()
+		{
+			return ioBudget;
+		}
+
+		public long getMotionPrefetchMillis()
+		{
+			return motionPrefetchMillis;
+		}
+
+		public int getMaxPrefetchTimepoints()
+		{
+			return maxPrefetchTimepoints;
+		}
+
 		public boolean isDoubleBuffered()
 		{
 			return doubleBuffered;
 		}
 
+		public boolean isTiledRendering()
+		{
+			return tiledRendering;
+		}
+
+		public boolean isFusedProjection()
+		{
+			return fusedProjection;
+		}
+
 		public int getNumRenderingThreads()
 		{
 			return numRenderingThreads;
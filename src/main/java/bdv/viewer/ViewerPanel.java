@@ -54,8 +54,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -79,9 +80,14 @@ import bdv.viewer.animate.RotationAnimator;
 import bdv.viewer.animate.TextOverlayAnimator;
 import bdv.viewer.animate.TextOverlayAnimator.TextPosition;
 import bdv.viewer.overlay.MultiBoxOverlayRenderer;
+import bdv.viewer.overlay.RenderMetricsOverlayRenderer;
 import bdv.viewer.overlay.ScaleBarOverlayRenderer;
 import bdv.viewer.overlay.SourceInfoOverlayRenderer;
+import bdv.viewer.render.MotionPrefetcher;
 import bdv.viewer.render.MultiResolutionRenderer;
+import bdv.viewer.render.RenderMetricsListener;
+import bdv.viewer.render.RenderStatistics;
+import bdv.viewer.render.TemporalPrefetcher;
 import bdv.viewer.render.TransformAwareBufferedImageOverlayRenderer;
 import bdv.viewer.state.SourceGroup;
 import bdv.viewer.state.SourceState;
@@ -147,6 +153,23 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 	 */
 	protected final ScaleBarOverlayRenderer scaleBarOverlayRenderer;
 
+	/**
+	 * Overlay timing, progress, and cache counters of the renderer.
+	 */
+	protected final RenderMetricsOverlayRenderer renderMetricsOverlayRenderer;
+
+	/**
+	 * Prefetches data for the predicted view while the view is moving, or
+	 * {@code null} if disabled.
+	 */
+	protected final MotionPrefetcher motionPrefetcher;
+
+	/**
+	 * Prefetches data for the timepoints following the current one, or
+	 * {@code null} if disabled.
+	 */
+	protected final TemporalPrefetcher temporalPrefetcher;
+
 	/**
 	 * Transformation set by the interactive viewer.
 	 */
@@ -173,7 +196,9 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 	protected final PainterThread painterThread;
 
 	/**
-	 * The {@link ExecutorService} used for rendereing.
+	 * The {@link ExecutorService} used for rendereing. This is a
+	 * {@link ForkJoinPool}, so that idle rendering threads steal tile tasks
+	 * from busy ones.
 	 */
 	protected final ExecutorService renderingExecutorService;
 
@@ -270,6 +295,7 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		multiBoxOverlayRenderer = new MultiBoxOverlayRenderer();
 		sourceInfoOverlayRenderer = new SourceInfoOverlayRenderer();
 		scaleBarOverlayRenderer = Prefs.showScaleBar() ? new ScaleBarOverlayRenderer() : null;
+		renderMetricsOverlayRenderer = new RenderMetricsOverlayRenderer();
 
 		threadGroup = new ThreadGroup( this.toString() );
 		painterThread = new PainterThread( threadGroup, this );
@@ -282,9 +308,11 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		display.addOverlayRenderer( renderTarget );
 		display.addOverlayRenderer( this );
 
-		renderingExecutorService = Executors.newFixedThreadPool(
+		renderingExecutorService = new ForkJoinPool(
 				options.getNumRenderingThreads(),
-				new RenderThreadFactory() );
+				new RenderThreadFactory(),
+				null,
+				false );
 		imageRenderer = new MultiResolutionRenderer(
 				renderTarget, painterThread,
 				options.getScreenScales(),
@@ -294,7 +322,11 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 				renderingExecutorService,
 				options.isUseVolatileIfAvailable(),
 				options.getAccumulateProjectorFactory(),
-				cacheControl );
+				cacheControl,
+				options.isTiledRendering(),
+				options.isFusedProjection() );
+		imageRenderer.setIoBudget( options.getIoBudget() );
+		imageRenderer.addRenderMetricsListener( renderMetricsOverlayRenderer );
 
 		mouseCoordinates = new MouseCoordinateListener();
 		display.addHandler( mouseCoordinates );
@@ -318,6 +350,14 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		visibilityAndGrouping.addUpdateListener( this );
 
 		transformListeners = new CopyOnWriteArrayList<>();
+		motionPrefetcher = ( options.isUseVolatileIfAvailable() && options.getMotionPrefetchMillis() > 0 )
+				? new MotionPrefetcher( options.getMotionPrefetchMillis() )
+				: null;
+		if ( motionPrefetcher != null )
+			transformListeners.add( motionPrefetcher );
+		temporalPrefetcher = ( options.isUseVolatileIfAvailable() && options.getMaxPrefetchTimepoints() > 0 )
+				? new TemporalPrefetcher( cacheControl, options.getMaxPrefetchTimepoints() )
+				: null;
 		lastRenderTransformListeners = new CopyOnWriteArrayList<>();
 		timePointListeners = new CopyOnWriteArrayList<>();
 		interpolationModeListeners = new CopyOnWriteArrayList<>();
@@ -485,6 +525,7 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 
 		display.repaint();
 
+		final AbstractTransformAnimator animator;
 		synchronized ( this )
 		{
 			if ( currentAnimator != null )
@@ -496,7 +537,13 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 				if ( currentAnimator.isComplete() )
 					currentAnimator = null;
 			}
+			animator = currentAnimator;
 		}
+
+		if ( motionPrefetcher != null )
+			motionPrefetcher.prefetch( state, animator, display.getWidth(), display.getHeight() );
+		if ( temporalPrefetcher != null )
+			temporalPrefetcher.prefetch( state, display.getWidth(), display.getHeight() );
 	}
 
 	/**
@@ -540,6 +587,9 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 			scaleBarOverlayRenderer.paint( ( Graphics2D ) g );
 		}
 
+		if ( Prefs.showRenderMetrics() )
+			renderMetricsOverlayRenderer.paint( ( Graphics2D ) g );
+
 		final long currentTimeMillis = System.currentTimeMillis();
 		final ArrayList< OverlayAnimator > overlayAnimatorsToRemove = new ArrayList<>();
 		for ( final OverlayAnimator animator : overlayAnimators )
@@ -562,7 +612,7 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		state.setViewerTransform( transform );
 		for ( final TransformListener< AffineTransform3D > l : transformListeners )
 			l.transformChanged( viewerTransform );
-		requestRepaint();
+		imageRenderer.requestTransformRepaint();
 	}
 
 	@Override
@@ -1111,6 +1161,39 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		return sourceInfoOverlayRenderer;
 	}
 
+	/**
+	 * Get render and IO times of recent frames, per screen scale and mipmap
+	 * level.
+	 */
+	public RenderStatistics getRenderStatistics()
+	{
+		return imageRenderer.getRenderStatistics();
+	}
+
+	/**
+	 * Add a {@link RenderMetricsListener} to notify about timing, progress,
+	 * and cache counters after each rendering pass. Listeners are notified on
+	 * the painter thread.
+	 *
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public void addRenderMetricsListener( final RenderMetricsListener listener )
+	{
+		imageRenderer.addRenderMetricsListener( listener );
+	}
+
+	/**
+	 * Remove a {@link RenderMetricsListener}.
+	 *
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	public void removeRenderMetricsListener( final RenderMetricsListener listener )
+	{
+		imageRenderer.removeRenderMetricsListener( listener );
+	}
+
 	/**
 	 * Stop the {@link #painterThread} and shutdown rendering {@link ExecutorService}.
 	 */
@@ -1132,7 +1215,16 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 
 	protected static final AtomicInteger panelNumber = new AtomicInteger( 1 );
 
-	protected class RenderThreadFactory implements ThreadFactory
+	/**
+	 * Creates the worker threads of {@link #renderingExecutorService}.
+	 * <p>
+	 * {@link ForkJoinWorkerThread}s cannot be created in a specific
+	 * {@link ThreadGroup}. Workers are started on demand by the thread that
+	 * submits rendering tasks, that is the {@link #painterThread}, or by other
+	 * workers. Therefore, they belong to {@link #threadGroup}, which is
+	 * important for IO time budgeting.
+	 */
+	protected class RenderThreadFactory implements ForkJoinWorkerThreadFactory
 	{
 		private final String threadNameFormat = String.format(
 				"bdv-panel-%d-thread-%%d",
@@ -1141,11 +1233,10 @@ public class ViewerPanel extends JPanel implements OverlayRenderer, TransformLis
 		private final AtomicInteger threadNumber = new AtomicInteger( 1 );
 
 		@Override
-		public Thread newThread( final Runnable r )
+		public ForkJoinWorkerThread newThread( final ForkJoinPool pool )
 		{
-			final Thread t = new Thread( threadGroup, r,
-					String.format( threadNameFormat, threadNumber.getAndIncrement() ),
-					0 );
+			final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+			t.setName( String.format( threadNameFormat, threadNumber.getAndIncrement() ) );
 			if ( t.isDaemon() )
 				t.setDaemon( false );
 			if ( t.getPriority() != Thread.NORM_PRIORITY )
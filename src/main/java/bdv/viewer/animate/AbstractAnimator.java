@@ -92,11 +92,28 @@ public class AbstractAnimator
 			startTime = time;
 		}
 
-		complete = ( time - startTime ) / ( double ) duration;
-		if ( complete >= 1 )
-			complete = 1;
+		complete = ratioCompleteAt( time );
+	}
+
+	/**
+	 * Returns the completion ratio at the specified time, without changing the
+	 * {@link #setTime(long) current time}. If the animation has not started
+	 * yet, it is assumed to start at {@code time}.
+	 *
+	 * @param time
+	 *            time (in time units)
+	 * @return the completion ratio at {@code time}.
+	 */
+	public double ratioCompleteAt( final long time )
+	{
+		if ( ! started )
+			return 0;
+
+		final double t = ( time - startTime ) / ( double ) duration;
+		if ( t >= 1 )
+			return 1;
 		else
-			complete = cos( cos( complete ) );
+			return cos( cos( t ) );
 	}
 
 	/**
@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.overlay;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+
+import bdv.cache.CacheStatistics;
+import bdv.viewer.render.RenderMetrics;
+import bdv.viewer.render.RenderMetricsListener;
+
+/**
+ * Render the most recent {@link RenderMetrics} into a {@link Graphics2D}, for
+ * diagnosing rendering stutter. Rates (frames, cache hits, and loads per
+ * second) are averaged over intervals of one second.
+ */
+public class RenderMetricsOverlayRenderer implements RenderMetricsListener
+{
+	private static final long RATE_INTERVAL_NANOS = 1000000000l;
+
+	private RenderMetrics last;
+
+	private RenderMetrics lastNewFrame;
+
+	private long intervalStartNanos = -1;
+
+	private int intervalNumNewFrames;
+
+	private long intervalStartHits;
+
+	private long intervalStartMisses;
+
+	private double framesPerSecond;
+
+	private double hitRatio = -1;
+
+	private double loadsPerSecond = -1;
+
+	@Override
+	public synchronized void frameRendered( final RenderMetrics metrics )
+	{
+		last = metrics;
+		if ( metrics.isNewFrame() && !metrics.isCancelled() )
+		{
+			lastNewFrame = metrics;
+			++intervalNumNewFrames;
+		}
+
+		final CacheStatistics cache = metrics.getCacheStatistics();
+		final long hits = cache == null ? -1 : cache.getHitCount();
+		final long misses = cache == null ? -1 : cache.getMissCount();
+		final long t = metrics.getTimeNanos();
+		if ( intervalStartNanos < 0 )
+		{
+			intervalStartNanos = t;
+			intervalStartHits = hits;
+			intervalStartMisses = misses;
+			intervalNumNewFrames = 0;
+		}
+		else if ( t - intervalStartNanos >= RATE_INTERVAL_NANOS )
+		{
+			final double seconds = ( t - intervalStartNanos ) / 1e9;
+			framesPerSecond = intervalNumNewFrames / seconds;
+			final long dMisses = misses - intervalStartMisses;
+			final long dHits = hits - intervalStartHits;
+			loadsPerSecond = ( misses < 0 || intervalStartMisses < 0 ) ? -1 : dMisses / seconds;
+			hitRatio = ( hits < 0 || intervalStartHits < 0 || dHits + dMisses <= 0 ) ? -1 : ( double ) dHits / ( dHits + dMisses );
+			intervalStartNanos = t;
+			intervalStartHits = hits;
+			intervalStartMisses = misses;
+			intervalNumNewFrames = 0;
+		}
+	}
+
+	public synchronized void paint( final Graphics2D g )
+	{
+		if ( last == null )
+			return;
+
+		final ArrayList< String > lines = new ArrayList<>();
+		if ( lastNewFrame != null )
+			lines.add( String.format( "frame: %5.1f fps, scale %d, render %6.1f ms, io %6.1f ms",
+					framesPerSecond,
+					lastNewFrame.getScreenScaleIndex(),
+					lastNewFrame.getRenderNanoTime() / 1e6,
+					lastNewFrame.getIoNanoTime() / 1e6 ) );
+		lines.add( String.format( "pass:  scale %d, render %6.1f ms, io %6.1f ms%s",
+				last.getScreenScaleIndex(),
+				last.getRenderNanoTime() / 1e6,
+				last.getIoNanoTime() / 1e6,
+				last.isCancelled() ? " (cancelled)" : "" ) );
+		lines.add( String.format( "cancelled: %d", last.getNumCancelledFrames() ) );
+		final long[] levelNanoTimes = last.getLevelNanoTimes();
+		if ( levelNanoTimes != null )
+		{
+			final StringBuilder sb = new StringBuilder( "level ms:" );
+			for ( final long t : levelNanoTimes )
+				sb.append( t < 0 ? "      -" : String.format( " %6.1f", t / 1e6 ) );
+			lines.add( sb.toString() );
+		}
+		final long[] numInvalidPixels = last.getNumInvalidPixels();
+		if ( numInvalidPixels != null )
+		{
+			final StringBuilder sb = new StringBuilder( "invalid: " );
+			for ( final long n : numInvalidPixels )
+				sb.append( n < 0 ? "      -" : String.format( " %6d", n ) );
+			lines.add( sb.toString() );
+		}
+		final CacheStatistics cache = last.getCacheStatistics();
+		if ( cache != null )
+		{
+			lines.add( String.format( "cache: hits %s, loads %s, queued %s",
+					hitRatio < 0 ? "-" : String.format( "%.0f%%", 100 * hitRatio ),
+					loadsPerSecond < 0 ? "-" : String.format( "%.0f/s", loadsPerSecond ),
+					cache.getQueueSize() < 0 ? "-" : Integer.toString( cache.getQueueSize() ) ) );
+			final long[] enqueued = cache.getNumEnqueuedPerPriority();
+			if ( enqueued != null )
+			{
+				final StringBuilder sb = new StringBuilder( "enqueued:" );
+				for ( final long n : enqueued )
+					sb.append( String.format( " %6d", n ) );
+				lines.add( sb.toString() );
+			}
+		}
+
+		g.setFont( new Font( "Monospaced", Font.PLAIN, 12 ) );
+		g.setColor( Color.white );
+		final int height = ( int ) g.getClipBounds().getHeight();
+		int y = height - 10 - 13 * ( lines.size() - 1 );
+		for ( final String line : lines )
+		{
+			g.drawString( line, 10, y );
+			y += 13;
+		}
+	}
+}
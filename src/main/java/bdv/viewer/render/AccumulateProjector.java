@@ -30,6 +30,7 @@
 package bdv.viewer.render;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -77,6 +78,25 @@ public abstract class AccumulateProjector< A, B > implements VolatileProjector
 
 	protected volatile boolean valid = false;
 
+	/**
+	 * Tiles covering the whole target. If {@link #tiles} are not set,
+	 * accumulation is split into one task per tile of {@link #taskTiles},
+	 * scheduled in {@link ScreenTiles#getRenderOrder() render order}.
+	 */
+	protected final ScreenTiles taskTiles;
+
+	/**
+	 * Rendering state of tiles of the target, or {@code null} if the whole
+	 * target is accumulated.
+	 */
+	protected ScreenTiles tiles;
+
+	/**
+	 * Rendering state of tiles of the sources, or {@code null} if the whole
+	 * target is accumulated.
+	 */
+	protected List< ScreenTiles > sourceTiles;
+
 	public AccumulateProjector(
 			final ArrayList< VolatileProjector > sourceProjectors,
 			final ArrayList< ? extends RandomAccessible< ? extends A > > sources,
@@ -92,9 +112,30 @@ public abstract class AccumulateProjector< A, B > implements VolatileProjector
 		this.iterableTarget = Views.flatIterable( target );
 		this.numThreads = numThreads;
 		this.executorService = executorService;
+		taskTiles = new ScreenTiles( ( int ) target.dimension( 0 ), ( int ) target.dimension( 1 ) );
 		lastFrameRenderNanoTime = -1;
 	}
 
+	/**
+	 * Accumulate only tiles that are not complete in {@code tiles}, instead of
+	 * the whole target. After accumulating a tile, its state is set to the
+	 * worst state of that tile in {@code sourceTiles}. This requires that the
+	 * source projectors only render source tiles that are not complete, and
+	 * that the target pixels of complete tiles are from a previous
+	 * accumulation of the same sources.
+	 *
+	 * @param tiles
+	 *            rendering state of tiles of the target.
+	 * @param sourceTiles
+	 *            rendering state of tiles of the sources (in the same order
+	 *            as the sources).
+	 */
+	public void setTiles( final ScreenTiles tiles, final List< ScreenTiles > sourceTiles )
+	{
+		this.tiles = tiles;
+		this.sourceTiles = sourceTiles;
+	}
+
 	@Override
 	public boolean map()
 	{
@@ -118,50 +159,50 @@ public abstract class AccumulateProjector< A, B > implements VolatileProjector
 					valid &= p.isValid();
 
 		final int width = ( int ) target.dimension( 0 );
-		final int height = ( int ) target.dimension( 1 );
-		final int length = width * height;
+		final ScreenTiles renderTiles = ( tiles != null ) ? tiles : taskTiles;
 
-		final boolean createExecutor = ( executorService == null );
-		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
-		final int numTasks = Math.min( numThreads * 10, height );
-		final double taskLength = ( double ) length / numTasks;
-		final int numSources = sources.size();
-		final ArrayList< Callable< Void > > tasks = new ArrayList<>( numTasks );
-		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>( renderTiles.numTiles() );
+		for ( final int tile : renderTiles.getRenderOrder() )
 		{
-			final int myOffset = ( int ) ( taskNum * taskLength );
-			final int myLength = ( (taskNum == numTasks - 1 ) ? length : ( int ) ( ( taskNum + 1 ) * taskLength ) ) - myOffset;
+			if ( tiles != null && tiles.isComplete( tile ) )
+				continue;
 
 			final Callable< Void > r = new Callable< Void >()
 			{
-				@SuppressWarnings( "unchecked" )
 				@Override
 				public Void call()
 				{
 					if ( interrupted.get() )
 						return null;
 
-					final Cursor< ? extends A >[] sourceCursors = new Cursor[ numSources ];
-					for ( int s = 0; s < numSources; ++s )
+					final int x0 = renderTiles.tileMinX( tile );
+					final int y0 = renderTiles.tileMinY( tile );
+					final int w = renderTiles.tileWidth( tile );
+					final int h = renderTiles.tileHeight( tile );
+
+					for ( int y = y0; y < y0 + h; ++y )
 					{
-						final Cursor< ? extends A > c = sources.get( s ).cursor();
-						c.jumpFwd( myOffset );
-						sourceCursors[ s ] = c;
+						if ( interrupted.get() )
+							return null;
+
+						accumulate( y * width + x0, w );
 					}
-					final Cursor< B > targetCursor = iterableTarget.cursor();
-					targetCursor.jumpFwd( myOffset );
 
-					for ( int i = 0; i < myLength; ++i )
+					if ( tiles != null )
 					{
-						for ( int s = 0; s < numSources; ++s )
-							sourceCursors[ s ].fwd();
-						accumulate( sourceCursors, targetCursor.next() );
+						int levels = 0;
+						for ( final ScreenTiles st : sourceTiles )
+							levels = Math.max( levels, st.getLevels( tile ) );
+						tiles.setLevels( tile, levels );
 					}
 					return null;
 				}
 			};
 			tasks.add( r );
 		}
+
+		final boolean createExecutor = ( executorService == null );
+		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
 		try
 		{
 			ex.invokeAll( tasks );
@@ -178,6 +219,36 @@ public abstract class AccumulateProjector< A, B > implements VolatileProjector
 		return !interrupted.get();
 	}
 
+	/**
+	 * Accumulate the target pixels with flat indices {@code offset} to
+	 * {@code offset + length - 1}, where the target is flattened in row-major
+	 * order. The default implementation iterates the sources and the target
+	 * with cursors and calls {@link #accumulate(Cursor[], Object)} for every
+	 * pixel. Derived classes can override this to work on the underlying
+	 * storage directly.
+	 */
+	protected void accumulate( final int offset, final int length )
+	{
+		final int numSources = sources.size();
+		@SuppressWarnings( "unchecked" )
+		final Cursor< ? extends A >[] sourceCursors = new Cursor[ numSources ];
+		for ( int s = 0; s < numSources; ++s )
+		{
+			final Cursor< ? extends A > c = sources.get( s ).cursor();
+			c.jumpFwd( offset );
+			sourceCursors[ s ] = c;
+		}
+		final Cursor< B > targetCursor = iterableTarget.cursor();
+		targetCursor.jumpFwd( offset );
+
+		for ( int i = 0; i < length; ++i )
+		{
+			for ( int s = 0; s < numSources; ++s )
+				sourceCursors[ s ].fwd();
+			accumulate( sourceCursors, targetCursor.next() );
+		}
+	}
+
 	protected abstract void accumulate( final Cursor< ? extends A >[] accesses, final B target );
 
 	@Override
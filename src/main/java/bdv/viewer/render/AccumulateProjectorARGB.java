@@ -34,10 +34,26 @@ import java.util.concurrent.ExecutorService;
 
 import bdv.viewer.Source;
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.util.Intervals;
 
+/**
+ * Accumulates ARGB sources by saturating addition of the color and alpha
+ * channels.
+ * <p>
+ * If the sources and the target are {@link ArrayImg}s of the same size backed
+ * by {@code int[]}, as the {@link ARGBScreenImage}s used by
+ * {@link MultiResolutionRenderer}, rows of pixels are accumulated directly on
+ * the {@code int[]} storage (see {@link #accumulate(int[][], int[], int, int)}).
+ * Otherwise, pixels are accumulated through cursors. Both give the same
+ * result.
+ */
 public class AccumulateProjectorARGB extends AccumulateProjector< ARGBType, ARGBType >
 {
 	public static AccumulateProjectorFactory< ARGBType > factory = new AccumulateProjectorFactory< ARGBType >()
@@ -55,6 +71,18 @@ public class AccumulateProjectorARGB extends AccumulateProjector< ARGBType, ARGB
 		}
 	};
 
+	/**
+	 * Storage of the target, or {@code null} if pixels are accumulated through
+	 * cursors.
+	 */
+	private final int[] targetData;
+
+	/**
+	 * Storage of the sources, or {@code null} if pixels are accumulated
+	 * through cursors.
+	 */
+	private final int[][] sourceData;
+
 	public AccumulateProjectorARGB(
 			final ArrayList< VolatileProjector > sourceProjectors,
 			final ArrayList< ? extends RandomAccessible< ? extends ARGBType > > sources,
@@ -63,6 +91,107 @@ public class AccumulateProjectorARGB extends AccumulateProjector< ARGBType, ARGB
 			final ExecutorService executorService )
 	{
 		super( sourceProjectors, sources, target, numThreads, executorService );
+
+		final int[] targetData = getIntData( target, target );
+		final int[][] sourceData = new int[ sources.size() ][];
+		boolean arrays = targetData != null;
+		for ( int s = 0; s < sources.size() && arrays; ++s )
+		{
+			sourceData[ s ] = getIntData( sources.get( s ), target );
+			arrays = sourceData[ s ] != null;
+		}
+		this.targetData = arrays ? targetData : null;
+		this.sourceData = arrays ? sourceData : null;
+	}
+
+	/**
+	 * Get the {@code int[]} storage of {@code img}, if it is an
+	 * {@link ArrayImg} with the same size as {@code target} and a target that
+	 * starts at the origin.
+	 */
+	private static int[] getIntData( final Object img, final Interval target )
+	{
+		if ( !( img instanceof ArrayImg ) )
+			return null;
+		final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) img;
+		if ( !Intervals.equals( arrayImg, target ) || target.min( 0 ) != 0 || target.min( 1 ) != 0 )
+			return null;
+		final Object access = arrayImg.update( null );
+		if ( !( access instanceof IntArray ) )
+			return null;
+		return ( ( IntArray ) access ).getCurrentStorageArray();
+	}
+
+	@Override
+	protected void accumulate( final int offset, final int length )
+	{
+		if ( targetData != null )
+			accumulate( sourceData, targetData, offset, length );
+		else
+			super.accumulate( offset, length );
+	}
+
+	/**
+	 * Maximum number of sources for which the packed sums in
+	 * {@link #accumulate(int[][], int[], int, int)} cannot overflow.
+	 */
+	private static final int MAX_PACKED_SOURCES = 0xffff / 0xff;
+
+	/**
+	 * Accumulate {@code sources[s][i]} into {@code target[i]}, for {@code i}
+	 * from {@code offset} to {@code offset + length - 1}. The channels are
+	 * added and clamped to 255, exactly like
+	 * {@link #accumulate(Cursor[], ARGBType)}.
+	 * <p>
+	 * Channels are added two at a time, in 16-bit lanes of an {@code int}: red
+	 * and blue in {@code v & 0x00ff00ff}, alpha and green in
+	 * {@code (v >>> 8) & 0x00ff00ff}. The lanes cannot overflow for up to 257
+	 * sources.
+	 */
+	public static void accumulate( final int[][] sources, final int[] target, final int offset, final int length )
+	{
+		final int numSources = sources.length;
+		if ( numSources > MAX_PACKED_SOURCES )
+		{
+			accumulateUnpacked( sources, target, offset, length );
+			return;
+		}
+
+		final int end = offset + length;
+		for ( int i = offset; i < end; ++i )
+		{
+			int rb = 0;
+			int ag = 0;
+			for ( int s = 0; s < numSources; ++s )
+			{
+				final int value = sources[ s ][ i ];
+				rb += value & 0x00ff00ff;
+				ag += ( value >>> 8 ) & 0x00ff00ff;
+			}
+			final int a = Math.min( ag >>> 16, 255 );
+			final int r = Math.min( rb >>> 16, 255 );
+			final int g = Math.min( ag & 0xffff, 255 );
+			final int b = Math.min( rb & 0xffff, 255 );
+			target[ i ] = ( a << 24 ) | ( r << 16 ) | ( g << 8 ) | b;
+		}
+	}
+
+	private static void accumulateUnpacked( final int[][] sources, final int[] target, final int offset, final int length )
+	{
+		final int end = offset + length;
+		for ( int i = offset; i < end; ++i )
+		{
+			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+			for ( final int[] source : sources )
+			{
+				final int value = source[ i ];
+				aSum += ARGBType.alpha( value );
+				rSum += ARGBType.red( value );
+				gSum += ARGBType.green( value );
+				bSum += ARGBType.blue( value );
+			}
+			target[ i ] = ARGBType.rgba( Math.min( rSum, 255 ), Math.min( gSum, 255 ), Math.min( bSum, 255 ), Math.min( aSum, 255 ) );
+		}
 	}
 
 	@Override
@@ -0,0 +1,319 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.NumericType;
+
+/**
+ * {@link VolatileHierarchyProjector} with a fast path for mipmap levels that
+ * are mapped to the screen by an axis-aligned (not rotated) transform with
+ * nearest-neighbor interpolation.
+ * <p>
+ * For such levels, a screen row corresponds to a single row of source voxels,
+ * and each screen pixel maps to the source voxel
+ * {@code round(scaleX * x + offsetX)}. Instead of going through the
+ * interpolated and transformed source for every pixel, the source image is
+ * traversed directly along the row, and each source voxel is converted only
+ * once, no matter how many screen pixels it covers. Screen pixels that map
+ * outside the source image are rendered through the regular transformed
+ * source, such that out-of-bounds values are the same as for
+ * {@link VolatileHierarchyProjector}.
+ * </p>
+ * <p>
+ * If the source image is a cell image, each row is split into runs of screen
+ * pixels that map into the same source cell. Validity is a property of the
+ * cell data, so it is checked once per run, and runs in cells that are not
+ * yet loaded are skipped in bulk, without touching the source again.
+ * </p>
+ * <p>
+ * Levels without an {@link AxisAlignedLevel} are rendered as by
+ * {@link VolatileHierarchyProjector}.
+ * </p>
+ */
+public class AxisAlignedVolatileHierarchyProjector< A extends Volatile< ? >, B extends NumericType< B > > extends VolatileHierarchyProjector< A, B >
+{
+	/**
+	 * Describes how an axis-aligned mipmap level maps to the screen.
+	 */
+	public static class AxisAlignedLevel< A >
+	{
+		/**
+		 * Relative tolerance for off-diagonal elements of the source-to-screen
+		 * transform.
+		 */
+		private static final double EPSILON = 1e-10;
+
+		private final RandomAccessibleInterval< A > img;
+
+		private final double scaleX;
+
+		private final double offsetX;
+
+		private final double scaleY;
+
+		private final double offsetY;
+
+		private final long z;
+
+		/**
+		 * Width of source cells in X, or 1 if the source image is not a cell
+		 * image. Validity is checked once for each run of screen pixels that
+		 * map into the same cell.
+		 */
+		private final int cellWidth;
+
+		private AxisAlignedLevel( final RandomAccessibleInterval< A > img, final double scaleX, final double offsetX, final double scaleY, final double offsetY, final long z )
+		{
+			this.img = img;
+			this.scaleX = scaleX;
+			this.offsetX = offsetX;
+			this.scaleY = scaleY;
+			this.offsetY = offsetY;
+			this.z = z;
+			cellWidth = ( img instanceof AbstractCellImg )
+					? ( ( AbstractCellImg< ?, ?, ?, ? > ) img ).getCellGrid().cellDimension( 0 )
+					: 1;
+		}
+
+		/**
+		 * Create an {@link AxisAlignedLevel} for a 3D source image that is
+		 * rendered with nearest-neighbor interpolation.
+		 *
+		 * @param img
+		 *            the (not extended, not interpolated) source image.
+		 * @param sourceToScreen
+		 *            transforms source voxel coordinates to screen coordinates.
+		 * @return the {@link AxisAlignedLevel}, or {@code null} if
+		 *         {@code sourceToScreen} is not axis-aligned or {@code img} is
+		 *         not 3D.
+		 */
+		public static < A > AxisAlignedLevel< A > create( final RandomAccessibleInterval< A > img, final AffineTransform3D sourceToScreen )
+		{
+			if ( img.numDimensions() != 3 )
+				return null;
+
+			double maxDiagonal = 0;
+			for ( int d = 0; d < 3; ++d )
+				maxDiagonal = Math.max( maxDiagonal, Math.abs( sourceToScreen.get( d, d ) ) );
+			if ( maxDiagonal == 0 )
+				return null;
+			for ( int r = 0; r < 3; ++r )
+				for ( int c = 0; c < 3; ++c )
+					if ( r != c && Math.abs( sourceToScreen.get( r, c ) ) > EPSILON * maxDiagonal )
+						return null;
+			for ( int d = 0; d < 3; ++d )
+				if ( Math.abs( sourceToScreen.get( d, d ) ) <= EPSILON * maxDiagonal )
+					return null;
+
+			final AffineTransform3D screenToSource = sourceToScreen.inverse();
+			final long z = round( screenToSource.get( 2, 3 ) );
+			return new AxisAlignedLevel<>( img,
+					screenToSource.get( 0, 0 ), screenToSource.get( 0, 3 ),
+					screenToSource.get( 1, 1 ), screenToSource.get( 1, 3 ),
+					z );
+		}
+
+		/**
+		 * Nearest-neighbor rounding, as in
+		 * {@link net.imglib2.interpolation.randomaccess.NearestNeighborInterpolator}.
+		 */
+		private static long round( final double position )
+		{
+			return ( long ) Math.floor( position + 0.5 );
+		}
+
+		long sourceX( final long screenX )
+		{
+			return round( scaleX * screenX + offsetX );
+		}
+
+		long sourceY( final long screenY )
+		{
+			return round( scaleY * screenY + offsetY );
+		}
+
+		/**
+		 * Get the min X coordinate of the cell containing source voxel
+		 * {@code sourceX}.
+		 */
+		long cellMinX( final long sourceX )
+		{
+			final long min = img.min( 0 );
+			return min + Math.floorDiv( sourceX - min, cellWidth ) * cellWidth;
+		}
+	}
+
+	/**
+	 * {@link AxisAlignedLevel} for each source (mipmap level), or {@code null}
+	 * for sources that are rendered by
+	 * {@link VolatileHierarchyProjector#mapRectangle(byte, int, int, int, int)}.
+	 */
+	protected final ArrayList< AxisAlignedLevel< A > > axisAlignedLevels = new ArrayList<>();
+
+	/**
+	 * @param sources
+	 *            the transformed and interpolated mipmap levels.
+	 * @param axisAlignedLevels
+	 *            for each element of {@code sources}, the corresponding
+	 *            {@link AxisAlignedLevel} or {@code null}.
+	 */
+	public AxisAlignedVolatileHierarchyProjector(
+			final List< ? extends RandomAccessible< A > > sources,
+			final List< AxisAlignedLevel< A > > axisAlignedLevels,
+			final Converter< ? super A, B > converter,
+			final RandomAccessibleInterval< B > target,
+			final byte[] maskArray,
+			final ScreenTiles tiles,
+			final int numThreads,
+			final ExecutorService executorService )
+	{
+		super( sources, converter, target, maskArray, tiles, numThreads, executorService );
+		this.axisAlignedLevels.addAll( axisAlignedLevels );
+	}
+
+	@Override
+	protected int mapRectangle( final byte level, final int x0, final int y0, final int w, final int h )
+	{
+		final AxisAlignedLevel< A > axisAligned = axisAlignedLevels.get( level );
+		if ( axisAligned == null )
+			return super.mapRectangle( level, x0, y0, w, h );
+
+		final RandomAccessibleInterval< A > img = axisAligned.img;
+		final long minX = img.min( 0 );
+		final long maxX = img.max( 0 );
+		final boolean zInside = axisAligned.z >= img.min( 2 ) && axisAligned.z <= img.max( 2 );
+
+		final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
+		final RandomAccess< A > imgRandomAccess = img.randomAccess();
+		final RandomAccess< A > sourceRandomAccess = sources.get( level ).randomAccess( sourceInterval );
+		sourceRandomAccess.setPosition( min );
+		final B converted = targetRandomAccess.get().createVariable();
+		int myNumInvalidPixels = 0;
+
+		for ( int y = 0; y < h; ++y )
+		{
+			if ( interrupted.get() )
+				return -1;
+
+			final long screenX0 = min[ 0 ] + x0;
+			final long screenY = min[ 1 ] + y0 + y;
+			final long iy = axisAligned.sourceY( screenY );
+			final boolean rowInside = zInside && iy >= img.min( 1 ) && iy <= img.max( 1 );
+			targetRandomAccess.setPosition( screenX0, 0 );
+			targetRandomAccess.setPosition( screenY, 1 );
+			sourceRandomAccess.setPosition( screenY, 1 );
+			imgRandomAccess.setPosition( iy, 1 );
+			imgRandomAccess.setPosition( axisAligned.z, 2 );
+
+			final int maskOffset = ( y0 + y ) * width + x0;
+			int x = 0;
+			while ( x < w )
+			{
+				final long ix = axisAligned.sourceX( screenX0 + x );
+				if ( !rowInside || ix < minX || ix > maxX )
+				{
+					final int maskIndex = maskOffset + x;
+					if ( maskArray[ maskIndex ] > level )
+					{
+						sourceRandomAccess.setPosition( screenX0 + x, 0 );
+						final A a = sourceRandomAccess.get();
+						if ( a.isValid() )
+						{
+							converter.convert( a, targetRandomAccess.get() );
+							maskArray[ maskIndex ] = level;
+						}
+						else
+							++myNumInvalidPixels;
+					}
+					targetRandomAccess.fwd( 0 );
+					++x;
+					continue;
+				}
+
+				// find the run of pixels [x, runEnd) that map into the same cell
+				final long runMinX = Math.max( minX, axisAligned.cellMinX( ix ) );
+				final long runMaxX = Math.min( maxX, axisAligned.cellMinX( ix ) + axisAligned.cellWidth - 1 );
+				int runEnd = x + 1;
+				int numToRender = maskArray[ maskOffset + x ] > level ? 1 : 0;
+				while ( runEnd < w )
+				{
+					final long jx = axisAligned.sourceX( screenX0 + runEnd );
+					if ( jx < runMinX || jx > runMaxX )
+						break;
+					if ( maskArray[ maskOffset + runEnd ] > level )
+						++numToRender;
+					++runEnd;
+				}
+
+				if ( numToRender > 0 )
+				{
+					imgRandomAccess.setPosition( ix, 0 );
+					if ( imgRandomAccess.get().isValid() )
+					{
+						long convertedX = Long.MIN_VALUE;
+						for ( int maskIndex = maskOffset + x; x < runEnd; ++x, ++maskIndex )
+						{
+							if ( maskArray[ maskIndex ] > level )
+							{
+								final long jx = axisAligned.sourceX( screenX0 + x );
+								if ( jx != convertedX )
+								{
+									imgRandomAccess.setPosition( jx, 0 );
+									converter.convert( imgRandomAccess.get(), converted );
+									convertedX = jx;
+								}
+								targetRandomAccess.get().set( converted );
+								maskArray[ maskIndex ] = level;
+							}
+							targetRandomAccess.fwd( 0 );
+						}
+						continue;
+					}
+					else
+						myNumInvalidPixels += numToRender;
+				}
+				targetRandomAccess.move( runEnd - x, 0 );
+				x = runEnd;
+			}
+		}
+		return myNumInvalidPixels;
+	}
+}
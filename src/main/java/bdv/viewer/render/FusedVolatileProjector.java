@@ -0,0 +1,362 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.Volatile;
+import net.imglib2.cache.iotiming.CacheIoTiming;
+import net.imglib2.cache.iotiming.IoStatistics;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.ui.util.StopWatch;
+
+/**
+ * {@link VolatileProjector} that renders several sources, each a hierarchy of
+ * {@link Volatile} mipmap levels, and accumulates them into the target in one
+ * pass.
+ * <p>
+ * This gives the same result as rendering each source with a
+ * {@link VolatileHierarchyProjector} into its own image and combining the
+ * images with {@link AccumulateProjectorARGB}, but without the intermediate
+ * images. For every target pixel, each source is sampled at the best mipmap
+ * level that has valid data, converted to ARGB, and the channels are added
+ * (saturating at 255) before the target pixel is written once.
+ * <p>
+ * For each source, a mask stores the level that each pixel was rendered from
+ * ({@code Byte.MAX_VALUE} if no level was valid). Subsequent {@link #map()}
+ * calls only re-render pixels for which some source is not at level 0 yet.
+ * Because the converted values of the other sources are not stored, those
+ * sources are sampled again for such pixels.
+ */
+public class FusedVolatileProjector implements VolatileProjector
+{
+	/**
+	 * The mipmap levels of one source, ordered from best to worst, and the
+	 * converter to ARGB.
+	 */
+	public static class SourceLevels< A extends Volatile< ? > >
+	{
+		private final List< ? extends RandomAccessible< A > > levels;
+
+		private final Converter< ? super A, ARGBType > converter;
+
+		public SourceLevels( final List< ? extends RandomAccessible< A > > levels, final Converter< ? super A, ARGBType > converter )
+		{
+			this.levels = levels;
+			this.converter = converter;
+		}
+
+		/**
+		 * Per-thread access to the levels of this source.
+		 */
+		private class Accesses
+		{
+			private final ArrayList< RandomAccess< A > > accesses = new ArrayList<>();
+
+			private final ARGBType argb = new ARGBType();
+
+			Accesses( final FinalInterval interval )
+			{
+				for ( final RandomAccessible< A > level : levels )
+					accesses.add( level.randomAccess( interval ) );
+			}
+
+			void setPosition( final long[] position )
+			{
+				for ( final RandomAccess< A > access : accesses )
+					access.setPosition( position );
+			}
+
+			void fwd()
+			{
+				for ( final RandomAccess< A > access : accesses )
+					access.fwd( 0 );
+			}
+
+			/**
+			 * Get the converted value of the best valid level at the current
+			 * position.
+			 *
+			 * @return the index of the level, or {@code Byte.MAX_VALUE} if no
+			 *         level is valid.
+			 */
+			byte convert()
+			{
+				for ( int l = 0; l < accesses.size(); ++l )
+				{
+					final A a = accesses.get( l ).get();
+					if ( a.isValid() )
+					{
+						converter.convert( a, argb );
+						return ( byte ) l;
+					}
+				}
+				return Byte.MAX_VALUE;
+			}
+		}
+	}
+
+	private final List< SourceLevels< ? > > sources;
+
+	private final ARGBScreenImage target;
+
+	/**
+	 * For each source, the level that each target pixel was rendered from.
+	 */
+	private final byte[][] maskArrays;
+
+	private final FinalInterval sourceInterval;
+
+	private final int width;
+
+	private final int height;
+
+	/**
+	 * Rendering is split into one task per tile.
+	 */
+	private final ScreenTiles taskTiles;
+
+	private final int numThreads;
+
+	private final ExecutorService executorService;
+
+	private final AtomicBoolean interrupted = new AtomicBoolean();
+
+	/**
+	 * Number of target pixels for which some source was not rendered from the
+	 * best level in the current {@link #map()} call.
+	 */
+	private final AtomicInteger numIncompletePixels = new AtomicInteger();
+
+	private volatile boolean valid = false;
+
+	private long lastFrameRenderNanoTime;
+
+	private long lastFrameIoNanoTime;
+
+	/**
+	 * @param sources
+	 *            the sources to render. The levels of all sources must be
+	 *            3D, in screen coordinates.
+	 * @param target
+	 *            the target image.
+	 * @param maskArrays
+	 *            one array with at least as many elements as {@code target}
+	 *            for each source. The masks are cleared.
+	 */
+	public FusedVolatileProjector(
+			final List< SourceLevels< ? > > sources,
+			final ARGBScreenImage target,
+			final byte[][] maskArrays,
+			final int numThreads,
+			final ExecutorService executorService )
+	{
+		this.sources = sources;
+		this.target = target;
+		this.maskArrays = maskArrays;
+		width = ( int ) target.dimension( 0 );
+		height = ( int ) target.dimension( 1 );
+		sourceInterval = new FinalInterval( new long[] { 0, 0, 0 }, new long[] { width - 1, height - 1, 0 } );
+		taskTiles = new ScreenTiles( width, height );
+		this.numThreads = numThreads;
+		this.executorService = executorService;
+		lastFrameRenderNanoTime = -1;
+		for ( int s = 0; s < sources.size(); ++s )
+			Arrays.fill( maskArrays[ s ], 0, width * height, Byte.MAX_VALUE );
+	}
+
+	@Override
+	public void cancel()
+	{
+		interrupted.set( true );
+	}
+
+	@Override
+	public long getLastFrameRenderNanoTime()
+	{
+		return lastFrameRenderNanoTime;
+	}
+
+	public long getLastFrameIoNanoTime()
+	{
+		return lastFrameIoNanoTime;
+	}
+
+	@Override
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	@Override
+	public boolean map()
+	{
+		return map( true );
+	}
+
+	/**
+	 * Render all target pixels that are not complete. The
+	 * {@code clearUntouchedTargetPixels} flag is ignored, because every pixel
+	 * that is rendered is written, even if no source has valid data for it.
+	 */
+	@Override
+	public boolean map( final boolean clearUntouchedTargetPixels )
+	{
+		interrupted.set( false );
+
+		final StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		final IoStatistics iostat = CacheIoTiming.getIoStatistics();
+		final long startTimeIo = iostat.getIoNanoTime();
+		final long startTimeIoCumulative = iostat.getCumulativeIoNanoTime();
+
+		numIncompletePixels.set( 0 );
+
+		final boolean createExecutor = ( executorService == null );
+		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>( taskTiles.numTiles() );
+		for ( final int tile : taskTiles.getRenderOrder() )
+		{
+			final Callable< Void > r = new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					if ( interrupted.get() )
+						return null;
+
+					final int myNumIncompletePixels = mapRectangle(
+							taskTiles.tileMinX( tile ), taskTiles.tileMinY( tile ),
+							taskTiles.tileWidth( tile ), taskTiles.tileHeight( tile ) );
+					if ( myNumIncompletePixels > 0 )
+						numIncompletePixels.addAndGet( myNumIncompletePixels );
+					return null;
+				}
+			};
+			tasks.add( r );
+		}
+		try
+		{
+			ex.invokeAll( tasks );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		if ( createExecutor )
+			ex.shutdown();
+
+		final long lastFrameTime = stopWatch.nanoTime();
+		lastFrameIoNanoTime = iostat.getIoNanoTime() - startTimeIo;
+		lastFrameRenderNanoTime = lastFrameTime - ( iostat.getCumulativeIoNanoTime() - startTimeIoCumulative ) / numThreads;
+
+		if ( interrupted.get() )
+			return false;
+
+		valid = numIncompletePixels.get() == 0;
+		return true;
+	}
+
+	/**
+	 * Render the rectangle with top-left corner {@code (x0, y0)} and size
+	 * {@code w} &times; {@code h}.
+	 *
+	 * @return the number of pixels for which some source was not rendered
+	 *         from the best level, or -1 if rendering was interrupted.
+	 */
+	private int mapRectangle( final int x0, final int y0, final int w, final int h )
+	{
+		final int numSources = sources.size();
+		final SourceLevels< ? >.Accesses[] accesses = new SourceLevels.Accesses[ numSources ];
+		for ( int s = 0; s < numSources; ++s )
+			accesses[ s ] = sources.get( s ).new Accesses( sourceInterval );
+		final int[] data = target.getData();
+		final long[] position = new long[ 3 ];
+		int myNumIncompletePixels = 0;
+
+		for ( int y = y0; y < y0 + h; ++y )
+		{
+			if ( interrupted.get() )
+				return -1;
+
+			position[ 0 ] = x0;
+			position[ 1 ] = y;
+			for ( int s = 0; s < numSources; ++s )
+				accesses[ s ].setPosition( position );
+
+			for ( int x = 0, i = y * width + x0; x < w; ++x, ++i )
+			{
+				boolean complete = true;
+				for ( int s = 0; s < numSources && complete; ++s )
+					complete = maskArrays[ s ][ i ] == 0;
+
+				if ( !complete )
+				{
+					complete = true;
+					int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+					for ( int s = 0; s < numSources; ++s )
+					{
+						final byte level = accesses[ s ].convert();
+						maskArrays[ s ][ i ] = level;
+						if ( level != 0 )
+							complete = false;
+						if ( level != Byte.MAX_VALUE )
+						{
+							final int value = accesses[ s ].argb.get();
+							aSum += ARGBType.alpha( value );
+							rSum += ARGBType.red( value );
+							gSum += ARGBType.green( value );
+							bSum += ARGBType.blue( value );
+						}
+					}
+					data[ i ] = ARGBType.rgba( Math.min( rSum, 255 ), Math.min( gSum, 255 ), Math.min( bSum, 255 ), Math.min( aSum, 255 ) );
+					if ( !complete )
+						++myNumIncompletePixels;
+				}
+
+				for ( int s = 0; s < numSources; ++s )
+					accesses[ s ].fwd();
+			}
+		}
+		return myNumIncompletePixels;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.ArrayDeque;
+
+import bdv.img.cache.CountingFetchQueues;
+import bdv.img.cache.SpeculativeRequests;
+import bdv.viewer.animate.AbstractTransformAnimator;
+import bdv.viewer.state.ViewerState;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.ui.TransformListener;
+
+/**
+ * Prefetches cells for the view that is predicted a short time ahead while
+ * the viewer transform is changing, such that the first frames of a pan,
+ * zoom, or rotation do not show missing data.
+ * <p>
+ * The motion is extrapolated from recent viewer transforms (reported as a
+ * {@link TransformListener}), or taken from a running
+ * {@link AbstractTransformAnimator}. Cells for the predicted view are enqueued
+ * as {@link SpeculativeRequests} (at the lowest priority of
+ * {@link CountingFetchQueues}). When the predicted view changes considerably
+ * (or the motion stops), the previous requests are cancelled.
+ * <p>
+ * Cells that are also needed for the current view are not enqueued. They are
+ * requested by the renderer, and a speculative request would take their place
+ * in the current frame (and be discarded when cancelled).
+ */
+public class MotionPrefetcher implements TransformListener< AffineTransform3D >
+{
+	/**
+	 * Transforms older than this are not used to estimate the motion.
+	 */
+	private static final long VELOCITY_WINDOW_MILLIS = 150;
+
+	/**
+	 * If the transform did not change for this long, the motion is assumed
+	 * to have stopped.
+	 */
+	private static final long STOPPED_MILLIS = 100;
+
+	/**
+	 * Maximum number of steps by which the last transform change is
+	 * extrapolated.
+	 */
+	private static final int MAX_STEPS = 20;
+
+	/**
+	 * Changes of less than this many pixels are not considered motion.
+	 */
+	private static final double MIN_DISPLACEMENT = 0.5;
+
+	/**
+	 * The predicted view is considered changed (and previous requests are
+	 * cancelled) if it is displaced by this fraction of the screen size.
+	 */
+	private static final double CHANGED_DISPLACEMENT = 0.25;
+
+	private static class Sample
+	{
+		final long timeMillis;
+
+		final AffineTransform3D transform;
+
+		Sample( final long timeMillis, final AffineTransform3D transform )
+		{
+			this.timeMillis = timeMillis;
+			this.transform = transform;
+		}
+	}
+
+	private final long lookAheadMillis;
+
+	/**
+	 * Recent viewer transforms, oldest first.
+	 */
+	private final ArrayDeque< Sample > samples = new ArrayDeque<>();
+
+	/**
+	 * The predicted transform for which {@link #requests} were enqueued, or
+	 * {@code null}.
+	 */
+	private AffineTransform3D prefetchedTransform;
+
+	private SpeculativeRequests requests;
+
+	/**
+	 * @param lookAheadMillis
+	 *            how far ahead (in milliseconds) to predict the view.
+	 */
+	public MotionPrefetcher( final long lookAheadMillis )
+	{
+		this.lookAheadMillis = lookAheadMillis;
+	}
+
+	@Override
+	public synchronized void transformChanged( final AffineTransform3D transform )
+	{
+		final long now = System.currentTimeMillis();
+		samples.addLast( new Sample( now, transform.copy() ) );
+		removeSamplesBefore( now - VELOCITY_WINDOW_MILLIS );
+	}
+
+	/**
+	 * Predict the view {@link #MotionPrefetcher(long) look-ahead} milliseconds
+	 * from now and enqueue cells for it, if it changed considerably since the
+	 * last call. If the view is not moving, cancel previously enqueued
+	 * requests.
+	 *
+	 * @param state
+	 *            the current viewer state.
+	 * @param animator
+	 *            the running animator, or {@code null}.
+	 * @param width
+	 *            width of the screen.
+	 * @param height
+	 *            height of the screen.
+	 */
+	public synchronized void prefetch( final ViewerState state, final AbstractTransformAnimator animator, final int width, final int height )
+	{
+		final AffineTransform3D current = new AffineTransform3D();
+		state.getViewerTransform( current );
+
+		final long now = System.currentTimeMillis();
+		final AffineTransform3D predicted = ( animator != null )
+				? animator.get( animator.ratioCompleteAt( now + lookAheadMillis ) ).copy()
+				: extrapolate( now );
+		if ( predicted == null || maxDisplacement( current, predicted, width, height ) < MIN_DISPLACEMENT )
+		{
+			cancel();
+			return;
+		}
+
+		if ( prefetchedTransform != null && maxDisplacement( prefetchedTransform, predicted, width, height ) < CHANGED_DISPLACEMENT * Math.max( width, height ) )
+			return;
+
+		cancel();
+		prefetchedTransform = predicted;
+		requests = new SpeculativeRequests();
+		final AffineTransform3D screenScaleTransform = current.inverse().preConcatenate( predicted );
+		requests.enqueue( () -> Prefetcher.fetchCellsOutsideCurrentView( state, screenScaleTransform, width, height ) );
+	}
+
+	/**
+	 * Cancel the requests enqueued for the last predicted view.
+	 */
+	public synchronized void cancel()
+	{
+		if ( requests != null )
+		{
+			requests.cancel();
+			requests = null;
+		}
+		prefetchedTransform = null;
+	}
+
+	/**
+	 * Extrapolate the change between the oldest and newest recent transform
+	 * to {@link #lookAheadMillis} after the newest transform.
+	 *
+	 * @return the predicted transform, or {@code null} if the view is not
+	 *         moving.
+	 */
+	private AffineTransform3D extrapolate( final long now )
+	{
+		removeSamplesBefore( now - VELOCITY_WINDOW_MILLIS );
+		if ( samples.size() < 2 || now - samples.getLast().timeMillis > STOPPED_MILLIS )
+			return null;
+
+		final Sample first = samples.getFirst();
+		final Sample last = samples.getLast();
+		final long dt = last.timeMillis - first.timeMillis;
+		if ( dt <= 0 )
+			return null;
+
+		// change from first to last transform
+		final AffineTransform3D step = first.transform.inverse().preConcatenate( last.transform );
+		final int numSteps = ( int ) Math.max( 1, Math.min( MAX_STEPS, Math.round( ( double ) lookAheadMillis / dt ) ) );
+		final AffineTransform3D predicted = last.transform.copy();
+		for ( int i = 0; i < numSteps; ++i )
+			predicted.preConcatenate( step );
+		return predicted;
+	}
+
+	private void removeSamplesBefore( final long timeMillis )
+	{
+		while ( !samples.isEmpty() && samples.getFirst().timeMillis < timeMillis )
+			samples.removeFirst();
+	}
+
+	/**
+	 * Get the maximum distance (in screen pixels) by which the corners and
+	 * center of a {@code width} &times; {@code height} screen move from view
+	 * {@code a} to view {@code b}.
+	 */
+	private static double maxDisplacement( final AffineTransform3D a, final AffineTransform3D b, final int width, final int height )
+	{
+		final AffineTransform3D aToB = a.inverse().preConcatenate( b );
+		final double[][] points = {
+				{ 0, 0, 0 },
+				{ width, 0, 0 },
+				{ 0, height, 0 },
+				{ width, height, 0 },
+				{ 0.5 * width, 0.5 * height, 0 } };
+		final double[] q = new double[ 3 ];
+		double max = 0;
+		for ( final double[] p : points )
+		{
+			aToB.apply( p, q );
+			double d = 0;
+			for ( int i = 0; i < 3; ++i )
+				d += ( q[ i ] - p[ i ] ) * ( q[ i ] - p[ i ] );
+			max = Math.max( max, Math.sqrt( d ) );
+		}
+		return max;
+	}
+}
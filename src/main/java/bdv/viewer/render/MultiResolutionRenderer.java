@@ -36,18 +36,20 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 import bdv.cache.CacheControl;
+import bdv.cache.CacheStatistics;
 import bdv.img.cache.VolatileCachedCellImg;
 import bdv.viewer.Interpolation;
 import bdv.viewer.Source;
+import bdv.viewer.render.AxisAlignedVolatileHierarchyProjector.AxisAlignedLevel;
 import bdv.viewer.render.MipmapOrdering.Level;
 import bdv.viewer.render.MipmapOrdering.MipmapHints;
 import bdv.viewer.state.SourceState;
 import bdv.viewer.state.ViewerState;
-import net.imglib2.Dimensions;
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealRandomAccessible;
@@ -94,12 +96,14 @@ import net.imglib2.ui.util.GuiUtil;
  * display remains interactive.
  * <p>
  * The renderer tries to maintain a per-frame rendering time close to a desired
- * number of <code>targetRenderNanos</code> nanoseconds. If the rendering time
- * (in nanoseconds) for the (currently) highest scaled screen image is above
- * this threshold, a coarser screen scale is chosen as the highest screen scale
- * to use. Similarly, if the rendering time for the (currently) second-highest
- * scaled screen image is below this threshold, this finer screen scale chosen
- * as the highest screen scale to use.
+ * number of <code>targetRenderNanos</code> nanoseconds. Render and IO times
+ * of recent frames are collected per screen scale and per mipmap level in
+ * {@link RenderStatistics}. The finest screen scale for which the predicted
+ * render time is below this threshold is chosen as the highest screen scale
+ * to use. When rendering at the highest screen scale, the IO budget is limited
+ * to the time that remains after the predicted render time. Timing, progress,
+ * and cache counters of each rendering pass are reported to
+ * {@link RenderMetricsListener}s.
  * <p>
  * The renderer uses multiple threads (if desired) and double-buffering (if
  * desired).
@@ -122,6 +126,17 @@ import net.imglib2.ui.util.GuiUtil;
  * might differ between visible sources.
  * <p>
  * Rendering timing is tied to a {@link CacheControl} control for IO budgeting, etc.
+ * <p>
+ * If tiled rendering is enabled, the rendered image is split into
+ * {@link ScreenTiles tiles}. If only the viewer transform changed, by an
+ * in-plane translation of whole screen image pixels, the previously rendered
+ * image and tile states are shifted and only the newly exposed tiles and the
+ * tiles that are still waiting for data are rendered. This makes panning much
+ * cheaper, in particular for large displays.
+ * <p>
+ * If fused projection is enabled, multiple volatile sources are rendered and
+ * accumulated in one pass by a {@link FusedVolatileProjector}, without
+ * {@link #renderImages}.
  *
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
  */
@@ -209,12 +224,11 @@ public class MultiResolutionRenderer
 	protected AffineTransform3D[] screenScaleTransforms;
 
 	/**
-	 * If the rendering time (in nanoseconds) for the (currently) highest scaled
-	 * screen image is above this threshold, increase the
-	 * {@link #maxScreenScaleIndex index} of the highest screen scale to use.
-	 * Similarly, if the rendering time for the (currently) second-highest
-	 * scaled screen image is below this threshold, decrease the
-	 * {@link #maxScreenScaleIndex index} of the highest screen scale to use.
+	 * Target rendering time (in nanoseconds) for the highest scaled screen
+	 * image. The {@link #maxScreenScaleIndex index} of the highest screen scale
+	 * to use is the finest screen scale for which the
+	 * {@link RenderStatistics#predictRenderNanoTime(int) predicted} render time
+	 * is below this threshold.
 	 */
 	protected final long targetRenderNanos;
 
@@ -273,15 +287,101 @@ public class MultiResolutionRenderer
 
 	/**
 	 * The timepoint for which last a projector was
-	 * {@link #createProjector(ViewerState, int, ARGBScreenImage) created}.
+	 * {@link #createProjector(ViewerState, int, ARGBScreenImage, int, int[]) created}.
 	 */
 	protected int previousTimepoint;
 
-	// TODO: should be settable
+	/**
+	 * IO budget (in nanoseconds) for each mipmap level, starting with the best
+	 * level. See {@link #setIoBudget(long[])}.
+	 */
 	protected long[] iobudget = new long[] { 100l * 1000000l,  10l * 1000000l };
 
-	// TODO: should be settable
-	protected boolean prefetchCells = true;
+	/**
+	 * Render and IO times of recent frames, used to choose
+	 * {@link #maxScreenScaleIndex} and the IO budget.
+	 */
+	protected final RenderStatistics renderStatistics = new RenderStatistics();
+
+	/**
+	 * Listeners notified about {@link RenderMetrics} of each rendering pass.
+	 */
+	protected final CopyOnWriteArrayList< RenderMetricsListener > renderMetricsListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Number of rendering passes that were cancelled.
+	 */
+	protected long numCancelledFrames;
+
+	/**
+	 * Whether cells of the visible mipmap levels are requested (in prefetch
+	 * order) before rendering. See {@link #setPrefetchCells(boolean)}.
+	 */
+	protected volatile boolean prefetchCells = true;
+
+	/**
+	 * Whether tiled rendering is used.
+	 */
+	protected final boolean tiledRendering;
+
+	/**
+	 * Whether multiple volatile sources are rendered and accumulated in one
+	 * pass by a {@link FusedVolatileProjector}, instead of rendering each
+	 * source to a {@link #renderImages render image} first.
+	 */
+	protected final boolean fusedProjection;
+
+	/**
+	 * Tile states of the {@link #renderImages} (or of the screen image, if
+	 * there is only one visible source). One per visible source. (First) index
+	 * is index in list of visible sources.
+	 */
+	protected ScreenTiles[] renderTiles;
+
+	/**
+	 * Tile states of the screen image, if there is more than one visible
+	 * source.
+	 */
+	protected ScreenTiles screenTiles;
+
+	/**
+	 * Whether a repaint was {@link #requestRepaint() requested} for other
+	 * reasons than a {@link #requestTransformRepaint() transform change} since
+	 * the last projector was created. If so, the previously rendered image
+	 * cannot be re-used for tiled rendering.
+	 */
+	protected boolean contentChanged;
+
+	/**
+	 * The screen scale index of the last tiled rendering, or -1 if it cannot
+	 * be re-used.
+	 */
+	protected int tiledScreenScaleIndex;
+
+	/**
+	 * The double-buffer index of the screen image of the last tiled rendering.
+	 */
+	protected int tiledRenderId;
+
+	/**
+	 * The viewer transform of the last tiled rendering.
+	 */
+	protected final AffineTransform3D tiledTransform = new AffineTransform3D();
+
+	/**
+	 * The timepoint of the last tiled rendering.
+	 */
+	protected int tiledTimepoint;
+
+	/**
+	 * The visible sources of the last tiled rendering.
+	 */
+	protected List< Integer > tiledVisibleSourceIndices;
+
+	/**
+	 * The interpolation of the last tiled rendering.
+	 */
+	protected Interpolation tiledInterpolation;
 
 	/**
 	 * @param display
@@ -326,6 +426,64 @@ public class MultiResolutionRenderer
 			final boolean useVolatileIfAvailable,
 			final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory,
 			final CacheControl cacheControl )
+	{
+		this( display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads,
+				renderingExecutorService, useVolatileIfAvailable, accumulateProjectorFactory, cacheControl, false, false );
+	}
+
+	/**
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param screenScales
+	 *            Scale factors from the viewer canvas to screen images of
+	 *            different resolutions. A scale factor of 1 means 1 pixel in
+	 *            the screen image is displayed as 1 pixel on the canvas, a
+	 *            scale factor of 0.5 means 1 pixel in the screen image is
+	 *            displayed as 2 pixel on the canvas, etc.
+	 * @param targetRenderNanos
+	 *            Target rendering time in nanoseconds. The rendering time for
+	 *            the coarsest rendered scale should be below this threshold.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            if non-null, this is used for rendering. Note, that it is
+	 *            still important to supply the numRenderingThreads parameter,
+	 *            because that is used to determine into how many sub-tasks
+	 *            rendering is split.
+	 * @param useVolatileIfAvailable
+	 *            whether volatile versions of sources should be used if
+	 *            available.
+	 * @param accumulateProjectorFactory
+	 *            can be used to customize how sources are combined.
+	 * @param cacheControl
+	 *            the cache controls IO budgeting and fetcher queue.
+	 * @param tiledRendering
+	 *            whether to re-use the previously rendered image when the
+	 *            viewer transform is translated (see {@link ScreenTiles}).
+	 * @param fusedProjection
+	 *            whether to render and accumulate multiple volatile sources
+	 *            in one pass (see {@link FusedVolatileProjector}). This is
+	 *            only used with the default {@link AccumulateProjectorARGB}
+	 *            and without tiled rendering.
+	 */
+	public MultiResolutionRenderer(
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final double[] screenScales,
+			final long targetRenderNanos,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService,
+			final boolean useVolatileIfAvailable,
+			final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory,
+			final CacheControl cacheControl,
+			final boolean tiledRendering,
+			final boolean fusedProjection )
 	{
 		this.display = wrapTransformAwareRenderTarget( display );
 		this.painterThread = painterThread;
@@ -353,6 +511,11 @@ public class MultiResolutionRenderer
 		this.cacheControl = cacheControl;
 		newFrameRequest = false;
 		previousTimepoint = -1;
+		this.tiledRendering = tiledRendering;
+		this.fusedProjection = fusedProjection;
+		renderTiles = new ScreenTiles[ 0 ];
+		contentChanged = true;
+		tiledScreenScaleIndex = -1;
 	}
 
 	/**
@@ -403,6 +566,11 @@ public class MultiResolutionRenderer
 				screenScaleTransforms[ i ] = scale;
 			}
 
+			final long[] numPixels = new long[ screenScales.length ];
+			for ( int i = 0; i < screenScales.length; ++i )
+				numPixels[ i ] = screenImages[ i ][ 0 ].size();
+			renderStatistics.setScreenSizes( numPixels );
+
 			return true;
 		}
 		return false;
@@ -470,6 +638,9 @@ public class MultiResolutionRenderer
 
 		final boolean createProjector;
 
+		// whether the previously rendered image is re-used (tiled rendering)
+		boolean incremental = false;
+
 		synchronized ( this )
 		{
 			// Rendering may be cancelled unless we are rendering at coarsest
@@ -485,15 +656,29 @@ public class MultiResolutionRenderer
 			if ( createProjector )
 			{
 				final int renderId = renderIdQueue.peek();
-				currentScreenScaleIndex = requestedScreenScaleIndex;
-				bufferedImage = bufferedImages[ currentScreenScaleIndex ][ renderId ];
-				final ARGBScreenImage screenImage = screenImages[ currentScreenScaleIndex ][ renderId ];
 				synchronized ( state )
 				{
 					final int numVisibleSources = state.getVisibleSourceIndices().size();
-					checkRenewRenderImages( numVisibleSources );
-					checkRenewMaskArrays( numVisibleSources );
-					p = createProjector( state, currentScreenScaleIndex, screenImage );
+					// the fused projector does not need render images
+					final int numRenderImages = useFusedProjection( state ) ? 0 : numVisibleSources;
+					final boolean renewed = checkRenewRenderImages( numRenderImages ) | checkRenewMaskArrays( numVisibleSources );
+					final int[] shift = ( tiledRendering && clearQueue && !contentChanged && !resized && !renewed )
+							? getTileShift( state )
+							: null;
+					incremental = shift != null;
+					if ( incremental )
+					{
+						// render the shifted image at the same screen scale
+						// right away. This is cheap, and should not be cancelled.
+						currentScreenScaleIndex = tiledScreenScaleIndex;
+						renderingMayBeCancelled = false;
+					}
+					else
+						currentScreenScaleIndex = requestedScreenScaleIndex;
+					bufferedImage = bufferedImages[ currentScreenScaleIndex ][ renderId ];
+					final ARGBScreenImage screenImage = screenImages[ currentScreenScaleIndex ][ renderId ];
+					contentChanged = false;
+					p = createProjector( state, currentScreenScaleIndex, screenImage, renderId, shift );
 				}
 				projector = p;
 			}
@@ -509,9 +694,15 @@ public class MultiResolutionRenderer
 		// try rendering
 		final boolean success = p.map( createProjector );
 		final long rendertime = p.getLastFrameRenderNanoTime();
+		final long iotime = getLastFrameIoNanoTime( p );
+		final int renderedScreenScaleIndex;
 
 		synchronized ( this )
 		{
+			renderedScreenScaleIndex = currentScreenScaleIndex;
+			if ( !success )
+				++numCancelledFrames;
+
 			// if rendering was not cancelled...
 			if ( success )
 			{
@@ -526,17 +717,12 @@ public class MultiResolutionRenderer
 							renderIdQueue.add( id );
 					}
 
-					if ( currentScreenScaleIndex == maxScreenScaleIndex )
-					{
-						if ( rendertime > targetRenderNanos && maxScreenScaleIndex < screenScales.length - 1 )
-							maxScreenScaleIndex++;
-						else if ( rendertime < targetRenderNanos / 3 && maxScreenScaleIndex > 0 )
-							maxScreenScaleIndex--;
-					}
-					else if ( currentScreenScaleIndex == maxScreenScaleIndex - 1 )
+					// render time of a shifted image says nothing about
+					// the render time of a full image.
+					if ( !incremental )
 					{
-						if ( rendertime < targetRenderNanos && maxScreenScaleIndex > 0 )
-							maxScreenScaleIndex--;
+						renderStatistics.addFrame( currentScreenScaleIndex, rendertime, iotime, sumPerLevel( p, VolatileHierarchyProjector::getLastFrameLevelNanoTimes ) );
+						maxScreenScaleIndex = predictMaxScreenScaleIndex();
 					}
 //					System.out.println( String.format( "rendering:%4d ms", rendertime / 1000000 ) );
 //					System.out.println( "scale = " + currentScreenScaleIndex );
@@ -561,6 +747,23 @@ public class MultiResolutionRenderer
 			}
 		}
 
+		if ( !renderMetricsListeners.isEmpty() )
+		{
+			final RenderMetrics metrics = new RenderMetrics(
+					System.nanoTime(),
+					renderedScreenScaleIndex,
+					createProjector,
+					!success,
+					rendertime,
+					iotime,
+					sumPerLevel( p, VolatileHierarchyProjector::getLastFrameLevelNanoTimes ),
+					sumPerLevel( p, VolatileHierarchyProjector::getLastFrameNumInvalidPixels ),
+					numCancelledFrames,
+					CacheStatistics.of( cacheControl ) );
+			for ( final RenderMetricsListener l : renderMetricsListeners )
+				l.frameRendered( metrics );
+		}
+
 		return success;
 	}
 
@@ -569,6 +772,18 @@ public class MultiResolutionRenderer
 	 * screen scale index and mipmap level.
 	 */
 	public synchronized void requestRepaint()
+	{
+		newFrameRequest = true;
+		contentChanged = true;
+		requestRepaint( maxScreenScaleIndex );
+	}
+
+	/**
+	 * Request a repaint of the display from the painter thread, after only the
+	 * viewer transform has changed. This is like {@link #requestRepaint()},
+	 * but with tiled rendering, the previously rendered image may be re-used.
+	 */
+	public synchronized void requestTransformRepaint()
 	{
 		newFrameRequest = true;
 		requestRepaint( maxScreenScaleIndex );
@@ -608,16 +823,121 @@ public class MultiResolutionRenderer
 			renderImages[ i ] = null;
 		for ( int i = 0; i < renderMaskArrays.length; ++i )
 			renderMaskArrays[ i ] = null;
+		for ( int i = 0; i < renderTiles.length; ++i )
+			renderTiles[ i ] = null;
+		screenTiles = null;
+		tiledScreenScaleIndex = -1;
 		for ( int i = 0; i < screenImages.length; ++i )
 			screenImages[ i ] = null;
 		for ( int i = 0; i < bufferedImages.length; ++i )
 			bufferedImages[ i ] = null;
 	}
 
+	/**
+	 * Check whether the image of the last tiled rendering can be re-used to
+	 * render {@code state}. This is the case if only the viewer transform
+	 * changed, by a translation of whole pixels in the screen image plane.
+	 *
+	 * @return the translation {@code (dx, dy)} in screen image pixels, or
+	 *         {@code null} if the image cannot be re-used.
+	 */
+	private int[] getTileShift( final ViewerState state )
+	{
+		if ( tiledScreenScaleIndex < 0
+				|| state.getCurrentTimepoint() != tiledTimepoint
+				|| state.getInterpolation() != tiledInterpolation
+				|| !state.getVisibleSourceIndices().equals( tiledVisibleSourceIndices ) )
+			return null;
+
+		final AffineTransform3D transform = new AffineTransform3D();
+		state.getViewerTransform( transform );
+		final AffineTransform3D diff = tiledTransform.inverse();
+		diff.preConcatenate( transform );
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+				if ( Math.abs( diff.get( r, c ) - ( r == c ? 1 : 0 ) ) > 1e-9 )
+					return null;
+		if ( Math.abs( diff.get( 2, 3 ) ) > 1e-6 )
+			return null;
+
+		final AffineTransform3D screenScaleTransform = screenScaleTransforms[ tiledScreenScaleIndex ];
+		final double dx = diff.get( 0, 3 ) * screenScaleTransform.get( 0, 0 );
+		final double dy = diff.get( 1, 3 ) * screenScaleTransform.get( 1, 1 );
+		final long sx = Math.round( dx );
+		final long sy = Math.round( dy );
+		if ( Math.abs( dx - sx ) > 1e-6 || Math.abs( dy - sy ) > 1e-6 )
+			return null;
+
+		final ARGBScreenImage screenImage = screenImages[ tiledScreenScaleIndex ][ 0 ];
+		if ( Math.abs( sx ) >= screenImage.dimension( 0 ) || Math.abs( sy ) >= screenImage.dimension( 1 ) )
+			return null;
+
+		return new int[] { ( int ) sx, ( int ) sy };
+	}
+
+	/**
+	 * Set up {@link #renderTiles} and {@link #screenTiles} for rendering to
+	 * {@code screenImage}. If {@code shift} is {@code null}, all tiles and
+	 * masks are cleared. Otherwise, the image, render images, masks, and tile
+	 * states of the last tiled rendering are moved by {@code shift}.
+	 */
+	private void prepareTiles(
+			final int numVisibleSources,
+			final ARGBScreenImage screenImage,
+			final int[] shift )
+	{
+		final int w = ( int ) screenImage.dimension( 0 );
+		final int h = ( int ) screenImage.dimension( 1 );
+		if ( shift == null )
+		{
+			if ( renderTiles.length != numVisibleSources )
+				renderTiles = new ScreenTiles[ numVisibleSources ];
+			for ( int j = 0; j < numVisibleSources; ++j )
+			{
+				if ( renderTiles[ j ] == null || renderTiles[ j ].getWidth() != w || renderTiles[ j ].getHeight() != h )
+					renderTiles[ j ] = new ScreenTiles( w, h );
+				else
+					renderTiles[ j ].invalidateAll();
+				Arrays.fill( renderMaskArrays[ j ], 0, w * h, Byte.MAX_VALUE );
+			}
+			if ( screenTiles == null || screenTiles.getWidth() != w || screenTiles.getHeight() != h )
+				screenTiles = new ScreenTiles( w, h );
+			else
+				screenTiles.invalidateAll();
+		}
+		else
+		{
+			final int dx = shift[ 0 ];
+			final int dy = shift[ 1 ];
+			final int[] previous = screenImages[ tiledScreenScaleIndex ][ tiledRenderId ].getData();
+			ScreenTiles.shift( previous, screenImage.getData(), w, h, dx, dy, 0 );
+			for ( int j = 0; j < numVisibleSources; ++j )
+			{
+				ScreenTiles.shift( renderMaskArrays[ j ], renderMaskArrays[ j ], w, h, dx, dy, Byte.MAX_VALUE );
+				renderTiles[ j ].shift( dx, dy );
+				if ( numVisibleSources > 1 )
+				{
+					final int[] data = renderImages[ tiledScreenScaleIndex ][ j ].getData();
+					ScreenTiles.shift( data, data, w, h, dx, dy, 0 );
+				}
+			}
+			screenTiles.shift( dx, dy );
+		}
+	}
+
+	/**
+	 * @param renderId
+	 *            double-buffer index of {@code screenImage}.
+	 * @param shift
+	 *            if non-null, the image of the last tiled rendering is
+	 *            re-used, moved by {@code shift} pixels.
+	 */
 	private VolatileProjector createProjector(
 			final ViewerState viewerState,
 			final int screenScaleIndex,
-			final ARGBScreenImage screenImage )
+			final ARGBScreenImage screenImage,
+			final int renderId,
+			final int[] shift )
 	{
 		/*
 		 * This shouldn't be necessary, with
@@ -626,13 +946,22 @@ public class MultiResolutionRenderer
 //		CacheIoTiming.getIoTimeBudget().clear(); // clear time budget such that prefetching doesn't wait for loading blocks.
 		final List< SourceState< ? > > sourceStates = viewerState.getSources();
 		final List< Integer > visibleSourceIndices = viewerState.getVisibleSourceIndices();
+		final boolean tiled = tiledRendering && !visibleSourceIndices.isEmpty();
+		if ( tiled )
+			prepareTiles( visibleSourceIndices.size(), screenImage, shift );
+
+		// whether all source projectors render only incomplete tiles
+		boolean allTiled = tiled;
 		VolatileProjector projector;
 		if ( visibleSourceIndices.isEmpty() )
 			projector = new EmptyProjector<>( screenImage );
+		else if ( useFusedProjection( viewerState ) )
+			projector = createFusedProjector( viewerState, screenImage );
 		else if ( visibleSourceIndices.size() == 1 )
 		{
 			final int i = visibleSourceIndices.get( 0 );
-			projector = createSingleSourceProjector( viewerState, sourceStates.get( i ), i, currentScreenScaleIndex, screenImage, renderMaskArrays[ 0 ] );
+			projector = createSingleSourceProjector( viewerState, sourceStates.get( i ), i, currentScreenScaleIndex, screenImage, renderMaskArrays[ 0 ], tiled ? renderTiles[ 0 ] : null );
+			allTiled &= projector instanceof VolatileHierarchyProjector;
 		}
 		else
 		{
@@ -644,22 +973,168 @@ public class MultiResolutionRenderer
 			{
 				final ARGBScreenImage renderImage = renderImages[ currentScreenScaleIndex ][ j ];
 				final byte[] maskArray = renderMaskArrays[ j ];
+				final ScreenTiles tiles = tiled ? renderTiles[ j ] : null;
 				++j;
 				final VolatileProjector p = createSingleSourceProjector(
 						viewerState, sourceStates.get( i ), i, currentScreenScaleIndex,
-						renderImage, maskArray );
+						renderImage, maskArray, tiles );
+				allTiled &= p instanceof VolatileHierarchyProjector;
 				sourceProjectors.add( p );
 				sources.add( sourceStates.get( i ).getSpimSource() );
 				sourceImages.add( renderImage );
 			}
 			projector = accumulateProjectorFactory.createAccumulateProjector( sourceProjectors, sources, sourceImages, screenImage, numRenderingThreads, renderingExecutorService );
+			if ( allTiled && projector instanceof AccumulateProjector )
+				( ( AccumulateProjector< ?, ? > ) projector ).setTiles( screenTiles, Arrays.asList( renderTiles ) );
 		}
 		previousTimepoint = viewerState.getCurrentTimepoint();
 		viewerState.getViewerTransform( currentProjectorTransform );
-		CacheIoTiming.getIoTimeBudget().reset( iobudget );
+		if ( allTiled )
+		{
+			tiledScreenScaleIndex = screenScaleIndex;
+			tiledRenderId = renderId;
+			tiledTransform.set( currentProjectorTransform );
+			tiledTimepoint = viewerState.getCurrentTimepoint();
+			tiledVisibleSourceIndices = new ArrayList<>( visibleSourceIndices );
+			tiledInterpolation = viewerState.getInterpolation();
+		}
+		else
+			tiledScreenScaleIndex = -1;
+		CacheIoTiming.getIoTimeBudget().reset( getFrameIoBudget( screenScaleIndex ) );
 		return projector;
 	}
 
+	/**
+	 * Get the finest screen scale for which the predicted render time is
+	 * below {@link #targetRenderNanos}. If there is none, the coarsest screen
+	 * scale.
+	 */
+	private int predictMaxScreenScaleIndex()
+	{
+		for ( int i = 0; i < screenScales.length; ++i )
+		{
+			final long t = renderStatistics.predictRenderNanoTime( i );
+			if ( t >= 0 && t <= targetRenderNanos )
+				return i;
+		}
+		return screenScales.length - 1;
+	}
+
+	/**
+	 * Get the IO budget for rendering a frame at the given screen scale. At
+	 * the {@link #maxScreenScaleIndex highest screen scale}, the budget of
+	 * each level is limited to the part of {@link #targetRenderNanos} that
+	 * remains after the predicted render time. At the other screen scales,
+	 * the frame rate is not critical and the full {@link #iobudget} is used.
+	 */
+	private long[] getFrameIoBudget( final int screenScaleIndex )
+	{
+		if ( screenScaleIndex != maxScreenScaleIndex )
+			return iobudget;
+		final long predicted = renderStatistics.predictRenderNanoTime( screenScaleIndex );
+		if ( predicted < 0 )
+			return iobudget;
+		final long remaining = Math.max( 0, targetRenderNanos - predicted );
+		final long[] budget = new long[ iobudget.length ];
+		for ( int i = 0; i < budget.length; ++i )
+			budget[ i ] = Math.min( iobudget[ i ], remaining );
+		return budget;
+	}
+
+	private static long getLastFrameIoNanoTime( final VolatileProjector p )
+	{
+		if ( p instanceof VolatileHierarchyProjector )
+			return ( ( VolatileHierarchyProjector< ?, ? > ) p ).getLastFrameIoNanoTime();
+		else if ( p instanceof FusedVolatileProjector )
+			return ( ( FusedVolatileProjector ) p ).getLastFrameIoNanoTime();
+		else if ( p instanceof AccumulateProjector )
+		{
+			long t = 0;
+			for ( final VolatileProjector sp : ( ( AccumulateProjector< ?, ? > ) p ).sourceProjectors )
+				t += Math.max( 0, getLastFrameIoNanoTime( sp ) );
+			return t;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get per-level values of the last frame of a {@link VolatileHierarchyProjector},
+	 * or the sum of per-level values of the {@link VolatileHierarchyProjector}s
+	 * of an {@link AccumulateProjector}. Values of -1 (level not rendered) are
+	 * not summed.
+	 *
+	 * @return per-level values, or {@code null} if {@code p} does not render
+	 *         mipmap levels.
+	 */
+	private static long[] sumPerLevel( final VolatileProjector p, final Function< VolatileHierarchyProjector< ?, ? >, long[] > perLevel )
+	{
+		if ( p instanceof VolatileHierarchyProjector )
+			return perLevel.apply( ( VolatileHierarchyProjector< ?, ? > ) p );
+		else if ( p instanceof AccumulateProjector )
+		{
+			long[] sum = null;
+			for ( final VolatileProjector sp : ( ( AccumulateProjector< ?, ? > ) p ).sourceProjectors )
+			{
+				final long[] t = sumPerLevel( sp, perLevel );
+				if ( t == null )
+					continue;
+				if ( sum == null || sum.length < t.length )
+				{
+					final long[] tmp = new long[ t.length ];
+					Arrays.fill( tmp, -1 );
+					if ( sum != null )
+						System.arraycopy( sum, 0, tmp, 0, sum.length );
+					sum = tmp;
+				}
+				for ( int l = 0; l < t.length; ++l )
+					if ( t[ l ] >= 0 )
+						sum[ l ] = Math.max( 0, sum[ l ] ) + t[ l ];
+			}
+			return sum;
+		}
+		return null;
+	}
+
+	/**
+	 * Set the IO budget (in nanoseconds) for each mipmap level, starting with
+	 * the best level. Levels beyond the end of the array get no budget. See
+	 * {@link net.imglib2.cache.iotiming.IoTimeBudget}.
+	 */
+	public synchronized void setIoBudget( final long[] iobudget )
+	{
+		this.iobudget = iobudget.clone();
+	}
+
+	/**
+	 * Set whether cells of the visible mipmap levels are requested (in
+	 * prefetch order) before rendering. This is enabled by default.
+	 */
+	public void setPrefetchCells( final boolean prefetchCells )
+	{
+		this.prefetchCells = prefetchCells;
+	}
+
+	/**
+	 * Get render and IO times of recent frames.
+	 */
+	public RenderStatistics getRenderStatistics()
+	{
+		return renderStatistics;
+	}
+
+	/**
+	 * Add a {@link RenderMetricsListener} to notify after each rendering pass.
+	 */
+	public void addRenderMetricsListener( final RenderMetricsListener listener )
+	{
+		renderMetricsListeners.addIfAbsent( listener );
+	}
+
+	public void removeRenderMetricsListener( final RenderMetricsListener listener )
+	{
+		renderMetricsListeners.remove( listener );
+	}
+
 	private static class SimpleVolatileProjector< A, B > extends SimpleInterruptibleProjector< A, B > implements VolatileProjector
 	{
 		private boolean valid = false;
@@ -695,17 +1170,18 @@ public class MultiResolutionRenderer
 			final int sourceIndex,
 			final int screenScaleIndex,
 			final ARGBScreenImage screenImage,
-			final byte[] maskArray )
+			final byte[] maskArray,
+			final ScreenTiles tiles )
 	{
 		if ( useVolatileIfAvailable )
 		{
 			if ( source.asVolatile() != null )
-				return createSingleSourceVolatileProjector( viewerState, source.asVolatile(), sourceIndex, screenScaleIndex, screenImage, maskArray );
+				return createSingleSourceVolatileProjector( viewerState, source.asVolatile(), sourceIndex, screenScaleIndex, screenImage, maskArray, tiles );
 			else if ( source.getSpimSource().getType() instanceof Volatile )
 			{
 				@SuppressWarnings( "unchecked" )
 				final SourceState< ? extends Volatile< ? > > vsource = ( SourceState< ? extends Volatile< ? > > ) source;
-				return createSingleSourceVolatileProjector( viewerState, vsource, sourceIndex, screenScaleIndex, screenImage, maskArray );
+				return createSingleSourceVolatileProjector( viewerState, vsource, sourceIndex, screenScaleIndex, screenImage, maskArray, tiles );
 			}
 		}
 
@@ -722,7 +1198,35 @@ public class MultiResolutionRenderer
 			final int sourceIndex,
 			final int screenScaleIndex,
 			final ARGBScreenImage screenImage,
-			final byte[] maskArray )
+			final byte[] maskArray,
+			final ScreenTiles tiles )
+	{
+		final ArrayList< AxisAlignedLevel< T > > axisAlignedLevels = new ArrayList<>();
+		final ArrayList< RandomAccessible< T > > renderList = getVolatileRenderList( viewerState, source, screenImage, axisAlignedLevels );
+		boolean anyAxisAligned = false;
+		for ( final AxisAlignedLevel< T > axisAligned : axisAlignedLevels )
+			anyAxisAligned |= axisAligned != null;
+
+		if ( anyAxisAligned )
+			return new AxisAlignedVolatileHierarchyProjector<>( renderList, axisAlignedLevels, source.getConverter(), screenImage, maskArray, tiles, numRenderingThreads, renderingExecutorService );
+		else
+			return new VolatileHierarchyProjector<>( renderList, source.getConverter(), screenImage, maskArray, tiles, numRenderingThreads, renderingExecutorService );
+	}
+
+	/**
+	 * Get the transformed mipmap levels of a volatile source for rendering to
+	 * {@code screenImage}, in render order. Prefetches cells if
+	 * {@link #prefetchCells} is set.
+	 *
+	 * @param axisAlignedLevels
+	 *            if non-null, the {@link AxisAlignedLevel} (or {@code null})
+	 *            for each returned level is added to this list.
+	 */
+	private < T extends Volatile< ? > > ArrayList< RandomAccessible< T > > getVolatileRenderList(
+			final ViewerState viewerState,
+			final SourceState< T > source,
+			final ARGBScreenImage screenImage,
+			final List< AxisAlignedLevel< T > > axisAlignedLevels )
 	{
 		final AffineTransform3D screenScaleTransform = screenScaleTransforms[ currentScreenScaleIndex ];
 		final ArrayList< RandomAccessible< T > > renderList = new ArrayList<>();
@@ -745,36 +1249,97 @@ public class MultiResolutionRenderer
 			{
 				final CacheHints cacheHints = l.getPrefetchCacheHints();
 				if ( cacheHints == null || cacheHints.getLoadingStrategy() != LoadingStrategy.DONTLOAD )
-					prefetch( viewerState, spimSource, screenScaleTransform, l.getMipmapLevel(), cacheHints, screenImage );
+					Prefetcher.fetchCells( viewerState, spimSource, screenScaleTransform, l.getMipmapLevel(), cacheHints, screenImage );
 			}
 		}
 
 		Collections.sort( levels, MipmapOrdering.renderOrderComparator );
+		final boolean nearestNeighbor = viewerState.getInterpolation() == Interpolation.NEARESTNEIGHBOR;
 		for ( final Level l : levels )
+		{
 			renderList.add( getTransformedSource( viewerState, spimSource, screenScaleTransform, l.getMipmapLevel(), l.getRenderCacheHints() ) );
+			if ( axisAlignedLevels != null )
+				axisAlignedLevels.add( nearestNeighbor ? getAxisAlignedLevel( viewerState, spimSource, screenScaleTransform, l.getMipmapLevel() ) : null );
+		}
 
 		if ( hints.renewHintsAfterPaintingOnce() )
+		{
 			newFrameRequest = true;
+			// the renewed hints may order mipmap levels differently
+			contentChanged = true;
+		}
 
-		return new VolatileHierarchyProjector<>( renderList, source.getConverter(), screenImage, maskArray, numRenderingThreads, renderingExecutorService );
+		return renderList;
 	}
 
-	private static < T > RandomAccessible< T > getTransformedSource(
+	/**
+	 * Whether the visible sources of {@code viewerState} should be rendered
+	 * with a {@link FusedVolatileProjector}. This requires that
+	 * {@link #fusedProjection} is enabled, that there is more than one
+	 * visible source and all of them are volatile, that sources are combined
+	 * by {@link AccumulateProjectorARGB}, and that tiled rendering is not used.
+	 */
+	private boolean useFusedProjection( final ViewerState viewerState )
+	{
+		final List< Integer > visibleSourceIndices = viewerState.getVisibleSourceIndices();
+		if ( !fusedProjection || tiledRendering || !useVolatileIfAvailable
+				|| accumulateProjectorFactory != AccumulateProjectorARGB.factory
+				|| visibleSourceIndices.size() < 2 )
+			return false;
+		final List< SourceState< ? > > sourceStates = viewerState.getSources();
+		for ( final int i : visibleSourceIndices )
+			if ( getVolatileSourceState( sourceStates.get( i ) ) == null )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the volatile version of {@code source}, or {@code null} if there is
+	 * none.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static SourceState< ? extends Volatile< ? > > getVolatileSourceState( final SourceState< ? > source )
+	{
+		if ( source.asVolatile() != null )
+			return source.asVolatile();
+		else if ( source.getSpimSource().getType() instanceof Volatile )
+			return ( SourceState< ? extends Volatile< ? > > ) source;
+		else
+			return null;
+	}
+
+	private VolatileProjector createFusedProjector(
+			final ViewerState viewerState,
+			final ARGBScreenImage screenImage )
+	{
+		final List< SourceState< ? > > sourceStates = viewerState.getSources();
+		final ArrayList< FusedVolatileProjector.SourceLevels< ? > > sources = new ArrayList<>();
+		for ( final int i : viewerState.getVisibleSourceIndices() )
+			sources.add( createSourceLevels( viewerState, getVolatileSourceState( sourceStates.get( i ) ), screenImage ) );
+		return new FusedVolatileProjector( sources, screenImage, renderMaskArrays, numRenderingThreads, renderingExecutorService );
+	}
+
+	private < T extends Volatile< ? > > FusedVolatileProjector.SourceLevels< T > createSourceLevels(
+			final ViewerState viewerState,
+			final SourceState< T > source,
+			final ARGBScreenImage screenImage )
+	{
+		return new FusedVolatileProjector.SourceLevels<>( getVolatileRenderList( viewerState, source, screenImage, null ), source.getConverter() );
+	}
+
+	/**
+	 * Get the {@link AxisAlignedLevel} for rendering the given mipmap level
+	 * with nearest-neighbor interpolation, or {@code null} if the level is
+	 * not axis-aligned with the screen.
+	 */
+	private static < T > AxisAlignedLevel< T > getAxisAlignedLevel(
 			final ViewerState viewerState,
 			final Source< T > source,
 			final AffineTransform3D screenScaleTransform,
-			final int mipmapIndex,
-			final CacheHints cacheHints )
+			final int mipmapIndex )
 	{
 		final int timepoint = viewerState.getCurrentTimepoint();
 
-		final RandomAccessibleInterval< T > img = source.getSource( timepoint, mipmapIndex );
-		if ( VolatileCachedCellImg.class.isInstance( img ) )
-			( ( VolatileCachedCellImg< ?, ? > ) img ).setCacheHints( cacheHints );
-
-		final Interpolation interpolation = viewerState.getInterpolation();
-		final RealRandomAccessible< T > ipimg = source.getInterpolatedSource( timepoint, mipmapIndex, interpolation );
-
 		final AffineTransform3D sourceToScreen = new AffineTransform3D();
 		viewerState.getViewerTransform( sourceToScreen );
 		final AffineTransform3D sourceTransform = new AffineTransform3D();
@@ -782,47 +1347,33 @@ public class MultiResolutionRenderer
 		sourceToScreen.concatenate( sourceTransform );
 		sourceToScreen.preConcatenate( screenScaleTransform );
 
-		return RealViews.affine( ipimg, sourceToScreen );
+		return AxisAlignedLevel.create( source.getSource( timepoint, mipmapIndex ), sourceToScreen );
 	}
 
-	private static < T > void prefetch(
+	private static < T > RandomAccessible< T > getTransformedSource(
 			final ViewerState viewerState,
 			final Source< T > source,
 			final AffineTransform3D screenScaleTransform,
 			final int mipmapIndex,
-			final CacheHints prefetchCacheHints,
-			final Dimensions screenInterval )
+			final CacheHints cacheHints )
 	{
 		final int timepoint = viewerState.getCurrentTimepoint();
+
 		final RandomAccessibleInterval< T > img = source.getSource( timepoint, mipmapIndex );
 		if ( VolatileCachedCellImg.class.isInstance( img ) )
-		{
-			final VolatileCachedCellImg< ?, ? > cellImg = ( VolatileCachedCellImg< ?, ? > ) img;
+			( ( VolatileCachedCellImg< ?, ? > ) img ).setCacheHints( cacheHints );
 
-			CacheHints hints = prefetchCacheHints;
-			if ( hints == null )
-			{
-				final CacheHints d = cellImg.getDefaultCacheHints();
-				hints = new CacheHints( LoadingStrategy.VOLATILE, d.getQueuePriority(), false );
-			}
-			cellImg.setCacheHints( hints );
-			final int[] cellDimensions = new int[ 3 ];
-			cellImg.getCellGrid().cellDimensions( cellDimensions );
-			final long[] dimensions = new long[ 3 ];
-			cellImg.dimensions( dimensions );
-			final RandomAccess< ? > cellsRandomAccess = cellImg.getCells().randomAccess();
-
-			final Interpolation interpolation = viewerState.getInterpolation();
-
-			final AffineTransform3D sourceToScreen = new AffineTransform3D();
-			viewerState.getViewerTransform( sourceToScreen );
-			final AffineTransform3D sourceTransform = new AffineTransform3D();
-			source.getSourceTransform( timepoint, mipmapIndex, sourceTransform );
-			sourceToScreen.concatenate( sourceTransform );
-			sourceToScreen.preConcatenate( screenScaleTransform );
-
-			Prefetcher.fetchCells( sourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess );
-		}
+		final Interpolation interpolation = viewerState.getInterpolation();
+		final RealRandomAccessible< T > ipimg = source.getInterpolatedSource( timepoint, mipmapIndex, interpolation );
+
+		final AffineTransform3D sourceToScreen = new AffineTransform3D();
+		viewerState.getViewerTransform( sourceToScreen );
+		final AffineTransform3D sourceTransform = new AffineTransform3D();
+		source.getSourceTransform( timepoint, mipmapIndex, sourceTransform );
+		sourceToScreen.concatenate( sourceTransform );
+		sourceToScreen.preConcatenate( screenScaleTransform );
+
+		return RealViews.affine( ipimg, sourceToScreen );
 	}
 
 	private static TransformAwareRenderTarget wrapTransformAwareRenderTarget( final RenderTarget t )
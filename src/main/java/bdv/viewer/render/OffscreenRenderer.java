@@ -0,0 +1,336 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import bdv.cache.CacheControl;
+import bdv.viewer.state.ViewerState;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.ui.PainterThread;
+import net.imglib2.ui.RenderTarget;
+
+/**
+ * Renders {@link ViewerState}s to images without a display, for example to
+ * generate snapshots or thumbnails on a server.
+ * <p>
+ * Each image is rendered by its own {@link MultiResolutionRenderer} at full
+ * resolution, with a single rendering thread and blocking (non-volatile)
+ * loading, such that the returned image is complete. Multiple images are
+ * rendered in parallel. No AWT display is required, so this can be used with
+ * {@code -Djava.awt.headless=true}.
+ * <p>
+ * Images can be returned as {@link BufferedImage}s (backed by ARGB
+ * {@code int[]} data, see {@link #getARGB(BufferedImage)}), or written to PNG
+ * or TIFF files directly.
+ */
+public class OffscreenRenderer
+{
+	/**
+	 * A state to render at a given image size, and optionally a file to write
+	 * the image to.
+	 */
+	public static class Request
+	{
+		private final ViewerState state;
+
+		private final int width;
+
+		private final int height;
+
+		private final File file;
+
+		/**
+		 * @param state
+		 *            the state to render. The viewer transform must map to
+		 *            the {@code width} &times; {@code height} image. The state
+		 *            is not modified.
+		 * @param width
+		 *            width of the image.
+		 * @param height
+		 *            height of the image.
+		 * @param file
+		 *            file to write the image to, or {@code null}. The format is
+		 *            determined by the extension ({@code .tif} or
+		 *            {@code .tiff} for TIFF, otherwise PNG).
+		 */
+		public Request( final ViewerState state, final int width, final int height, final File file )
+		{
+			this.state = state;
+			this.width = width;
+			this.height = height;
+			this.file = file;
+		}
+
+		public Request( final ViewerState state, final int width, final int height )
+		{
+			this( state, width, height, null );
+		}
+
+		public ViewerState getState()
+		{
+			return state;
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public File getFile()
+		{
+			return file;
+		}
+	}
+
+	private final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory;
+
+	private final ExecutorService executorService;
+
+	/**
+	 * @param numThreads
+	 *            how many images to render in parallel.
+	 */
+	public OffscreenRenderer( final int numThreads )
+	{
+		this( AccumulateProjectorARGB.factory, numThreads );
+	}
+
+	/**
+	 * @param accumulateProjectorFactory
+	 *            how to combine multiple visible sources.
+	 * @param numThreads
+	 *            how many images to render in parallel.
+	 */
+	public OffscreenRenderer( final AccumulateProjectorFactory< ARGBType > accumulateProjectorFactory, final int numThreads )
+	{
+		this.accumulateProjectorFactory = accumulateProjectorFactory;
+		executorService = Executors.newFixedThreadPool( numThreads );
+	}
+
+	/**
+	 * Render {@code state} to a {@code width} &times; {@code height} image in
+	 * the calling thread.
+	 *
+	 * @param state
+	 *            the state to render. The viewer transform must map to the
+	 *            {@code width} &times; {@code height} image.
+	 * @return the rendered image.
+	 */
+	public BufferedImage render( final ViewerState state, final int width, final int height )
+	{
+		class Target implements RenderTarget
+		{
+			BufferedImage bi;
+
+			@Override
+			public BufferedImage setBufferedImage( final BufferedImage bufferedImage )
+			{
+				bi = bufferedImage;
+				return null;
+			}
+
+			@Override
+			public int getWidth()
+			{
+				return width;
+			}
+
+			@Override
+			public int getHeight()
+			{
+				return height;
+			}
+		}
+		final Target target = new Target();
+		final MultiResolutionRenderer renderer = new MultiResolutionRenderer(
+				target, new PainterThread( null ), new double[] { 1 }, 0, false, 1, null, false,
+				accumulateProjectorFactory, new CacheControl.Dummy() );
+		renderer.requestRepaint();
+		renderer.paint( state.copy() );
+		renderer.kill();
+		return target.bi;
+	}
+
+	/**
+	 * Render all {@code requests} in parallel, and wait until they are done.
+	 * Images of requests with a {@link Request#getFile() file} are written to
+	 * the file and not kept.
+	 *
+	 * @return for each request, the rendered image, or {@code null} if the
+	 *         image was written to a file.
+	 * @throws ExecutionException
+	 *             if rendering or writing an image failed.
+	 */
+	public List< BufferedImage > renderAll( final List< Request > requests ) throws InterruptedException, ExecutionException
+	{
+		final ArrayList< Future< BufferedImage > > futures = new ArrayList<>( requests.size() );
+		for ( final Request request : requests )
+		{
+			futures.add( executorService.submit( new Callable< BufferedImage >()
+			{
+				@Override
+				public BufferedImage call() throws IOException
+				{
+					final BufferedImage bi = render( request.state, request.width, request.height );
+					if ( request.file == null )
+						return bi;
+					write( bi, request.file );
+					return null;
+				}
+			} ) );
+		}
+		final ArrayList< BufferedImage > images = new ArrayList<>( requests.size() );
+		try
+		{
+			for ( final Future< BufferedImage > future : futures )
+				images.add( future.get() );
+		}
+		finally
+		{
+			for ( final Future< BufferedImage > future : futures )
+				future.cancel( true );
+		}
+		return images;
+	}
+
+	/**
+	 * Stop the rendering threads.
+	 */
+	public void shutdown()
+	{
+		executorService.shutdown();
+	}
+
+	/**
+	 * Get the ARGB data of an image rendered by this {@link OffscreenRenderer}.
+	 * The array is not copied.
+	 */
+	public static int[] getARGB( final BufferedImage bi )
+	{
+		return ( ( DataBufferInt ) bi.getRaster().getDataBuffer() ).getData();
+	}
+
+	/**
+	 * Write an image as TIFF if the file extension is {@code .tif} or
+	 * {@code .tiff}, otherwise as PNG.
+	 */
+	public static void write( final BufferedImage bi, final File file ) throws IOException
+	{
+		final String name = file.getName().toLowerCase();
+		if ( name.endsWith( ".tif" ) || name.endsWith( ".tiff" ) )
+			writeTiff( bi, file );
+		else if ( !ImageIO.write( bi, "png", file ) )
+			throw new IOException( "no PNG writer available" );
+	}
+
+	/**
+	 * Write an image as uncompressed 8-bit RGBA TIFF. (The ImageIO of Java 8
+	 * does not include a TIFF writer.)
+	 */
+	public static void writeTiff( final BufferedImage bi, final File file ) throws IOException
+	{
+		final int width = bi.getWidth();
+		final int height = bi.getHeight();
+		final int numEntries = 11;
+		final int ifdOffset = 8;
+		final int bitsPerSampleOffset = ifdOffset + 2 + 12 * numEntries + 4;
+		final int dataOffset = bitsPerSampleOffset + 8;
+
+		final ByteBuffer header = ByteBuffer.allocate( dataOffset ).order( ByteOrder.LITTLE_ENDIAN );
+		header.put( ( byte ) 'I' ).put( ( byte ) 'I' ).putShort( ( short ) 42 ).putInt( ifdOffset );
+		header.putShort( ( short ) numEntries );
+		putTiffEntry( header, 256, 4, 1, width ); // ImageWidth
+		putTiffEntry( header, 257, 4, 1, height ); // ImageLength
+		putTiffEntry( header, 258, 3, 4, bitsPerSampleOffset ); // BitsPerSample
+		putTiffEntry( header, 259, 3, 1, 1 ); // Compression: none
+		putTiffEntry( header, 262, 3, 1, 2 ); // PhotometricInterpretation: RGB
+		putTiffEntry( header, 273, 4, 1, dataOffset ); // StripOffsets
+		putTiffEntry( header, 277, 3, 1, 4 ); // SamplesPerPixel
+		putTiffEntry( header, 278, 4, 1, height ); // RowsPerStrip
+		putTiffEntry( header, 279, 4, 1, 4 * width * height ); // StripByteCounts
+		putTiffEntry( header, 284, 3, 1, 1 ); // PlanarConfiguration: chunky
+		putTiffEntry( header, 338, 3, 1, 2 ); // ExtraSamples: unassociated alpha
+		header.putInt( 0 ); // no next IFD
+		for ( int i = 0; i < 4; ++i )
+			header.putShort( ( short ) 8 );
+
+		try ( final OutputStream out = new BufferedOutputStream( new FileOutputStream( file ) ) )
+		{
+			out.write( header.array() );
+			final int[] argbRow = new int[ width ];
+			final byte[] row = new byte[ 4 * width ];
+			for ( int y = 0; y < height; ++y )
+			{
+				bi.getRGB( 0, y, width, 1, argbRow, 0, width );
+				for ( int x = 0, i = 0; x < width; ++x )
+				{
+					final int argb = argbRow[ x ];
+					row[ i++ ] = ( byte ) ARGBType.red( argb );
+					row[ i++ ] = ( byte ) ARGBType.green( argb );
+					row[ i++ ] = ( byte ) ARGBType.blue( argb );
+					row[ i++ ] = ( byte ) ARGBType.alpha( argb );
+				}
+				out.write( row );
+			}
+		}
+	}
+
+	private static void putTiffEntry( final ByteBuffer buffer, final int tag, final int type, final int count, final int value )
+	{
+		buffer.putShort( ( short ) tag ).putShort( ( short ) type ).putInt( count );
+		if ( type == 3 && count == 1 )
+			buffer.putShort( ( short ) value ).putShort( ( short ) 0 );
+		else
+			buffer.putInt( value );
+	}
+}
@@ -29,12 +29,24 @@
  */
 package bdv.viewer.render;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
 import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealPoint;
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
 import net.imglib2.img.cell.CellImg;
 import net.imglib2.realtransform.AffineTransform3D;
+import bdv.img.cache.VolatileCachedCellImg;
 import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import bdv.viewer.state.SourceState;
+import bdv.viewer.state.ViewerState;
 
 public class Prefetcher
 {
@@ -56,7 +68,203 @@ public class Prefetcher
 	 */
 	public static void fetchCells( final AffineTransform3D sourceToScreen, final int[] cellDimensions, final long[] dimensions, final Dimensions screenInterval,  final Interpolation interpolation, final RandomAccess< ? > cellsRandomAccess )
 	{
-		new Prefetcher().scan( sourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess );
+		new Prefetcher().scan( sourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess, RandomAccess::get );
+	}
+
+	/**
+	 * Access cells of a mipmap level of {@code source} that will be needed for
+	 * rendering {@code viewerState} to the screen. Nothing happens if the
+	 * level is not a {@link VolatileCachedCellImg}. The cache hints of the
+	 * level are not changed, so this does not interfere with rendering the
+	 * level at the same time.
+	 *
+	 * @param screenScaleTransform
+	 *            screen scale, transforms screen coordinates to screen image
+	 *            coordinates.
+	 * @param prefetchCacheHints
+	 *            cache hints to use for accessing cells, or {@code null} to
+	 *            enqueue cells for loading without blocking.
+	 * @param screenInterval
+	 *            the interval of the screen image that will be rendered
+	 */
+	public static < T > void fetchCells(
+			final ViewerState viewerState,
+			final Source< T > source,
+			final AffineTransform3D screenScaleTransform,
+			final int mipmapIndex,
+			final CacheHints prefetchCacheHints,
+			final Dimensions screenInterval )
+	{
+		fetchCells( viewerState, source, screenScaleTransform, mipmapIndex, prefetchCacheHints, screenInterval, false );
+	}
+
+	private static < T > void fetchCells(
+			final ViewerState viewerState,
+			final Source< T > source,
+			final AffineTransform3D screenScaleTransform,
+			final int mipmapIndex,
+			final CacheHints prefetchCacheHints,
+			final Dimensions screenInterval,
+			final boolean skipCurrentView )
+	{
+		final int timepoint = viewerState.getCurrentTimepoint();
+		final RandomAccessibleInterval< T > img = source.getSource( timepoint, mipmapIndex );
+		if ( VolatileCachedCellImg.class.isInstance( img ) )
+		{
+			final AffineTransform3D sourceToViewer = new AffineTransform3D();
+			viewerState.getViewerTransform( sourceToViewer );
+			final AffineTransform3D sourceTransform = new AffineTransform3D();
+			source.getSourceTransform( timepoint, mipmapIndex, sourceTransform );
+			sourceToViewer.concatenate( sourceTransform );
+
+			final AffineTransform3D sourceToScreen = sourceToViewer.copy();
+			sourceToScreen.preConcatenate( screenScaleTransform );
+			fetchCells( img, sourceToScreen, skipCurrentView ? sourceToViewer : null, viewerState.getInterpolation(), prefetchCacheHints, screenInterval );
+		}
+	}
+
+	/**
+	 * Enqueue loading of the cells of {@code img} that will be needed for
+	 * rendering it to the screen, without waiting for them to load. Nothing
+	 * happens if {@code img} is not a {@link VolatileCachedCellImg}. The cache
+	 * hints of {@code img} are not changed.
+	 * <p>
+	 * In contrast to the other {@code fetchCells} methods, this does not
+	 * access a {@link Source}. It can be used to prefetch images obtained
+	 * directly from the image loader, e.g., for timepoints other than the
+	 * displayed one.
+	 *
+	 * @param sourceToScreen
+	 *            transforms {@code img} coordinates to screen image
+	 *            coordinates.
+	 * @param interpolation
+	 *            the interpolation method
+	 * @param screenInterval
+	 *            the interval of the screen image that will be rendered
+	 */
+	public static void fetchCells( final RandomAccessibleInterval< ? > img, final AffineTransform3D sourceToScreen, final Interpolation interpolation, final Dimensions screenInterval )
+	{
+		if ( VolatileCachedCellImg.class.isInstance( img ) )
+			fetchCells( img, sourceToScreen, null, interpolation, null, screenInterval );
+	}
+
+	/**
+	 * Access cells of {@code img}, which must be a {@link VolatileCachedCellImg}.
+	 *
+	 * @param skipSourceToScreen
+	 *            if not {@code null}, cells that are needed for rendering with
+	 *            this transform are skipped.
+	 */
+	private static void fetchCells(
+			final RandomAccessibleInterval< ? > img,
+			final AffineTransform3D sourceToScreen,
+			final AffineTransform3D skipSourceToScreen,
+			final Interpolation interpolation,
+			final CacheHints prefetchCacheHints,
+			final Dimensions screenInterval )
+	{
+		final VolatileCachedCellImg< ?, ? > cellImg = ( VolatileCachedCellImg< ?, ? > ) img;
+
+		CacheHints hints = prefetchCacheHints;
+		if ( hints == null )
+		{
+			final CacheHints d = cellImg.getDefaultCacheHints();
+			hints = new CacheHints( LoadingStrategy.VOLATILE, d.getQueuePriority(), false );
+		}
+		final int[] cellDimensions = new int[ 3 ];
+		cellImg.getCellGrid().cellDimensions( cellDimensions );
+		final long[] dimensions = new long[ 3 ];
+		cellImg.dimensions( dimensions );
+		final RandomAccess< ? > cellsRandomAccess = cellImg.getCells( hints ).randomAccess();
+
+		if ( skipSourceToScreen != null )
+		{
+			final long[] gridDimensions = cellImg.getCellGrid().getGridDimensions();
+			final HashSet< Long > currentCells = new HashSet<>();
+			new Prefetcher().scan( skipSourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess,
+					a -> currentCells.add( cellIndex( a, gridDimensions ) ) );
+			new Prefetcher().scan( sourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess,
+					a -> {
+						if ( !currentCells.contains( cellIndex( a, gridDimensions ) ) )
+							a.get();
+					} );
+		}
+		else
+			fetchCells( sourceToScreen, cellDimensions, dimensions, screenInterval, interpolation, cellsRandomAccess );
+	}
+
+	/**
+	 * Enqueue loading of the cells that will be needed for rendering the
+	 * visible sources of {@code viewerState} to a {@code width} &times;
+	 * {@code height} screen image at the best mipmap level, without waiting
+	 * for them to load. Cells are enqueued through the volatile versions of
+	 * the sources, such that loaded cells are shared with the non-volatile
+	 * versions through the cache. Sources without volatile version are
+	 * skipped.
+	 * <p>
+	 * This can be used to load data for the next frame while the current
+	 * frame is rendered with blocking loading.
+	 */
+	public static void fetchCells( final ViewerState viewerState, final int width, final int height )
+	{
+		fetchCells( viewerState, new AffineTransform3D(), width, height );
+	}
+
+	/**
+	 * Enqueue loading of the cells that will be needed for rendering the
+	 * visible sources of {@code viewerState} to a {@code width} &times;
+	 * {@code height} screen image at the best mipmap level, as
+	 * {@link #fetchCells(ViewerState, int, int)}. The viewer transform of
+	 * {@code viewerState} is followed by {@code screenScaleTransform}. This can
+	 * be used to fetch cells for a different view than the current one.
+	 *
+	 * @param screenScaleTransform
+	 *            transforms screen coordinates to screen image coordinates.
+	 */
+	public static void fetchCells( final ViewerState viewerState, final AffineTransform3D screenScaleTransform, final int width, final int height )
+	{
+		fetchCells( viewerState, screenScaleTransform, width, height, false );
+	}
+
+	/**
+	 * Enqueue loading of cells for a different view than the current one, as
+	 * {@link #fetchCells(ViewerState, AffineTransform3D, int, int)}, but skip
+	 * cells that are also needed for rendering the current view of
+	 * {@code viewerState} (at the same mipmap level). Those are left to be
+	 * requested by the renderer.
+	 *
+	 * @param screenScaleTransform
+	 *            transforms screen coordinates to screen image coordinates.
+	 */
+	public static void fetchCellsOutsideCurrentView( final ViewerState viewerState, final AffineTransform3D screenScaleTransform, final int width, final int height )
+	{
+		fetchCells( viewerState, screenScaleTransform, width, height, true );
+	}
+
+	private static void fetchCells( final ViewerState viewerState, final AffineTransform3D screenScaleTransform, final int width, final int height, final boolean skipCurrentView )
+	{
+		final Dimensions screenInterval = new FinalDimensions( width, height );
+		synchronized ( viewerState )
+		{
+			final List< SourceState< ? > > sources = viewerState.getSources();
+			for ( final int i : viewerState.getVisibleSourceIndices() )
+			{
+				final SourceState< ? > volatileSource = sources.get( i ).asVolatile();
+				if ( volatileSource == null )
+					continue;
+				final int level = viewerState.getBestMipMapLevel( screenScaleTransform, i );
+				fetchCells( viewerState, volatileSource.getSpimSource(), screenScaleTransform, level, null, screenInterval, skipCurrentView );
+			}
+		}
+	}
+
+	/**
+	 * Get the flattened index of the cell at the position of
+	 * {@code cellsRandomAccess}.
+	 */
+	private static long cellIndex( final RandomAccess< ? > cellsRandomAccess, final long[] gridDimensions )
+	{
+		return cellsRandomAccess.getLongPosition( 0 ) + gridDimensions[ 0 ] * ( cellsRandomAccess.getLongPosition( 1 ) + gridDimensions[ 1 ] * cellsRandomAccess.getLongPosition( 2 ) );
 	}
 
 	private Prefetcher()
@@ -97,8 +305,11 @@ public class Prefetcher
 	 *            the interpolation method
 	 * @param cellsRandomAccess
 	 *            access to the source cells
+	 * @param visitor
+	 *            called with {@code cellsRandomAccess} positioned at each
+	 *            needed cell.
 	 */
-	private void scan( final AffineTransform3D sourceToScreen, final int[] cellDimensions, final long[] dimensions, final Dimensions screenInterval, final Interpolation interpolation, final RandomAccess< ? > cellsRandomAccess )
+	private void scan( final AffineTransform3D sourceToScreen, final int[] cellDimensions, final long[] dimensions, final Dimensions screenInterval, final Interpolation interpolation, final RandomAccess< ? > cellsRandomAccess, final Consumer< RandomAccess< ? > > visitor )
 	{
 		final RealPoint pSource = new RealPoint( 3 );
 		final RealPoint pScreen = new RealPoint( 3 );
@@ -192,7 +403,7 @@ public class Prefetcher
 							( y + offsetPos[ 1 ] >= 0 ) &&
 							( y + offsetNeg[ 1 ] < h ) )
 					{
-						cellsRandomAccess.get();
+						visitor.accept( cellsRandomAccess );
 					}
 					pSource.move( cellDimensions[ 0 ], 0 );
 				}
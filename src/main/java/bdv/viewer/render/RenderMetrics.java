@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import bdv.cache.CacheStatistics;
+
+/**
+ * Timing and progress of one rendering pass of
+ * {@link MultiResolutionRenderer}, reported to {@link RenderMetricsListener}s.
+ * <p>
+ * A pass either renders a new frame (at some screen scale), or refines the
+ * current frame with data that became valid in the meantime. Per-level arrays
+ * are indexed by mipmap level in render order (index 0 is the best level), and
+ * contain -1 for levels that were not rendered. For multiple sources, the
+ * values of each level are summed. They are {@code null} if the projector does
+ * not render mipmap levels.
+ */
+public class RenderMetrics
+{
+	private final long timeNanos;
+
+	private final int screenScaleIndex;
+
+	private final boolean newFrame;
+
+	private final boolean cancelled;
+
+	private final long renderNanoTime;
+
+	private final long ioNanoTime;
+
+	private final long[] levelNanoTimes;
+
+	private final long[] numInvalidPixels;
+
+	private final long numCancelledFrames;
+
+	private final CacheStatistics cacheStatistics;
+
+	public RenderMetrics(
+			final long timeNanos,
+			final int screenScaleIndex,
+			final boolean newFrame,
+			final boolean cancelled,
+			final long renderNanoTime,
+			final long ioNanoTime,
+			final long[] levelNanoTimes,
+			final long[] numInvalidPixels,
+			final long numCancelledFrames,
+			final CacheStatistics cacheStatistics )
+	{
+		this.timeNanos = timeNanos;
+		this.screenScaleIndex = screenScaleIndex;
+		this.newFrame = newFrame;
+		this.cancelled = cancelled;
+		this.renderNanoTime = renderNanoTime;
+		this.ioNanoTime = ioNanoTime;
+		this.levelNanoTimes = levelNanoTimes;
+		this.numInvalidPixels = numInvalidPixels;
+		this.numCancelledFrames = numCancelledFrames;
+		this.cacheStatistics = cacheStatistics;
+	}
+
+	/**
+	 * Get the {@link System#nanoTime()} at the end of the pass.
+	 */
+	public long getTimeNanos()
+	{
+		return timeNanos;
+	}
+
+	public int getScreenScaleIndex()
+	{
+		return screenScaleIndex;
+	}
+
+	/**
+	 * Whether the pass rendered a new frame (as opposed to refining the
+	 * current frame).
+	 */
+	public boolean isNewFrame()
+	{
+		return newFrame;
+	}
+
+	/**
+	 * Whether the pass was cancelled by a repaint request.
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Get the render time of the pass, excluding blocking IO.
+	 */
+	public long getRenderNanoTime()
+	{
+		return renderNanoTime;
+	}
+
+	/**
+	 * Get the time spent in blocking IO during the pass, or -1 if unknown.
+	 */
+	public long getIoNanoTime()
+	{
+		return ioNanoTime;
+	}
+
+	/**
+	 * Get the render time of each mipmap level.
+	 */
+	public long[] getLevelNanoTimes()
+	{
+		return levelNanoTimes;
+	}
+
+	/**
+	 * Get the number of pixels that remained invalid after rendering each
+	 * mipmap level.
+	 */
+	public long[] getNumInvalidPixels()
+	{
+		return numInvalidPixels;
+	}
+
+	/**
+	 * Get the total number of passes that were cancelled so far.
+	 */
+	public long getNumCancelledFrames()
+	{
+		return numCancelledFrames;
+	}
+
+	/**
+	 * Get the cache counters at the end of the pass, or {@code null} if the
+	 * cache does not provide them.
+	 */
+	public CacheStatistics getCacheStatistics()
+	{
+		return cacheStatistics;
+	}
+}
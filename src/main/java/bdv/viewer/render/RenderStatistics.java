@@ -0,0 +1,281 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Rolling statistics of rendering times, used by
+ * {@link MultiResolutionRenderer} to predict the cost of the next frame and
+ * choose the screen scale and IO budget accordingly.
+ * <p>
+ * For each screen scale, the render time (excluding blocking IO) and the IO
+ * time of the most recent frames are kept. For each mipmap level (in render
+ * order, that is, index 0 is the best level that is rendered), the time of
+ * the most recent rendering passes of {@link VolatileHierarchyProjector}s is
+ * kept.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class RenderStatistics
+{
+	public static final int DEFAULT_WINDOW_SIZE = 32;
+
+	/**
+	 * The last {@code n} samples of a time.
+	 */
+	static class Window
+	{
+		private final long[] samples;
+
+		private int size;
+
+		private int next;
+
+		Window( final int n )
+		{
+			samples = new long[ n ];
+		}
+
+		void add( final long sample )
+		{
+			samples[ next ] = sample;
+			next = ( next + 1 ) % samples.length;
+			size = Math.min( size + 1, samples.length );
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		/**
+		 * @return the {@code q}-quantile of the samples, or -1 if there are
+		 *         no samples.
+		 */
+		long quantile( final double q )
+		{
+			if ( size == 0 )
+				return -1;
+			final long[] sorted = Arrays.copyOf( samples, size );
+			Arrays.sort( sorted );
+			final int i = ( int ) Math.round( q * ( size - 1 ) );
+			return sorted[ Math.max( 0, Math.min( size - 1, i ) ) ];
+		}
+
+		void clear()
+		{
+			size = 0;
+			next = 0;
+		}
+	}
+
+	private final int windowSize;
+
+	private Window[] renderTimes;
+
+	private Window[] ioTimes;
+
+	private final ArrayList< Window > levelTimes = new ArrayList<>();
+
+	/**
+	 * Number of pixels of the screen image for each screen scale.
+	 */
+	private long[] numPixels;
+
+	public RenderStatistics()
+	{
+		this( DEFAULT_WINDOW_SIZE );
+	}
+
+	/**
+	 * @param windowSize
+	 *            how many recent samples to keep for each time.
+	 */
+	public RenderStatistics( final int windowSize )
+	{
+		this.windowSize = windowSize;
+		setScreenSizes( new long[ 0 ] );
+	}
+
+	/**
+	 * Set the number of pixels of the screen image for each screen scale.
+	 * This clears all statistics, because render times of different screen
+	 * sizes are not comparable.
+	 */
+	public synchronized void setScreenSizes( final long[] numPixels )
+	{
+		this.numPixels = numPixels.clone();
+		renderTimes = new Window[ numPixels.length ];
+		ioTimes = new Window[ numPixels.length ];
+		for ( int i = 0; i < numPixels.length; ++i )
+		{
+			renderTimes[ i ] = new Window( windowSize );
+			ioTimes[ i ] = new Window( windowSize );
+		}
+		levelTimes.clear();
+	}
+
+	/**
+	 * Add the times of a rendered frame.
+	 *
+	 * @param screenScaleIndex
+	 *            screen scale of the frame.
+	 * @param renderNanos
+	 *            render time, excluding blocking IO.
+	 * @param ioNanos
+	 *            time spent in blocking IO.
+	 * @param levelNanos
+	 *            render time of each mipmap level (in render order), -1 for
+	 *            levels that were not rendered. May be {@code null}.
+	 */
+	public synchronized void addFrame( final int screenScaleIndex, final long renderNanos, final long ioNanos, final long[] levelNanos )
+	{
+		if ( screenScaleIndex < 0 || screenScaleIndex >= renderTimes.length )
+			return;
+		if ( renderNanos >= 0 )
+			renderTimes[ screenScaleIndex ].add( renderNanos );
+		if ( ioNanos >= 0 )
+			ioTimes[ screenScaleIndex ].add( ioNanos );
+		if ( levelNanos != null )
+		{
+			for ( int l = 0; l < levelNanos.length; ++l )
+			{
+				if ( levelNanos[ l ] < 0 )
+					continue;
+				while ( levelTimes.size() <= l )
+					levelTimes.add( new Window( windowSize ) );
+				levelTimes.get( l ).add( levelNanos[ l ] );
+			}
+		}
+	}
+
+	/**
+	 * Remove all samples.
+	 */
+	public synchronized void clear()
+	{
+		for ( final Window w : renderTimes )
+			w.clear();
+		for ( final Window w : ioTimes )
+			w.clear();
+		levelTimes.clear();
+	}
+
+	public synchronized int numScreenScales()
+	{
+		return renderTimes.length;
+	}
+
+	/**
+	 * Get the number of frames (in the window) rendered at the given screen
+	 * scale.
+	 */
+	public synchronized int getNumFrames( final int screenScaleIndex )
+	{
+		return renderTimes[ screenScaleIndex ].size();
+	}
+
+	/**
+	 * Get the {@code q}-quantile (e.g., 0.5 for the median) of recent render
+	 * times at the given screen scale, or -1 if no frames were rendered.
+	 */
+	public synchronized long getRenderNanoTime( final int screenScaleIndex, final double q )
+	{
+		return renderTimes[ screenScaleIndex ].quantile( q );
+	}
+
+	/**
+	 * Get the {@code q}-quantile of recent blocking IO times at the given
+	 * screen scale, or -1 if no frames were rendered.
+	 */
+	public synchronized long getIoNanoTime( final int screenScaleIndex, final double q )
+	{
+		return ioTimes[ screenScaleIndex ].quantile( q );
+	}
+
+	/**
+	 * Get the number of mipmap levels (in render order) for which times were
+	 * recorded.
+	 */
+	public synchronized int numLevels()
+	{
+		return levelTimes.size();
+	}
+
+	/**
+	 * Get the {@code q}-quantile of recent render times of the given mipmap
+	 * level (in render order), or -1 if the level was not rendered.
+	 */
+	public synchronized long getLevelNanoTime( final int level, final double q )
+	{
+		return level < levelTimes.size() ? levelTimes.get( level ).quantile( q ) : -1;
+	}
+
+	/**
+	 * Predict the render time of the next frame at the given screen scale.
+	 * This is the median of recent frames at that scale. If there are none,
+	 * it is extrapolated from the closest screen scale with recent frames,
+	 * assuming that render time is proportional to the number of pixels.
+	 *
+	 * @return predicted render time, or -1 if no frames were rendered at all.
+	 */
+	public synchronized long predictRenderNanoTime( final int screenScaleIndex )
+	{
+		final long t = renderTimes[ screenScaleIndex ].quantile( 0.5 );
+		if ( t >= 0 )
+			return t;
+		for ( int d = 1; d < renderTimes.length; ++d )
+		{
+			for ( final int i : new int[] { screenScaleIndex - d, screenScaleIndex + d } )
+			{
+				if ( i < 0 || i >= renderTimes.length || renderTimes[ i ].size() == 0 || numPixels[ i ] == 0 )
+					continue;
+				return ( long ) ( renderTimes[ i ].quantile( 0.5 ) * ( ( double ) numPixels[ screenScaleIndex ] / numPixels[ i ] ) );
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		final StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < renderTimes.length; ++i )
+			sb.append( String.format( "scale %d: %d frames, render %.1f ms, io %.1f ms%n", i,
+					renderTimes[ i ].size(),
+					renderTimes[ i ].quantile( 0.5 ) / 1e6,
+					ioTimes[ i ].quantile( 0.5 ) / 1e6 ) );
+		for ( int l = 0; l < levelTimes.size(); ++l )
+			sb.append( String.format( "level %d: %.1f ms%n", l, levelTimes.get( l ).quantile( 0.5 ) / 1e6 ) );
+		return sb.toString();
+	}
+}
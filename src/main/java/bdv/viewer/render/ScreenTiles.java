@@ -0,0 +1,306 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.Arrays;
+
+/**
+ * Splits a screen image into square tiles and keeps track of the rendering
+ * state of each tile. This is used by {@link MultiResolutionRenderer} for tiled
+ * rendering: {@link VolatileHierarchyProjector} only renders tiles that are
+ * not complete, and when the viewer transform is translated, the rendered
+ * image and the tile states are {@link #shift(int, int) shifted} such that
+ * only newly exposed tiles need to be rendered from scratch.
+ * <p>
+ * The state of a tile is the number of (best) mipmap levels that may still
+ * improve the rendered pixels of the tile. This corresponds to the per-pixel
+ * mask of {@link VolatileHierarchyProjector}: all pixels in a tile with state
+ * {@code l} have been rendered from a mipmap level with index {@code <= l}
+ * (where 0 is the best level). That is, a tile in which all pixels were
+ * rendered from valid data of level {@code k} or better has state {@code k}.
+ * State 0 means that the tile is complete, that is, it was rendered from the
+ * best level and all data was valid.
+ * {@link #UNRENDERED} means that nothing is known about the tile, and it has
+ * to be rendered from all levels.
+ * </p>
+ * <p>
+ * Projectors also use {@link ScreenTiles} to split rendering into tasks, one
+ * per tile, which are scheduled in {@link #getRenderOrder() render order},
+ * starting at the center of the screen.
+ * </p>
+ */
+public class ScreenTiles
+{
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	/**
+	 * State of a tile that has to be rendered from all mipmap levels.
+	 */
+	public static final byte UNRENDERED = Byte.MAX_VALUE;
+
+	private final int width;
+
+	private final int height;
+
+	private final int tileSize;
+
+	private final int numTilesX;
+
+	private final int numTilesY;
+
+	/**
+	 * State of each tile, flattened in row-major order.
+	 */
+	private final byte[] levels;
+
+	/**
+	 * Tile indices, ordered by distance of the tile center to the image
+	 * center.
+	 */
+	private final int[] renderOrder;
+
+	public ScreenTiles( final int width, final int height )
+	{
+		this( width, height, DEFAULT_TILE_SIZE );
+	}
+
+	public ScreenTiles( final int width, final int height, final int tileSize )
+	{
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		numTilesX = ( width + tileSize - 1 ) / tileSize;
+		numTilesY = ( height + tileSize - 1 ) / tileSize;
+		levels = new byte[ numTilesX * numTilesY ];
+		invalidateAll();
+		renderOrder = createRenderOrder();
+	}
+
+	private int[] createRenderOrder()
+	{
+		final int n = levels.length;
+		final Integer[] tiles = new Integer[ n ];
+		final long[] distances = new long[ n ];
+		for ( int tile = 0; tile < n; ++tile )
+		{
+			tiles[ tile ] = tile;
+			// twice the offset of the tile center from the image center
+			final long dx = 2 * tileMinX( tile ) + tileWidth( tile ) - width;
+			final long dy = 2 * tileMinY( tile ) + tileHeight( tile ) - height;
+			distances[ tile ] = dx * dx + dy * dy;
+		}
+		Arrays.sort( tiles, ( t1, t2 ) -> Long.compare( distances[ t1 ], distances[ t2 ] ) );
+		final int[] order = new int[ n ];
+		for ( int i = 0; i < n; ++i )
+			order[ i ] = tiles[ i ];
+		return order;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+
+	public int numTiles()
+	{
+		return levels.length;
+	}
+
+	/**
+	 * Get all tile indices, ordered by distance of the tile center to the
+	 * image center. Rendering tiles in this order fills in the center of the
+	 * screen first. The returned array must not be modified.
+	 */
+	public int[] getRenderOrder()
+	{
+		return renderOrder;
+	}
+
+	public int tileMinX( final int tile )
+	{
+		return ( tile % numTilesX ) * tileSize;
+	}
+
+	public int tileMinY( final int tile )
+	{
+		return ( tile / numTilesX ) * tileSize;
+	}
+
+	public int tileWidth( final int tile )
+	{
+		return Math.min( tileSize, width - tileMinX( tile ) );
+	}
+
+	public int tileHeight( final int tile )
+	{
+		return Math.min( tileSize, height - tileMinY( tile ) );
+	}
+
+	/**
+	 * Get the number of (best) mipmap levels that may still improve the given
+	 * tile.
+	 */
+	public int getLevels( final int tile )
+	{
+		return levels[ tile ];
+	}
+
+	public void setLevels( final int tile, final int numLevels )
+	{
+		levels[ tile ] = ( byte ) Math.min( numLevels, UNRENDERED );
+	}
+
+	public boolean isComplete( final int tile )
+	{
+		return levels[ tile ] == 0;
+	}
+
+	/**
+	 * @return true if all tiles are complete.
+	 */
+	public boolean isComplete()
+	{
+		for ( final byte l : levels )
+			if ( l != 0 )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Set all tiles to {@link #UNRENDERED}.
+	 */
+	public void invalidateAll()
+	{
+		Arrays.fill( levels, UNRENDERED );
+	}
+
+	/**
+	 * Update the tile states for image content that is moved by
+	 * {@code (dx, dy)} pixels. A tile that is covered completely by moved
+	 * content gets the worst state of the tiles that the content comes from.
+	 * Tiles that are (partially) exposed become {@link #UNRENDERED}.
+	 */
+	public void shift( final int dx, final int dy )
+	{
+		final byte[] previous = levels.clone();
+		for ( int tile = 0; tile < levels.length; ++tile )
+		{
+			// source rectangle of the tile content in the previous image
+			final int x0 = tileMinX( tile ) - dx;
+			final int y0 = tileMinY( tile ) - dy;
+			final int x1 = x0 + tileWidth( tile ) - 1;
+			final int y1 = y0 + tileHeight( tile ) - 1;
+			if ( x0 < 0 || y0 < 0 || x1 >= width || y1 >= height )
+			{
+				levels[ tile ] = UNRENDERED;
+				continue;
+			}
+			byte l = 0;
+			for ( int ty = y0 / tileSize; ty <= y1 / tileSize; ++ty )
+				for ( int tx = x0 / tileSize; tx <= x1 / tileSize; ++tx )
+					l = ( byte ) Math.max( l, previous[ ty * numTilesX + tx ] );
+			levels[ tile ] = l;
+		}
+	}
+
+	/**
+	 * Move the content of a {@code width} &times; {@code height} image by
+	 * {@code (dx, dy)} pixels. Pixels that are not covered by moved content are
+	 * set to {@code fill}. {@code src} and {@code dst} may be the same array.
+	 */
+	public static void shift( final int[] src, final int[] dst, final int width, final int height, final int dx, final int dy, final int fill )
+	{
+		final int x0 = Math.max( 0, dx );
+		final int x1 = Math.min( width, width + dx );
+		final int n = Math.max( 0, x1 - x0 );
+		if ( dy > 0 )
+			for ( int y = height - 1; y >= 0; --y )
+				shiftRow( src, dst, width, height, y, dx, dy, x0, x1, n, fill );
+		else
+			for ( int y = 0; y < height; ++y )
+				shiftRow( src, dst, width, height, y, dx, dy, x0, x1, n, fill );
+	}
+
+	private static void shiftRow( final int[] src, final int[] dst, final int width, final int height, final int y, final int dx, final int dy, final int x0, final int x1, final int n, final int fill )
+	{
+		final int o = y * width;
+		final int sy = y - dy;
+		if ( sy < 0 || sy >= height || n == 0 )
+		{
+			Arrays.fill( dst, o, o + width, fill );
+			return;
+		}
+		System.arraycopy( src, sy * width + x0 - dx, dst, o + x0, n );
+		Arrays.fill( dst, o, o + x0, fill );
+		Arrays.fill( dst, o + x1, o + width, fill );
+	}
+
+	/**
+	 * Move the content of a {@code width} &times; {@code height} image by
+	 * {@code (dx, dy)} pixels. Pixels that are not covered by moved content are
+	 * set to {@code fill}. {@code src} and {@code dst} may be the same array.
+	 */
+	public static void shift( final byte[] src, final byte[] dst, final int width, final int height, final int dx, final int dy, final byte fill )
+	{
+		final int x0 = Math.max( 0, dx );
+		final int x1 = Math.min( width, width + dx );
+		final int n = Math.max( 0, x1 - x0 );
+		if ( dy > 0 )
+			for ( int y = height - 1; y >= 0; --y )
+				shiftRow( src, dst, width, height, y, dx, dy, x0, x1, n, fill );
+		else
+			for ( int y = 0; y < height; ++y )
+				shiftRow( src, dst, width, height, y, dx, dy, x0, x1, n, fill );
+	}
+
+	private static void shiftRow( final byte[] src, final byte[] dst, final int width, final int height, final int y, final int dx, final int dy, final int x0, final int x1, final int n, final byte fill )
+	{
+		final int o = y * width;
+		final int sy = y - dy;
+		if ( sy < 0 || sy >= height || n == 0 )
+		{
+			Arrays.fill( dst, o, o + width, fill );
+			return;
+		}
+		System.arraycopy( src, sy * width + x0 - dx, dst, o + x0, n );
+		Arrays.fill( dst, o, o + x0, fill );
+		Arrays.fill( dst, o + x1, o + width, fill );
+	}
+}
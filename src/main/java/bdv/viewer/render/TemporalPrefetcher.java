@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import java.util.Arrays;
+import java.util.List;
+
+import bdv.AbstractSpimSource;
+import bdv.cache.CacheControl;
+import bdv.cache.CacheStatistics;
+import bdv.img.cache.CountingFetchQueues;
+import bdv.img.cache.SpeculativeRequests;
+import bdv.tools.transformation.TransformedSource;
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import bdv.viewer.state.SourceState;
+import bdv.viewer.state.ViewerState;
+import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Prefetches cells of the timepoints following the current one, such that
+ * stepping or playing through time does not have to wait for loading.
+ * <p>
+ * While timepoint <em>t</em> is displayed, the visible cells of timepoints
+ * <em>t+1 ... t+k</em> (in the current view, at the best mipmap level) are
+ * enqueued as {@link SpeculativeRequests}. They are enqueued in that order at
+ * the lowest priority of {@link CountingFetchQueues}, so that nearer
+ * timepoints are loaded first. When the timepoint or view changes, the
+ * previous requests are cancelled and the following timepoints are enqueued
+ * again. The cells are requested from images obtained directly from the image
+ * loader, such that the displayed sources are not switched to the following
+ * timepoints.
+ * <p>
+ * The number of timepoints <em>k</em> is adapted to the measured loading
+ * bandwidth (cells loaded per second while the fetch queue is busy, see
+ * {@link CacheStatistics}), such that approximately the cells that can be
+ * loaded within {@link #HORIZON_SECONDS} are enqueued. If the fetch queue is
+ * empty (everything enqueued so far has been loaded), <em>k</em> is
+ * increased by one.
+ */
+public class TemporalPrefetcher
+{
+	/**
+	 * Enqueue approximately as many timepoints as can be loaded in this many
+	 * seconds.
+	 */
+	private static final double HORIZON_SECONDS = 2;
+
+	/**
+	 * Number of timepoints to enqueue before the bandwidth is known.
+	 */
+	private static final int INITIAL_TIMEPOINTS = 2;
+
+	/**
+	 * If the view changed, the following timepoints are enqueued again at
+	 * most this often (to avoid flooding the queue during a continuous
+	 * motion).
+	 */
+	private static final long RESCAN_MILLIS = 250;
+
+	/**
+	 * Minimum interval over which the loading bandwidth is measured.
+	 */
+	private static final long BANDWIDTH_INTERVAL_NANOS = 500 * 1000000l;
+
+	private final CacheControl cacheControl;
+
+	private final int maxTimepoints;
+
+	private SpeculativeRequests requests;
+
+	/**
+	 * The timepoint for which {@link #requests} were enqueued, or -1.
+	 */
+	private int prefetchedTimepoint = -1;
+
+	/**
+	 * The viewer transform for which {@link #requests} were enqueued.
+	 */
+	private final double[] prefetchedTransform = new double[ 12 ];
+
+	private long prefetchedTimeMillis;
+
+	/**
+	 * Number of timepoints enqueued by {@link #requests}.
+	 */
+	private int numPrefetchedTimepoints;
+
+	/**
+	 * Estimated number of cells per timepoint that are not loaded yet, or -1
+	 * if unknown.
+	 */
+	private double cellsPerTimepoint = -1;
+
+	/**
+	 * Estimated number of cells loaded per second, or -1 if unknown.
+	 */
+	private double cellsPerSecond = -1;
+
+	private CacheStatistics bandwidthStart;
+
+	/**
+	 * Whether the fetch queue was empty at the last {@link #updateBandwidth()}.
+	 */
+	private boolean queueEmpty;
+
+	private long bandwidthStartNanos;
+
+	/**
+	 * @param cacheControl
+	 *            cache that provides {@link CacheStatistics} for measuring the
+	 *            loading bandwidth. If it doesn't, {@code maxTimepoints} are
+	 *            enqueued.
+	 * @param maxTimepoints
+	 *            the maximum number of following timepoints to enqueue.
+	 */
+	public TemporalPrefetcher( final CacheControl cacheControl, final int maxTimepoints )
+	{
+		this.cacheControl = cacheControl;
+		this.maxTimepoints = maxTimepoints;
+	}
+
+	/**
+	 * Enqueue cells of the timepoints following the current timepoint of
+	 * {@code state}, if the timepoint changed since the last call (or the view
+	 * changed, at most every {@link #RESCAN_MILLIS}).
+	 *
+	 * @param state
+	 *            the current viewer state.
+	 * @param width
+	 *            width of the screen.
+	 * @param height
+	 *            height of the screen.
+	 */
+	public synchronized void prefetch( final ViewerState state, final int width, final int height )
+	{
+		updateBandwidth();
+
+		final int timepoint = state.getCurrentTimepoint();
+		final AffineTransform3D transform = new AffineTransform3D();
+		state.getViewerTransform( transform );
+		final double[] t = transform.getRowPackedCopy();
+		final long now = System.currentTimeMillis();
+		if ( timepoint == prefetchedTimepoint )
+		{
+			if ( Arrays.equals( t, prefetchedTransform ) || now - prefetchedTimeMillis < RESCAN_MILLIS )
+				return;
+		}
+
+		if ( requests != null && numPrefetchedTimepoints > 0 )
+		{
+			final double c = ( double ) requests.getNumEnqueued() / numPrefetchedTimepoints;
+			cellsPerTimepoint = ( cellsPerTimepoint < 0 ) ? c : 0.5 * ( cellsPerTimepoint + c );
+		}
+		cancel();
+
+		final int k = Math.min( getNumTimepointsToPrefetch( numPrefetchedTimepoints ), state.getNumTimepoints() - 1 - timepoint );
+		prefetchedTimepoint = timepoint;
+		System.arraycopy( t, 0, prefetchedTransform, 0, 12 );
+		prefetchedTimeMillis = now;
+		numPrefetchedTimepoints = Math.max( k, 0 );
+		if ( k <= 0 )
+			return;
+
+		final Dimensions screenInterval = new FinalDimensions( width, height );
+		requests = new SpeculativeRequests();
+		requests.enqueue( () -> {
+			synchronized ( state )
+			{
+				final Interpolation interpolation = state.getInterpolation();
+				final List< SourceState< ? > > sources = state.getSources();
+				final List< Integer > visible = state.getVisibleSourceIndices();
+				final int[] levels = new int[ visible.size() ];
+				for ( int j = 0; j < levels.length; ++j )
+					levels[ j ] = state.getBestMipMapLevel( new AffineTransform3D(), visible.get( j ) );
+				for ( int i = 1; i <= k; ++i )
+					for ( int j = 0; j < levels.length; ++j )
+						fetchCells( sources.get( visible.get( j ) ), transform, timepoint + i, levels[ j ], interpolation, screenInterval );
+			}
+		} );
+	}
+
+	/**
+	 * Enqueue loading of the cells of mipmap level {@code level} of timepoint
+	 * {@code t} of {@code source} that will be needed for rendering with the
+	 * given viewer transform. The image is obtained directly from the image
+	 * loader, bypassing the {@link Source} that is displayed: accessing another
+	 * timepoint through the displayed {@link Source} would make that the
+	 * current timepoint of the source, and evict the images of the displayed
+	 * timepoint from its cache of recently used images. Therefore, only
+	 * {@link AbstractSpimSource}s (possibly wrapped in
+	 * {@link TransformedSource}s) are prefetched.
+	 */
+	private static void fetchCells(
+			final SourceState< ? > source,
+			final AffineTransform3D viewerTransform,
+			final int t,
+			final int level,
+			final Interpolation interpolation,
+			final Dimensions screenInterval )
+	{
+		final SourceState< ? > volatileSource = source.asVolatile();
+		if ( volatileSource == null )
+			return;
+
+		final AffineTransform3D sourceToScreen = viewerTransform.copy();
+		final AffineTransform3D transform = new AffineTransform3D();
+		Source< ? > s = volatileSource.getSpimSource();
+		while ( s instanceof TransformedSource )
+		{
+			final TransformedSource< ? > ts = ( TransformedSource< ? > ) s;
+			ts.getIncrementalTransform( transform );
+			sourceToScreen.concatenate( transform );
+			ts.getFixedTransform( transform );
+			sourceToScreen.concatenate( transform );
+			s = ts.getWrappedSource();
+		}
+		if ( !( s instanceof AbstractSpimSource ) )
+			return;
+
+		final AbstractSpimSource< ? > spimSource = ( AbstractSpimSource< ? > ) s;
+		if ( !spimSource.getUncachedSourceTransform( t, level, transform ) )
+			return;
+		sourceToScreen.concatenate( transform );
+		Prefetcher.fetchCells( spimSource.getUncachedSource( t, level ), sourceToScreen, interpolation, screenInterval );
+	}
+
+	/**
+	 * Cancel the requests enqueued for the following timepoints.
+	 */
+	public synchronized void cancel()
+	{
+		if ( requests != null )
+		{
+			requests.cancel();
+			requests = null;
+		}
+		prefetchedTimepoint = -1;
+	}
+
+	/**
+	 * Get the number of timepoints whose missing cells can be loaded in
+	 * {@link #HORIZON_SECONDS}, at least 1 and at most {@link #maxTimepoints}.
+	 *
+	 * @param previous
+	 *            the number of timepoints enqueued last time.
+	 */
+	private int getNumTimepointsToPrefetch( final int previous )
+	{
+		final double k;
+		if ( bandwidthStart == null )
+			// the cache doesn't provide statistics
+			k = maxTimepoints;
+		else if ( queueEmpty )
+			k = Math.max( previous, INITIAL_TIMEPOINTS - 1 ) + 1;
+		else if ( cellsPerSecond < 0 || cellsPerTimepoint < 0 )
+			k = INITIAL_TIMEPOINTS;
+		else
+			k = cellsPerSecond * HORIZON_SECONDS / Math.max( 1, cellsPerTimepoint );
+		return ( int ) Math.max( 1, Math.min( maxTimepoints, Math.round( k ) ) );
+	}
+
+	/**
+	 * Measure the number of cells loaded per second over intervals in which
+	 * the fetch queue was busy (non-empty at the start and end).
+	 */
+	private void updateBandwidth()
+	{
+		final CacheStatistics stats = CacheStatistics.of( cacheControl );
+		if ( stats == null || stats.getMissCount() < 0 || stats.getQueueSize() < 0 )
+			return;
+
+		final long now = System.nanoTime();
+		queueEmpty = stats.getQueueSize() == 0;
+		if ( bandwidthStart == null || bandwidthStart.getQueueSize() == 0 || stats.getQueueSize() == 0 )
+		{
+			bandwidthStart = stats;
+			bandwidthStartNanos = now;
+		}
+		else if ( now - bandwidthStartNanos >= BANDWIDTH_INTERVAL_NANOS )
+		{
+			final double rate = ( stats.getMissCount() - bandwidthStart.getMissCount() ) * 1e9 / ( now - bandwidthStartNanos );
+			cellsPerSecond = ( cellsPerSecond < 0 ) ? rate : 0.5 * ( cellsPerSecond + rate );
+			bandwidthStart = stats;
+			bandwidthStartNanos = now;
+		}
+	}
+}
@@ -60,6 +60,16 @@ import net.imglib2.view.Views;
  * {@link VolatileProjector} for a hierarchy of {@link Volatile} inputs.  After each
  * {@link #map()} call, the projector has a {@link #isValid() state} that
  * signalizes whether all projected pixels were perfect.
+ * <p>
+ * Each mipmap level is rendered in square tiles, one task per tile, starting
+ * at the center of the screen. Small tasks balance well between rendering
+ * threads, in particular with a work-stealing {@link ExecutorService} such as
+ * {@link java.util.concurrent.ForkJoinPool}, when some tiles are much more
+ * expensive than others.
+ * <p>
+ * If {@link ScreenTiles} are given, only tiles that are not complete are
+ * rendered, and the mask is not cleared when the projector is created. This is
+ * used to re-use previously rendered content for tiled rendering.
  *
  * @author Stephan Saalfeld &lt;saalfeld@mpi-cbg.de&gt;
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
@@ -68,10 +78,22 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 {
 	protected final ArrayList< RandomAccessible< A > > sources = new ArrayList<>();
 
-	private final byte[] maskArray;
+	protected final byte[] maskArray;
 
 	protected final Img< ByteType > mask;
 
+	/**
+	 * Rendering state of tiles of the target, or {@code null} if the whole
+	 * target is rendered.
+	 */
+	protected final ScreenTiles tiles;
+
+	/**
+	 * Rendering is split into one task per tile of {@link #taskTiles}. This is
+	 * {@link #tiles} if non-null.
+	 */
+	protected final ScreenTiles taskTiles;
+
 	protected volatile boolean valid = false;
 
 	protected int numInvalidLevels;
@@ -120,6 +142,18 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 	 */
 	protected long lastFrameIoNanoTime; // TODO move to derived implementation for local sources only
 
+	/**
+	 * Time needed for each rendering pass (mipmap level) of the last frame, in
+	 * nano-seconds, or -1 for levels that were not rendered.
+	 */
+	protected final long[] lastFrameLevelNanoTimes;
+
+	/**
+	 * Number of pixels that remained invalid after each rendering pass (mipmap
+	 * level) of the last frame, or -1 for levels that were not rendered.
+	 */
+	protected final long[] lastFrameNumInvalidPixels;
+
 	/**
 	 * temporary variable to store the number of invalid pixels in the current
 	 * rendering pass.
@@ -148,6 +182,29 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 			final byte[] maskArray,
 			final int numThreads,
 			final ExecutorService executorService )
+	{
+		this( sources, converter, target, maskArray, null, numThreads, executorService );
+	}
+
+	/**
+	 * @param maskArray
+	 *            if {@code tiles} is non-null, the mask must be
+	 *            {@code Byte.MAX_VALUE} for target pixels that were not
+	 *            rendered, and the index of the level that they were rendered
+	 *            from for all other pixels.
+	 * @param tiles
+	 *            rendering state of tiles of the target, which is updated by
+	 *            {@link #map()}. If {@code null}, the whole target is rendered
+	 *            and the mask is cleared.
+	 */
+	public VolatileHierarchyProjector(
+			final List< ? extends RandomAccessible< A > > sources,
+			final Converter< ? super A, B > converter,
+			final RandomAccessibleInterval< B > target,
+			final byte[] maskArray,
+			final ScreenTiles tiles,
+			final int numThreads,
+			final ExecutorService executorService )
 	{
 		super( Math.max( 2, sources.get( 0 ).numDimensions() ), converter, target );
 
@@ -156,6 +213,8 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 
 		this.maskArray = maskArray;
 		mask = ArrayImgs.bytes( maskArray, target.dimension( 0 ), target.dimension( 1 ) );
+		this.tiles = tiles;
+		taskTiles = ( tiles != null ) ? tiles : new ScreenTiles( ( int ) target.dimension( 0 ), ( int ) target.dimension( 1 ) );
 
 		iterableTarget = Views.iterable( target );
 
@@ -174,7 +233,12 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 		this.executorService = executorService;
 
 		lastFrameRenderNanoTime = -1;
-		clearMask();
+		lastFrameLevelNanoTimes = new long[ sources.size() ];
+		Arrays.fill( lastFrameLevelNanoTimes, -1 );
+		lastFrameNumInvalidPixels = new long[ sources.size() ];
+		Arrays.fill( lastFrameNumInvalidPixels, -1 );
+		if ( tiles == null )
+			clearMask();
 	}
 
 	@Override
@@ -194,6 +258,27 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 		return lastFrameIoNanoTime;
 	}
 
+	/**
+	 * Get the time needed for each rendering pass of the last frame. Element
+	 * {@code i} is the time for rendering level {@code i} (where level 0 is
+	 * the best level), or -1 if the level was not rendered.
+	 */
+	public long[] getLastFrameLevelNanoTimes()
+	{
+		return lastFrameLevelNanoTimes.clone();
+	}
+
+	/**
+	 * Get the number of pixels that remained invalid after each rendering pass
+	 * of the last frame. Element {@code i} is the number of pixels for which
+	 * level {@code i} had no valid data, or -1 if the level was not rendered.
+	 * Pixels of tiles that were complete already are not counted.
+	 */
+	public long[] getLastFrameNumInvalidPixels()
+	{
+		return lastFrameNumInvalidPixels.clone();
+	}
+
 	@Override
 	public boolean isValid()
 	{
@@ -208,6 +293,8 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 	{
 		Arrays.fill( maskArray, 0, ( int ) mask.size(), Byte.MAX_VALUE );
 		numInvalidLevels = sources.size();
+		if ( tiles != null )
+			tiles.invalidateAll();
 	}
 
 	/**
@@ -215,10 +302,38 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 	 */
 	protected void clearUntouchedTargetPixels()
 	{
-		final Cursor< ByteType > maskCursor = mask.cursor();
-		for ( final B t : iterableTarget )
-			if ( maskCursor.next().get() == Byte.MAX_VALUE )
-				t.setZero();
+		if ( tiles == null )
+		{
+			final Cursor< ByteType > maskCursor = mask.cursor();
+			for ( final B t : iterableTarget )
+				if ( maskCursor.next().get() == Byte.MAX_VALUE )
+					t.setZero();
+		}
+		else
+		{
+			// only unrendered tiles can have pixels that were never written
+			final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
+			for ( int t = 0; t < tiles.numTiles(); ++t )
+			{
+				if ( tiles.getLevels( t ) != ScreenTiles.UNRENDERED )
+					continue;
+				final int x0 = tiles.tileMinX( t );
+				final int y0 = tiles.tileMinY( t );
+				final int w = tiles.tileWidth( t );
+				final int h = tiles.tileHeight( t );
+				for ( int y = y0; y < y0 + h; ++y )
+				{
+					targetRandomAccess.setPosition( min[ 0 ] + x0, 0 );
+					targetRandomAccess.setPosition( min[ 1 ] + y, 1 );
+					for ( int x = 0, i = y * width + x0; x < w; ++x, ++i )
+					{
+						if ( maskArray[ i ] == Byte.MAX_VALUE )
+							targetRandomAccess.get().setZero();
+						targetRandomAccess.fwd( 0 );
+					}
+				}
+			}
+		}
 	}
 
 	@Override
@@ -239,18 +354,11 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 		final long startTimeIoCumulative = iostat.getCumulativeIoNanoTime();
 //		final long startIoBytes = iostat.getIoBytes();
 
-		final int numTasks;
-		if ( numThreads > 1 )
-		{
-			numTasks = Math.min( numThreads * 10, height );
-		}
-		else
-			numTasks = 1;
-		final double taskHeight = ( double )height / numTasks;
-
 		int i;
 
 		valid = false;
+		Arrays.fill( lastFrameLevelNanoTimes, -1 );
+		Arrays.fill( lastFrameNumInvalidPixels, -1 );
 
 		final boolean createExecutor = ( executorService == null );
 		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
@@ -260,13 +368,13 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 
 			valid = true;
 			numInvalidPixels.set( 0 );
+			final long levelStartTime = stopWatch.nanoTime();
 
-			final ArrayList< Callable< Void > > tasks = new ArrayList<>( numTasks );
-			for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+			final ArrayList< Callable< Void > > tasks = new ArrayList<>( taskTiles.numTiles() );
+			for ( final int tile : taskTiles.getRenderOrder() )
 			{
-				final int myOffset = width * ( int ) ( taskNum * taskHeight );
-				final long myMinY = min[ 1 ] + ( int ) ( taskNum * taskHeight );
-				final int myHeight = ( int ) ( ( (taskNum == numTasks - 1 ) ? height : ( int ) ( ( taskNum + 1 ) * taskHeight ) ) - myMinY - min[ 1 ] );
+				if ( tiles != null && tiles.getLevels( tile ) <= iFinal )
+					continue;
 
 				final Callable< Void > r = new Callable< Void >()
 				{
@@ -276,52 +384,16 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 						if ( interrupted.get() )
 							return null;
 
-						final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
-						final Cursor< ByteType > maskCursor = mask.cursor();
-						final RandomAccess< A > sourceRandomAccess = sources.get( iFinal ).randomAccess( sourceInterval );
-						int myNumInvalidPixels = 0;
-
-						final long[] smin = new long[ n ];
-						System.arraycopy( min, 0, smin, 0, n );
-						smin[ 1 ] = myMinY;
-						sourceRandomAccess.setPosition( smin );
-
-						targetRandomAccess.setPosition( min[ 0 ], 0 );
-						targetRandomAccess.setPosition( myMinY, 1 );
-
-						maskCursor.jumpFwd( myOffset );
-
-						for ( int y = 0; y < myHeight; ++y )
+						final int myNumInvalidPixels = mapRectangle( iFinal,
+								taskTiles.tileMinX( tile ), taskTiles.tileMinY( tile ),
+								taskTiles.tileWidth( tile ), taskTiles.tileHeight( tile ) );
+						if ( myNumInvalidPixels == 0 && tiles != null )
+							tiles.setLevels( tile, iFinal );
+						else if ( myNumInvalidPixels > 0 )
 						{
-							if ( interrupted.get() )
-								return null;
-
-							for ( int x = 0; x < width; ++x )
-							{
-								final ByteType m = maskCursor.next();
-								if ( m.get() > iFinal )
-								{
-									final A a = sourceRandomAccess.get();
-									final boolean v = a.isValid();
-									if ( v )
-									{
-										converter.convert( a, targetRandomAccess.get() );
-										m.set( iFinal );
-									}
-									else
-										++myNumInvalidPixels;
-								}
-								sourceRandomAccess.fwd( 0 );
-								targetRandomAccess.fwd( 0 );
-							}
-							++smin[ 1 ];
-							sourceRandomAccess.setPosition( smin );
-							targetRandomAccess.move( cr, 0 );
-							targetRandomAccess.fwd( 1 );
-						}
-						numInvalidPixels.addAndGet( myNumInvalidPixels );
-						if ( myNumInvalidPixels != 0 )
+							numInvalidPixels.addAndGet( myNumInvalidPixels );
 							valid = false;
+						}
 						return null;
 					}
 				};
@@ -335,6 +407,8 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 			{
 				Thread.currentThread().interrupt();
 			}
+			lastFrameLevelNanoTimes[ i ] = stopWatch.nanoTime() - levelStartTime;
+			lastFrameNumInvalidPixels[ i ] = numInvalidPixels.get();
 			if ( interrupted.get() )
 			{
 //				System.out.println( "interrupted" );
@@ -366,4 +440,55 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 
 		return !interrupted.get();
 	}
+
+	/**
+	 * Render pixels of the rectangle with top-left corner {@code (x0, y0)}
+	 * (relative to the target min) and size {@code w} &times; {@code h} from
+	 * mipmap level {@code level}, if the mask indicates that they were not
+	 * rendered from a level at least as good.
+	 *
+	 * @return the number of pixels for which level {@code level} was not
+	 *         valid, or -1 if rendering was interrupted.
+	 */
+	protected int mapRectangle( final byte level, final int x0, final int y0, final int w, final int h )
+	{
+		final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
+		final RandomAccess< A > sourceRandomAccess = sources.get( level ).randomAccess( sourceInterval );
+		int myNumInvalidPixels = 0;
+
+		final long[] smin = new long[ n ];
+		System.arraycopy( min, 0, smin, 0, n );
+		smin[ 0 ] += x0;
+		smin[ 1 ] += y0;
+
+		for ( int y = 0; y < h; ++y )
+		{
+			if ( interrupted.get() )
+				return -1;
+
+			sourceRandomAccess.setPosition( smin );
+			targetRandomAccess.setPosition( smin[ 0 ], 0 );
+			targetRandomAccess.setPosition( smin[ 1 ], 1 );
+			int maskIndex = ( y0 + y ) * width + x0;
+			for ( int x = 0; x < w; ++x, ++maskIndex )
+			{
+				if ( maskArray[ maskIndex ] > level )
+				{
+					final A a = sourceRandomAccess.get();
+					final boolean v = a.isValid();
+					if ( v )
+					{
+						converter.convert( a, targetRandomAccess.get() );
+						maskArray[ maskIndex ] = level;
+					}
+					else
+						++myNumInvalidPixels;
+				}
+				sourceRandomAccess.fwd( 0 );
+				targetRandomAccess.fwd( 0 );
+			}
+			++smin[ 1 ];
+		}
+		return myNumInvalidPixels;
+	}
 }
@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.systemsx.cisd.base.mdarray.MDShortArray;
+import ch.systemsx.cisd.hdf5.HDF5Factory;
+import ch.systemsx.cisd.hdf5.HDF5IntStorageFeatures;
+import ch.systemsx.cisd.hdf5.IHDF5Reader;
+import ch.systemsx.cisd.hdf5.IHDF5Writer;
+
+/**
+ * Write 16-bit datasets with the storage features used by the exporter (and a
+ * few more) with the HDF5 library, and check that {@link RawHdf5File} and
+ * {@link DirectChunkHDF5Access} read back the same data as the HDF5 library.
+ */
+public class DirectChunkHDF5AccessTest
+{
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Dataset size, in HDF5 order. Not a multiple of the chunk size, so there
+	 * are partial chunks at the edges in every dimension.
+	 */
+	private static final long[] DIMENSIONS = { 21, 29, 37 };
+
+	private static final int[] CHUNK_DIMENSIONS = { 8, 16, 16 };
+
+	private static final String PATH = Util.getCellsPath( 0, 0, 0 );
+
+	/**
+	 * Write a dataset where chunks alternate between random values of the full
+	 * 16-bit range, random values of a narrow range, a constant value, and
+	 * not written at all. This covers full precision, packed, and constant
+	 * chunks of the scale-offset filter, and chunks that are missing in the
+	 * file.
+	 *
+	 * @return the expected content of the dataset (0 for missing chunks), in
+	 *         HDF5 order.
+	 */
+	private static short[] writeDataset( final File file, final HDF5IntStorageFeatures features )
+	{
+		final short[] expected = new short[ ( int ) ( DIMENSIONS[ 0 ] * DIMENSIONS[ 1 ] * DIMENSIONS[ 2 ] ) ];
+		final Random random = new Random( 1 );
+		final IHDF5Writer writer = HDF5Factory.open( file );
+		writer.int16().createMDArray( PATH, DIMENSIONS, CHUNK_DIMENSIONS, features );
+		int chunk = 0;
+		for ( long z = 0; z < DIMENSIONS[ 0 ]; z += CHUNK_DIMENSIONS[ 0 ] )
+			for ( long y = 0; y < DIMENSIONS[ 1 ]; y += CHUNK_DIMENSIONS[ 1 ] )
+				for ( long x = 0; x < DIMENSIONS[ 2 ]; x += CHUNK_DIMENSIONS[ 2 ], ++chunk )
+				{
+					if ( chunk % 4 == 3 )
+						continue;
+					final int[] size = {
+							( int ) Math.min( CHUNK_DIMENSIONS[ 0 ], DIMENSIONS[ 0 ] - z ),
+							( int ) Math.min( CHUNK_DIMENSIONS[ 1 ], DIMENSIONS[ 1 ] - y ),
+							( int ) Math.min( CHUNK_DIMENSIONS[ 2 ], DIMENSIONS[ 2 ] - x ) };
+					final short[] data = new short[ size[ 0 ] * size[ 1 ] * size[ 2 ] ];
+					for ( int i = 0; i < data.length; ++i )
+					{
+						switch ( chunk % 4 )
+						{
+						case 0:
+							data[ i ] = ( short ) random.nextInt();
+							break;
+						case 1:
+							data[ i ] = ( short ) ( 1000 + random.nextInt( 100 ) );
+							break;
+						default:
+							data[ i ] = ( short ) ( 17 * chunk );
+						}
+					}
+					writer.int16().writeMDArrayBlockWithOffset( PATH, new MDShortArray( data, size ), new long[] { z, y, x } );
+
+					int i = 0;
+					for ( int dz = 0; dz < size[ 0 ]; ++dz )
+						for ( int dy = 0; dy < size[ 1 ]; ++dy )
+							for ( int dx = 0; dx < size[ 2 ]; ++dx )
+								expected[ ( int ) ( ( ( z + dz ) * DIMENSIONS[ 1 ] + y + dy ) * DIMENSIONS[ 2 ] + x + dx ) ] = data[ i++ ];
+				}
+		writer.close();
+		return expected;
+	}
+
+	private void testRoundTrip( final HDF5IntStorageFeatures features ) throws IOException, InterruptedException
+	{
+		final File file = new File( folder.getRoot(), "test.h5" );
+		final short[] expected = writeDataset( file, features );
+		final int[] fullSize = { ( int ) DIMENSIONS[ 0 ], ( int ) DIMENSIONS[ 1 ], ( int ) DIMENSIONS[ 2 ] };
+
+		// read the whole dataset with RawHdf5File and with the HDF5 library
+		final IHDF5Reader reader = HDF5Factory.openForReading( file );
+		final short[] library = reader.int16().readMDArrayBlockWithOffset( PATH, fullSize, new long[ 3 ] ).getAsFlatArray();
+		assertArrayEquals( expected, library );
+
+		try ( final RawHdf5File raw = new RawHdf5File( file ) )
+		{
+			final Hdf5ChunkedDataset dataset = raw.openChunkedDataset( PATH );
+			assertNotNull( "dataset cannot be read directly", dataset );
+			final short[] direct = new short[ expected.length ];
+			dataset.readShortBlock( fullSize, new long[ 3 ], direct );
+			assertArrayEquals( expected, direct );
+		}
+
+		// read random blocks through DirectChunkHDF5Access and the HDF5 library
+		final HDF5Access fallback = new HDF5Access( reader );
+		final DirectChunkHDF5Access access = new DirectChunkHDF5Access( file, Collections.emptyList(), fallback );
+		final long[] dimensions = Util.reorder( DIMENSIONS );
+		final Random random = new Random( 2 );
+		for ( int i = 0; i < 20; ++i )
+		{
+			final long[] min = new long[ 3 ];
+			final int[] size = new int[ 3 ];
+			for ( int d = 0; d < 3; ++d )
+			{
+				min[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+				size[ d ] = 1 + random.nextInt( ( int ) ( dimensions[ d ] - min[ d ] ) );
+			}
+			final short[] direct = access.readShortMDArrayBlockWithOffset( 0, 0, 0, size, min );
+			final short[] fromLibrary = fallback.readShortMDArrayBlockWithOffset( 0, 0, 0, size, min );
+			assertArrayEquals( direct, fromLibrary );
+		}
+		access.close();
+	}
+
+	@Test
+	public void testNoCompression() throws Exception
+	{
+		testRoundTrip( HDF5IntStorageFeatures.INT_NO_COMPRESSION );
+	}
+
+	@Test
+	public void testScaleOffset() throws Exception
+	{
+		testRoundTrip( HDF5IntStorageFeatures.INT_AUTO_SCALING );
+	}
+
+	@Test
+	public void testScaleOffsetDeflate() throws Exception
+	{
+		testRoundTrip( HDF5IntStorageFeatures.INT_AUTO_SCALING_DEFLATE );
+	}
+
+	@Test
+	public void testDeflate() throws Exception
+	{
+		testRoundTrip( HDF5IntStorageFeatures.INT_DEFLATE );
+	}
+
+	@Test
+	public void testShuffleDeflate() throws Exception
+	{
+		testRoundTrip( HDF5IntStorageFeatures.INT_SHUFFLE_DEFLATE );
+	}
+
+	@Test( expected = RuntimeException.class )
+	public void testReadErrorsAreReported() throws Exception
+	{
+		final File file = new File( folder.getRoot(), "truncated.h5" );
+		writeDataset( file, HDF5IntStorageFeatures.INT_AUTO_SCALING_DEFLATE );
+
+		final DirectChunkHDF5Access access = new DirectChunkHDF5Access( file, Collections.emptyList(), new HDF5Access( HDF5Factory.openForReading( file ) ) );
+		final int[] size = { 1, 1, 1 };
+		try
+		{
+			// build the chunk index, then cut off the chunks at the end of the file
+			access.readShortMDArrayBlockWithOffset( 0, 0, 0, size, new long[ 3 ] );
+			try ( final RandomAccessFile f = new RandomAccessFile( file, "rw" ) )
+			{
+				f.setLength( f.length() / 2 );
+			}
+			access.readShortMDArrayBlockWithOffset( 0, 0, 0, Util.reorder( new int[] { ( int ) DIMENSIONS[ 0 ], ( int ) DIMENSIONS[ 1 ], ( int ) DIMENSIONS[ 2 ] } ), new long[ 3 ] );
+		}
+		finally
+		{
+			access.close();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.hdf5;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class Hdf5ChunkedDatasetTest
+{
+	/**
+	 * Client data of the integer scale-offset filter for {@code numElements}
+	 * 16-bit values.
+	 */
+	private static int[] scaleOffsetClientData( final int numElements, final boolean fillDefined, final int fill )
+	{
+		return new int[] { 2, 0, numElements, 0, 2, 0, 0, fillDefined ? 1 : 0, fill };
+	}
+
+	/**
+	 * Scale-offset header (minbits, size of minval, minval) followed by
+	 * {@code packed}.
+	 */
+	private static byte[] scaleOffsetChunk( final int minbits, final long minval, final byte... packed )
+	{
+		final ByteBuffer buf = ByteBuffer.allocate( 21 + packed.length ).order( ByteOrder.LITTLE_ENDIAN );
+		buf.putInt( minbits );
+		buf.put( ( byte ) 8 );
+		buf.putLong( minval );
+		buf.position( 21 );
+		buf.put( packed );
+		return buf.array();
+	}
+
+	private static short[] decode( final byte[] chunk, final int[] clientData ) throws IOException
+	{
+		final byte[] bytes = Hdf5ChunkedDataset.scaleOffsetDecompress( chunk, clientData, ByteOrder.LITTLE_ENDIAN );
+		final short[] values = new short[ clientData[ 2 ] ];
+		ByteBuffer.wrap( bytes ).order( ByteOrder.LITTLE_ENDIAN ).asShortBuffer().get( values );
+		return values;
+	}
+
+	@Test
+	public void testScaleOffsetPacked() throws IOException
+	{
+		// 3 bits per value: 000 001 110 101
+		final byte[] chunk = scaleOffsetChunk( 3, 100, ( byte ) 0x07, ( byte ) 0x50 );
+		assertArrayEquals( new short[] { 100, 101, 106, 105 }, decode( chunk, scaleOffsetClientData( 4, false, 0 ) ) );
+	}
+
+	@Test
+	public void testScaleOffsetPackedWithFillValue() throws IOException
+	{
+		// 3 bits per value: 000 001 111 101, where 111 is the fill value
+		final byte[] chunk = scaleOffsetChunk( 3, 100, ( byte ) 0x07, ( byte ) 0xd0 );
+		assertArrayEquals( new short[] { 100, 101, 9, 105 }, decode( chunk, scaleOffsetClientData( 4, true, 9 ) ) );
+	}
+
+	@Test
+	public void testScaleOffsetFullPrecision() throws IOException
+	{
+		final byte[] chunk = scaleOffsetChunk( 16, 0, ( byte ) 0x34, ( byte ) 0x12, ( byte ) 0xff, ( byte ) 0xff );
+		assertArrayEquals( new short[] { 0x1234, -1 }, decode( chunk, scaleOffsetClientData( 2, true, 9 ) ) );
+	}
+
+	@Test
+	public void testScaleOffsetConstant() throws IOException
+	{
+		// minbits 0: all values are equal to minval
+		final byte[] chunk = scaleOffsetChunk( 0, 1234 );
+		assertArrayEquals( new short[] { 1234, 1234, 1234 }, decode( chunk, scaleOffsetClientData( 3, false, 0 ) ) );
+	}
+
+	@Test
+	public void testScaleOffsetConstantWithFillValue() throws IOException
+	{
+		// minbits 0 with fill value: the 0-bit values equal the (all-ones) fill marker
+		final byte[] chunk = scaleOffsetChunk( 0, 1234 );
+		assertArrayEquals( new short[] { 9, 9, 9 }, decode( chunk, scaleOffsetClientData( 3, true, 9 ) ) );
+	}
+
+	@Test( expected = IOException.class )
+	public void testScaleOffsetTruncated() throws IOException
+	{
+		decode( new byte[ 10 ], scaleOffsetClientData( 3, false, 0 ) );
+	}
+}
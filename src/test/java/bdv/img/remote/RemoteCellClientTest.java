@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.img.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import bdv.util.MockCellServer;
+
+public class RemoteCellClientTest
+{
+	private static final int CELL_SIZE = 4 * 4 * 4;
+
+	private static final int NUM_CELLS = 8;
+
+	private List< short[] > cells;
+
+	private MockCellServer server;
+
+	@Before
+	public void startServer() throws IOException
+	{
+		cells = new ArrayList<>();
+		for ( int c = 0; c < NUM_CELLS; ++c )
+		{
+			final short[] cell = new short[ CELL_SIZE ];
+			for ( int i = 0; i < CELL_SIZE; ++i )
+				cell[ i ] = ( short ) ( 1000 * c + i );
+			cells.add( cell );
+		}
+		server = new MockCellServer( cells, 0 );
+	}
+
+	@After
+	public void stopServer()
+	{
+		server.stop();
+	}
+
+	private static String query( final int index )
+	{
+		return String.format( "p=cell/%d/0/0/0/4/4/4/0/0/0", index );
+	}
+
+	@Test
+	public void testSequentialRequestsReuseOneConnection() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		final short[] data = new short[ CELL_SIZE ];
+		final int numRequests = 50;
+		for ( int i = 0; i < numRequests; ++i )
+		{
+			client.readShorts( query( i ), RemoteCellEncoding.RAW, data, CELL_SIZE );
+			assertArrayEquals( cells.get( i % NUM_CELLS ), data );
+		}
+		assertEquals( numRequests, server.getNumRequests() );
+		assertEquals( numRequests, client.getNumRequests() );
+		assertEquals( 1, server.getNumConnections() );
+	}
+
+	@Test
+	public void testConcurrentRequestsAreBoundedByMaxConnections() throws Exception
+	{
+		// stay below the default keep-alive limit (http.maxConnections = 5)
+		final int maxConnections = 4;
+		final int numThreads = 8;
+		final int requestsPerThread = 25;
+		server.setLatencyMillis( 2 );
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), maxConnections, 5000 );
+		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final ArrayList< Future< Void > > futures = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int thread = t;
+			futures.add( ex.submit( () -> {
+				final short[] data = new short[ CELL_SIZE ];
+				for ( int i = 0; i < requestsPerThread; ++i )
+				{
+					final int index = thread * requestsPerThread + i;
+					client.readShorts( query( index ), RemoteCellEncoding.RAW, data, CELL_SIZE );
+					assertArrayEquals( cells.get( index % NUM_CELLS ), data );
+				}
+				return null;
+			} ) );
+		}
+		for ( final Future< Void > f : futures )
+			f.get();
+		ex.shutdown();
+
+		assertEquals( numThreads * requestsPerThread, server.getNumRequests() );
+		assertTrue( "opened " + server.getNumConnections() + " connections", server.getNumConnections() <= maxConnections );
+	}
+
+	@Test
+	public void testCompressedEncodingsDecode() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		final short[] data = new short[ CELL_SIZE ];
+		for ( final RemoteCellEncoding encoding : RemoteCellEncoding.values() )
+		{
+			client.readShorts( query( 3 ), encoding, data, CELL_SIZE );
+			assertArrayEquals( encoding.getName(), cells.get( 3 ), data );
+		}
+		assertEquals( 1, server.getNumConnections() );
+	}
+
+	@Test
+	public void testServerErrorsAreRetried() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		final short[] data = new short[ CELL_SIZE ];
+		server.failNextRequests( RemoteCellClient.MAX_RETRIES );
+		client.readShorts( query( 1 ), RemoteCellEncoding.RAW, data, CELL_SIZE );
+		assertArrayEquals( cells.get( 1 ), data );
+		assertEquals( RemoteCellClient.MAX_RETRIES, client.getNumRetries() );
+		assertEquals( 1, server.getNumConnections() );
+	}
+
+	@Test
+	public void testFailureAfterRetriesIsReported() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		final short[] data = new short[ CELL_SIZE ];
+		server.failNextRequests( RemoteCellClient.MAX_RETRIES + 1 );
+		try
+		{
+			client.readShorts( query( 1 ), RemoteCellEncoding.RAW, data, CELL_SIZE );
+			fail( "expected IOException" );
+		}
+		catch ( final IOException e )
+		{}
+		assertEquals( RemoteCellClient.MAX_RETRIES + 1, server.getNumRequests() );
+	}
+
+	@Test
+	public void testWrongSizeResponseIsReported() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		final short[] data = new short[ CELL_SIZE ];
+		for ( final String query : new String[] {
+				"p=cell/1/0/0/0/4/4/2/0/0/0",
+				"p=cell/1/0/0/0/4/4/8/0/0/0" } )
+		{
+			try
+			{
+				client.readShorts( query, RemoteCellEncoding.RAW, data, CELL_SIZE );
+				fail( "expected IOException for " + query );
+			}
+			catch ( final IOException e )
+			{}
+		}
+	}
+
+	@Test
+	public void testClientErrorsAreNotRetried() throws Exception
+	{
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), 1, 5000 );
+		try
+		{
+			client.readBytes( "p=unknown", new byte[ 16 ], 16 );
+			fail( "expected IOException" );
+		}
+		catch ( final IOException e )
+		{}
+		assertEquals( 0, client.getNumRetries() );
+		assertEquals( 1, client.getNumRequests() );
+	}
+}
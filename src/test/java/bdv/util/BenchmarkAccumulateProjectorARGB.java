@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import bdv.viewer.render.AccumulateProjectorARGB;
+import bdv.viewer.render.VolatileProjector;
+import net.imglib2.RandomAccessible;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.view.Views;
+
+/**
+ * Compare {@link AccumulateProjectorARGB} accumulating through cursors with
+ * accumulating rows directly on the {@code int[]} storage of
+ * {@link ARGBScreenImage}s, for a range of source counts and screen
+ * resolutions. The cursor path is forced by wrapping the source images into
+ * views. The results of both paths are checked to be identical.
+ * <p>
+ * Usage: {@code BenchmarkAccumulateProjectorARGB [numThreads]}
+ * </p>
+ */
+public class BenchmarkAccumulateProjectorARGB
+{
+	private static final int NUM_RUNS = 30;
+
+	private static final int NUM_WARMUP_RUNS = 10;
+
+	private static final int[] NUM_SOURCES = { 1, 2, 4, 6, 8, 12, 16 };
+
+	private static final int[][] RESOLUTIONS = { { 640, 480 }, { 1280, 1024 }, { 2560, 1440 } };
+
+	private static double median( final long[] times )
+	{
+		final long[] sorted = times.clone();
+		Arrays.sort( sorted );
+		return sorted[ sorted.length / 2 ] / 1e6;
+	}
+
+	private static long time( final AccumulateProjectorARGB projector )
+	{
+		final long t0 = System.nanoTime();
+		projector.map();
+		return System.nanoTime() - t0;
+	}
+
+	public static void main( final String[] args )
+	{
+		final int numThreads = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 1;
+		final ExecutorService executorService = Executors.newFixedThreadPool( numThreads );
+		final Random random = new Random( 1 );
+
+		System.out.println( "resolution  sources  cursors (ms)  arrays (ms)" );
+		for ( final int[] resolution : RESOLUTIONS )
+		{
+			final int width = resolution[ 0 ];
+			final int height = resolution[ 1 ];
+			for ( final int numSources : NUM_SOURCES )
+			{
+				final ArrayList< ARGBScreenImage > sources = new ArrayList<>();
+				final ArrayList< RandomAccessible< ARGBType > > sourceViews = new ArrayList<>();
+				for ( int s = 0; s < numSources; ++s )
+				{
+					final ARGBScreenImage source = new ARGBScreenImage( width, height );
+					final int[] data = source.getData();
+					for ( int i = 0; i < data.length; ++i )
+						data[ i ] = random.nextInt();
+					sources.add( source );
+					sourceViews.add( Views.interval( source, source ) );
+				}
+				final ARGBScreenImage cursorTarget = new ARGBScreenImage( width, height );
+				final ARGBScreenImage arrayTarget = new ARGBScreenImage( width, height );
+
+				final ArrayList< VolatileProjector > noProjectors = new ArrayList<>();
+				final AccumulateProjectorARGB cursorProjector = new AccumulateProjectorARGB( noProjectors, sourceViews, cursorTarget, numThreads, executorService );
+				final AccumulateProjectorARGB arrayProjector = new AccumulateProjectorARGB( noProjectors, sources, arrayTarget, numThreads, executorService );
+
+				final long[] cursorTimes = new long[ NUM_RUNS ];
+				final long[] arrayTimes = new long[ NUM_RUNS ];
+				for ( int run = -NUM_WARMUP_RUNS; run < NUM_RUNS; ++run )
+				{
+					final long t1 = time( cursorProjector );
+					final long t2 = time( arrayProjector );
+					if ( run >= 0 )
+					{
+						cursorTimes[ run ] = t1;
+						arrayTimes[ run ] = t2;
+					}
+				}
+
+				if ( !Arrays.equals( cursorTarget.getData(), arrayTarget.getData() ) )
+					System.out.println( "results differ!" );
+				System.out.println( String.format( "%4d x %4d  %7d  %12.2f  %11.2f", width, height, numSources, median( cursorTimes ), median( arrayTimes ) ) );
+			}
+		}
+		executorService.shutdown();
+	}
+}
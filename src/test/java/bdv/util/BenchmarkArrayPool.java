@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import bdv.img.cache.ArrayPool;
+import bdv.img.cache.CacheArrayLoader;
+import bdv.img.hdf5.DimsAndExistence;
+import bdv.img.hdf5.Hdf5ImageLoader;
+import bdv.img.hdf5.ViewLevelId;
+import bdv.spimdata.SequenceDescriptionMinimal;
+import bdv.spimdata.SpimDataMinimal;
+import bdv.spimdata.XmlIoSpimDataMinimal;
+import mpicbg.spim.data.generic.sequence.BasicViewSetup;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+
+/**
+ * Measure the heap allocation rate of loading cells with and without the
+ * {@link ArrayPool}.
+ * <p>
+ * Cells are loaded repeatedly (in a loop over all full resolution cells of the
+ * first timepoint of a bdv.hdf5 dataset, or from a synthetic loader if no
+ * dataset is given), and the most recently loaded cells are kept in a FIFO
+ * that stands in for the cell cache. Loaded cells are registered with the pool
+ * like in {@link bdv.img.cache.VolatileGlobalCellCache}, so their arrays are
+ * recycled after they fall out of the FIFO and are garbage-collected. The
+ * bytes allocated by the loading thread are measured with
+ * {@code com.sun.management.ThreadMXBean}.
+ * </p>
+ * <p>
+ * The pool is a singleton that is configured once, so run this twice to
+ * compare: {@code BenchmarkArrayPool pool [xml]} and
+ * {@code BenchmarkArrayPool nopool [xml]}.
+ * </p>
+ */
+public class BenchmarkArrayPool
+{
+	private static final int NUM_CELLS = 100000;
+
+	private static final int NUM_WARMUP_CELLS = 20000;
+
+	private static final int CACHED_CELLS = 2000;
+
+	private static class CellRequest
+	{
+		final int timepoint;
+
+		final int setup;
+
+		final int[] dimensions;
+
+		final long[] min;
+
+		CellRequest( final int timepoint, final int setup, final int[] dimensions, final long[] min )
+		{
+			this.timepoint = timepoint;
+			this.setup = setup;
+			this.dimensions = dimensions;
+			this.min = min;
+		}
+	}
+
+	/**
+	 * Loads cells of 32x32x32 constant values, like a loader decoding data
+	 * into a pooled array.
+	 */
+	private static class SyntheticLoader implements CacheArrayLoader< VolatileShortArray >
+	{
+		@Override
+		public VolatileShortArray loadArray( final int timepoint, final int setup, final int level, final int[] dimensions, final long[] min ) throws InterruptedException
+		{
+			final short[] array = ArrayPool.getInstance().shorts( dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] );
+			for ( int i = 0; i < array.length; ++i )
+				array[ i ] = ( short ) ( i + min[ 0 ] );
+			return new VolatileShortArray( array, true );
+		}
+
+		@Override
+		public int getBytesPerElement()
+		{
+			return 2;
+		}
+	}
+
+	private static ArrayList< CellRequest > syntheticRequests()
+	{
+		final ArrayList< CellRequest > requests = new ArrayList<>();
+		for ( int i = 0; i < 10000; ++i )
+			requests.add( new CellRequest( 0, 0, new int[] { 32, 32, 32 }, new long[] { 32 * i, 0, 0 } ) );
+		return requests;
+	}
+
+	private static ArrayList< CellRequest > datasetRequests( final Hdf5ImageLoader imgLoader, final SequenceDescriptionMinimal seq )
+	{
+		final int timepointId = seq.getTimePoints().getTimePointsOrdered().get( 0 ).getId();
+		final ArrayList< CellRequest > requests = new ArrayList<>();
+		for ( final BasicViewSetup setup : seq.getViewSetupsOrdered() )
+		{
+			final int setupId = setup.getId();
+			final DimsAndExistence dims = imgLoader.getDimsAndExistence( new ViewLevelId( timepointId, setupId, 0 ) );
+			if ( !dims.exists() )
+				continue;
+			final CellGrid grid = new CellGrid( dims.getDimensions(), imgLoader.getSetupImgLoader( setupId ).getMipmapInfo().getSubdivisions()[ 0 ] );
+			final long numCells = Intervals.numElements( grid.getGridDimensions() );
+			for ( long i = 0; i < numCells; ++i )
+			{
+				final int[] d = new int[ 3 ];
+				final long[] m = new long[ 3 ];
+				grid.getCellDimensions( i, m, d );
+				requests.add( new CellRequest( timepointId, setupId, d, m ) );
+			}
+		}
+		return requests;
+	}
+
+	private static long gcCount()
+	{
+		long count = 0;
+		for ( final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+			count += Math.max( 0, gc.getCollectionCount() );
+		return count;
+	}
+
+	private static void load( final CacheArrayLoader< VolatileShortArray > loader, final ArrayList< CellRequest > requests, final int numCells, final ArrayDeque< VolatileShortArray > cached ) throws InterruptedException
+	{
+		final ArrayPool pool = ArrayPool.getInstance();
+		for ( int i = 0; i < numCells; ++i )
+		{
+			final CellRequest r = requests.get( i % requests.size() );
+			final VolatileShortArray access = loader.loadArray( r.timepoint, r.setup, 0, r.dimensions, r.min );
+			pool.recycleWhenUnreachable( access );
+			cached.addLast( access );
+			if ( cached.size() > CACHED_CELLS )
+				cached.removeFirst();
+		}
+	}
+
+	public static void main( final String[] args ) throws Exception
+	{
+		final boolean usePool = args.length == 0 || !args[ 0 ].equals( "nopool" );
+		if ( !usePool )
+			Prefs.arrayPoolSize( 0 );
+
+		final CacheArrayLoader< VolatileShortArray > loader;
+		final ArrayList< CellRequest > requests;
+		Hdf5ImageLoader imgLoader = null;
+		if ( args.length > 1 )
+		{
+			final SpimDataMinimal spimData = new XmlIoSpimDataMinimal().load( args[ 1 ] );
+			final SequenceDescriptionMinimal seq = spimData.getSequenceDescription();
+			imgLoader = ( Hdf5ImageLoader ) seq.getImgLoader();
+			loader = imgLoader.getShortArrayLoader();
+			requests = datasetRequests( imgLoader, seq );
+		}
+		else
+		{
+			loader = new SyntheticLoader();
+			requests = syntheticRequests();
+		}
+
+		final com.sun.management.ThreadMXBean threads = ( com.sun.management.ThreadMXBean ) ManagementFactory.getThreadMXBean();
+		final long threadId = Thread.currentThread().getId();
+		final ArrayDeque< VolatileShortArray > cached = new ArrayDeque<>();
+
+		load( loader, requests, NUM_WARMUP_CELLS, cached );
+
+		final ArrayPool pool = ArrayPool.getInstance();
+		final long reused0 = pool.getNumReused();
+		final long allocated0 = pool.getNumAllocated();
+		final long gc0 = gcCount();
+		final long bytes0 = threads.getThreadAllocatedBytes( threadId );
+		final long t0 = System.nanoTime();
+		load( loader, requests, NUM_CELLS, cached );
+		final long t = System.nanoTime() - t0;
+		final long bytes = threads.getThreadAllocatedBytes( threadId ) - bytes0;
+		final long gcs = gcCount() - gc0;
+		final long reused = pool.getNumReused() - reused0;
+		final long allocated = pool.getNumAllocated() - allocated0;
+
+		if ( imgLoader != null )
+			imgLoader.close();
+
+		System.out.println( usePool ? "with ArrayPool" : "without ArrayPool" );
+		System.out.println( String.format( "%d cells in %.2f s", NUM_CELLS, t / 1e9 ) );
+		System.out.println( String.format( "allocated %.1f kB per cell, %.1f MB/s", bytes / 1024.0 / NUM_CELLS, bytes / ( 1024.0 * 1024.0 ) / ( t / 1e9 ) ) );
+		System.out.println( String.format( "%d garbage collections", gcs ) );
+		System.out.println( String.format( "%d arrays re-used, %d allocated", reused, allocated ) );
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import bdv.img.hdf5.DimsAndExistence;
+import bdv.img.hdf5.Hdf5ImageLoader;
+import bdv.img.hdf5.Hdf5VolatileShortArrayLoader;
+import bdv.img.hdf5.Lz4CellCodec;
+import bdv.img.hdf5.ViewLevelId;
+import bdv.spimdata.SequenceDescriptionMinimal;
+import bdv.spimdata.SpimDataMinimal;
+import bdv.spimdata.XmlIoSpimDataMinimal;
+import mpicbg.spim.data.SpimDataException;
+import mpicbg.spim.data.generic.sequence.BasicViewSetup;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+
+/**
+ * Compare compressed size and decoding speed of DEFLATE (as used by the HDF5
+ * DEFLATE filter, with the default level 6) and shuffle+LZ4 (see
+ * {@link Lz4CellCodec}) on uint16 cells.
+ * <p>
+ * The cells are taken from full resolution of the first timepoint of a
+ * bdv.hdf5 dataset, or synthetic microscopy-like cells (smooth blobs on a
+ * noisy background) are generated if no dataset is given. Note that the HDF5
+ * scale-offset filter, which is applied before DEFLATE when exporting, is not
+ * included here.
+ * </p>
+ * <p>
+ * Usage: {@code BenchmarkCellCompression [xml] [maxCells]}
+ * </p>
+ */
+public class BenchmarkCellCompression
+{
+	private static final int NUM_DECODE_RUNS = 5;
+
+	public static ArrayList< short[] > loadCells( final String xmlFilename, final int maxCells ) throws SpimDataException, InterruptedException
+	{
+		final SpimDataMinimal spimData = new XmlIoSpimDataMinimal().load( xmlFilename );
+		final SequenceDescriptionMinimal seq = spimData.getSequenceDescription();
+		final Hdf5ImageLoader imgLoader = ( Hdf5ImageLoader ) seq.getImgLoader();
+		final Hdf5VolatileShortArrayLoader loader = imgLoader.getShortArrayLoader();
+		final int timepointId = seq.getTimePoints().getTimePointsOrdered().get( 0 ).getId();
+
+		final ArrayList< short[] > cells = new ArrayList<>();
+		for ( final BasicViewSetup setup : seq.getViewSetupsOrdered() )
+		{
+			final int setupId = setup.getId();
+			final DimsAndExistence dims = imgLoader.getDimsAndExistence( new ViewLevelId( timepointId, setupId, 0 ) );
+			if ( !dims.exists() )
+				continue;
+			final CellGrid grid = new CellGrid( dims.getDimensions(), imgLoader.getSetupImgLoader( setupId ).getMipmapInfo().getSubdivisions()[ 0 ] );
+			final long numCells = Intervals.numElements( grid.getGridDimensions() );
+			for ( long i = 0; i < numCells && cells.size() < maxCells; ++i )
+			{
+				final int[] d = new int[ 3 ];
+				final long[] m = new long[ 3 ];
+				grid.getCellDimensions( i, m, d );
+				cells.add( loader.loadArray( timepointId, setupId, 0, d, m ).getCurrentStorageArray() );
+			}
+		}
+		imgLoader.close();
+		return cells;
+	}
+
+	public static ArrayList< short[] > createSyntheticCells( final int numCells )
+	{
+		final int size = 32;
+		final Random random = new Random( 1 );
+		final ArrayList< short[] > cells = new ArrayList<>();
+		for ( int c = 0; c < numCells; ++c )
+		{
+			final short[] cell = new short[ size * size * size ];
+			final double[][] blobs = new double[ 5 ][];
+			for ( int b = 0; b < blobs.length; ++b )
+				blobs[ b ] = new double[] { random.nextDouble() * size, random.nextDouble() * size, random.nextDouble() * size, 2 + 4 * random.nextDouble(), 500 + 2000 * random.nextDouble() };
+			int i = 0;
+			for ( int z = 0; z < size; ++z )
+				for ( int y = 0; y < size; ++y )
+					for ( int x = 0; x < size; ++x )
+					{
+						double v = 100 + 10 * random.nextGaussian();
+						for ( final double[] blob : blobs )
+						{
+							final double dx = x - blob[ 0 ], dy = y - blob[ 1 ], dz = z - blob[ 2 ];
+							v += blob[ 4 ] * Math.exp( -( dx * dx + dy * dy + dz * dz ) / ( 2 * blob[ 3 ] * blob[ 3 ] ) );
+						}
+						cell[ i++ ] = ( short ) Math.max( 0, Math.min( 65535, v ) );
+					}
+			cells.add( cell );
+		}
+		return cells;
+	}
+
+	public static void benchmark( final ArrayList< short[] > cells ) throws IOException, DataFormatException
+	{
+		long rawBytes = 0;
+		for ( final short[] cell : cells )
+			rawBytes += 2 * cell.length;
+		final double rawMB = rawBytes / ( 1024.0 * 1024.0 );
+
+		// DEFLATE
+		final Deflater deflater = new Deflater( 6 );
+		final ArrayList< byte[] > deflated = new ArrayList<>();
+		long deflatedBytes = 0;
+		for ( final short[] cell : cells )
+		{
+			final byte[] bytes = toLittleEndianBytes( cell );
+			deflater.reset();
+			deflater.setInput( bytes );
+			deflater.finish();
+			final byte[] buf = new byte[ bytes.length + bytes.length / 1000 + 64 ];
+			int n = 0;
+			while ( !deflater.finished() )
+				n += deflater.deflate( buf, n, buf.length - n );
+			deflated.add( Arrays.copyOf( buf, n ) );
+			deflatedBytes += n;
+		}
+		deflater.end();
+		final Inflater inflater = new Inflater();
+		double deflateSeconds = Double.MAX_VALUE;
+		for ( int run = 0; run < NUM_DECODE_RUNS; ++run )
+		{
+			final long t0 = System.nanoTime();
+			for ( int c = 0; c < cells.size(); ++c )
+			{
+				final short[] cell = cells.get( c );
+				final byte[] bytes = new byte[ 2 * cell.length ];
+				inflater.reset();
+				inflater.setInput( deflated.get( c ) );
+				inflater.inflate( bytes );
+				final short[] data = new short[ cell.length ];
+				for ( int i = 0; i < data.length; ++i )
+					data[ i ] = ( short ) ( ( bytes[ 2 * i ] & 0xff ) | ( bytes[ 2 * i + 1 ] << 8 ) );
+			}
+			deflateSeconds = Math.min( deflateSeconds, ( System.nanoTime() - t0 ) / 1e9 );
+		}
+		inflater.end();
+
+		// shuffle + LZ4
+		final ArrayList< byte[] > lz4 = new ArrayList<>();
+		long lz4Bytes = 0;
+		for ( final short[] cell : cells )
+		{
+			final byte[] encoded = Lz4CellCodec.encodeShorts( cell, cell.length );
+			lz4.add( encoded );
+			lz4Bytes += encoded.length;
+		}
+		double lz4Seconds = Double.MAX_VALUE;
+		for ( int run = 0; run < NUM_DECODE_RUNS; ++run )
+		{
+			final long t0 = System.nanoTime();
+			for ( int c = 0; c < cells.size(); ++c )
+			{
+				final short[] cell = cells.get( c );
+				final short[] data = new short[ cell.length ];
+				Lz4CellCodec.decodeShorts( lz4.get( c ), data, data.length );
+				if ( run == 0 && !Arrays.equals( cell, data ) )
+					throw new IllegalStateException( "LZ4 round trip failed for cell " + c );
+			}
+			lz4Seconds = Math.min( lz4Seconds, ( System.nanoTime() - t0 ) / 1e9 );
+		}
+
+		System.out.println( String.format( "%d cells, %.1f MB uncompressed", cells.size(), rawMB ) );
+		System.out.println( "codec         MB  ratio  decode MB/s" );
+		System.out.println( String.format( "deflate  %7.1f  %5.2f  %11.1f", deflatedBytes / ( 1024.0 * 1024.0 ), ( double ) rawBytes / deflatedBytes, rawMB / deflateSeconds ) );
+		System.out.println( String.format( "lz4      %7.1f  %5.2f  %11.1f", lz4Bytes / ( 1024.0 * 1024.0 ), ( double ) rawBytes / lz4Bytes, rawMB / lz4Seconds ) );
+	}
+
+	private static byte[] toLittleEndianBytes( final short[] data )
+	{
+		final byte[] bytes = new byte[ 2 * data.length ];
+		for ( int i = 0; i < data.length; ++i )
+		{
+			bytes[ 2 * i ] = ( byte ) data[ i ];
+			bytes[ 2 * i + 1 ] = ( byte ) ( data[ i ] >> 8 );
+		}
+		return bytes;
+	}
+
+	public static void main( final String[] args ) throws Exception
+	{
+		final int maxCells = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 1000;
+		final ArrayList< short[] > cells = args.length > 0
+				? loadCells( args[ 0 ], maxCells )
+				: createSyntheticCells( Math.min( maxCells, 200 ) );
+		benchmark( cells );
+	}
+}
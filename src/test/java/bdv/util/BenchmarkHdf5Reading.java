@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bdv.img.hdf5.DimsAndExistence;
+import bdv.img.hdf5.Hdf5ImageLoader;
+import bdv.img.hdf5.Hdf5VolatileShortArrayLoader;
+import bdv.img.hdf5.ViewLevelId;
+import bdv.spimdata.SequenceDescriptionMinimal;
+import bdv.spimdata.SpimDataMinimal;
+import bdv.spimdata.XmlIoSpimDataMinimal;
+import mpicbg.spim.data.SpimDataException;
+import mpicbg.spim.data.generic.sequence.BasicViewSetup;
+import mpicbg.spim.data.sequence.TimePoint;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+
+/**
+ * Measure throughput of reading cells from a bdv.hdf5 dataset with different
+ * numbers of fetcher threads. All cells of one timepoint (all setups, one
+ * mipmap level) are read by the given number of threads, bypassing the
+ * cache. Every thread count uses a different timepoint, such that the data is
+ * not already in the OS page cache (as long as the dataset has enough
+ * timepoints).
+ * <p>
+ * Usage: {@code BenchmarkHdf5Reading <xml> [maxThreads] [level]}
+ * </p>
+ */
+public class BenchmarkHdf5Reading
+{
+	public static void benchmark( final String xmlFilename, final int maxThreads, final int level ) throws SpimDataException, InterruptedException
+	{
+		final SpimDataMinimal spimData = new XmlIoSpimDataMinimal().load( xmlFilename );
+		final SequenceDescriptionMinimal seq = spimData.getSequenceDescription();
+		if ( !( seq.getImgLoader() instanceof Hdf5ImageLoader ) )
+		{
+			System.err.println( "not a hdf5 dataset" );
+			return;
+		}
+		final Hdf5ImageLoader template = ( Hdf5ImageLoader ) seq.getImgLoader();
+		final List< TimePoint > timepoints = seq.getTimePoints().getTimePointsOrdered();
+
+		System.out.println( "threads  timepoint  cells  MB  seconds  MB/s" );
+		int run = 0;
+		for ( int numThreads = 1; numThreads <= maxThreads; numThreads *= 2, ++run )
+		{
+			final int timepointId = timepoints.get( run % timepoints.size() ).getId();
+			final Hdf5ImageLoader imgLoader = new Hdf5ImageLoader( template.getHdf5File(), template.getPartitions(), seq, numThreads, true );
+			final Hdf5VolatileShortArrayLoader loader = imgLoader.getShortArrayLoader();
+
+			final ArrayList< int[] > cellDims = new ArrayList<>();
+			final ArrayList< long[] > cellMins = new ArrayList<>();
+			final ArrayList< Integer > cellSetups = new ArrayList<>();
+			for ( final BasicViewSetup setup : seq.getViewSetupsOrdered() )
+			{
+				final int setupId = setup.getId();
+				final Hdf5ImageLoader.SetupImgLoader< ?, ? > sil = imgLoader.getSetupImgLoader( setupId );
+				if ( level >= sil.numMipmapLevels() )
+					continue;
+				final DimsAndExistence dims = imgLoader.getDimsAndExistence( new ViewLevelId( timepointId, setupId, level ) );
+				if ( !dims.exists() )
+					continue;
+				final CellGrid grid = new CellGrid( dims.getDimensions(), sil.getMipmapInfo().getSubdivisions()[ level ] );
+				final long numCells = Intervals.numElements( grid.getGridDimensions() );
+				for ( long i = 0; i < numCells; ++i )
+				{
+					final int[] d = new int[ 3 ];
+					final long[] m = new long[ 3 ];
+					grid.getCellDimensions( i, m, d );
+					cellDims.add( d );
+					cellMins.add( m );
+					cellSetups.add( setupId );
+				}
+			}
+
+			final AtomicInteger next = new AtomicInteger();
+			final AtomicLong bytes = new AtomicLong();
+			final Thread[] threads = new Thread[ numThreads ];
+			for ( int i = 0; i < numThreads; ++i )
+			{
+				threads[ i ] = new Thread( () -> {
+					for ( int c = next.getAndIncrement(); c < cellDims.size(); c = next.getAndIncrement() )
+					{
+						final int[] d = cellDims.get( c );
+						try
+						{
+							loader.loadArray( timepointId, cellSetups.get( c ), level, d, cellMins.get( c ) );
+						}
+						catch ( final InterruptedException e )
+						{
+							return;
+						}
+						bytes.addAndGet( ( long ) d[ 0 ] * d[ 1 ] * d[ 2 ] * loader.getBytesPerElement() );
+					}
+				} );
+			}
+			final long t0 = System.nanoTime();
+			for ( final Thread thread : threads )
+				thread.start();
+			for ( final Thread thread : threads )
+				thread.join();
+			final double seconds = ( System.nanoTime() - t0 ) / 1e9;
+			final double mb = bytes.get() / ( 1024.0 * 1024.0 );
+			System.out.println( String.format( "%7d  %9d  %5d  %.1f  %.3f  %.1f", numThreads, timepointId, cellDims.size(), mb, seconds, mb / seconds ) );
+
+			imgLoader.close();
+		}
+	}
+
+	public static void main( final String[] args )
+	{
+		if ( args.length < 1 )
+		{
+			System.err.println( "usage: BenchmarkHdf5Reading <xml> [maxThreads] [level]" );
+			return;
+		}
+		final int maxThreads = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : Runtime.getRuntime().availableProcessors();
+		final int level = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 0;
+		try
+		{
+			benchmark( args[ 0 ], maxThreads, level );
+		}
+		catch ( final SpimDataException | InterruptedException e )
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bdv.img.remote.RemoteCellClient;
+import bdv.img.remote.RemoteCellEncoding;
+
+/**
+ * Compare the effective throughput (cells per second) of loading cells with
+ * the different {@link RemoteCellEncoding}s from a local
+ * {@link MockCellServer}, at different simulated link bandwidths. Also reports
+ * the compression ratio of each encoding.
+ * <p>
+ * The cells are taken from full resolution of the first timepoint of a
+ * bdv.hdf5 dataset, or synthetic cells are generated if no dataset is given
+ * (see {@link BenchmarkCellCompression}).
+ * </p>
+ * <p>
+ * Usage: {@code BenchmarkRemoteCellCompression [xml] [numCellsPerRun]}
+ * </p>
+ */
+public class BenchmarkRemoteCellCompression
+{
+	/**
+	 * Simulated bandwidths in MB/s, 0 is unlimited.
+	 */
+	private static final double[] BANDWIDTHS_MB = { 1, 10, 100, 0 };
+
+	private static final long LATENCY_MILLIS = 5;
+
+	private static final int NUM_THREADS = 16;
+
+	/**
+	 * Load {@code numCells} cells with {@link #NUM_THREADS} threads, and check
+	 * that they are decoded correctly.
+	 *
+	 * @return cells per second.
+	 */
+	private static double run( final RemoteCellClient client, final RemoteCellEncoding encoding, final ArrayList< short[] > cells, final int numCells ) throws Exception
+	{
+		final ExecutorService ex = Executors.newFixedThreadPool( NUM_THREADS );
+		final AtomicInteger next = new AtomicInteger();
+		final ArrayList< Future< Void > > futures = new ArrayList<>();
+		final long t0 = System.nanoTime();
+		for ( int i = 0; i < NUM_THREADS; ++i )
+			futures.add( ex.submit( () -> {
+				for ( int c = next.getAndIncrement(); c < numCells; c = next.getAndIncrement() )
+				{
+					final short[] expected = cells.get( c % cells.size() );
+					final short[] data = new short[ expected.length ];
+					client.readShorts( String.format( "p=cell/%d/0/0/0/%d/1/1/0/0/0", c, data.length ), encoding, data, data.length );
+					if ( !Arrays.equals( expected, data ) )
+						throw new IllegalStateException( encoding.getName() + " round trip failed for cell " + c );
+				}
+				return null;
+			} ) );
+		for ( final Future< Void > f : futures )
+			f.get();
+		final double seconds = ( System.nanoTime() - t0 ) / 1e9;
+		ex.shutdown();
+		ex.awaitTermination( 1, TimeUnit.MINUTES );
+		return numCells / seconds;
+	}
+
+	public static void main( final String[] args ) throws Exception
+	{
+		final int numCells = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 400;
+		final ArrayList< short[] > cells = args.length > 0
+				? BenchmarkCellCompression.loadCells( args[ 0 ], 1000 )
+				: BenchmarkCellCompression.createSyntheticCells( 200 );
+		final MockCellServer server = new MockCellServer( cells, LATENCY_MILLIS );
+		final RemoteCellClient client = new RemoteCellClient( server.getBaseUrl(), NUM_THREADS, 60000 );
+		final RemoteCellEncoding[] encodings = RemoteCellEncoding.values();
+
+		long rawBytes = 0;
+		for ( final short[] cell : cells )
+			rawBytes += 2 * cell.length;
+
+		// warm up, and measure the compression ratio over all cells
+		final double[] ratios = new double[ encodings.length ];
+		for ( int e = 0; e < encodings.length; ++e )
+		{
+			final long b0 = server.getNumBytes();
+			run( client, encodings[ e ], cells, cells.size() );
+			ratios[ e ] = ( double ) rawBytes / ( server.getNumBytes() - b0 );
+		}
+
+		System.out.println( String.format( "%d cells, %.1f MB uncompressed, %d ms latency, %d threads", cells.size(), rawBytes / ( 1024.0 * 1024.0 ), LATENCY_MILLIS, NUM_THREADS ) );
+		final StringBuilder header = new StringBuilder( "bandwidth " );
+		final StringBuilder ratio = new StringBuilder( "ratio     " );
+		for ( int e = 0; e < encodings.length; ++e )
+		{
+			header.append( String.format( "  %12s", encodings[ e ].getName() ) );
+			ratio.append( String.format( "  %12.2f", ratios[ e ] ) );
+		}
+		System.out.println( header.append( "  (cells/s)" ) );
+		System.out.println( ratio );
+		for ( final double mb : BANDWIDTHS_MB )
+		{
+			server.setBytesPerSecond( mb * 1024 * 1024 );
+			final StringBuilder line = new StringBuilder( mb > 0 ? String.format( "%5.0f MB/s", mb ) : "unlimited " );
+			for ( final RemoteCellEncoding encoding : encodings )
+			{
+				final int n = mb > 0 ? ( int ) Math.min( numCells, Math.max( 50, numCells * mb / 100 ) ) : numCells;
+				line.append( String.format( "  %12.0f", run( client, encoding, cells, n ) ) );
+			}
+			System.out.println( line );
+		}
+		server.stop();
+	}
+}
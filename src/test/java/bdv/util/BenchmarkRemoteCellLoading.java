@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bdv.img.remote.RemoteCellClient;
+import bdv.img.remote.RemoteVolatileShortArrayLoader;
+
+/**
+ * Compare the throughput (cells per second) of loading cells over HTTP by
+ * opening a new URL stream per cell (as {@link RemoteVolatileShortArrayLoader}
+ * did before) and by {@link RemoteCellClient} (persistent connections), for
+ * different numbers of loading threads and simulated latencies. The cells are
+ * served by a local {@link MockCellServer}.
+ * <p>
+ * Note that the size of the JDK keep-alive connection cache is read once, on
+ * the first HTTP request. It is set to the maximum number of threads before
+ * the first run, so the URL stream runs also profit from it (more than they
+ * would with the default of 5 cached connections).
+ * </p>
+ * <p>
+ * Usage: {@code BenchmarkRemoteCellLoading [numCellsPerRun]}
+ * </p>
+ */
+public class BenchmarkRemoteCellLoading
+{
+	private static final int[] NUM_THREADS = { 1, 4, 10, 32 };
+
+	private static final long[] LATENCIES_MILLIS = { 0, 5, 20 };
+
+	private static final int CELL_SIZE = 32 * 32 * 32;
+
+	private interface CellReader
+	{
+		void read( String query, short[] data ) throws IOException, InterruptedException;
+	}
+
+	private static String query( final int index )
+	{
+		return String.format( "p=cell/%d/0/0/0/32/32/32/0/0/0", index );
+	}
+
+	/**
+	 * Load {@code numCells} cells with {@code numThreads} threads.
+	 *
+	 * @return cells per second.
+	 */
+	private static double run( final CellReader reader, final int numThreads, final int numCells ) throws Exception
+	{
+		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final AtomicInteger next = new AtomicInteger();
+		final ArrayList< Future< Void > > futures = new ArrayList<>();
+		final long t0 = System.nanoTime();
+		for ( int i = 0; i < numThreads; ++i )
+			futures.add( ex.submit( () -> {
+				final short[] data = new short[ CELL_SIZE ];
+				for ( int c = next.getAndIncrement(); c < numCells; c = next.getAndIncrement() )
+					reader.read( query( c ), data );
+				return null;
+			} ) );
+		for ( final Future< Void > f : futures )
+			f.get();
+		final double seconds = ( System.nanoTime() - t0 ) / 1e9;
+		ex.shutdown();
+		ex.awaitTermination( 1, TimeUnit.MINUTES );
+		return numCells / seconds;
+	}
+
+	public static void main( final String[] args ) throws Exception
+	{
+		final int numCells = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 2000;
+		final int maxThreads = NUM_THREADS[ NUM_THREADS.length - 1 ];
+		final MockCellServer server = new MockCellServer( BenchmarkCellCompression.createSyntheticCells( 16 ), 0 );
+		final String baseUrl = server.getBaseUrl();
+
+		final CellReader openStream = ( query, data ) -> {
+			// as RemoteVolatileShortArrayLoader did before
+			final InputStream s = new URL( baseUrl + "?" + query ).openStream();
+			final byte[] buf = new byte[ data.length * 2 ];
+			int n = 0;
+			for ( int l = s.read( buf, 0, buf.length ); l > 0; n += l, l = s.read( buf, n, buf.length - n ) );
+			for ( int i = 0, j = 0; i < data.length; ++i, j += 2 )
+				data[ i ] = ( short ) ( ( ( buf[ j ] & 0xff ) << 8 ) | ( buf[ j + 1 ] & 0xff ) );
+			s.close();
+		};
+		final RemoteCellClient client = new RemoteCellClient( baseUrl, maxThreads, 10000 );
+		final CellReader pooled = ( query, data ) -> client.readShorts( query, data, data.length );
+
+		// warm up
+		run( openStream, 4, numCells / 4 );
+		run( pooled, 4, numCells / 4 );
+
+		System.out.println( "latency  threads  openStream cells/s (conn)  client cells/s (conn)" );
+		for ( final long latency : LATENCIES_MILLIS )
+		{
+			server.setLatencyMillis( latency );
+			final int n = latency == 0 ? numCells : Math.max( 100, numCells / 4 );
+			for ( final int numThreads : NUM_THREADS )
+			{
+				final long c0 = server.getNumConnections();
+				final double a = run( openStream, numThreads, n );
+				final long c1 = server.getNumConnections();
+				final double b = run( pooled, numThreads, n );
+				final long c2 = server.getNumConnections();
+				System.out.println( String.format( "%5d ms  %7d  %17.0f (%5d)  %13.0f (%5d)", latency, numThreads, a, c1 - c0, b, c2 - c1 ) );
+			}
+		}
+		System.out.println( String.format( "client: %d requests, %d retries", client.getNumRequests(), client.getNumRetries() ) );
+		server.stop();
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import bdv.img.cache.VolatileCachedCellImg;
+import bdv.viewer.render.AxisAlignedVolatileHierarchyProjector;
+import bdv.viewer.render.AxisAlignedVolatileHierarchyProjector.AxisAlignedLevel;
+import bdv.viewer.render.VolatileHierarchyProjector;
+import net.imglib2.RandomAccessible;
+import net.imglib2.display.RealARGBColorConverter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.type.volatiles.VolatileUnsignedShortType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Compare the rendering speed of {@link VolatileHierarchyProjector} (per-pixel
+ * access through the interpolated and transformed source) and
+ * {@link AxisAlignedVolatileHierarchyProjector} (row-wise, cell-aware
+ * traversal of the source image) on a synthetic cell image.
+ * <p>
+ * The synthetic image has 32<sup>3</sup> cells, and every fourth cell is
+ * invalid (not loaded yet). A 1024x768 screen image is rendered from an
+ * axis-aligned slice at several zoom levels. Each configuration is rendered
+ * repeatedly with a fresh projector and the median time is reported.
+ * </p>
+ * <p>
+ * Usage: {@code BenchmarkVolatileProjection [numThreads]}
+ * </p>
+ */
+public class BenchmarkVolatileProjection
+{
+	private static final int NUM_RUNS = 50;
+
+	private static final int NUM_WARMUP_RUNS = 20;
+
+	private static final int WIDTH = 1024;
+
+	private static final int HEIGHT = 768;
+
+	public static VolatileCachedCellImg< VolatileUnsignedShortType, VolatileShortArray > createSyntheticImg( final long[] dimensions, final int[] cellDimensions )
+	{
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final int numCells = ( int ) Intervals.numElements( grid.getGridDimensions() );
+		final ArrayList< Cell< VolatileShortArray > > cells = new ArrayList<>( numCells );
+		for ( int i = 0; i < numCells; ++i )
+		{
+			final long[] cellMin = new long[ 3 ];
+			final int[] cellDims = new int[ 3 ];
+			grid.getCellDimensions( i, cellMin, cellDims );
+			final short[] data = new short[ cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ] ];
+			for ( int j = 0; j < data.length; ++j )
+				data[ j ] = ( short ) ( ( i * 31 + j ) & 0xfff );
+			cells.add( new Cell<>( cellDims, cellMin, new VolatileShortArray( data, i % 4 != 0 ) ) );
+		}
+		return new VolatileCachedCellImg<>( grid, new VolatileUnsignedShortType(), null, ( index, hints ) -> cells.get( ( int ) index ) );
+	}
+
+	private static double median( final long[] times )
+	{
+		final long[] sorted = times.clone();
+		Arrays.sort( sorted );
+		return sorted[ sorted.length / 2 ] / 1e6;
+	}
+
+	public static void main( final String[] args ) throws InterruptedException
+	{
+		final int numThreads = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 1;
+		final ExecutorService executorService = Executors.newFixedThreadPool( numThreads );
+
+		final VolatileCachedCellImg< VolatileUnsignedShortType, VolatileShortArray > img = createSyntheticImg( new long[] { 2048, 2048, 64 }, new int[] { 32, 32, 32 } );
+		final VolatileUnsignedShortType zero = new VolatileUnsignedShortType();
+		zero.setZero();
+		final RealARGBColorConverter< VolatileUnsignedShortType > converter = new RealARGBColorConverter.Imp0<>( 0, 4095 );
+		final ARGBScreenImage screenImage = new ARGBScreenImage( WIDTH, HEIGHT );
+		final byte[] maskArray = new byte[ WIDTH * HEIGHT ];
+
+		for ( final double zoom : new double[] { 0.5, 1, 3.3 } )
+		{
+			final AffineTransform3D sourceToScreen = new AffineTransform3D();
+			sourceToScreen.set(
+					zoom, 0, 0, -100.3 * zoom,
+					0, zoom, 0, -80.6 * zoom,
+					0, 0, zoom, -30.2 * zoom );
+			final RandomAccessible< VolatileUnsignedShortType > transformed = RealViews.affine(
+					Views.interpolate( Views.extendValue( img, zero ), new NearestNeighborInterpolatorFactory<>() ),
+					sourceToScreen );
+			final AxisAlignedLevel< VolatileUnsignedShortType > axisAligned = AxisAlignedLevel.create( img, sourceToScreen );
+
+			final long[] perPixel = new long[ NUM_RUNS ];
+			final long[] cellAware = new long[ NUM_RUNS ];
+			for ( int run = -NUM_WARMUP_RUNS; run < NUM_RUNS; ++run )
+			{
+				final VolatileHierarchyProjector< VolatileUnsignedShortType, ? > p1 = new VolatileHierarchyProjector<>(
+						Collections.singletonList( transformed ), converter, screenImage, maskArray, numThreads, executorService );
+				long t0 = System.nanoTime();
+				p1.map();
+				final long t1 = System.nanoTime() - t0;
+
+				final VolatileHierarchyProjector< VolatileUnsignedShortType, ? > p2 = new AxisAlignedVolatileHierarchyProjector<>(
+						Collections.singletonList( transformed ), Collections.singletonList( axisAligned ), converter, screenImage, maskArray, null, numThreads, executorService );
+				t0 = System.nanoTime();
+				p2.map();
+				final long t2 = System.nanoTime() - t0;
+
+				if ( run >= 0 )
+				{
+					perPixel[ run ] = t1;
+					cellAware[ run ] = t2;
+				}
+			}
+			System.out.println( String.format( "zoom %.1f: per-pixel %.2f ms, cell-aware %.2f ms", zoom, median( perPixel ), median( cellAware ) ) );
+		}
+		executorService.shutdown();
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import bdv.img.remote.RemoteCellEncoding;
+import bdv.img.remote.RemoteImageLoader;
+
+/**
+ * Embedded HTTP server that answers the cell requests of a
+ * {@link RemoteImageLoader} ({@code ?p=cell/index/timepoint/setup/level/dx/dy/dz/x/y/z})
+ * with synthetic uint16 data, for benchmarking remote loading without a
+ * BigDataServer. The cell with index {@code i} is the
+ * {@code (i mod n)}-th of the given cells, truncated or zero-padded to the
+ * requested dimensions, in the requested {@link RemoteCellEncoding}
+ * ({@code &encoding=<name>}).
+ * <p>
+ * Each response is delayed by a fixed latency. Optionally, the bandwidth of
+ * the link is limited: responses are sent one after the other (shared by all
+ * connections), each taking its size divided by the bandwidth. For testing
+ * retries, the server can be told to answer the next requests with
+ * {@code 503 Service Unavailable}.
+ */
+public class MockCellServer
+{
+	static
+	{
+		// Without TCP_NODELAY, small (compressed) responses on a persistent
+		// connection wait for delayed ACKs (~40 ms each).
+		if ( System.getProperty( "sun.net.httpserver.nodelay" ) == null )
+			System.setProperty( "sun.net.httpserver.nodelay", "true" );
+	}
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final List< short[] > cells;
+
+	/**
+	 * Encoded cells, for each encoding, indexed like {@link #cells}.
+	 */
+	private final Map< RemoteCellEncoding, byte[][] > encodedCells = new EnumMap<>( RemoteCellEncoding.class );
+
+	private volatile long latencyMillis;
+
+	/**
+	 * Bandwidth in bytes per second, or 0 for unlimited.
+	 */
+	private volatile double bytesPerSecond;
+
+	/**
+	 * When the simulated link will have finished sending the responses so
+	 * far ({@link System#nanoTime()}).
+	 */
+	private long linkFreeNanos;
+
+	private final AtomicLong numBytes = new AtomicLong();
+
+	private final AtomicLong numRequests = new AtomicLong();
+
+	private final AtomicLong numConnections = new AtomicLong();
+
+	/**
+	 * Number of requests that will still be answered with an error.
+	 */
+	private final AtomicInteger numFailures = new AtomicInteger();
+
+	/**
+	 * Client addresses (and ports) seen so far, one per TCP connection.
+	 */
+	private final Set< InetSocketAddress > clients = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Start a server on a free port of the loopback interface.
+	 *
+	 * @param cells
+	 *            the cell data to serve.
+	 * @param latencyMillis
+	 *            simulated latency for each request.
+	 */
+	public MockCellServer( final List< short[] > cells, final long latencyMillis ) throws IOException
+	{
+		this.cells = new ArrayList<>( cells );
+		for ( final RemoteCellEncoding encoding : RemoteCellEncoding.values() )
+		{
+			final byte[][] encoded = new byte[ cells.size() ][];
+			for ( int i = 0; i < encoded.length; ++i )
+				encoded[ i ] = encoding.encode( cells.get( i ), cells.get( i ).length );
+			encodedCells.put( encoding, encoded );
+		}
+		this.latencyMillis = latencyMillis;
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		server.createContext( "/", this::handle );
+		server.setExecutor( executor );
+		server.start();
+	}
+
+	/**
+	 * Get the base URL of the served dataset.
+	 */
+	public String getBaseUrl()
+	{
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/dataset/";
+	}
+
+	public void setLatencyMillis( final long latencyMillis )
+	{
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Limit the bandwidth of the simulated link.
+	 *
+	 * @param bytesPerSecond
+	 *            bandwidth in bytes per second, or 0 for unlimited.
+	 */
+	public void setBytesPerSecond( final double bytesPerSecond )
+	{
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * Answer the next {@code n} requests with {@code 503 Service Unavailable}.
+	 */
+	public void failNextRequests( final int n )
+	{
+		numFailures.set( n );
+	}
+
+	/**
+	 * Get the number of response bytes sent so far.
+	 */
+	public long getNumBytes()
+	{
+		return numBytes.get();
+	}
+
+	/**
+	 * Get the number of requests answered so far.
+	 */
+	public long getNumRequests()
+	{
+		return numRequests.get();
+	}
+
+	/**
+	 * Get the number of TCP connections opened by clients so far.
+	 */
+	public long getNumConnections()
+	{
+		return numConnections.get();
+	}
+
+	public void stop()
+	{
+		server.stop( 0 );
+		executor.shutdownNow();
+	}
+
+	private void handle( final HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			final String query = exchange.getRequestURI().getQuery();
+			if ( query == null || !query.startsWith( "p=cell/" ) )
+			{
+				exchange.sendResponseHeaders( 404, -1 );
+				return;
+			}
+			final int amp = query.indexOf( "&encoding=" );
+			final RemoteCellEncoding encoding = RemoteCellEncoding.forName( amp < 0 ? null : query.substring( amp + "&encoding=".length() ) );
+			final String[] parts = query.substring( "p=cell/".length(), amp < 0 ? query.length() : amp ).split( "/" );
+			final int index = Integer.parseInt( parts[ 0 ] ) % cells.size();
+			final int numElements = Integer.parseInt( parts[ 4 ] ) * Integer.parseInt( parts[ 5 ] ) * Integer.parseInt( parts[ 6 ] );
+			final short[] cell = cells.get( index );
+			final byte[] response = ( cell.length == numElements )
+					? encodedCells.get( encoding )[ index ]
+					: encoding.encode( Arrays.copyOf( cell, numElements ), numElements );
+
+			if ( latencyMillis > 0 )
+				Thread.sleep( latencyMillis );
+			final long sentNanos = reserveLink( response.length );
+			final long delayNanos = sentNanos - System.nanoTime();
+			if ( delayNanos > 0 )
+				Thread.sleep( delayNanos / 1000000, ( int ) ( delayNanos % 1000000 ) );
+			numRequests.incrementAndGet();
+			if ( clients.add( exchange.getRemoteAddress() ) )
+				numConnections.incrementAndGet();
+
+			if ( numFailures.getAndUpdate( n -> Math.max( 0, n - 1 ) ) > 0 )
+			{
+				// with a body, like real servers send (HttpURLConnection does
+				// not reuse the connection after an empty error response)
+				final byte[] message = "Service Unavailable".getBytes( StandardCharsets.US_ASCII );
+				exchange.sendResponseHeaders( 503, message.length );
+				try ( final OutputStream out = exchange.getResponseBody() )
+				{
+					out.write( message );
+				}
+				return;
+			}
+
+			numBytes.addAndGet( response.length );
+			exchange.getResponseHeaders().set( "Content-Type", "application/octet-stream" );
+			exchange.sendResponseHeaders( 200, response.length );
+			try ( final OutputStream out = exchange.getResponseBody() )
+			{
+				out.write( response );
+			}
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			// malformed request or unknown encoding
+			exchange.sendResponseHeaders( 400, -1 );
+		}
+		catch ( final InterruptedException | RuntimeException e )
+		{
+			exchange.sendResponseHeaders( 500, -1 );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reserve the simulated link for sending {@code length} bytes, after the
+	 * responses that are already being sent.
+	 *
+	 * @return when the response will have been sent ({@link System#nanoTime()}).
+	 */
+	private synchronized long reserveLink( final int length )
+	{
+		final long now = System.nanoTime();
+		if ( bytesPerSecond <= 0 )
+			return now;
+		linkFreeNanos = Math.max( now, linkFreeNanos ) + ( long ) ( length * 1e9 / bytesPerSecond );
+		return linkFreeNanos;
+	}
+}
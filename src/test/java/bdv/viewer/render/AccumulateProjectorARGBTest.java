@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * BigDataViewer core classes with minimal dependencies
+ * %%
+ * Copyright (C) 2012 - 2016 Tobias Pietzsch, Stephan Saalfeld, Stephan Preibisch,
+ * Jean-Yves Tinevez, HongKee Moon, Johannes Schindelin, Curtis Rueden, John Bogovic
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package bdv.viewer.render;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.view.Views;
+
+public class AccumulateProjectorARGBTest
+{
+	private static final int LENGTH = 1000;
+
+	/**
+	 * Saturating per-channel sum of {@code sources[s][i]}, computed one
+	 * channel at a time.
+	 */
+	private static int[] accumulatePerChannel( final int[][] sources )
+	{
+		final int[] target = new int[ LENGTH ];
+		for ( int i = 0; i < LENGTH; ++i )
+		{
+			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+			for ( final int[] source : sources )
+			{
+				aSum += ARGBType.alpha( source[ i ] );
+				rSum += ARGBType.red( source[ i ] );
+				gSum += ARGBType.green( source[ i ] );
+				bSum += ARGBType.blue( source[ i ] );
+			}
+			target[ i ] = ARGBType.rgba( Math.min( rSum, 255 ), Math.min( gSum, 255 ), Math.min( bSum, 255 ), Math.min( aSum, 255 ) );
+		}
+		return target;
+	}
+
+	private static int[] accumulate( final int[][] sources )
+	{
+		final int[] target = new int[ LENGTH ];
+		AccumulateProjectorARGB.accumulate( sources, target, 0, LENGTH );
+		return target;
+	}
+
+	private static int[][] randomSources( final int numSources, final Random random )
+	{
+		final int[][] sources = new int[ numSources ][ LENGTH ];
+		for ( final int[] source : sources )
+			for ( int i = 0; i < LENGTH; ++i )
+				source[ i ] = random.nextInt();
+		return sources;
+	}
+
+	/**
+	 * Sources with small channel values, so that sums of many sources do not
+	 * saturate.
+	 */
+	private static int[][] dimSources( final int numSources, final Random random )
+	{
+		final int[][] sources = new int[ numSources ][ LENGTH ];
+		for ( final int[] source : sources )
+			for ( int i = 0; i < LENGTH; ++i )
+				source[ i ] = random.nextInt() & 0x01010101;
+		return sources;
+	}
+
+	private static int[][] constantSources( final int numSources, final int value )
+	{
+		final int[][] sources = new int[ numSources ][ LENGTH ];
+		for ( final int[] source : sources )
+			Arrays.fill( source, value );
+		return sources;
+	}
+
+	@Test
+	public void testPackedMatchesPerChannel()
+	{
+		final Random random = new Random( 1 );
+		for ( final int numSources : new int[] { 0, 1, 2, 3, 8, 16, 100 } )
+		{
+			final int[][] sources = randomSources( numSources, random );
+			assertArrayEquals( numSources + " sources", accumulatePerChannel( sources ), accumulate( sources ) );
+		}
+	}
+
+	@Test
+	public void testNonSaturatingSums()
+	{
+		final Random random = new Random( 2 );
+		for ( final int numSources : new int[] { 2, 100, 257, 258, 300 } )
+		{
+			final int[][] sources = dimSources( numSources, random );
+			assertArrayEquals( numSources + " sources", accumulatePerChannel( sources ), accumulate( sources ) );
+		}
+	}
+
+	@Test
+	public void testMaxPackedSources()
+	{
+		// 257 * 255 = 0xffff just fits into the 16-bit lanes
+		for ( final int value : new int[] { 0xffffffff, 0xff00ff00, 0x00ff00ff, 0xff000000, 0x000000ff } )
+		{
+			final int[][] sources = constantSources( 257, value );
+			final int[] expected = new int[ LENGTH ];
+			Arrays.fill( expected, value );
+			assertArrayEquals( Integer.toHexString( value ), expected, accumulate( sources ) );
+			assertArrayEquals( Integer.toHexString( value ), accumulatePerChannel( sources ), accumulate( sources ) );
+		}
+	}
+
+	@Test
+	public void testOverflowFallback()
+	{
+		// 258 * 255 would overflow the 16-bit lanes of the packed path
+		for ( final int numSources : new int[] { 258, 300 } )
+		{
+			for ( final int value : new int[] { 0xffffffff, 0xff00ff00, 0x00ff00ff, 0x000000ff } )
+			{
+				final int[][] sources = constantSources( numSources, value );
+				final int[] expected = new int[ LENGTH ];
+				Arrays.fill( expected, value );
+				assertArrayEquals( numSources + " x " + Integer.toHexString( value ), expected, accumulate( sources ) );
+			}
+			final int[][] sources = randomSources( numSources, new Random( numSources ) );
+			assertArrayEquals( numSources + " sources", accumulatePerChannel( sources ), accumulate( sources ) );
+		}
+	}
+
+	@Test
+	public void testOnlyRangeIsWritten()
+	{
+		final int[][] sources = randomSources( 4, new Random( 3 ) );
+		final int[] expected = accumulatePerChannel( sources );
+		final int offset = 100;
+		final int length = 250;
+		Arrays.fill( expected, 0, offset, 0x12345678 );
+		Arrays.fill( expected, offset + length, LENGTH, 0x12345678 );
+
+		final int[] target = new int[ LENGTH ];
+		Arrays.fill( target, 0x12345678 );
+		AccumulateProjectorARGB.accumulate( sources, target, offset, length );
+		assertArrayEquals( expected, target );
+	}
+
+	@Test
+	public void testArrayAndCursorProjectorsAgree()
+	{
+		final int width = 64;
+		final int height = 48;
+		final Random random = new Random( 4 );
+		for ( final int numSources : new int[] { 1, 3, 8 } )
+		{
+			final ArrayList< ARGBScreenImage > sources = new ArrayList<>();
+			final ArrayList< RandomAccessible< ARGBType > > sourceViews = new ArrayList<>();
+			for ( int s = 0; s < numSources; ++s )
+			{
+				final ARGBScreenImage source = new ARGBScreenImage( width, height );
+				final int[] data = source.getData();
+				for ( int i = 0; i < data.length; ++i )
+					data[ i ] = random.nextInt();
+				sources.add( source );
+				// wrapping into a view forces accumulation through cursors
+				sourceViews.add( Views.interval( source, source ) );
+			}
+			final ARGBScreenImage cursorTarget = new ARGBScreenImage( width, height );
+			final ARGBScreenImage arrayTarget = new ARGBScreenImage( width, height );
+
+			final ArrayList< VolatileProjector > noProjectors = new ArrayList<>();
+			new AccumulateProjectorARGB( noProjectors, sourceViews, cursorTarget, 2, null ).map();
+			new AccumulateProjectorARGB( noProjectors, sources, arrayTarget, 2, null ).map();
+
+			assertArrayEquals( numSources + " sources", cursorTarget.getData(), arrayTarget.getData() );
+		}
+	}
+}